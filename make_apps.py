@@ -31,6 +31,7 @@ java_apps = {
     "yprolog": {"class": "yprolog.Go"},
     "blogdb2ergevid": {"class": "blogdb2ergevid"},
     "bndb2inst": {"class": "probcog.bayesnets.conversion.BNDB2Inst"},
+    "probcogServer": {"class": "probcog.service.SocketServer"},
 }
 java_apps["netEd"] = java_apps["bnj"]
 java_apps["pcjython"] = java_apps["jython"]
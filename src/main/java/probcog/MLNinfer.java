@@ -57,6 +57,8 @@ public class MLNinfer {
 		Algorithm algo = Algorithm.MCSAT;
 		String[] cwPreds = null;
 		boolean debug = false;
+		int groundingThreads = 1;
+		boolean lazy = false;
 		HashMap<String,Object> params = new HashMap<String,Object>();
 		
 		// read arguments
@@ -83,6 +85,10 @@ public class MLNinfer {
 				algo = Algorithm.Toulbar2;
 			else if(args[i].equals("-debug"))
 				debug = true;
+			else if(args[i].equals("-gt"))
+				groundingThreads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-lazy"))
+				lazy = true;
 			else if(args[i].startsWith("-p") || args[i].startsWith("--")) { // algorithm-specific parameter
 				String[] pair = args[i].substring(2).split("=");
 				if(pair.length != 2)
@@ -101,6 +107,8 @@ public class MLNinfer {
 								 "    -t2              algorithm: Toulbar2 branch & bound\n" +									 
 						         "    -debug           debug mode with additional outputs\n" +
 						         "    -cw <predNames>  set predicates as closed-world (comma-separated list of names)\n" +
+						         "    -gt #            the number of threads with which to ground the MLN (default: 1)\n" +
+						         "    -lazy            ground formulas lazily during inference (MC-SAT and MaxWalkSAT only)\n" +
 						         "    --<key>=<value>  set algorithm-specific parameter\n" 
 								 );
 			return;
@@ -144,8 +152,15 @@ public class MLNinfer {
 		}
 		
 		System.out.printf("creating ground MRF...\n");
-		MarkovRandomField mrf = mln.ground(db);
-		if(debug) {
+		MarkovRandomField mrf;
+		if(lazy) {
+			if(algo != Algorithm.MCSAT && algo != Algorithm.MaxWalkSAT)
+				throw new ProbCogException("Lazy grounding is not supported by " + algo);
+			mrf = mln.groundLazily(db);
+		}
+		else
+			mrf = mln.ground(db, groundingThreads);
+		if(debug && !lazy) {
 			System.out.println("MRF:");
 			for(WeightedFormula wf : mrf)
 				System.out.println("  " + wf.toString());
@@ -195,7 +210,7 @@ public class MLNinfer {
         		out.printf("%s %f\n", r.ga.toString().replace(" ", ""), r.value);
         }
         if(out != null) out.close();
-        if(infer instanceof MPEInferenceAlgorithm) {
+        if(infer instanceof MPEInferenceAlgorithm && !lazy) {
         	MPEInferenceAlgorithm mapi = (MPEInferenceAlgorithm)infer;
         	double value = mrf.getWorldValue(mapi.getSolution());
         	System.out.printf("\nsolution value: %f\n", value);
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.bayesnets.core;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import edu.ksu.cis.bnj.ver3.core.BeliefNode;
+import edu.ksu.cis.bnj.ver3.core.CPF;
+
+/**
+ * A compiled, read-only representation of the conditional probability tables of a
+ * Bayesian network: the CPT of each node is stored as a primitive array of doubles
+ * (in BNJ's address order) along with the indices of the nodes in its domain product
+ * and the corresponding strides, such that CPT entries can be looked up without any
+ * hashing or allocation.
+ * The compiled network reflects the CPFs at the time of construction, i.e. it must be
+ * recompiled if the network's CPFs are changed.
+ */
+public class CompiledBeliefNetwork {
+	/**
+	 * the CPT entries of each node, indexed by node index
+	 */
+	protected double[][] cpts;
+	/**
+	 * for each node, the indices of the nodes in the domain product of its CPF (the first element being the node itself)
+	 */
+	protected int[][] cptNodes;
+	/**
+	 * for each node, the address strides of the nodes in the domain product of its CPF
+	 */
+	protected int[][] strides;
+	/**
+	 * the domain size of each node
+	 */
+	protected int[] domainSizes;
+	protected int maxDomainSize;
+
+	public CompiledBeliefNetwork(BeliefNetworkEx bn) {
+		BeliefNode[] nodes = bn.bn.getNodes();
+		HashMap<BeliefNode, Integer> nodeIndices = new HashMap<BeliefNode, Integer>();
+		for(int i = 0; i < nodes.length; i++)
+			nodeIndices.put(nodes[i], i);
+		cpts = new double[nodes.length][];
+		cptNodes = new int[nodes.length][];
+		strides = new int[nodes.length][];
+		domainSizes = new int[nodes.length];
+		maxDomainSize = 0;
+		for(int i = 0; i < nodes.length; i++) {
+			domainSizes[i] = nodes[i].getDomain().getOrder();
+			maxDomainSize = Math.max(maxDomainSize, domainSizes[i]);
+			CPF cpf = nodes[i].getCPF();
+			BeliefNode[] domProd = cpf.getDomainProduct();
+			int[] idx = new int[domProd.length];
+			int[] stride = new int[domProd.length];
+			int s = 1;
+			for(int j = domProd.length-1; j >= 0; j--) {
+				idx[j] = nodeIndices.get(domProd[j]);
+				stride[j] = s;
+				s *= domProd[j].getDomain().getOrder();
+			}
+			double[] cpt = new double[cpf.size()];
+			for(int j = 0; j < cpt.length; j++)
+				cpt[j] = cpf.getDouble(j);
+			cpts[i] = cpt;
+			cptNodes[i] = idx;
+			strides[i] = stride;
+		}
+	}
+
+	/**
+	 * @return the number of nodes in the network
+	 */
+	public int getNumNodes() {
+		return cpts.length;
+	}
+
+	public int getDomainSize(int nodeIdx) {
+		return domainSizes[nodeIdx];
+	}
+
+	public int getMaxDomainSize() {
+		return maxDomainSize;
+	}
+
+	/**
+	 * @param nodeIdx
+	 * @return the CPT entries of the given node (which must not be modified)
+	 */
+	public double[] getCPT(int nodeIdx) {
+		return cpts[nodeIdx];
+	}
+
+	/**
+	 * @param nodeIdx
+	 * @return the indices of the nodes in the domain product of the given node's CPF (the first element being the node itself); the array must not be modified
+	 */
+	public int[] getCPTNodes(int nodeIdx) {
+		return cptNodes[nodeIdx];
+	}
+
+	/**
+	 * @param nodeIdx
+	 * @return the address strides corresponding to the elements of {@link #getCPTNodes(int)}; the array must not be modified
+	 */
+	public int[] getStrides(int nodeIdx) {
+		return strides[nodeIdx];
+	}
+
+	/**
+	 * gets the address of the CPT entry of the given node for the given assignment
+	 * @param nodeIdx
+	 * @param nodeDomainIndices domain indices for each node in the network (only the node and its parents are required to be set)
+	 * @return the address into the array returned by {@link #getCPT(int)}
+	 */
+	public final int getCPTAddress(int nodeIdx, int[] nodeDomainIndices) {
+		int[] idx = cptNodes[nodeIdx], stride = strides[nodeIdx];
+		int addr = 0;
+		for(int i = 0; i < idx.length; i++)
+			addr += stride[i] * nodeDomainIndices[idx[i]];
+		return addr;
+	}
+
+	/**
+	 * gets the address of the first entry in the column of the given node's CPT that corresponds
+	 * to the current setting of its parents (i.e. the address at which the node itself takes on its first value)
+	 * @param nodeIdx
+	 * @param nodeDomainIndices domain indices for each node in the network (only the parents are required to be set)
+	 * @return the address into the array returned by {@link #getCPT(int)}; consecutive entries of the column are {@link #getColumnStride(int)} apart
+	 */
+	public final int getColumnAddress(int nodeIdx, int[] nodeDomainIndices) {
+		int[] idx = cptNodes[nodeIdx], stride = strides[nodeIdx];
+		int addr = 0;
+		for(int i = 1; i < idx.length; i++)
+			addr += stride[i] * nodeDomainIndices[idx[i]];
+		return addr;
+	}
+
+	/**
+	 * @param nodeIdx
+	 * @return the address difference between two consecutive entries in a column of the node's CPT
+	 */
+	public final int getColumnStride(int nodeIdx) {
+		return strides[nodeIdx][0];
+	}
+
+	/**
+	 * gets the CPT entry of the given node for the configuration of the node and its parents that is provided in the array of domain indices
+	 * @param nodeIdx
+	 * @param nodeDomainIndices domain indices for each node in the network (only the node and its parents are required to be set)
+	 * @return the probability value
+	 */
+	public final double getCPTProbability(int nodeIdx, int[] nodeDomainIndices) {
+		return cpts[nodeIdx][getCPTAddress(nodeIdx, nodeDomainIndices)];
+	}
+
+	/**
+	 * writes the column of the node's CPT that corresponds to the current setting of its parents to the given array
+	 * @param nodeIdx
+	 * @param nodeDomainIndices domain indices for each node in the network (only the parents are required to be set)
+	 * @param dist an array with at least as many elements as the node's domain
+	 * @return the sum of the entries that were written
+	 */
+	public final double getConditionalDistribution(int nodeIdx, int[] nodeDomainIndices, double[] dist) {
+		double[] cpt = cpts[nodeIdx];
+		int addr = getColumnAddress(nodeIdx, nodeDomainIndices);
+		int diff = strides[nodeIdx][0];
+		int domSize = domainSizes[nodeIdx];
+		double sum = 0;
+		for(int i = 0; i < domSize; i++, addr += diff)
+			sum += (dist[i] = cpt[addr]);
+		return sum;
+	}
+
+	/**
+	 * samples forward, i.e. samples a value for the given node given its parents
+	 * @param nodeIdx  the index of the node for which to sample a value
+	 * @param nodeDomainIndices  domain indices for all nodes in the network; the values for the parents of the node must be set already
+	 * @param generator the random number generator to use
+	 * @return  the index of the domain element that is sampled, or -1 if sampling is impossible because all entries in the relevant column are 0
+	 */
+	public final int sampleForward(int nodeIdx, int[] nodeDomainIndices, Random generator) {
+		double[] cpt = cpts[nodeIdx];
+		int base = getColumnAddress(nodeIdx, nodeDomainIndices);
+		int diff = strides[nodeIdx][0];
+		int domSize = domainSizes[nodeIdx];
+		double sum = 0;
+		for(int i = 0, addr = base; i < domSize; i++, addr += diff)
+			sum += cpt[addr];
+		// if the column contains only zeros, it is an impossible case -> cannot sample
+		if(sum == 0)
+			return -1;
+		// (same semantics as Sampler.sample)
+		double random = generator.nextDouble() * sum;
+		int ret = 0;
+		sum = 0;
+		for(int i = 0, addr = base; sum < random && i < domSize; i++, addr += diff) {
+			sum += cpt[addr];
+			ret = i;
+		}
+		return sum >= random ? ret : -1;
+	}
+
+	/**
+	 * gets the probability of the possible world given by the vector of domain indices
+	 * @param nodeDomainIndices domain indices for each of the network's nodes
+	 * @return the product of all CPT entries
+	 */
+	public double getWorldProbability(int[] nodeDomainIndices) {
+		double ret = 1.0;
+		for(int i = 0; i < cpts.length; i++)
+			ret *= getCPTProbability(i, nodeDomainIndices);
+		return ret;
+	}
+}
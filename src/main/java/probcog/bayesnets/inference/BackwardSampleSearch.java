@@ -33,7 +33,6 @@ import probcog.bayesnets.util.TopologicalOrdering;
 import probcog.bayesnets.util.TopologicalSort;
 import probcog.exception.ProbCogException;
 import edu.ksu.cis.bnj.ver3.core.BeliefNode;
-import edu.ksu.cis.bnj.ver3.core.CPF;
 import edu.tum.cs.util.datastruct.Map2D;
 import edu.tum.cs.util.datastruct.Map2List;
 import edu.tum.cs.util.datastruct.Map2Set;
@@ -90,17 +89,13 @@ public class BackwardSampleSearch extends BackwardSamplingWithPriors {
 	}
 	
 	protected boolean sampleForward(BeliefNode node, WeightedSample s, Set<Integer> excluded) throws ProbCogException {
-		CPF cpf = node.getCPF();
-		BeliefNode[] domProd = cpf.getDomainProduct();
-		int[] addr = new int[domProd.length];
-		addr[0] = 0;
-		for(int i = 1; i < addr.length; i++)
-			addr[i] = s.nodeDomainIndices[this.nodeIndices.get(domProd[i])];
-		int realAddr = cpf.addr2realaddr(addr); // address of the first element in the distribution we sample from
-		int addrOffset = cpf.getColumnValueAddressOffset();
+		int nodeIdx = getNodeIndex(node);
+		double[] cpt = compiledNetwork.getCPT(nodeIdx);
+		int realAddr = compiledNetwork.getColumnAddress(nodeIdx, s.nodeDomainIndices); // address of the first element in the distribution we sample from
+		int addrOffset = compiledNetwork.getColumnStride(nodeIdx);
 		
 		// get probabilities for outcomes
-		double[] cpt_entries = new double[domProd[0].getDomain().getOrder()];
+		double[] cpt_entries = new double[compiledNetwork.getDomainSize(nodeIdx)];
 		double sum = 0;
 		double value;
 		for(int i = 0; i < cpt_entries.length; i++) {
@@ -109,7 +104,7 @@ public class BackwardSampleSearch extends BackwardSamplingWithPriors {
 				//System.out.println("forward exclusion");
 			}
 			else
-				value = cpf.getDouble(realAddr);
+				value = cpt[realAddr];
 			if(debug) out.printf("      %d: %f\n", i, value);
 			cpt_entries[i] = value;
 			sum += value;
@@ -120,11 +115,11 @@ public class BackwardSampleSearch extends BackwardSamplingWithPriors {
 		
 		// sample
 		int domIdx = sample(cpt_entries, sum, generator);
-		s.nodeDomainIndices[this.nodeIndices.get(node)] = domIdx;		
+		s.nodeDomainIndices[nodeIdx] = domIdx;		
 		sampledIndices[currentOrderIndex] = domIdx;
 		
 		// remember weighting factor
-		weightingFactors.put(node, getCPTProbability(node, s.nodeDomainIndices) / (cpt_entries[domIdx] / sum));
+		weightingFactors.put(node, getCPTProbability(nodeIdx, s.nodeDomainIndices) / (cpt_entries[domIdx] / sum));
 		
 		if(debug) out.println("    assigned " + domIdx);
 		return true;
@@ -18,86 +18,395 @@
  ******************************************************************************/
 package probcog.bayesnets.inference;
 
-import java.util.HashMap;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
 
 import probcog.bayesnets.core.BeliefNetworkEx;
 import probcog.exception.ProbCogException;
-import edu.ksu.cis.bnj.ver3.core.BeliefNode;
-import edu.ksu.cis.bnj.ver3.core.Discrete;
+import probcog.inference.GelmanRubin;
 import edu.tum.cs.util.Stopwatch;
 
 /**
  * Gibbs Sampling MCMC inference.
+ * Supports burn-in and thinning as well as multiple independent chains, which are run
+ * on separate threads; with multiple chains, sampling can be stopped early as soon as
+ * the Gelman-Rubin diagnostic (R-hat) for all query variables falls below a threshold. 
  * @author Dominik Jain
  */
 public class GibbsSampling extends Sampler {
 	int[] nodeOrder;	
-	HashMap<BeliefNode, BeliefNode[]> children;
+	/**
+	 * Markov blanket index: for each node, the indices of the nodes whose CPTs depend on it, i.e. the node itself followed by its children
+	 */
+	protected int[][] blanketCPTs;
+	/**
+	 * for each node, the address strides of the node within the CPTs given by {@link #blanketCPTs}
+	 */
+	protected int[][] blanketStrides;
+	/**
+	 * the number of independent Markov chains
+	 */
+	protected int numChains = 1;
+	/**
+	 * the number of initial Gibbs steps of each chain whose samples are discarded
+	 */
+	protected int burnIn = 0;
+	/**
+	 * the number of Gibbs steps per sample that is retained
+	 */
+	protected int thinning = 1;
+	/**
+	 * R-hat threshold below which the chains are considered to have converged (null to disable the check)
+	 */
+	protected Double maxRHat = null;
+	/**
+	 * the maximum R-hat value across all query variables that was last computed
+	 */
+	protected double rHat = Double.NaN;
+	/**
+	 * the buffer for sampling distributions used by {@link #gibbsStep(int[], WeightedSample)}
+	 */
+	protected double[] buffer = null;
 	
 	public GibbsSampling(BeliefNetworkEx bn) throws ProbCogException {
 		super(bn);
-		children = new HashMap<BeliefNode, BeliefNode[]>();
-		for(int i = 0; i < nodes.length; i++) {
-			children.put(nodes[i], bn.bn.getChildren(nodes[i]));
-		}
+		buildMarkovBlanketIndex();
 		nodeOrder = bn.getTopologicalOrder();
+		paramHandler.add("numChains", "setNumChains");
+		paramHandler.add("burnIn", "setBurnIn");
+		paramHandler.add("thinning", "setThinning");
+		paramHandler.add("maxRHat", "setMaxRHat");
+	}
+	
+	/**
+	 * builds the Markov blanket index (see {@link #blanketCPTs}, {@link #blanketStrides})
+	 */
+	protected void buildMarkovBlanketIndex() {
+		int numNodes = compiledNetwork.getNumNodes();
+		int[] counts = new int[numNodes];
+		for(int i = 0; i < numNodes; i++)
+			for(int n : compiledNetwork.getCPTNodes(i))
+				counts[n]++;
+		blanketCPTs = new int[numNodes][];
+		blanketStrides = new int[numNodes][];
+		for(int i = 0; i < numNodes; i++) {
+			blanketCPTs[i] = new int[counts[i]];
+			blanketStrides[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		// the node's own CPT comes first (its domain product begins with the node itself), followed by the children's CPTs
+		for(int i = 0; i < numNodes; i++) {
+			blanketCPTs[i][0] = i;
+			blanketStrides[i][0] = compiledNetwork.getColumnStride(i);
+			counts[i] = 1;
+		}
+		for(int i = 0; i < numNodes; i++) {
+			int[] cptNodes = compiledNetwork.getCPTNodes(i);
+			int[] strides = compiledNetwork.getStrides(i);
+			for(int k = 1; k < cptNodes.length; k++) {
+				int n = cptNodes[k];
+				blanketCPTs[n][counts[n]] = i;
+				blanketStrides[n][counts[n]] = strides[k];
+				counts[n]++;
+			}
+		}
+	}
+	
+	public void setNumChains(int numChains) {
+		this.numChains = numChains;
+	}
+	
+	public void setBurnIn(int burnIn) {
+		this.burnIn = burnIn;
+	}
+	
+	public void setThinning(int thinning) {
+		this.thinning = thinning;
+	}
+	
+	public void setMaxRHat(double maxRHat) {
+		this.maxRHat = maxRHat;
 	}
 	
 	public void _infer() throws ProbCogException {
 		Stopwatch sw = new Stopwatch();
 
-		// get initial setting with non-zero evidence probability
+		// get initial setting with non-zero evidence probability for each chain
 		out.println("initial setting...");
-		WeightedSample s = bn.getWeightedSample(nodeOrder, evidenceDomainIndices, generator);
-		if(s == null)
-			throw new ProbCogException("Could not find an initial state with non-zero probability in given number of trials.");
+		Vector<Chain> chains = new Vector<Chain>();
+		for(int i = 0; i < numChains; i++)
+			chains.add(new Chain(i == 0 ? generator : new Random(generator.nextLong())));
 		
 		// do Gibbs sampling
 		out.println("Gibbs sampling...");
-		sw.start();		
-		// - get a bunch of samples
-		for(int i = 1; i <= numSamples; i++) {
-			if(i % infoInterval == 0)
-				out.println("  step " + i);
-			gibbsStep(evidenceDomainIndices, s);
-			s.trials = 1;
-			s.weight = 1;
-			addSample(s);
+		sw.start();
+		if(numChains == 1) {
+			Chain chain = chains.get(0);
+			chain.burnIn();
+			// - get a bunch of samples
+			for(int i = 1; i <= numSamples; i++) {
+				if(i % infoInterval == 0)
+					out.println("  step " + i);
+				chain.step();
+				addSample(chain.s);
+				if(converged())
+					break;
+			}
 		}
+		else
+			inferParallel(chains);
 
 		sw.stop();
 		report(String.format("time taken: %.2fs (%.4fs per sample)\n", sw.getElapsedTimeSecs(), sw.getElapsedTimeSecs()/numSamples));
+		if(numChains > 1)
+			report(String.format("chains: %d, R-hat: %f\n", numChains, rHat));
 	}
 	
+	/**
+	 * runs the given chains on separate threads, each chain contributing numSamples/numChains samples 
+	 * @param chains
+	 * @throws ProbCogException
+	 */
+	protected void inferParallel(Vector<Chain> chains) throws ProbCogException {
+		final int samplesPerChain = Math.max(1, numSamples / chains.size());
+		final int checkInterval = Math.max(2, (int)convergenceCheckInterval);
+		// the chains add their samples to the distribution builder (which supports concurrent updates) and
+		// additionally keep track of their own samples (for the computation of R-hat)
+		for(Chain chain : chains) {
+			chain.dist = new SampledDistribution(bn);
+			chain.dist.setDebugMode(false);
+		}
+		// if convergence is to be checked, the chains synchronize after every checkInterval samples;
+		// the chains' stop flags are changed only at these synchronization points (and cancellation
+		// is consequently also handled only at these points); a chain that fails keeps participating
+		// in the synchronization, unless the barrier is broken, which stops all chains
+		final Vector<Chain> allChains = chains;
+		final CyclicBarrier barrier = maxRHat == null ? null : new CyclicBarrier(chains.size(), new Runnable() {
+			public void run() {
+				boolean stop = isCancelled();
+				for(Chain chain : allChains)
+					stop |= chain.error != null;
+				if(!stop) {
+					rHat = computeRHat(allChains);
+					if(rHat <= maxRHat) {
+						out.printf("Convergence criterion reached: R-hat = %f\n", rHat);
+						stop = true;
+					}
+				}
+				if(stop)
+					for(Chain chain : allChains)
+						chain.stop = true;
+			}
+		});
+		Vector<Thread> threads = new Vector<Thread>();
+		for(final Chain chain : chains) {
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						try {
+							chain.burnIn();
+						}
+						catch(Throwable e) {
+							fail(chain, e);
+						}
+						for(int i = 1; i <= samplesPerChain && !chain.stop; i++) {
+							if(chain.error == null) {
+								try {
+									if(i % infoInterval == 0 && chain == allChains.get(0))
+										out.println("  step " + i);
+									chain.step();
+									chain.dist.addSample(chain.s);
+									addSample(chain.s);
+								}
+								catch(Throwable e) {
+									fail(chain, e);
+								}
+							}
+							if(barrier != null) {
+								if(i % checkInterval == 0)
+									barrier.await();
+							}
+							else if(chain.error != null || isCancelled())
+								break;
+						}
+					}
+					catch(Throwable e) { // interrupted or broken barrier
+						fail(chain, e);
+					}
+				}
+				
+				/**
+				 * records the error of a chain and, if the chains do not synchronize, stops the other chains 
+				 * (otherwise they are stopped at the next synchronization point or by the broken barrier)
+				 */
+				protected void fail(Chain chain, Throwable e) {
+					if(chain.error == null)
+						chain.error = e;
+					if(barrier == null)
+						for(Chain c : allChains)
+							c.stop = true;
+				}
+			});
+		}
+		for(Thread t : threads)
+			t.start();
+		try {
+			for(Thread t : threads)
+				t.join();
+		}
+		catch(InterruptedException e) {
+			for(Thread t : threads)
+				t.interrupt();
+			throw new ProbCogException(e);
+		}
+		// raise the error that caused the chains to be stopped (a broken barrier being merely a consequence)
+		Throwable error = null;
+		for(Chain chain : chains)
+			if(chain.error != null && (error == null || error instanceof BrokenBarrierException))
+				error = chain.error;
+		if(error instanceof ProbCogException)
+			throw (ProbCogException)error;
+		if(error != null)
+			throw new ProbCogException(error);
+		rHat = computeRHat(chains);
+	}
+	
+	/**
+	 * computes the maximum Gelman-Rubin statistic across all values of all query variables
+	 * (or all non-evidence variables if no query variables were set)
+	 * @param chains the chains, which must all contain the same number of samples
+	 * @return
+	 */
+	protected double computeRHat(Vector<Chain> chains) {
+		long n = chains.get(0).dist.steps;
+		double[] frequencies = new double[chains.size()];
+		double max = 0;
+		for(int i = 0; i < nodes.length; i++) {
+			if(queryVars != null ? !queryVars.contains(i) : evidenceDomainIndices[i] >= 0)
+				continue;
+			for(int d = 0; d < compiledNetwork.getDomainSize(i); d++) {
+				for(int c = 0; c < frequencies.length; c++) {
+					SampledDistribution dist = chains.get(c).dist;
+					frequencies[c] = dist.values[i][d] / dist.Z;
+				}
+				max = Math.max(max, GelmanRubin.getRHat(frequencies, n));
+			}
+		}
+		return max;
+	}
+	
+	/**
+	 * gets an initial state with non-zero probability by forward sampling 
+	 * @param generator
+	 * @return
+	 * @throws ProbCogException if no such state could be found in the maximum number of trials
+	 */
+	protected WeightedSample getInitialState(Random generator) throws ProbCogException {
+		WeightedSample s = new WeightedSample(bn);
+		for(s.trials = 1; s.trials <= maxTrials; s.trials++) {
+			boolean successful = true;
+			for(int i = 0; i < nodeOrder.length && successful; i++) {
+				int nodeIdx = nodeOrder[i];
+				int domainIdx = evidenceDomainIndices[nodeIdx];
+				if(domainIdx >= 0) {
+					s.nodeDomainIndices[nodeIdx] = domainIdx;
+					successful = getCPTProbability(nodeIdx, s.nodeDomainIndices) != 0.0;
+				}
+				else {
+					domainIdx = compiledNetwork.sampleForward(nodeIdx, s.nodeDomainIndices, generator);
+					s.nodeDomainIndices[nodeIdx] = domainIdx;
+					successful = domainIdx >= 0;
+				}
+			}
+			if(successful)
+				return s;
+		}
+		throw new ProbCogException("Could not find an initial state with non-zero probability in given number of trials.");
+	}
+	
+	/**
+	 * resamples all non-evidence nodes using the sampler's random number generator
+	 * (not to be called concurrently)
+	 * @param evidenceDomainIndices
+	 * @param s the current state, which is updated
+	 * @return the probability with which the last node's value was sampled
+	 */
 	public double gibbsStep(int[] evidenceDomainIndices, WeightedSample s) {
+		if(buffer == null)
+			buffer = new double[compiledNetwork.getMaxDomainSize()];
+		return gibbsStep(evidenceDomainIndices, s, generator, buffer);
+	}
+	
+	/**
+	 * resamples all non-evidence nodes
+	 * @param evidenceDomainIndices
+	 * @param s the current state, which is updated
+	 * @param generator the random number generator to use
+	 * @param distribution a buffer for the sampling distribution (with at least as many elements as the largest domain)
+	 * @return the probability with which the last node's value was sampled
+	 */
+	public double gibbsStep(int[] evidenceDomainIndices, WeightedSample s, Random generator, double[] distribution) {
 		double p = 1.0;
 		// resample all of the (non-evidence) nodes
 		for(int j = 0; j < nodes.length; j++)  {
 			// skip evidence nodes
 			if(evidenceDomainIndices[j] != -1)
 				continue;
-			// initialize
-			BeliefNode n = nodes[j];
-			Discrete dom = (Discrete)n.getDomain();
-			int domSize = dom.getOrder();
-			double[] distribution = new double[domSize];
-			// for the current node, calculate a value for each setting
-			for(int d = 0; d < domSize; d++) {
-				s.nodeDomainIndices[j] = d;
-				// consider the probability of the setting given the node's parents
-				double value = getCPTProbability(n, s.nodeDomainIndices);
-				// consider the probability of the children's settings given the respective parents					
-				for(BeliefNode child : children.get(n)) {
-					value *= getCPTProbability(child, s.nodeDomainIndices);
-				}			
-				distribution[d] = value;
-			}		
+			int domSize = compiledNetwork.getDomainSize(j);
+			for(int d = 0; d < domSize; d++)
+				distribution[d] = 1.0;
+			// for each value of the current node, multiply in the probability of the node given its parents 
+			// and the probabilities of the children's settings given the respective parents, 
+			// moving along the node's stride within each CPT
+			int[] cpts = blanketCPTs[j], strides = blanketStrides[j];
+			for(int k = 0; k < cpts.length; k++) {
+				double[] cpt = compiledNetwork.getCPT(cpts[k]);
+				int stride = strides[k];
+				int addr = compiledNetwork.getCPTAddress(cpts[k], s.nodeDomainIndices) - stride * s.nodeDomainIndices[j];
+				for(int d = 0; d < domSize; d++, addr += stride)
+					distribution[d] *= cpt[addr];
+			}
 			double sum = 0;
-			for(int i = 0; i < distribution.length; i++)
-				sum += distribution[i];
-			s.nodeDomainIndices[j] = sample(distribution, sum, generator);
+			for(int d = 0; d < domSize; d++)
+				sum += distribution[d];
+			s.nodeDomainIndices[j] = sample(distribution, domSize, sum, generator);
 			p = distribution[s.nodeDomainIndices[j]] / sum;
 		}
 		return p;
 	}
+	
+	/**
+	 * a Markov chain with its own state, random number generator and (in multi-chain mode) distribution 
+	 */
+	protected class Chain {
+		public WeightedSample s;
+		public Random generator;
+		public double[] buffer;
+		public SampledDistribution dist = null;
+		public volatile boolean stop = false;
+		public Throwable error = null;
+		
+		public Chain(Random generator) throws ProbCogException {
+			this.generator = generator;
+			this.s = getInitialState(generator);
+			this.buffer = new double[compiledNetwork.getMaxDomainSize()];
+		}
+		
+		public void burnIn() {
+			for(int i = 0; i < burnIn && !isCancelled(); i++)
+				gibbsStep(evidenceDomainIndices, s, generator, buffer);
+		}
+		
+		/**
+		 * performs the Gibbs steps required to obtain the next sample
+		 */
+		public void step() {
+			for(int i = 0; i < thinning; i++)
+				gibbsStep(evidenceDomainIndices, s, generator, buffer);
+			s.trials = 1;
+			s.weight = 1;
+		}
+	}
 }
@@ -22,6 +22,8 @@ import probcog.exception.ProbCogException;
 
 /**
  * Interface for the build up of inference results.
+ * Implementations to which samples are added by several threads concurrently must
+ * be thread-safe themselves (the samplers do not synchronize calls to {@link #addSample(WeightedSample)}).
  * @author Dominik Jain
  */
 public interface IDistributionBuilder {
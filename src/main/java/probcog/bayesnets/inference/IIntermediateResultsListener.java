@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ * 
+ * This file is part of ProbCog.
+ * 
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.bayesnets.inference;
+
+/**
+ * Interface for receivers of the intermediate results that are obtained during time-limited inference.
+ */
+public interface IIntermediateResultsListener {
+	/**
+	 * is called whenever intermediate results have been polled
+	 * @param dist the results obtained thus far (may be null if the inference method cannot provide intermediate results)
+	 * @param elapsedTime the time (in seconds) that has passed since inference was started
+	 */
+	public void intermediateResults(SampledDistribution dist, double elapsedTime);
+}
@@ -106,7 +106,7 @@ public class IJGP extends Sampler {
 			}
 		}
 		out.printf("running propagation (%d steps)...\n", this.numSamples);
-		for (int step = 1; step <= this.numSamples; step++) {
+		for (int step = 1; step <= this.numSamples && !isCancelled(); step++) {
 			out.printf("step %d\n", step);
 			// for every node in JG in topological order and back:
 			int s = jgNodes.size();
@@ -19,6 +19,7 @@
 package probcog.bayesnets.inference;
 
 import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
 
 /**
  * Interface for inference methods that support time-limited inference.
@@ -28,4 +29,10 @@ public interface ITimeLimitedInference {
 	public void initialize() throws ProbCogException;
 	public SampledDistribution infer() throws ProbCogException;
 	public SampledDistribution pollResults() throws ProbCogException;
+	/**
+	 * sets the token that is checked during inference; once it is cancelled, inference is to be stopped
+	 * as soon as possible, returning the results obtained thus far
+	 * @param token the token (or null)
+	 */
+	public void setCancellationToken(CancellationToken token);
 }
@@ -0,0 +1,407 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.bayesnets.inference;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.WeakHashMap;
+
+import probcog.bayesnets.core.BeliefNetworkEx;
+import probcog.bayesnets.core.CompiledBeliefNetwork;
+import probcog.bayesnets.util.EliminationOrdering;
+
+/**
+ * A compiled junction tree of a Bayesian network for a particular set of evidence variables:
+ * the cliques of a triangulation of the moral graph without the evidence variables (obtained
+ * via a min-fill elimination ordering), arranged in a tree.
+ * The tree depends only on which variables are observed, not on the observed values or the CPT entries; each call
+ * to {@link #computeMarginals(CompiledBeliefNetwork, int[], boolean[])} instantiates the clique potentials for the
+ * given CPTs and evidence and calibrates them (Hugin propagation), such that a compiled tree can be used for
+ * many queries (also concurrently).
+ * Compiled trees are cached per network (see {@link #getInstance(BeliefNetworkEx, CompiledBeliefNetwork, int[])});
+ * a cached tree is reused only if the network still has the structure it was compiled for, so changes to the
+ * network never lead to stale results.
+ */
+public class JunctionTree {
+	/**
+	 * the variables of each clique (in ascending order); cliques are ordered such that every clique appears before its children
+	 */
+	protected int[][] cliques;
+	/**
+	 * the index of the parent of each clique (-1 for roots)
+	 */
+	protected int[] parent;
+	/**
+	 * the variables in the separator between each clique and its parent
+	 */
+	protected int[][] separators;
+	/**
+	 * the domain sizes of the cliques' variables
+	 */
+	protected int[][] cliqueDomainSizes;
+	/**
+	 * for each node, the index of the clique its CPT is assigned to (-1 if the CPT contains only evidence variables)
+	 */
+	protected int[] cptClique;
+	/**
+	 * for each non-evidence variable, the index of a clique containing it
+	 */
+	protected int[] homeClique;
+	/**
+	 * which variables are evidence variables
+	 */
+	protected BitSet evidenceVars;
+	/**
+	 * the domain sizes of all nodes of the network the tree was compiled for
+	 */
+	protected int[] domainSizes;
+	/**
+	 * the variables of the CPT of each node of the network the tree was compiled for (see {@link CompiledBeliefNetwork#getCPTNodes(int)})
+	 */
+	protected int[][] cptNodes;
+
+	/**
+	 * the maximum number of trees (for different sets of evidence variables) that are cached per network
+	 */
+	public static int maxCachedTrees = 8;
+	protected static Map<BeliefNetworkEx, LinkedHashMap<BitSet, JunctionTree>> cache = new WeakHashMap<BeliefNetworkEx, LinkedHashMap<BitSet, JunctionTree>>();
+
+	/**
+	 * gets the compiled junction tree of the given network for the set of variables that are observed in the given evidence,
+	 * compiling it only if it is not found in the cache (or if the cached tree was compiled for a different network structure)
+	 * @param bn the network
+	 * @param cbn the compiled CPTs of the network
+	 * @param evidenceDomainIndices the evidence (-1 for variables without evidence)
+	 * @return the junction tree
+	 */
+	public static JunctionTree getInstance(BeliefNetworkEx bn, CompiledBeliefNetwork cbn, int[] evidenceDomainIndices) {
+		BitSet evidenceVars = getEvidenceVars(evidenceDomainIndices);
+		LinkedHashMap<BitSet, JunctionTree> trees;
+		synchronized(cache) {
+			trees = cache.get(bn);
+			if(trees == null) {
+				trees = new LinkedHashMap<BitSet, JunctionTree>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<BitSet, JunctionTree> eldest) {
+						return size() > maxCachedTrees;
+					}
+				};
+				cache.put(bn, trees);
+			}
+		}
+		synchronized(trees) {
+			JunctionTree jt = trees.get(evidenceVars);
+			if(jt == null || !jt.isCompiledFor(cbn)) {
+				jt = new JunctionTree(cbn, evidenceDomainIndices);
+				trees.put(evidenceVars, jt);
+			}
+			return jt;
+		}
+	}
+
+	/**
+	 * @param cbn the compiled CPTs of a network
+	 * @return true if the network has the structure (i.e. the domain sizes and CPT variables) the tree was compiled for
+	 */
+	public boolean isCompiledFor(CompiledBeliefNetwork cbn) {
+		if(cbn.getNumNodes() != domainSizes.length)
+			return false;
+		for(int i = 0; i < domainSizes.length; i++)
+			if(cbn.getDomainSize(i) != domainSizes[i] || !Arrays.equals(cbn.getCPTNodes(i), cptNodes[i]))
+				return false;
+		return true;
+	}
+
+	protected static BitSet getEvidenceVars(int[] evidenceDomainIndices) {
+		BitSet evidenceVars = new BitSet(evidenceDomainIndices.length);
+		for(int i = 0; i < evidenceDomainIndices.length; i++)
+			if(evidenceDomainIndices[i] != -1)
+				evidenceVars.set(i);
+		return evidenceVars;
+	}
+
+	/**
+	 * compiles the junction tree for the given network and set of evidence variables
+	 * @param cbn the compiled CPTs of the network
+	 * @param evidenceDomainIndices evidence indicating the set of evidence variables (the actual values are irrelevant, -1 for variables without evidence)
+	 */
+	public JunctionTree(CompiledBeliefNetwork cbn, int[] evidenceDomainIndices) {
+		this.evidenceVars = getEvidenceVars(evidenceDomainIndices);
+		int numVars = cbn.getNumNodes();
+		domainSizes = new int[numVars];
+		cptNodes = new int[numVars][];
+		for(int i = 0; i < numVars; i++)
+			cptNodes[i] = cbn.getCPTNodes(i).clone();
+		boolean[] eliminate = new boolean[numVars];
+		int numEliminated = 0;
+		Vector<int[]> scopes = new Vector<int[]>();
+		for(int i = 0; i < numVars; i++) {
+			domainSizes[i] = cbn.getDomainSize(i);
+			eliminate[i] = !evidenceVars.get(i);
+			if(eliminate[i])
+				numEliminated++;
+			scopes.add(getScope(i));
+		}
+
+		// triangulate: eliminate all non-evidence variables, obtaining one clique per variable
+		EliminationOrdering eo = new EliminationOrdering(numVars, domainSizes, scopes, EliminationOrdering.Heuristic.MinFill);
+		int[] order = eo.compute(eliminate);
+		int[][] elimCliques = eo.getCliques();
+		int[] position = new int[numVars];
+		for(int k = 0; k < numEliminated; k++)
+			position[order[k]] = k;
+		numVars = numEliminated; // (from here on, we are concerned only with the eliminated variables)
+
+		// build the tree: the parent of each elimination clique is the clique of the first variable
+		// of the clique that is eliminated subsequently; cliques that are contained in one of their
+		// children are merged into that child
+		int[] rep = new int[numVars]; // representative of each elimination clique after merging
+		int[] elimParent = new int[numVars];
+		for(int k = 0; k < numVars; k++)
+			rep[k] = k;
+		for(int k = 0; k < numVars; k++) {
+			int p = Integer.MAX_VALUE;
+			for(int v : elimCliques[k])
+				if(v != order[k])
+					p = Math.min(p, position[v]);
+			int r = find(rep, k);
+			if(p == Integer.MAX_VALUE) {
+				elimParent[r] = -1;
+				continue;
+			}
+			int q = find(rep, p);
+			if(isSubset(elimCliques[q], elimCliques[r]))
+				rep[q] = r;
+			else
+				elimParent[r] = q;
+		}
+
+		// order the remaining cliques such that parents precede their children
+		Vector<Vector<Integer>> children = new Vector<Vector<Integer>>();
+		for(int k = 0; k < numVars; k++)
+			children.add(new Vector<Integer>());
+		Vector<Integer> preOrder = new Vector<Integer>();
+		for(int k = numVars-1; k >= 0; k--) {
+			if(rep[k] != k)
+				continue;
+			if(elimParent[k] == -1)
+				preOrder.add(k);
+			else
+				children.get(find(rep, elimParent[k])).add(k);
+		}
+		for(int i = 0; i < preOrder.size(); i++)
+			preOrder.addAll(children.get(preOrder.get(i)));
+		int numCliques = preOrder.size();
+		int[] cliqueIndex = new int[numVars];
+		cliques = new int[numCliques][];
+		parent = new int[numCliques];
+		separators = new int[numCliques][];
+		for(int i = 0; i < numCliques; i++) {
+			int k = preOrder.get(i);
+			cliqueIndex[k] = i;
+			cliques[i] = elimCliques[k];
+			if(elimParent[k] == -1) {
+				parent[i] = -1;
+				separators[i] = new int[0];
+			}
+			else {
+				parent[i] = cliqueIndex[find(rep, elimParent[k])];
+				separators[i] = intersect(cliques[i], cliques[parent[i]]);
+			}
+		}
+
+		cliqueDomainSizes = new int[numCliques][];
+		for(int i = 0; i < numCliques; i++) {
+			cliqueDomainSizes[i] = new int[cliques[i].length];
+			for(int j = 0; j < cliques[i].length; j++)
+				cliqueDomainSizes[i][j] = domainSizes[cliques[i][j]];
+		}
+
+		// assign each CPT to the clique of its first eliminated variable
+		cptClique = new int[cbn.getNumNodes()];
+		for(int i = 0; i < cptClique.length; i++) {
+			int first = Integer.MAX_VALUE;
+			for(int v : getScope(i))
+				first = Math.min(first, position[v]);
+			cptClique[i] = first == Integer.MAX_VALUE ? -1 : cliqueIndex[find(rep, first)];
+		}
+		homeClique = new int[cbn.getNumNodes()];
+		Arrays.fill(homeClique, -1);
+		for(int k = 0; k < numVars; k++)
+			homeClique[order[k]] = cliqueIndex[find(rep, k)];
+	}
+
+	/**
+	 * @param nodeIdx
+	 * @return the non-evidence variables of the node's CPT
+	 */
+	protected int[] getScope(int nodeIdx) {
+		int[] scope = new int[cptNodes[nodeIdx].length];
+		int n = 0;
+		for(int v : cptNodes[nodeIdx])
+			if(!evidenceVars.get(v))
+				scope[n++] = v;
+		return Arrays.copyOf(scope, n);
+	}
+
+	protected static int find(int[] rep, int k) {
+		while(rep[k] != k)
+			k = rep[k];
+		return k;
+	}
+
+	/**
+	 * @return true if the sorted array a is a subset of the sorted array b
+	 */
+	protected static boolean isSubset(int[] a, int[] b) {
+		int j = 0;
+		for(int i = 0; i < a.length; i++) {
+			while(j < b.length && b[j] < a[i])
+				j++;
+			if(j == b.length || b[j] != a[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the intersection of the sorted arrays a and b (sorted)
+	 */
+	protected static int[] intersect(int[] a, int[] b) {
+		int[] ret = new int[Math.min(a.length, b.length)];
+		int n = 0;
+		for(int i = 0, j = 0; i < a.length && j < b.length;) {
+			if(a[i] < b[j])
+				i++;
+			else if(a[i] > b[j])
+				j++;
+			else {
+				ret[n++] = a[i];
+				i++; j++;
+			}
+		}
+		return Arrays.copyOf(ret, n);
+	}
+
+	/**
+	 * computes the marginal distributions of the given variables given the evidence
+	 * @param cbn the compiled CPTs of the network, which must have the structure the tree was compiled for
+	 * @param evidenceDomainIndices the domain indices of the evidence variables (-1 for variables without evidence); the set of evidence variables must be the one the tree was compiled for
+	 * @param isQuery flags indicating the variables for which to compute marginals
+	 * @return an array containing, for each query variable, its (normalized) marginal distribution; null for all other variables
+	 */
+	public double[][] computeMarginals(CompiledBeliefNetwork cbn, int[] evidenceDomainIndices, boolean[] isQuery) {
+		if(!getEvidenceVars(evidenceDomainIndices).equals(evidenceVars))
+			throw new IllegalArgumentException("The junction tree was compiled for a different set of evidence variables");
+		
+		// instantiate the clique potentials
+		int numCliques = cliques.length;
+		TableFactor[] potentials = new TableFactor[numCliques];
+		for(int i = 0; i < numCliques; i++) {
+			potentials[i] = new TableFactor(cliques[i], cliqueDomainSizes[i]);
+			Arrays.fill(potentials[i].values, 1.0);
+		}
+		for(int i = 0; i < cptClique.length; i++)
+			if(cptClique[i] != -1)
+				potentials[cptClique[i]].multiplyBy(TableFactor.fromCPT(cbn, i, evidenceDomainIndices));
+
+		// collect evidence towards the roots
+		TableFactor[] separatorPotentials = new TableFactor[numCliques];
+		for(int i = numCliques-1; i >= 0; i--) {
+			if(parent[i] == -1)
+				continue;
+			TableFactor msg = potentials[i].marginalize(separators[i]);
+			msg.normalize();
+			separatorPotentials[i] = msg;
+			potentials[parent[i]].multiplyBy(msg);
+		}
+
+		// distribute evidence, but only to the cliques that are needed to answer the queries
+		boolean[] required = new boolean[numCliques];
+		for(int v = 0; v < isQuery.length; v++)
+			if(isQuery[v] && homeClique[v] != -1)
+				for(int i = homeClique[v]; i != -1 && !required[i]; i = parent[i])
+					required[i] = true;
+		for(int i = 0; i < numCliques; i++) {
+			if(!required[i])
+				continue;
+			if(parent[i] != -1) {
+				TableFactor msg = potentials[parent[i]].marginalize(separators[i]);
+				msg.normalize();
+				msg.divideBy(separatorPotentials[i]);
+				potentials[i].multiplyBy(msg);
+			}
+			potentials[i].normalize();
+		}
+
+		// obtain the marginals
+		double[][] marginals = new double[isQuery.length][];
+		for(int v = 0; v < isQuery.length; v++) {
+			if(!isQuery[v])
+				continue;
+			if(evidenceDomainIndices[v] != -1) {
+				marginals[v] = new double[domainSizes[v]];
+				marginals[v][evidenceDomainIndices[v]] = 1.0;
+				continue;
+			}
+			TableFactor m = potentials[homeClique[v]].marginalize(new int[]{v});
+			m.normalize();
+			marginals[v] = m.values;
+		}
+		return marginals;
+	}
+
+	/**
+	 * @return the number of cliques in the tree
+	 */
+	public int getNumCliques() {
+		return cliques.length;
+	}
+
+	/**
+	 * @return the sum of the sizes of all clique potentials
+	 */
+	public long getTotalSize() {
+		long size = 0;
+		for(int i = 0; i < cliques.length; i++)
+			size += getCliqueSize(i);
+		return size;
+	}
+
+	/**
+	 * @return the size of the largest clique potential
+	 */
+	public long getMaxCliqueSize() {
+		long size = 0;
+		for(int i = 0; i < cliques.length; i++)
+			size = Math.max(size, getCliqueSize(i));
+		return size;
+	}
+
+	protected long getCliqueSize(int i) {
+		long size = 1;
+		for(int d : cliqueDomainSizes[i])
+			size *= d;
+		return size;
+	}
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.bayesnets.inference;
+
+import java.util.Arrays;
+
+import probcog.bayesnets.core.BeliefNetworkEx;
+import probcog.exception.ProbCogException;
+
+/**
+ * Exact inference via the junction tree algorithm (Hugin propagation).
+ * The junction tree of a network is compiled only once per set of evidence variables and is
+ * reused for all subsequent inference runs on the same network in which the same variables
+ * are observed (with arbitrary values), see {@link JunctionTree}.
+ */
+public class JunctionTreeInference extends Sampler {
+	protected JunctionTree junctionTree;
+	
+	public JunctionTreeInference(BeliefNetworkEx bn) throws ProbCogException {
+		super(bn);
+	}
+	
+	@Override
+	protected void _initialize() throws ProbCogException {
+		junctionTree = JunctionTree.getInstance(bn, compiledNetwork, evidenceDomainIndices);
+	}
+	
+	@Override
+	public void _infer() throws ProbCogException {
+		boolean[] isQuery = new boolean[nodes.length];
+		if(queryVars == null)
+			Arrays.fill(isQuery, true);
+		else
+			for(Integer nodeIdx : queryVars)
+				isQuery[nodeIdx] = true;
+		
+		double[][] marginals = junctionTree.computeMarginals(compiledNetwork, evidenceDomainIndices, isQuery);
+		
+		SampledDistribution dist = createDistribution();
+		dist.Z = 1.0;
+		for(int i = 0; i < nodes.length; i++)
+			if(isQuery[i])
+				dist.values[i] = marginals[i];
+		((ImmediateDistributionBuilder)distributionBuilder).setDistribution(dist);
+		
+		report(String.format("junction tree: %d cliques, total size %d, largest clique %d entries", junctionTree.getNumCliques(), junctionTree.getTotalSize(), junctionTree.getMaxCliqueSize()));
+	}
+	
+	protected IDistributionBuilder createDistributionBuilder() {
+		return new ImmediateDistributionBuilder();
+	}
+}
@@ -18,18 +18,37 @@
  ******************************************************************************/
 package probcog.bayesnets.inference;
 
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import probcog.bayesnets.core.BeliefNetworkEx;
 import probcog.exception.ProbCogException;
 import edu.tum.cs.util.Stopwatch;
 
 /**
+ * Likelihood weighting. If the number of threads is set to a value greater than 1, 
+ * samples are drawn concurrently, each thread using its own random number generator 
+ * and accumulating its samples in its own distribution; the partial distributions are 
+ * merged when polling results and, when sampling is complete, into the sampler's distribution 
+ * builder (which can thus be of any type).
  * @author Dominik Jain
  */
 public class LikelihoodWeighting extends Sampler {
 	int[] nodeOrder;
+	protected int numThreads = 1;
+	/**
+	 * the distributions of the sampling threads (only non-null while parallel sampling is in progress) 
+	 */
+	protected Vector<SampledDistribution> threadDistributions = null;
 	
 	public LikelihoodWeighting(BeliefNetworkEx bn) throws ProbCogException {
 		super(bn);		
+		paramHandler.add("numThreads", "setNumThreads");
+	}
+	
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
 	}
 	
 	@Override
@@ -39,6 +58,10 @@ public class LikelihoodWeighting extends Sampler {
 	
 	@Override
 	public void _infer() throws ProbCogException {
+		if(numThreads > 1) {
+			_inferParallel();
+			return;
+		}
 		// sample
 		Stopwatch sw = new Stopwatch();
 		out.println("sampling...");
@@ -71,7 +94,99 @@ public class LikelihoodWeighting extends Sampler {
 		out.println(String.format("time taken: %.2fs (%.4fs per sample, %.1f trials/sample, %d samples)\n", sw.getElapsedTimeSecs(), sw.getElapsedTimeSecs()/numSamples, dist.getTrialsPerStep(), dist.steps));
 	}
 	
+	/**
+	 * draws samples on numThreads threads, merging the threads' distributions into the 
+	 * sampler's distribution builder at the end
+	 */
+	protected void _inferParallel() throws ProbCogException {
+		Stopwatch sw = new Stopwatch();
+		out.printf("sampling with %d threads...\n", numThreads);
+		sw.start();
+		AtomicInteger counter = new AtomicInteger(0);
+		Vector<SamplingThread> threads = new Vector<SamplingThread>();
+		Vector<SampledDistribution> threadDistributions = new Vector<SampledDistribution>();
+		Double confidenceLevel = distributionBuilder.getDistribution().confidenceLevel;
+		for(int i = 0; i < numThreads; i++) {
+			SampledDistribution threadDist = createThreadDistribution(confidenceLevel);
+			threadDistributions.add(threadDist);
+			threads.add(new SamplingThread(threadDist, new Random(generator.nextLong()), counter));
+		}
+		synchronized(this) {
+			this.threadDistributions = threadDistributions;
+		}
+		for(SamplingThread t : threads)
+			t.start();
+		try {
+			for(SamplingThread t : threads)
+				t.join();
+		}
+		catch(InterruptedException e) {
+			for(SamplingThread t : threads)
+				t.interrupt();
+			throw new ProbCogException(e);
+		}
+		finally {
+			// merge the threads' results into the sampler's distribution
+			synchronized(this) {
+				for(SampledDistribution threadDist : threadDistributions)
+					mergeIntoBuilder(threadDist);
+				this.threadDistributions = null;
+			}
+		}
+		for(SamplingThread t : threads)
+			if(t.error != null)
+				throw t.error;
+		sw.stop();
+		SampledDistribution dist = distributionBuilder.getDistribution();
+		out.println(String.format("time taken: %.2fs (%.4fs per sample, %.1f trials/sample, %d samples)\n", sw.getElapsedTimeSecs(), sw.getElapsedTimeSecs()/numSamples, dist.getTrialsPerStep(), dist.steps));
+	}
+	
+	/**
+	 * creates a distribution to be filled by a sampling thread
+	 * @param confidenceLevel the confidence level of the sampler's distribution (may be null)
+	 */
+	protected SampledDistribution createThreadDistribution(Double confidenceLevel) throws ProbCogException {
+		SampledDistribution dist = new SampledDistribution(bn);
+		dist.setDebugMode(debug);
+		dist.setConfidenceLevel(confidenceLevel);
+		return dist;
+	}
+	
+	/**
+	 * adds the data of a distribution that was built up by a sampling thread to the distribution builder
+	 */
+	protected void mergeIntoBuilder(SampledDistribution threadDist) throws ProbCogException {
+		if(distributionBuilder instanceof StripedDistributionBuilder)
+			((StripedDistributionBuilder)distributionBuilder).merge(threadDist);
+		else
+			distributionBuilder.getDistribution().merge(threadDist);
+	}
+	
+	@Override
+	public synchronized SampledDistribution pollResults() throws ProbCogException {
+		SampledDistribution dist = super.pollResults();
+		if(dist == null || threadDistributions == null)
+			return dist;
+		// add the current results of all threads (the polled distribution is a copy)
+		for(SampledDistribution threadDist : threadDistributions)
+			dist.merge(threadDist);
+		return dist;
+	}
+	
 	public WeightedSample getWeightedSample(WeightedSample s, int[] nodeOrder, int[] evidenceDomainIndices) throws ProbCogException {
+		return getWeightedSample(s, nodeOrder, evidenceDomainIndices, generator);
+	}
+	
+	/**
+	 * draws a weighted sample
+	 * @param s the sample object to fill
+	 * @param nodeOrder a topological ordering of the network's nodes
+	 * @param evidenceDomainIndices
+	 * @param generator the random number generator to use for forward sampling
+	 * @return the sample or null if no sample could be obtained in the maximum number of trials and failed steps may be skipped
+	 * @throws ProbCogException
+	 */
+	public WeightedSample getWeightedSample(WeightedSample s, int[] nodeOrder, int[] evidenceDomainIndices, Random generator) throws ProbCogException {
 		s.trials = 0;
 		boolean successful = false;
 loop:	while(!successful) {
@@ -90,7 +205,7 @@ loop:	while(!successful) {
 				// for evidence nodes, adjust the weight
 				if(domainIdx >= 0) { 
 					s.nodeDomainIndices[nodeIdx] = domainIdx;
-					double prob = getCPTProbability(nodes[nodeIdx], s.nodeDomainIndices);
+					double prob = getCPTProbability(nodeIdx, s.nodeDomainIndices);
 					if(prob == 0.0) {
 						if(debug)
 							out.println("!!! evidence probability was 0 at node " + nodes[nodeIdx]);
@@ -100,11 +215,10 @@ loop:	while(!successful) {
 				} 
 				// for non-evidence nodes, do forward sampling
 				else {
-					domainIdx = sampleForward(nodes[nodeIdx], s.nodeDomainIndices);
+					domainIdx = compiledNetwork.sampleForward(nodeIdx, s.nodeDomainIndices, generator);
 					if(domainIdx < 0) {
 						if(debug)
 							out.println("!!! could not sample forward because of column with only 0s in CPT of " + nodes[nodeIdx].getName());
-						bn.removeAllEvidences();
 						continue loop;
 					}
 					s.nodeDomainIndices[nodeIdx] = domainIdx;
@@ -114,4 +228,39 @@ loop:	while(!successful) {
 		}
 		return s;		
 	}
+	
+	protected class SamplingThread extends Thread {
+		protected SampledDistribution dist;
+		protected Random generator;
+		protected AtomicInteger counter;
+		public ProbCogException error = null;
+		
+		public SamplingThread(SampledDistribution dist, Random generator, AtomicInteger counter) {
+			this.dist = dist;
+			this.generator = generator;
+			this.counter = counter;
+		}
+		
+		@Override
+		public void run() {
+			WeightedSample s = new WeightedSample(bn);
+			try {
+				for(int i = counter.incrementAndGet(); i <= numSamples && !isInterrupted() && !isCancelled(); i = counter.incrementAndGet()) {
+					if(i % infoInterval == 0)
+						out.println("  step " + i);
+					WeightedSample ret = getWeightedSample(s, nodeOrder, evidenceDomainIndices, generator);
+					if(ret != null) {
+						if(debug)
+							checkSample(ret);
+						dist.addSample(ret);
+					}
+				}
+			}
+			catch(ProbCogException e) {
+				error = e;
+				// stop the other threads
+				counter.set(numSamples);
+			}
+		}
+	}
 }
@@ -147,7 +147,7 @@ public class SampleSearchBJ extends SampleSearch {
 			if(domainIdx >= 0) {
 				s.nodeDomainIndices[nodeIdx] = domainIdx;
 				samplingProb[nodeIdx] = 1.0;
-				double prob = getCPTProbability(nodes[nodeIdx], s.nodeDomainIndices);
+				double prob = getCPTProbability(nodeIdx, s.nodeDomainIndices);
 				if(prob != 0.0) {
 					valueSuccessfullyAssigned = true;
 				}
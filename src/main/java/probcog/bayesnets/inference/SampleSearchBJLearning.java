@@ -311,7 +311,7 @@ public class SampleSearchBJLearning extends SampleSearchBJ {
 			if(domainIdx >= 0) {
 				s.nodeDomainIndices[nodeIdx] = domainIdx;
 				samplingProb[nodeIdx] = 1.0;
-				double prob = getCPTProbability(nodes[nodeIdx], s.nodeDomainIndices);
+				double prob = getCPTProbability(nodeIdx, s.nodeDomainIndices);
 				if(prob != 0.0)
 					valueSuccessfullyAssigned = true;
 				else {
@@ -335,7 +335,7 @@ public class SampleSearchBJLearning extends SampleSearchBJ {
 				
 				// get conditional distribution that applies to the current parent configuration and
 				// determine the domain indices for which the parents constitute a nogood
-				double[] dist = getConditionalDistribution(nodes[nodeIdx], s.nodeDomainIndices);
+				double[] dist = getConditionalDistribution(nodeIdx, s.nodeDomainIndices);
 				NoGood parentNoGood = null;
 				NoGood[] parentNoGoods = new NoGood[dist.length];
 				for(int i = 0; i < dist.length; i++) {
@@ -90,6 +90,26 @@ public class SampledDistribution extends BasicSampledDistribution implements Clo
 		steps++;
 	}
 	
+	/**
+	 * adds the sample data of another distribution over the same network to this distribution
+	 * @param other the distribution whose data to add (which is locked while it is being read)
+	 */
+	public synchronized void merge(SampledDistribution other) {
+		synchronized(other) {
+			Z += other.Z;
+			if(maxWeight < other.maxWeight)
+				maxWeight = other.maxWeight;
+			for(int i = 0; i < values.length; i++) {
+				double[] v = values[i], w = other.values[i];
+				for(int j = 0; j < v.length; j++)
+					v[j] += w[j];
+			}
+			trials += other.trials;
+			operations += other.operations;
+			steps += other.steps;
+		}
+	}
+	
 	@Override
 	public void printVariableDistribution(PrintStream out, int index) {
 		BeliefNode node = nodes[index];
@@ -107,7 +127,12 @@ public class SampledDistribution extends BasicSampledDistribution implements Clo
 	
 	@Override
 	public synchronized SampledDistribution clone() throws CloneNotSupportedException {
-		return (SampledDistribution)super.clone();
+		SampledDistribution clone = (SampledDistribution)super.clone();
+		// copy the values, such that the clone is not affected by samples that are subsequently added
+		clone.values = new double[values.length][];
+		for(int i = 0; i < values.length; i++)
+			clone.values[i] = values[i].clone();
+		return clone;
 	}
 
 	@Override
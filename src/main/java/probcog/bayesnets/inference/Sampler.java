@@ -24,13 +24,14 @@ import java.util.HashMap;
 import java.util.Random;
 
 import probcog.bayesnets.core.BeliefNetworkEx;
+import probcog.bayesnets.core.CompiledBeliefNetwork;
 import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
 import probcog.inference.IParameterHandler;
 import probcog.inference.ParameterHandler;
 import probcog.inference.BasicSampledDistribution.ConfidenceInterval;
 
 import edu.ksu.cis.bnj.ver3.core.BeliefNode;
-import edu.ksu.cis.bnj.ver3.core.CPF;
 import edu.tum.cs.util.Stopwatch;
 
 public abstract class Sampler implements ITimeLimitedInference, IParameterHandler {
@@ -38,6 +39,10 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 	public HashMap<BeliefNode, Integer> nodeIndices;
 	public Random generator;
 	public BeliefNode[] nodes;
+	/**
+	 * compiled representation of the network's CPTs, which is used for all CPT lookups
+	 */
+	public CompiledBeliefNetwork compiledNetwork;
 	public int[] evidenceDomainIndices;
 	protected ParameterHandler paramHandler;
 	protected Collection<Integer> queryVars = null;
@@ -46,6 +51,10 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 	protected PrintStream out;
 	protected boolean initialized = false;
 	protected IDistributionBuilder distributionBuilder;
+	/**
+	 * token with which inference can be stopped prematurely (may be null)
+	 */
+	protected CancellationToken cancellationToken = null;
 	
 	/**
 	 * general sampler setting: how many samples to pull from the distribution
@@ -72,6 +81,7 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 		for(int i = 0; i < nodes.length; i++) {
 			nodeIndices.put(nodes[i], i);
 		}
+		compiledNetwork = new CompiledBeliefNetwork(bn);
 		generator = new Random();
 		setVerbose(true);
 		paramHandler = new ParameterHandler(this);
@@ -87,28 +97,43 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 		return dist;
 	}
 	
-	protected synchronized void addSample(WeightedSample s) throws ProbCogException {
+	protected void addSample(WeightedSample s) throws ProbCogException {
 		// security check: in debug mode, check if sample respects evidence
-		if(debug) {
-			for(int i = 0; i < evidenceDomainIndices.length; i++)
-				if(evidenceDomainIndices[i] >= 0 && s.nodeDomainIndices[i] != evidenceDomainIndices[i])
-					throw new ProbCogException("Attempted to add sample to distribution that does not respect evidence");
-		}
+		if(debug)
+			checkSample(s);
 		// add to distribution builder
 		distributionBuilder.addSample(s);
 	}
 	
+	/**
+	 * checks whether the given sample respects the evidence
+	 * @param s
+	 * @throws ProbCogException if the sample does not respect the evidence
+	 */
+	protected void checkSample(WeightedSample s) throws ProbCogException {
+		for(int i = 0; i < evidenceDomainIndices.length; i++)
+			if(evidenceDomainIndices[i] >= 0 && s.nodeDomainIndices[i] != evidenceDomainIndices[i])
+				throw new ProbCogException("Attempted to add sample to distribution that does not respect evidence");
+	}
+	
 	public void setQueryVars(Collection<Integer> queryVars) {
 		this.queryVars = queryVars;
 		initialized = false;
 	}
 	
 	protected boolean converged() throws ProbCogException {
-		if(!(this.distributionBuilder instanceof DirectDistributionBuilder))
+		if(isCancelled())
+			return true;
+		int numSamples;
+		if(distributionBuilder instanceof StripedDistributionBuilder)
+			numSamples = ((StripedDistributionBuilder)distributionBuilder).getNumSamples();
+		else if(distributionBuilder instanceof DirectDistributionBuilder)
+			numSamples = distributionBuilder.getDistribution().getNumSamples();
+		else
 			return false;
-		SampledDistribution dist = distributionBuilder.getDistribution();
-		if(dist.getNumSamples() % this.convergenceCheckInterval != 0)
+		if(numSamples % this.convergenceCheckInterval != 0)
 			return false; // TODO assumes that all algorithms call this method after each step
+		SampledDistribution dist = distributionBuilder.getDistribution();
 		// determine convergence based on confidence interval sizes
 		if(confidenceIntervalSizeThreshold != null) {
 			if(!dist.usesConfidenceComputation())
@@ -126,6 +151,17 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 		return false;
 	}
 	
+	public void setCancellationToken(CancellationToken token) {
+		cancellationToken = token;
+	}
+	
+	/**
+	 * @return true if inference is to be stopped because the cancellation token was cancelled
+	 */
+	protected final boolean isCancelled() {
+		return cancellationToken != null && cancellationToken.isCancelled();
+	}
+	
 	public void setConfidenceIntervalSizeThreshold(double t) {
 		confidenceIntervalSizeThreshold = t;
 	}
@@ -141,6 +177,8 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 		SampledDistribution dist = distributionBuilder.getDistribution();
 		if(dist == null)
 			return null;
+		if(distributionBuilder instanceof StripedDistributionBuilder)
+			return dist; // (already a snapshot)
 		try {
 			return dist.clone();
 		} 
@@ -170,11 +208,23 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 	 * @return the index of the value that was sampled (or -1 if the distribution is not well-defined)
 	 */
 	public static int sample(double[] distribution, double sum, Random generator) {
+		return sample(distribution, distribution.length, sum, generator);
+	}
+	
+	/**
+	 * samples from the distribution given by the first entries of an array
+	 * @param distribution
+	 * @param length the number of entries of the array that make up the distribution
+	 * @param sum the distribution's normalization constant
+	 * @param generator
+	 * @return the index of the value that was sampled (or -1 if the distribution is not well-defined)
+	 */
+	public static int sample(double[] distribution, int length, double sum, Random generator) {
 		double random = generator.nextDouble() * sum;		
 		int ret = 0;
 		sum = 0;
 		int i = 0;
-		while(sum < random && i < distribution.length) {			
+		while(sum < random && i < length) {			
 			sum += distribution[ret = i++];
 		}
 		return sum >= random ? ret : -1;		
@@ -222,12 +272,17 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 	 * @return the probability value
 	 */
 	protected double getCPTProbability(BeliefNode node, int[] nodeDomainIndices) {
-		CPF cpf = node.getCPF();
-		BeliefNode[] domProd = cpf.getDomainProduct();
-		int[] addr = new int[domProd.length];
-		for(int i = 0; i < addr.length; i++)
-			addr[i] = nodeDomainIndices[this.nodeIndices.get(domProd[i])];
-		return cpf.getDouble(addr);
+		return compiledNetwork.getCPTProbability(this.nodeIndices.get(node), nodeDomainIndices);
+	}
+	
+	/**
+	 * gets the CPT entry of the node with the given index for the configuration of parents that is provided in the array of domain indices
+	 * @param nodeIdx
+	 * @param nodeDomainIndices domain indices for each node in the network (only the parents of the node are required to be set) 
+	 * @return the probability value
+	 */
+	protected final double getCPTProbability(int nodeIdx, int[] nodeDomainIndices) {
+		return compiledNetwork.getCPTProbability(nodeIdx, nodeDomainIndices);
 	}
 	
 	public void setNumSamples(int numSamples) {
@@ -293,11 +348,11 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 	
 	/**
 	 * @return returns the distribution builder that creates the distribution 
-	 * based on weighted samples
+	 * based on weighted samples (by default, a builder to which samples can be added concurrently without locking)
 	 * @throws ProbCogException 
 	 */
 	protected IDistributionBuilder createDistributionBuilder() throws ProbCogException {
-		return new DirectDistributionBuilder(createDistribution());
+		return new StripedDistributionBuilder(createDistribution());
 	}
 	
 	/**
@@ -322,47 +377,26 @@ public abstract class Sampler implements ITimeLimitedInference, IParameterHandle
 	 * @return  the index of the domain element of 'node' that is sampled, or -1 if sampling is impossible because all entries in the relevant column are 0 
 	 */
 	protected int sampleForward(BeliefNode node, int[] nodeDomainIndices) {
-		CPF cpf = node.getCPF();
-		BeliefNode[] domProd = cpf.getDomainProduct();
-		int[] addr = new int[domProd.length];
-		// get the addresses of the first two relevant fields and the difference between them
-		for(int i = 1; i < addr.length; i++)
-			addr[i] = nodeDomainIndices[this.nodeIndices.get(domProd[i])];		
-		addr[0] = 0; // (the first element in the index into the domain of the node we are sampling)
-		int realAddr = cpf.addr2realaddr(addr);
-		addr[0] = 1;
-		int diff = cpf.addr2realaddr(addr) - realAddr; // diff is the address difference between two consecutive entries in the relevant column
-		// get probabilities for outcomes
-		double[] cpt_entries = new double[domProd[0].getDomain().getOrder()];
-		double sum = 0;
-		for(int i = 0; i < cpt_entries.length; i++){
-			cpt_entries[i] = cpf.getDouble(realAddr);
-			sum += cpt_entries[i];
-			realAddr += diff;
-		}
-		// if the column contains only zeros, it is an impossible case -> cannot sample
-		if(sum == 0)
-			return -1;
-		return sample(cpt_entries, sum, generator);
+		return sampleForward(this.nodeIndices.get(node), nodeDomainIndices);
+	}
+	
+	/**
+	 * samples forward, i.e. samples a value for the node with the given index given its parents
+	 * @param nodeIdx  the index of the node for which to sample a value
+	 * @param nodeDomainIndices  array of domain indices for all nodes in the network; the values for the parents of the node must be set already
+	 * @return  the index of the domain element of the node that is sampled, or -1 if sampling is impossible because all entries in the relevant column are 0 
+	 */
+	protected int sampleForward(int nodeIdx, int[] nodeDomainIndices) {
+		return compiledNetwork.sampleForward(nodeIdx, nodeDomainIndices, generator);
 	}
 	
 	public double[] getConditionalDistribution(BeliefNode node, int[] nodeDomainIndices) {
-		CPF cpf = node.getCPF();
-		BeliefNode[] domProd = cpf.getDomainProduct();
-		int[] addr = new int[domProd.length];
-		// get the addresses of the first two relevant fields and the difference between them
-		for(int i = 1; i < addr.length; i++)
-			addr[i] = nodeDomainIndices[this.nodeIndices.get(domProd[i])];		
-		addr[0] = 0; // (the first element in the index into the domain of the node we are sampling)
-		int realAddr = cpf.addr2realaddr(addr);
-		addr[0] = 1;
-		int diff = cpf.addr2realaddr(addr) - realAddr; // diff is the address difference between two consecutive entries in the relevant column
-		// get probabilities for outcomes
-		double[] cpt_entries = new double[domProd[0].getDomain().getOrder()];
-		for(int i = 0; i < cpt_entries.length; i++){
-			cpt_entries[i] = cpf.getDouble(realAddr);
-			realAddr += diff;
-		}
+		return getConditionalDistribution(this.nodeIndices.get(node), nodeDomainIndices);
+	}
+	
+	public double[] getConditionalDistribution(int nodeIdx, int[] nodeDomainIndices) {
+		double[] cpt_entries = new double[compiledNetwork.getDomainSize(nodeIdx)];
+		compiledNetwork.getConditionalDistribution(nodeIdx, nodeDomainIndices, cpt_entries);
 		return cpt_entries;
 	}
 	
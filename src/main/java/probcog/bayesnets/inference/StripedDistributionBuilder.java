@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.bayesnets.inference;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import probcog.exception.ProbCogException;
+
+/**
+ * Builds up marginal distribution data without any locking on the part of the threads
+ * adding samples: each thread accumulates its samples in a stripe of its own, and the
+ * stripes are merged on demand (see {@link #getDistribution()}).
+ * A stripe is protected by a sequence counter that is incremented before and after each
+ * update, which allows readers to obtain a consistent copy of the stripe while the owner
+ * keeps on sampling. Should a reader repeatedly fail to obtain a copy, it asks the owner
+ * to publish one upon its next update.
+ */
+public class StripedDistributionBuilder implements IDistributionBuilder {
+	/**
+	 * positions of the summary statistics within a stripe's cells
+	 */
+	protected static final int Z = 0, MAX_WEIGHT = 1, STEPS = 2, TRIALS = 3, OPERATIONS = 4, NUM_STATS = 5;
+	/**
+	 * the number of attempts a reader makes to copy a stripe before asking its owner to publish a copy
+	 */
+	protected static final int MAX_READ_ATTEMPTS = 16;
+
+	/**
+	 * the distribution that holds the settings (and possibly data that was merged in via {@link #merge(SampledDistribution)})
+	 */
+	protected SampledDistribution base;
+	/**
+	 * for each node, the position of the cell for its first domain element
+	 */
+	protected int[] offsets;
+	protected int numCells;
+	protected CopyOnWriteArrayList<Stripe> stripes = new CopyOnWriteArrayList<Stripe>();
+	protected ThreadLocal<Stripe> localStripe = new ThreadLocal<Stripe>() {
+		@Override
+		protected Stripe initialValue() {
+			Stripe s = new Stripe();
+			stripes.add(s);
+			return s;
+		}
+	};
+
+	/**
+	 * @param base an empty distribution, which determines the settings (e.g. the confidence level) of the distributions that are built
+	 */
+	public StripedDistributionBuilder(SampledDistribution base) {
+		this.base = base;
+		offsets = new int[base.values.length];
+		int offset = NUM_STATS;
+		for(int i = 0; i < offsets.length; i++) {
+			offsets[i] = offset;
+			offset += base.values[i].length;
+		}
+		numCells = offset;
+	}
+
+	/**
+	 * a set of accumulators that is written to by a single thread
+	 */
+	protected class Stripe {
+		/**
+		 * the accumulated values (doubles stored as raw long bits)
+		 */
+		final AtomicLongArray cells = new AtomicLongArray(numCells);
+		/**
+		 * sequence counter, which is odd while an update is in progress
+		 */
+		volatile long seq = 0;
+		volatile boolean copyRequested = false;
+		volatile double[] publishedCopy = null;
+
+		final void add(int cell, double value) {
+			cells.lazySet(cell, Double.doubleToRawLongBits(Double.longBitsToDouble(cells.get(cell)) + value));
+		}
+
+		final double get(int cell) {
+			return Double.longBitsToDouble(cells.get(cell));
+		}
+
+		/**
+		 * adds a sample (to be called by the owning thread only)
+		 */
+		void addSample(WeightedSample s) {
+			if(copyRequested) {
+				publishedCopy = copy();
+				copyRequested = false;
+			}
+			seq++;
+			add(Z, s.weight);
+			if(get(MAX_WEIGHT) < s.weight)
+				cells.lazySet(MAX_WEIGHT, Double.doubleToRawLongBits(s.weight));
+			add(STEPS, 1);
+			add(TRIALS, s.trials);
+			add(OPERATIONS, s.operations);
+			for(int i = 0; i < s.nodeIndices.length; i++)
+				add(offsets[s.nodeIndices[i]] + s.nodeDomainIndices[i], s.weight);
+			seq++;
+		}
+
+		double[] copy() {
+			double[] ret = new double[numCells];
+			for(int i = 0; i < numCells; i++)
+				ret[i] = get(i);
+			return ret;
+		}
+
+		/**
+		 * @return a consistent copy of the stripe's cells, or null if the stripe is currently being updated
+		 */
+		double[] tryCopy() {
+			long s1 = seq;
+			if((s1 & 1) != 0)
+				return null;
+			double[] ret = copy();
+			return seq == s1 ? ret : null;
+		}
+
+		/**
+		 * obtains a consistent copy of the stripe's cells (to be called by readers, which must be serialized)
+		 */
+		double[] snapshot() {
+			double[] ret;
+			for(int i = 0; i < MAX_READ_ATTEMPTS; i++)
+				if((ret = tryCopy()) != null)
+					return ret;
+			// ask the owner to publish a copy with its next update
+			publishedCopy = null;
+			copyRequested = true;
+			while(true) {
+				if((ret = publishedCopy) != null)
+					return ret;
+				// (the owner may have stopped sampling in the meantime)
+				if((ret = tryCopy()) != null) {
+					copyRequested = false;
+					return ret;
+				}
+				Thread.yield();
+			}
+		}
+	}
+
+	@Override
+	public void addSample(WeightedSample s) throws ProbCogException {
+		if(s.weight == 0.0)
+			throw new ProbCogException("Zero-weight sample was added to distribution. Precision loss?");
+		localStripe.get().addSample(s);
+	}
+
+	/**
+	 * adds the data of a distribution that was built up separately
+	 * @param d a distribution over the same network
+	 */
+	public void merge(SampledDistribution d) {
+		base.merge(d);
+	}
+
+	/**
+	 * gets a snapshot of the distribution, i.e. the data of all stripes merged into a new distribution, which is
+	 * not affected by subsequently added samples; threads may keep adding samples while the snapshot is being taken
+	 */
+	@Override
+	public synchronized SampledDistribution getDistribution() throws ProbCogException {
+		SampledDistribution d;
+		try {
+			d = base.clone();
+		}
+		catch(CloneNotSupportedException e) {
+			throw new ProbCogException(e);
+		}
+		for(Stripe stripe : stripes) {
+			double[] cells = stripe.snapshot();
+			d.Z += cells[Z];
+			d.maxWeight = Math.max(d.maxWeight, cells[MAX_WEIGHT]);
+			d.steps += (int)cells[STEPS];
+			d.trials += (int)cells[TRIALS];
+			d.operations += (int)cells[OPERATIONS];
+			for(int i = 0; i < offsets.length; i++) {
+				double[] v = d.values[i];
+				for(int j = 0; j < v.length; j++)
+					v[j] += cells[offsets[i] + j];
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * @return the number of samples that have been added so far (without taking a consistent snapshot)
+	 */
+	public int getNumSamples() {
+		long n = base.getNumSamples();
+		for(Stripe stripe : stripes)
+			n += (long)stripe.get(STEPS);
+		return (int)n;
+	}
+}
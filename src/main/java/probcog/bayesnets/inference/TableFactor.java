@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.bayesnets.inference;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import probcog.bayesnets.core.CompiledBeliefNetwork;
+
+/**
+ * A factor over a set of discrete variables (network nodes) whose values are stored in a
+ * primitive array in row-major order, i.e. the last variable of the scope varies fastest.
+ * The variables of the scope are always kept in ascending order of their indices, such that
+ * the scopes of factors can be merged without any hashing.
+ */
+public class TableFactor {
+	/**
+	 * the indices of the variables in the factor's scope (in ascending order)
+	 */
+	public final int[] vars;
+	/**
+	 * the domain sizes of the variables in the factor's scope
+	 */
+	public final int[] domainSizes;
+	/**
+	 * the address strides of the variables in the factor's scope
+	 */
+	public final int[] strides;
+	/**
+	 * the factor's values
+	 */
+	public final double[] values;
+
+	/**
+	 * constructs a factor with all values set to 0
+	 * @param vars the indices of the variables in the factor's scope (in ascending order)
+	 * @param domainSizes the corresponding domain sizes
+	 */
+	public TableFactor(int[] vars, int[] domainSizes) {
+		this.vars = vars;
+		this.domainSizes = domainSizes;
+		this.strides = new int[vars.length];
+		long size = 1;
+		for(int i = vars.length-1; i >= 0; i--) {
+			strides[i] = (int)size;
+			size *= domainSizes[i];
+			if(size > Integer.MAX_VALUE)
+				throw new RuntimeException("Factor over " + vars.length + " variables is too large to be represented (" + size + " entries and more)");
+		}
+		try {
+			values = new double[(int)size];
+		}
+		catch(OutOfMemoryError e) {
+			throw new RuntimeException("Out of memory: Needed at least " + size*8 + " bytes to represent factor");
+		}
+	}
+
+	/**
+	 * creates the factor that corresponds to the CPT of the given node, restricted to the given evidence,
+	 * i.e. the scope of the factor contains only the nodes of the CPT's domain product that are not evidence variables
+	 * @param cbn the compiled network
+	 * @param nodeIdx the index of the node whose CPT to use
+	 * @param evidenceDomainIndices the domain indices of the evidence variables (-1 for variables without evidence)
+	 * @return the new factor
+	 */
+	public static TableFactor fromCPT(CompiledBeliefNetwork cbn, int nodeIdx, int[] evidenceDomainIndices) {
+		int[] cptNodes = cbn.getCPTNodes(nodeIdx);
+		int[] cptStrides = cbn.getStrides(nodeIdx);
+		double[] cpt = cbn.getCPT(nodeIdx);
+		// determine scope and the base address given by the evidence
+		int base = 0;
+		int n = 0;
+		long[] scope = new long[cptNodes.length]; // (variable index, position in domain product) pairs
+		for(int i = 0; i < cptNodes.length; i++) {
+			int evidence = evidenceDomainIndices[cptNodes[i]];
+			if(evidence != -1)
+				base += cptStrides[i] * evidence;
+			else
+				scope[n++] = ((long)cptNodes[i] << 32) | i;
+		}
+		Arrays.sort(scope, 0, n);
+		int[] vars = new int[n], domSizes = new int[n], srcStrides = new int[n];
+		for(int i = 0; i < n; i++) {
+			vars[i] = (int)(scope[i] >>> 32);
+			domSizes[i] = cbn.getDomainSize(vars[i]);
+			srcStrides[i] = cptStrides[(int)scope[i]];
+		}
+		TableFactor f = new TableFactor(vars, domSizes);
+		// copy the entries
+		int[] assignment = new int[n];
+		int addr = base;
+		for(int i = 0; i < f.values.length; i++) {
+			f.values[i] = cpt[addr];
+			addr = increment(assignment, domSizes, srcStrides, addr);
+		}
+		return f;
+	}
+
+	/**
+	 * advances the given assignment to the next one in row-major order, updating the given address accordingly
+	 * @param assignment the current assignment (domain indices of the variables being iterated over)
+	 * @param domSizes the domain sizes of these variables
+	 * @param strides the address strides of these variables
+	 * @param addr the address corresponding to the current assignment
+	 * @return the address corresponding to the new assignment
+	 */
+	protected static int increment(int[] assignment, int[] domSizes, int[] strides, int addr) {
+		for(int l = assignment.length-1; l >= 0; l--) {
+			addr += strides[l];
+			if(++assignment[l] < domSizes[l])
+				break;
+			addr -= strides[l] * domSizes[l];
+			assignment[l] = 0;
+		}
+		return addr;
+	}
+
+	/**
+	 * @param var a variable index
+	 * @return the position of the variable in the factor's scope, or a negative value if it is not contained
+	 */
+	public int indexOf(int var) {
+		return Arrays.binarySearch(vars, var);
+	}
+
+	public boolean contains(int var) {
+		return indexOf(var) >= 0;
+	}
+
+	/**
+	 * gets the address strides with which the variables of this factor are addressed in a factor with the given scope
+	 * @param vars a scope (which must be a subset of this factor's scope)
+	 * @return an array with one element per variable in the given scope; variables not contained in this factor have stride 0
+	 */
+	protected int[] getStridesFor(int[] vars) {
+		int[] ret = new int[vars.length];
+		for(int i = 0, j = 0; i < vars.length && j < this.vars.length; i++) {
+			if(vars[i] == this.vars[j])
+				ret[i] = strides[j++];
+		}
+		return ret;
+	}
+
+	/**
+	 * computes the product of the given factors
+	 * @param factors a non-empty collection of factors
+	 * @return a new factor whose scope is the union of the factors' scopes
+	 */
+	public static TableFactor product(Collection<TableFactor> factors) {
+		// determine the union of the scopes
+		int total = 0;
+		for(TableFactor f : factors)
+			total += f.vars.length;
+		int[] allVars = new int[total], allDomSizes = new int[total];
+		int n = 0;
+		for(TableFactor f : factors) {
+			for(int i = 0; i < f.vars.length; i++) {
+				int pos = Arrays.binarySearch(allVars, 0, n, f.vars[i]);
+				if(pos < 0) {
+					pos = -pos-1;
+					System.arraycopy(allVars, pos, allVars, pos+1, n-pos);
+					System.arraycopy(allDomSizes, pos, allDomSizes, pos+1, n-pos);
+					allVars[pos] = f.vars[i];
+					allDomSizes[pos] = f.domainSizes[i];
+					n++;
+				}
+			}
+		}
+		TableFactor ret = new TableFactor(Arrays.copyOf(allVars, n), Arrays.copyOf(allDomSizes, n));
+		// compute the values
+		TableFactor[] fs = factors.toArray(new TableFactor[factors.size()]);
+		int[][] fStrides = new int[fs.length][];
+		for(int k = 0; k < fs.length; k++)
+			fStrides[k] = fs[k].getStridesFor(ret.vars);
+		int[] addrs = new int[fs.length];
+		int[] assignment = new int[n];
+		for(int i = 0; i < ret.values.length; i++) {
+			double v = 1.0;
+			for(int k = 0; k < fs.length; k++)
+				v *= fs[k].values[addrs[k]];
+			ret.values[i] = v;
+			// advance the assignment and all the addresses
+			for(int l = n-1; l >= 0; l--) {
+				for(int k = 0; k < fs.length; k++)
+					addrs[k] += fStrides[k][l];
+				if(++assignment[l] < ret.domainSizes[l])
+					break;
+				for(int k = 0; k < fs.length; k++)
+					addrs[k] -= fStrides[k][l] * ret.domainSizes[l];
+				assignment[l] = 0;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * sums out the given variable
+	 * @param var the index of a variable in the factor's scope
+	 * @return a new factor whose scope no longer contains the variable
+	 */
+	public TableFactor sumOut(int var) {
+		int pos = indexOf(var);
+		int[] keep = new int[vars.length-1];
+		for(int i = 0, j = 0; i < vars.length; i++)
+			if(i != pos)
+				keep[j++] = vars[i];
+		return marginalize(keep);
+	}
+
+	/**
+	 * sums out all variables that are not in the given set
+	 * @param keepVars the variables to keep (in ascending order); must be a subset of the factor's scope
+	 * @return a new factor over the given variables
+	 */
+	public TableFactor marginalize(int[] keepVars) {
+		int[] domSizes = new int[keepVars.length];
+		for(int i = 0; i < keepVars.length; i++)
+			domSizes[i] = domainSizes[indexOf(keepVars[i])];
+		TableFactor ret = new TableFactor(keepVars, domSizes);
+		int[] targetStrides = ret.getStridesFor(vars);
+		int[] assignment = new int[vars.length];
+		int addr = 0;
+		for(int i = 0; i < values.length; i++) {
+			ret.values[addr] += values[i];
+			addr = increment(assignment, domainSizes, targetStrides, addr);
+		}
+		return ret;
+	}
+
+	/**
+	 * multiplies this factor (in place) with the given factor
+	 * @param f a factor whose scope is a subset of this factor's scope
+	 */
+	public void multiplyBy(TableFactor f) {
+		int[] srcStrides = f.getStridesFor(vars);
+		int[] assignment = new int[vars.length];
+		int addr = 0;
+		for(int i = 0; i < values.length; i++) {
+			values[i] *= f.values[addr];
+			addr = increment(assignment, domainSizes, srcStrides, addr);
+		}
+	}
+
+	/**
+	 * divides this factor (in place) by the given factor, where 0/0 is defined as 0
+	 * @param f a factor whose scope is a subset of this factor's scope
+	 */
+	public void divideBy(TableFactor f) {
+		int[] srcStrides = f.getStridesFor(vars);
+		int[] assignment = new int[vars.length];
+		int addr = 0;
+		for(int i = 0; i < values.length; i++) {
+			double d = f.values[addr];
+			values[i] = d == 0.0 ? 0.0 : values[i] / d;
+			addr = increment(assignment, domainSizes, srcStrides, addr);
+		}
+	}
+
+	public double sum() {
+		double sum = 0;
+		for(int i = 0; i < values.length; i++)
+			sum += values[i];
+		return sum;
+	}
+
+	/**
+	 * normalizes the factor (in place) such that its values sum to 1, unless all values are 0
+	 * @return the sum of the values prior to normalization
+	 */
+	public double normalize() {
+		double sum = sum();
+		if(sum != 0.0)
+			for(int i = 0; i < values.length; i++)
+				values[i] /= sum;
+		return sum;
+	}
+
+	/**
+	 * @return the number of entries in the factor
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public String toString() {
+		return "F" + Arrays.toString(vars);
+	}
+}
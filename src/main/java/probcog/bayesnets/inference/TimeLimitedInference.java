@@ -22,6 +22,7 @@ import java.util.Vector;
 
 import probcog.exception.ProbCogException;
 import probcog.inference.BasicSampledDistribution;
+import probcog.inference.CancellationToken;
 import probcog.inference.IParameterHandler;
 import probcog.inference.ParameterHandler;
 import probcog.inference.BasicSampledDistribution.DistributionComparison;
@@ -30,6 +31,13 @@ import probcog.inference.BasicSampledDistribution.MeanSquaredError;
 
 import edu.tum.cs.util.Stopwatch;
 
+/**
+ * Runs an inference method for a limited amount of time, polling intermediate results at regular intervals.
+ * Inference is stopped cooperatively: the inference method is given a cancellation token with the
+ * corresponding deadline (see {@link ITimeLimitedInference#setCancellationToken(CancellationToken)}),
+ * and the results it returns upon stopping are the final results.
+ * @author Dominik Jain
+ */
 public class TimeLimitedInference implements IParameterHandler {
 
 	protected ITimeLimitedInference inference;
@@ -44,6 +52,13 @@ public class TimeLimitedInference implements IParameterHandler {
 	protected ParameterHandler paramHandler;
 	protected boolean verbose = true;
 	protected int[] evidenceDomainIndices = null;
+	protected CancellationToken cancellationToken;
+	/**
+	 * the time (in seconds) to wait for the inference method to stop after the time limit has been reached;
+	 * if it does not stop within this period, the results are polled and the inference thread is abandoned
+	 */
+	protected double gracePeriod = 1.0;
+	protected Vector<IIntermediateResultsListener> listeners = new Vector<IIntermediateResultsListener>();
 
 	public TimeLimitedInference(ITimeLimitedInference inference, double time, double interval) throws ProbCogException {
 		this.inference = inference;
@@ -52,6 +67,27 @@ public class TimeLimitedInference implements IParameterHandler {
 		comparisonClasses = new Vector<Class<? extends DistributionEntryComparison>>();
 		paramHandler = new ParameterHandler(this);
 		paramHandler.add("verbose", "setVerbose");
+		paramHandler.add("gracePeriod", "setGracePeriod");
+	}
+	
+	public void setGracePeriod(double seconds) {
+		this.gracePeriod = seconds;
+	}
+	
+	/**
+	 * adds a listener that is notified whenever intermediate results have been polled
+	 * @param l
+	 */
+	public void addListener(IIntermediateResultsListener l) {
+		listeners.add(l);
+	}
+	
+	/**
+	 * stops inference prematurely (the results obtained thus far are returned by {@link #run()})
+	 */
+	public void cancel() {
+		if(cancellationToken != null)
+			cancellationToken.cancel();
 	}
 	
 	public void setVerbose(boolean verbose) {
@@ -67,43 +103,55 @@ public class TimeLimitedInference implements IParameterHandler {
 	
 	public SampledDistribution run() throws ProbCogException {
 		// start the inference thread
+		cancellationToken = new CancellationToken(time);
+		inference.setCancellationToken(cancellationToken);
 		thread = new InferenceThread();
+		thread.setDaemon(true);
 		thread.start();
 		// wait, repeatedly polling intermediate results
 		Stopwatch sw = new Stopwatch();
 		sw.start();
-		boolean useIntervals = true;
 		try {
-			if(!useIntervals) 
-				Thread.sleep((int)(1000*time));
-			else {
-				int numSteps = (int)(time / interval);
-				for(int i = 1; i <= numSteps && thread.isAlive(); i++) {							
-					Thread.sleep((int)(1000*interval));
-					if(verbose) System.out.printf("polling results after %fs (interval %d)...\n", sw.getElapsedTimeSecs(), i);
-					SampledDistribution dist = pollResults(true);
-					if(verbose && dist != null) System.out.printf("%d samples taken\n", dist.steps);
-					if(referenceDistribution != null) {
-						double mse;
-						if(dist == null)
-							mse = Double.POSITIVE_INFINITY;
-						else {						
-							DistributionComparison dc = doComparison(dist);
-							mse = dc.getResult(MeanSquaredError.class);
-						}
-						MSEs.add(mse);					
+			for(int i = 1; ; i++) {
+				long waitTime = (long)Math.ceil(1000 * Math.min(interval, cancellationToken.getRemainingTime()));
+				if(waitTime <= 0)
+					break;
+				thread.join(waitTime);
+				if(!thread.isAlive() || cancellationToken.isCancelled())
+					break;
+				if(verbose) System.out.printf("polling results after %fs (interval %d)...\n", sw.getElapsedTimeSecs(), i);
+				SampledDistribution dist = pollResults(true);
+				if(verbose && dist != null) System.out.printf("%d samples taken\n", dist.steps);
+				for(IIntermediateResultsListener l : listeners)
+					l.intermediateResults(dist, sw.getElapsedTimeSecs());
+				if(referenceDistribution != null) {
+					double mse;
+					if(dist == null)
+						mse = Double.POSITIVE_INFINITY;
+					else {						
+						DistributionComparison dc = doComparison(dist);
+						mse = dc.getResult(MeanSquaredError.class);
 					}
+					MSEs.add(mse);					
 				}
 			}
+			// stop inference and wait for the inference method to return its results
+			cancellationToken.cancel();
+			thread.join((long)Math.ceil(1000 * gracePeriod) + 1);
 		}
 		catch (InterruptedException e) {
+			cancellationToken.cancel();
 			throw new ProbCogException(e);
 		}
-		// get final results, terminating the inference thread if it is still running
-		SampledDistribution results = pollResults(false);
-		if(thread.isAlive())
-			thread.stop();
-		return results;
+		if(thread.error != null)
+			throw thread.error;
+		if(thread.isAlive()) {
+			// the inference method does not respond to the cancellation; use the current intermediate results
+			System.err.println("Warning: Inference did not stop within the grace period; using intermediate results");
+			thread.interrupt();
+			return pollResults(false);
+		}
+		return thread.results;
 	}
 	
 	/**
@@ -144,14 +192,19 @@ public class TimeLimitedInference implements IParameterHandler {
 	}
 
 	protected class InferenceThread extends Thread {
+		public volatile SampledDistribution results = null;
+		public volatile ProbCogException error = null;
 		
 		public void run() {
 			try {
-				inference.infer();			
+				results = inference.infer();			
+			}
+			catch(ProbCogException e) {
+				error = e;
+			}
+			catch(RuntimeException e) {
+				error = new ProbCogException(e);
 			}
-			catch(Exception e) {
-				throw new RuntimeException(e);
-			}			
 		}
 		
 		public SampledDistribution pollResults() throws ProbCogException {
@@ -18,264 +18,229 @@
  ******************************************************************************/
 package probcog.bayesnets.inference;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Vector;
 
 import probcog.bayesnets.core.BeliefNetworkEx;
+import probcog.bayesnets.util.EliminationOrdering;
 import probcog.exception.ProbCogException;
-import edu.ksu.cis.bnj.ver3.core.BeliefNode;
-import edu.ksu.cis.bnj.ver3.core.CPF;
-import edu.ksu.cis.bnj.ver3.core.CPT;
-import edu.ksu.cis.bnj.ver3.core.values.ValueDouble;
 import edu.tum.cs.util.Stopwatch;
 import edu.tum.cs.util.StringTool;
 
 /**
- * The variable elimination algorithm for exact inference in Bayesian networks (see, e.g., AIMA ch. 14)
+ * The variable elimination algorithm for exact inference in Bayesian networks (see, e.g., AIMA ch. 14).
+ * Variables are eliminated in an order determined by a greedy heuristic (min-fill or min-weight),
+ * and the marginals of all query variables are computed in two passes over the resulting
+ * bucket tree (eliminating upwards, then propagating downwards), such that the intermediate
+ * factors are shared among all queries.
  * @author Dominik Jain
  */
 public class VariableElimination extends Sampler {
-	protected int[] nodeOrder;
-	protected Stopwatch timer;
-	protected int[] nodeDomainIndices;
 	protected SampledDistribution dist;
+	protected EliminationOrdering.Heuristic heuristic = EliminationOrdering.Heuristic.MinFill;
+	/**
+	 * the size of the largest factor that was constructed during the most recent inference run
+	 */
+	protected int maxFactorSize;
 	
 	public VariableElimination(BeliefNetworkEx bn) throws ProbCogException {
 		super(bn);
-		nodeOrder = bn.getTopologicalOrder();
+		paramHandler.add("eliminationOrder", "setEliminationOrder");
+	}
+	
+	/**
+	 * sets the heuristic with which the elimination order is determined
+	 * @param heuristic the name of the heuristic ("MinFill" or "MinWeight")
+	 */
+	public void setEliminationOrder(String heuristic) {
+		this.heuristic = EliminationOrdering.Heuristic.valueOf(heuristic);
 	}
 
-	protected class Factor {
-		CPF cpf;
+	/**
+	 * a bucket in the bucket tree, i.e. the set of factors that are combined when eliminating a variable
+	 */
+	protected class Bucket {
+		int var;
+		Vector<TableFactor> factors = new Vector<TableFactor>();
+		/**
+		 * the bucket to which this bucket's message is sent (null for roots)
+		 */
+		Bucket parent;
+		Vector<Bucket> children = new Vector<Bucket>();
+		/**
+		 * the message sent to the parent (the product of this bucket's factors with the variable summed out)
+		 */
+		TableFactor up;
+		/**
+		 * the message received from the parent during the downward pass
+		 */
+		TableFactor down;
+		/**
+		 * whether the bucket's belief is required to answer the queries
+		 */
+		boolean required;
 		
-		public Factor(BeliefNode n) {
-			cpf = n.getCPF();
-			BeliefNode[] domprod = cpf.getDomainProduct();
-			for(int i = 0; i < domprod.length; i++) {
-				if(evidenceDomainIndices[getNodeIndex(domprod[i])] != 0) {
-					cpf = removeEvidence(cpf);
-					break;	
-				}
-			}
+		public Bucket(int var) {
+			this.var = var;
 		}
 		
-		protected CPF removeEvidence(CPF cpf) {
-			BeliefNode[] domprod = cpf.getDomainProduct();
-			Vector<BeliefNode> domprod2 = new Vector<BeliefNode>();
-			for(int i = 0; i < domprod.length; i++)
-				if(evidenceDomainIndices[getNodeIndex(domprod[i])] == -1)
-					domprod2.add(domprod[i]);
-			CPF cpf2 = new CPT(domprod2.toArray(new BeliefNode[domprod2.size()]));
-			int[] addr = new int[domprod.length];
-			int[] addr2 = new int[domprod2.size()];
-			removeEvidence(cpf, cpf2, 0, addr, 0, addr2);
-			return cpf2;
+		public String toString() {
+			return "Bucket(" + nodes[var].getName() + ")";
 		}
-		
-		protected void removeEvidence(CPF cpf, CPF cpf2, int i, int[] addr, int j, int[] addr2) {
-			if(i == addr.length) {
-				cpf2.put(addr2, cpf.get(addr));
-				return;
-			}
-			
-			BeliefNode[] domprod = cpf.getDomainProduct();
-			BeliefNode[] domprod2 = cpf2.getDomainProduct();			
-			BeliefNode node = domprod[i];
-			boolean transfer = false;
-			if(j < domprod2.length) 
-				transfer = domprod2[j] == domprod[i];
-			int evidence = evidenceDomainIndices[getNodeIndex(node)];
-			if(evidence != -1) { // this should never happen
-				addr[i] = evidence;
-				if(transfer)
-					addr2[j] = evidence; 
-				removeEvidence(cpf, cpf2, i+1, addr, transfer ? j+1 : j, addr2);
+	}
+	
+	/**
+	 * determines the nodes that are relevant to the queries, i.e. the query and evidence nodes and all their ancestors;
+	 * all other nodes are barren and can be discarded
+	 * @param isQuery flags indicating the query nodes
+	 * @return flags indicating the relevant nodes
+	 */
+	protected boolean[] getRelevantNodes(boolean[] isQuery) {
+		boolean[] relevant = new boolean[nodes.length];
+		int[] stack = new int[nodes.length];
+		int top = 0;
+		for(int i = 0; i < nodes.length; i++)
+			if(isQuery[i] || evidenceDomainIndices[i] != -1) {
+				relevant[i] = true;
+				stack[top++] = i;
 			}
-			else {
-				int domSize = node.getDomain().getOrder();
-				for(int domIdx = 0; domIdx < domSize; domIdx++) {
-					addr[i] = domIdx;
-					if(transfer)
-						addr2[j] = domIdx; 
-					removeEvidence(cpf, cpf2, i+1, addr, transfer ? j+1 : j, addr2);
+		while(top > 0) {
+			int[] cptNodes = compiledNetwork.getCPTNodes(stack[--top]);
+			for(int j = 1; j < cptNodes.length; j++)
+				if(!relevant[cptNodes[j]]) {
+					relevant[cptNodes[j]] = true;
+					stack[top++] = cptNodes[j];
 				}
-			}
 		}
+		return relevant;
+	}
+	
+	protected TableFactor product(Vector<TableFactor> factors) {
+		TableFactor f = TableFactor.product(factors);
+		maxFactorSize = Math.max(maxFactorSize, f.size());
+		return f;
+	}
+	
+	public void _infer() throws ProbCogException {
+		Stopwatch sw = new Stopwatch();
+		sw.start();
 		
-		public Factor(CPF cpf) {
-			this.cpf = cpf;
-		}
+		dist = createDistribution();
+		dist.Z = 1.0;
+		maxFactorSize = 0;
 		
-		public double getValue(int[] nodeDomainIndices) {
-			BeliefNode[] domProd = cpf.getDomainProduct();
-			int[] addr = new int[domProd.length];
-			for(int i = 0; i < addr.length; i++)
-				addr[i] = nodeDomainIndices[getNodeIndex(domProd[i])];
-			return cpf.getDouble(addr);
-		}
+		// determine query and relevant nodes
+		boolean[] isQuery = new boolean[nodes.length];
+		if(queryVars == null)
+			Arrays.fill(isQuery, true);
+		else
+			for(Integer nodeIdx : queryVars)
+				isQuery[nodeIdx] = true;
+		boolean[] relevant = getRelevantNodes(isQuery);
 		
-		public Factor sumOut(BeliefNode n) {			
-			BeliefNode[] domprod = cpf.getDomainProduct();
-			BeliefNode[] domprod2 = new BeliefNode[domprod.length-1];
-			int j = 0;
-			for(int i = 0; i < domprod.length; i++)
-				if(domprod[i] != n)
-					domprod2[j++] = domprod[i];
-			CPF cpf2 = new CPT(domprod2);
-			int[] addr = new int[domprod.length];
-			int[] addr2 = new int[domprod2.length];
-			sumOut(cpf2, n, 0, addr, 0, addr2);
-			return new Factor(cpf2);
+		// create the factors of all relevant nodes, restricted to the evidence
+		Vector<TableFactor> factors = new Vector<TableFactor>();
+		Vector<int[]> scopes = new Vector<int[]>();
+		int[] domainSizes = new int[nodes.length];
+		boolean[] eliminate = new boolean[nodes.length];
+		for(int i = 0; i < nodes.length; i++) {
+			domainSizes[i] = compiledNetwork.getDomainSize(i);
+			if(!relevant[i])
+				continue;
+			eliminate[i] = evidenceDomainIndices[i] == -1;
+			TableFactor f = TableFactor.fromCPT(compiledNetwork, i, evidenceDomainIndices);
+			factors.add(f);
+			scopes.add(f.vars);
 		}
 		
-		protected void sumOut(CPF cpf2, BeliefNode n, int i, int[] addr, int j, int[] addr2) {
-			if(i == addr.length) {
-				int realaddr2 = cpf2.addr2realaddr(addr2);
-				double v = cpf2.getDouble(realaddr2);
-				v += cpf.getDouble(addr);
-				cpf2.put(realaddr2, new ValueDouble(v));
-				return;
-			}
-						
-			BeliefNode node = this.cpf.getDomainProduct()[i];
-			int evidence = evidenceDomainIndices[getNodeIndex(node)];
-			if(evidence != -1) { // this should never happen
-				addr[i] = evidence;
-				if(node != n)
-					addr2[j] = evidence; 
-				sumOut(cpf2, n, i+1, addr, node == n ? j : j+1, addr2);
-			}
-			else {
-				int domSize = node.getDomain().getOrder();
-				for(int domIdx = 0; domIdx < domSize; domIdx++) {
-					addr[i] = domIdx;
-					if(node != n)
-						addr2[j] = domIdx; 
-					sumOut(cpf2, n, i+1, addr, node == n ? j : j+1, addr2);
-				}
-			}
+		// compute the elimination order
+		int[] order = new EliminationOrdering(nodes.length, domainSizes, scopes, heuristic).compute(eliminate);
+		if(debug) {
+			String[] names = new String[order.length];
+			for(int k = 0; k < order.length; k++)
+				names[k] = nodes[order[k]].getName();
+			out.println("Elimination order: " + StringTool.join(", ", names));
 		}
-		
-		public String toString() {
-			return "F(" + StringTool.join(",", cpf.getDomainProduct()) + ")";
+		int[] position = new int[nodes.length];
+		Bucket[] buckets = new Bucket[order.length];
+		for(int k = 0; k < order.length; k++) {
+			position[order[k]] = k;
+			buckets[k] = new Bucket(order[k]);
 		}
-	}
-
-	protected Factor join(Iterable<Factor> factors) {	
-		HashSet<BeliefNode> domain = new HashSet<BeliefNode>();
-		for(Factor f : factors) {
-			for(BeliefNode n : f.cpf.getDomainProduct())
-				domain.add(n);
-		}
-		BeliefNode[] domProd = domain.toArray(new BeliefNode[domain.size()]);
-		CPF cpf;
-		try {
-			cpf = new CPT(domProd);
-		} catch (OutOfMemoryError e) {
-			e.printStackTrace();
-			double size = 1;
-			for(int i = 0; i < domProd.length; i++)
-				size *= domProd[i].getDomain().getOrder();
-			throw new RuntimeException("Out of memory: Needed at least " + size*8 + " bytes to represent function");
-		}
-		int[] addr = new int[domProd.length];
-		fillCPF(factors, cpf, 0, addr);
-		return new Factor(cpf);
-	}
-	
-	protected void fillCPF(Iterable<Factor> factors, CPF cpf, int i, int[] addr) {
-		if(i == addr.length) {
-			double value = 1.0;
-			for(Factor f : factors) {
-				value *= f.getValue(nodeDomainIndices);
-			}
-			try {
-				cpf.put(addr, new ValueDouble(value));
-			}
-			catch(Exception e) {
-				System.err.println(StringTool.join(", ", cpf.getDomainProduct()));
-				throw new RuntimeException(e);
+		
+		// distribute the factors among the buckets (factors without variables are constants and can be ignored)
+		for(TableFactor f : factors) 
+			if(f.vars.length > 0)
+				buckets[getFirstBucket(f, position)].factors.add(f);
+		
+		// upward pass: eliminate the variables one by one, passing the resulting factors on to later buckets
+		for(int k = 0; k < buckets.length; k++) {
+			Bucket b = buckets[k];
+			if(verbose && !debug) out.printf("  eliminating %d/%d \r", k+1, buckets.length);
+			TableFactor f = product(b.factors);
+			if(debug) out.println("Summing out " + nodes[b.var] + " from " + f);
+			b.up = f.sumOut(b.var);
+			b.up.normalize(); // (scaling is irrelevant, but prevents underflow)
+			if(b.up.vars.length > 0) {
+				b.parent = buckets[getFirstBucket(b.up, position)];
+				b.parent.factors.add(b.up);
+				b.parent.children.add(b);
 			}
-			return;
-		}
-		BeliefNode[] domProd = cpf.getDomainProduct(); 
-		int domSize = domProd[i].getDomain().getOrder();
-		for(int j = 0; j < domSize; j++) {
-			addr[i] = j;
-			nodeDomainIndices[getNodeIndex(domProd[i])] = j;
-			fillCPF(factors, cpf, i+1, addr);
-		}
-	}
-	
-	protected Vector<Factor> sumout(Vector<Factor> factors, BeliefNode n) {
-		Vector<Factor> newFacs = new Vector<Factor>();
-		Vector<Factor> joinFacs = new Vector<Factor>();
-		for(Factor f : factors) {
-			BeliefNode[] domProd = f.cpf.getDomainProduct();
-			boolean sumover = false;
-			for(int i = 0; i < domProd.length; i++)
-				if(domProd[i] == n)
-					sumover = true;
-			if(sumover)
-				joinFacs.add(f);
-			else
-				newFacs.add(f);
-		}
-		Factor joinedFac = join(joinFacs);
-		if(debug) out.println("Summing out " + n + " from " + joinedFac);
-		newFacs.add(joinedFac.sumOut(n));
-		return newFacs;
-	}
-	
-	protected void computeMarginal(BeliefNode Q) {
-		Vector<Factor> factors = new Vector<Factor>();
-		for(int i = nodeOrder.length-1; i >= 0; i--) {
-			if(!debug) out.printf("  %s  %d \r", Q.getName(), i);
-			int nodeIdx = nodeOrder[i];
-			BeliefNode node = nodes[nodeIdx];
-			if(debug) out.println("Current node: " + node);			
-			
-			factors.add(new Factor(node));
-			if(debug) out.println(factors);
-			
-			if(evidenceDomainIndices[nodeIdx] == -1 && node != Q)				
-				factors = sumout(factors, node);			
 		}
 		if(!debug) out.println();
 		
-		if(debug) out.printf("%d final factors: %s\n", factors.size(), StringTool.join(", ", factors));
+		// mark the buckets whose beliefs are needed, i.e. the buckets of query variables and their ancestors
+		for(int k = 0; k < buckets.length; k++)
+			if(isQuery[buckets[k].var])
+				for(Bucket b = buckets[k]; b != null && !b.required; b = b.parent)
+					b.required = true;
 		
-		// save results to distribution
-		int nodeIdx = getNodeIndex(Q);
-		double[] marginal = new double[Q.getDomain().getOrder()];
-		double Z = 0.0;
-		for(int i = 0; i < marginal.length; i++) {
-			nodeDomainIndices[nodeIdx] = i;
-			marginal[i] = 1.0;
-			for(Factor f : factors) {			
-				marginal[i] *= f.getValue(nodeDomainIndices);
+		// downward pass: compute the beliefs of the required buckets, passing messages down to required children
+		for(int k = buckets.length-1; k >= 0; k--) {
+			Bucket b = buckets[k];
+			if(!b.required)
+				continue;
+			if(b.down != null)
+				b.factors.add(b.down);
+			TableFactor belief = product(b.factors);
+			if(isQuery[b.var]) {
+				TableFactor marginal = belief.marginalize(new int[]{b.var});
+				marginal.normalize();
+				dist.values[b.var] = marginal.values;
+			}
+			for(Bucket c : b.children) {
+				if(!c.required)
+					continue;
+				c.down = belief.marginalize(c.up.vars);
+				c.down.divideBy(c.up);
+				c.down.normalize();
 			}
-			//out.println(factors.get(0).getValue(nodeDomainIndices));
-			Z += marginal[i];
 		}
-		for(int i = 0; i < marginal.length; i++)
-			marginal[i] /= Z;
-		dist.values[nodeIdx] = marginal;
-	}
-	
-	public void _infer() throws ProbCogException {
-		Stopwatch sw = new Stopwatch();
 		
-		sw.start();
-
-		dist = createDistribution();
-		dist.Z = 1.0;
-		nodeDomainIndices = evidenceDomainIndices.clone();
-		for(Integer nodeIdx : queryVars)
-			computeMarginal(nodes[nodeIdx]);		
+		// query variables with evidence
+		for(int i = 0; i < nodes.length; i++)
+			if(isQuery[i] && evidenceDomainIndices[i] != -1) {
+				double[] marginal = new double[domainSizes[i]];
+				marginal[evidenceDomainIndices[i]] = 1.0;
+				dist.values[i] = marginal;
+			}
+		
 		((ImmediateDistributionBuilder)distributionBuilder).setDistribution(dist);
 		
 		sw.stop();
+		report(String.format("largest factor: %d entries", maxFactorSize));
+	}
+	
+	/**
+	 * @param f a factor
+	 * @param position the position of each variable in the elimination order
+	 * @return the position of the variable in the factor's scope that is eliminated first
+	 */
+	protected static int getFirstBucket(TableFactor f, int[] position) {
+		int first = Integer.MAX_VALUE;
+		for(int v : f.vars)
+			first = Math.min(first, position[v]);
+		return first;
 	}
 	
 	protected IDistributionBuilder createDistributionBuilder() {
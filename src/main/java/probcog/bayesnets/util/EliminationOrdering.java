@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.bayesnets.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Greedy computation of variable elimination orderings on the interaction graph
+ * that is induced by a set of factor scopes.
+ */
+public class EliminationOrdering {
+
+	public enum Heuristic {
+		/**
+		 * eliminates the variable that introduces the fewest fill-in edges (ties broken by weight)
+		 */
+		MinFill,
+		/**
+		 * eliminates the variable whose elimination creates the smallest factor
+		 */
+		MinWeight
+	}
+
+	protected ArrayList<HashSet<Integer>> neighbors;
+	protected int[] domainSizes;
+	protected Heuristic heuristic;
+	/**
+	 * the cliques induced by the most recently computed ordering
+	 */
+	protected int[][] cliques;
+
+	/**
+	 * @param numVars the number of variables
+	 * @param domainSizes the domain size of each variable
+	 * @param scopes the scopes of the factors that define the interaction graph (variables of the same scope are connected)
+	 * @param heuristic the heuristic to use
+	 */
+	public EliminationOrdering(int numVars, int[] domainSizes, Iterable<int[]> scopes, Heuristic heuristic) {
+		this.domainSizes = domainSizes;
+		this.heuristic = heuristic;
+		neighbors = new ArrayList<HashSet<Integer>>(numVars);
+		for(int i = 0; i < numVars; i++)
+			neighbors.add(new HashSet<Integer>());
+		for(int[] scope : scopes)
+			for(int i = 0; i < scope.length; i++)
+				for(int j = i+1; j < scope.length; j++) {
+					neighbors.get(scope[i]).add(scope[j]);
+					neighbors.get(scope[j]).add(scope[i]);
+				}
+	}
+
+	/**
+	 * computes an elimination ordering for the given variables; the underlying graph is modified in the process
+	 * @param eliminate flags indicating the variables to be eliminated; all other variables are never eliminated (and thus remain in the graph)
+	 * @return the ordering, i.e. an array of variable indices
+	 */
+	public int[] compute(boolean[] eliminate) {
+		int numVars = neighbors.size();
+		int n = 0;
+		for(int i = 0; i < numVars; i++)
+			if(eliminate[i])
+				n++;
+		boolean[] remaining = eliminate.clone();
+		double[] score = new double[numVars];
+		for(int i = 0; i < numVars; i++)
+			if(remaining[i])
+				score[i] = getScore(i);
+		int[] order = new int[n];
+		cliques = new int[n][];
+		for(int k = 0; k < n; k++) {
+			// select the best variable
+			int best = -1;
+			for(int i = 0; i < numVars; i++)
+				if(remaining[i] && (best == -1 || score[i] < score[best]))
+					best = i;
+			order[k] = best;
+			remaining[best] = false;
+			// eliminate it from the graph, connecting its neighbors
+			HashSet<Integer> bestNeighbors = neighbors.get(best);
+			Integer[] nb = bestNeighbors.toArray(new Integer[bestNeighbors.size()]);
+			int[] clique = new int[nb.length+1];
+			clique[0] = best;
+			for(int i = 0; i < nb.length; i++)
+				clique[i+1] = nb[i];
+			Arrays.sort(clique);
+			cliques[k] = clique;
+			for(int i = 0; i < nb.length; i++) {
+				neighbors.get(nb[i]).remove(best);
+				for(int j = i+1; j < nb.length; j++) {
+					neighbors.get(nb[i]).add(nb[j]);
+					neighbors.get(nb[j]).add(nb[i]);
+				}
+			}
+			bestNeighbors.clear();
+			// update the scores of the variables that are affected
+			HashSet<Integer> affected = new HashSet<Integer>();
+			for(Integer v : nb) {
+				affected.add(v);
+				if(heuristic == Heuristic.MinFill)
+					affected.addAll(neighbors.get(v));
+			}
+			for(Integer v : affected)
+				if(remaining[v])
+					score[v] = getScore(v);
+		}
+		return order;
+	}
+
+	/**
+	 * gets the cliques that were induced by the most recent call to {@link #compute(boolean[])}, i.e. for each
+	 * eliminated variable, the set containing the variable and its neighbors at the time of its elimination
+	 * @return an array of sorted arrays of variable indices, one for each element of the ordering
+	 */
+	public int[][] getCliques() {
+		return cliques;
+	}
+
+	protected double getScore(int var) {
+		double weight = domainSizes[var];
+		for(Integer v : neighbors.get(var))
+			weight *= domainSizes[v];
+		if(heuristic == Heuristic.MinWeight)
+			return weight;
+		// number of fill-in edges, with the weight (which is normalized to be less than 1) as a tie breaker
+		int fill = 0;
+		Integer[] nb = neighbors.get(var).toArray(new Integer[neighbors.get(var).size()]);
+		for(int i = 0; i < nb.length; i++)
+			for(int j = i+1; j < nb.length; j++)
+				if(!neighbors.get(nb[i]).contains(nb[j]))
+					fill++;
+		return fill + (Double.isInfinite(weight) ? 1.0 : weight / (weight + 1));
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.inference;
+
+/**
+ * A token with which a running inference procedure can be asked to stop, either explicitly
+ * (see {@link #cancel()}) or implicitly when a deadline is reached.
+ * Inference procedures check the token periodically (typically after each sample) and, once it
+ * is cancelled, stop and return the results they have obtained thus far.
+ */
+public class CancellationToken {
+	protected volatile boolean cancelled = false;
+	/**
+	 * the deadline in terms of {@link System#nanoTime()}, or null if there is none
+	 */
+	protected final Long deadline;
+
+	/**
+	 * creates a token without a deadline, which is cancelled only explicitly
+	 */
+	public CancellationToken() {
+		deadline = null;
+	}
+
+	/**
+	 * creates a token which is cancelled automatically once the given amount of time has passed
+	 * @param seconds the time limit in seconds (measured from now)
+	 */
+	public CancellationToken(double seconds) {
+		deadline = System.nanoTime() + (long)(seconds * 1e9);
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true if the token was cancelled or its deadline has passed
+	 */
+	public boolean isCancelled() {
+		if(cancelled)
+			return true;
+		if(deadline != null && System.nanoTime() - deadline >= 0) {
+			cancelled = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of seconds remaining until the deadline (0 if it has passed or the token was cancelled), or infinity if there is no deadline
+	 */
+	public double getRemainingTime() {
+		if(cancelled)
+			return 0;
+		if(deadline == null)
+			return Double.POSITIVE_INFINITY;
+		return Math.max(0, (deadline - System.nanoTime()) / 1e9);
+	}
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.inference;
+
+/**
+ * Gelman-Rubin convergence diagnostic (potential scale reduction factor, R-hat) for
+ * multiple Markov chains of equal length.
+ */
+public class GelmanRubin {
+
+	/**
+	 * computes the potential scale reduction factor of a scalar quantity
+	 * @param means the mean of the quantity in each chain
+	 * @param variances the (unbiased) sample variance of the quantity in each chain
+	 * @param n the number of samples in each chain
+	 * @return the R-hat value (1.0 if the chains are indistinguishable, infinity if the chains have no within-chain variance but disagree)
+	 */
+	public static double getRHat(double[] means, double[] variances, long n) {
+		int m = means.length;
+		if(m < 2 || n < 2)
+			return Double.POSITIVE_INFINITY;
+		double meanOfMeans = 0, W = 0;
+		for(int i = 0; i < m; i++) {
+			meanOfMeans += means[i];
+			W += variances[i];
+		}
+		meanOfMeans /= m;
+		W /= m;
+		// between-chain variance (divided by n)
+		double B_n = 0;
+		for(int i = 0; i < m; i++) {
+			double d = means[i] - meanOfMeans;
+			B_n += d * d;
+		}
+		B_n /= m - 1;
+		if(W == 0.0)
+			return B_n == 0.0 ? 1.0 : Double.POSITIVE_INFINITY;
+		double V = (n - 1) * W / n + B_n;
+		return Math.sqrt(V / W);
+	}
+
+	/**
+	 * computes the potential scale reduction factor of an indicator variable, i.e. for
+	 * the frequencies with which a particular event occurred in each chain
+	 * @param frequencies the relative frequency of the event in each chain
+	 * @param n the number of samples in each chain
+	 * @return the R-hat value
+	 */
+	public static double getRHat(double[] frequencies, long n) {
+		double[] variances = new double[frequencies.length];
+		for(int i = 0; i < frequencies.length; i++) {
+			double p = frequencies[i];
+			variances[i] = p * (1 - p) * n / (n - 1);
+		}
+		return getRHat(frequencies, variances, n);
+	}
+}
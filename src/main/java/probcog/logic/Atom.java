@@ -25,6 +25,7 @@ import probcog.exception.ProbCogException;
 import probcog.srl.GenericDatabase;
 import probcog.srl.RelationalModel;
 import probcog.srl.Signature;
+import probcog.srl.SymbolTable;
 import probcog.srl.taxonomy.Taxonomy;
 
 import edu.tum.cs.util.StringTool;
@@ -99,30 +100,65 @@ public class Atom extends UngroundedFormula {
 		}
 	}
 
+	@Override
+	public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) throws ProbCogException {
+		String[] args = new String[params.size()];
+		int i = 0;
+		for(String param : params) {
+			String value = binding.get(param);
+			if(value == null) {
+				if(isVariable(param)) // not yet bound
+					return null;
+				value = param;
+			}
+			args[i++] = value;
+		}
+		String value = db.getSingleVariableValue(predName, args, false);
+		if(value == null)
+			return null;
+		return value.equals("True");
+	}
+	
+	@Override
+	protected void getAtoms(Collection<Atom> ret) {
+		ret.add(this);
+	}
+	
+	@Override
+	public void getPredicateNames(Collection<String> ret) {
+		ret.add(predName);
+	}
+
 	public static boolean isVariable(String paramName) {
 		return Character.isLowerCase(paramName.charAt(0));
 	}
 
 	@Override
 	public Formula ground(Map<String, String> binding, WorldVariables vars, GenericDatabase<?, ?> db) throws ProbCogException {
-		StringBuffer sb = new StringBuffer(predName + "(");
-		int i = 0;
+		// look up the ground atom by its tuple of symbols (a symbol that is unknown cannot appear in any ground atom)
+		SymbolTable symbols = vars.getSymbolTable();
+		int[] tuple = new int[params.size()+1];
+		boolean known = (tuple[0] = symbols.getId(predName)) != -1;
+		int i = 1;
 		for(String param : params) {
-			if(i++ > 0)
-				sb.append(',');
 			String value = binding.get(param);
 			if(value == null) { // if the binding contains no value for a parameter, it must be a constant
 				if(isVariable(param))
 					throw new ProbCogException("Cannot ground " + toString() + " with binding "  + binding + " - variable " + param + " unbound.");
 				value = param;
 			}
-			sb.append(value);
+			known = known && (tuple[i++] = symbols.getId(value)) != -1;
+		}
+		GroundAtom ga = known ? vars.get(tuple) : null;
+		if(ga == null) {
+			String[] args = new String[params.size()];
+			i = 0;
+			for(String param : params) {
+				String value = binding.get(param);
+				args[i++] = value == null ? param : value;
+			}
+			throw new ProbCogException("Could not find ground atom '" + predName + "(" + StringTool.join(",", args) + ")' in set of world variables.");
 		}
-		sb.append(')');
-		String strGA = sb.toString();
-		GroundAtom ga = vars.get(strGA);
-		if(ga == null)
-			throw new ProbCogException("Could not find ground atom '" + strGA + "' in set of world variables.");
 		return ga;
 	}
 
@@ -19,7 +19,9 @@
 package probcog.logic;
 
 import java.util.Collection;
+import java.util.Map;
 
+import probcog.exception.ProbCogException;
 import probcog.srl.GenericDatabase;
 
 /**
@@ -67,4 +69,15 @@ public class Biimplication extends ComplexFormula {
         Formula c2 = new Disjunction(children[0], new Negation(children[1]));
         return (new Conjunction(c1, c2)).simplify(evidence);
     }
+
+    @Override
+    public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) throws ProbCogException {
+        Boolean a = children[0].evaluatePartially(binding, db);
+        if(a == null)
+            return null;
+        Boolean b = children[1].evaluatePartially(binding, db);
+        if(b == null)
+            return null;
+        return a.equals(b);
+    }
 }
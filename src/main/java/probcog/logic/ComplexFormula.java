@@ -59,6 +59,18 @@ public abstract class ComplexFormula extends Formula {
 			f.addConstantsToModel(m);
 	}
 	
+	@Override
+	protected void getAtoms(Collection<Atom> ret) {
+		for(Formula f : children)
+			f.getAtoms(ret);
+	}
+	
+	@Override
+	public void getPredicateNames(Collection<String> ret) {
+		for(Formula f : children)
+			f.getPredicateNames(ret);
+	}
+	
 	@Override
 	public Formula ground(Map<String, String> binding, WorldVariables vars, GenericDatabase<?, ?> db) throws ProbCogException {
 		Vector<Formula> groundChildren = new Vector<Formula>();
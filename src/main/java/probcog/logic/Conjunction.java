@@ -21,8 +21,10 @@ package probcog.logic;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Vector;
 
+import probcog.exception.ProbCogException;
 import probcog.srl.GenericDatabase;
 
 import edu.tum.cs.util.StringTool;
@@ -172,4 +174,17 @@ public class Conjunction extends ComplexFormula {
             // otherwise return true
             return TrueFalse.TRUE;
     }
+
+    @Override
+    public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) throws ProbCogException {
+        boolean allTrue = true;
+        for(Formula child : children) {
+            Boolean value = child.evaluatePartially(binding, db);
+            if(value == null)
+                allTrue = false;
+            else if(!value)
+                return false;
+        }
+        return allTrue ? true : null;
+    }
 }
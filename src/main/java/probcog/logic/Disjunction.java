@@ -22,8 +22,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Vector;
 
+import probcog.exception.ProbCogException;
 import probcog.srl.GenericDatabase;
 
 import edu.tum.cs.util.StringTool;
@@ -161,4 +163,17 @@ public class Disjunction extends ComplexFormula {
             // otherwise return false
             return TrueFalse.FALSE;
     }
+
+    @Override
+    public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) throws ProbCogException {
+        boolean allFalse = true;
+        for(Formula child : children) {
+            Boolean value = child.evaluatePartially(binding, db);
+            if(value == null)
+                allFalse = false;
+            else if(value)
+                return true;
+        }
+        return allFalse ? false : null;
+    }
 }
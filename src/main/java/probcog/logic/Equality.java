@@ -64,4 +64,21 @@ public class Equality extends UngroundedFormula {
 	public Formula toNNF() {
 		throw new RuntimeException("Cannot convert ungrounded formula to NNF.");
 	}
+
+	@Override
+	public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) {
+		String a = binding.get(left);
+		if(a == null) {
+			if(Atom.isVariable(left))
+				return null;
+			a = left;
+		}
+		String b = binding.get(right);
+		if(b == null) {
+			if(Atom.isVariable(right))
+				return null;
+			b = right;
+		}
+		return a.equals(b);
+	}
 }
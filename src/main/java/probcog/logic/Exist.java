@@ -90,4 +90,9 @@ public class Exist extends UngroundedFormula {
 	public Formula toNNF() {
 		throw new RuntimeException("Cannot convert ungrounded formula to NNF.");
 	}
+	
+	@Override
+	public void getPredicateNames(Collection<String> ret) {
+		f.getPredicateNames(ret);
+	}
 }
@@ -85,4 +85,9 @@ public class ForAll extends UngroundedFormula {
 	public Formula toNNF() {
 		throw new RuntimeException("Cannot convert ungrounded formula to NNF.");
 	}
+	
+	@Override
+	public void getPredicateNames(Collection<String> ret) {
+		f.getPredicateNames(ret);
+	}
 }
@@ -18,8 +18,10 @@
  ******************************************************************************/
 package probcog.logic;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
@@ -63,6 +65,31 @@ public abstract class Formula {
 	 */
 	public abstract void getGroundAtoms(Set<GroundAtom> ret);
 	public abstract boolean isTrue(IPossibleWorld w);
+	/**
+	 * evaluates the formula for a partial binding of its (free) variables using the evidence in the given database,
+	 * i.e. determines whether the formula is simplified to the same truth value for all possible extensions of the binding 
+	 * (cf. {@link #simplify(GenericDatabase)})
+	 * @param binding a mapping of variable names to constant names, which need not contain all variables of the formula
+	 * @param db the evidence database
+	 * @return true or false if the truth value is determined by the evidence, null otherwise (which is the default
+	 *         for formulas that do not support partial evaluation)
+	 * @throws ProbCogException
+	 */
+	public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) throws ProbCogException {
+		return null;
+	}
+	/**
+	 * gets the (non-quantified) atoms that appear in this (ungrounded) formula
+	 * @param ret the collection to write to
+	 */
+	protected void getAtoms(Collection<Atom> ret) {
+	}
+	/**
+	 * gets the names of the predicates that appear in this (ungrounded) formula, including quantified atoms
+	 * @param ret the collection to write to
+	 */
+	public void getPredicateNames(Collection<String> ret) {
+	}
 	
 	public enum FormulaSimplification {
 		/**
@@ -105,11 +132,63 @@ public abstract class Formula {
 		HashMap<String, String> vars = new HashMap<String, String>();
 		getVariables(db, vars);
 		String[] varNames = vars.keySet().toArray(new String[vars.size()]);
+		if(simplify != FormulaSimplification.None)
+			varNames = getGroundingOrder(varNames);
 		generateGroundings(collection, db, new HashMap<String, String>(), varNames, 0, vars, worldVars, simplify);
 	}
 
 	/**
-	 * recursively generates groundings of the formula
+	 * determines an order in which to bind the given variables during grounding, such that groundings whose 
+	 * truth values are determined by the evidence can be pruned as early as possible: variables are 
+	 * greedily selected such that as many atoms as possible are fully bound 
+	 * (ties being broken by the number of atoms the variable appears in, and finally by the given order)
+	 * @param varNames the variables to order
+	 * @return the ordered variables
+	 */
+	public String[] getGroundingOrder(String[] varNames) {
+		ArrayList<Atom> atoms = new ArrayList<Atom>();
+		getAtoms(atoms);
+		// the set of variables of each atom that are yet to be bound
+		ArrayList<HashSet<String>> unbound = new ArrayList<HashSet<String>>();
+		for(Atom a : atoms) {
+			HashSet<String> s = new HashSet<String>();
+			for(String param : a.params)
+				if(Atom.isVariable(param))
+					s.add(param);
+			unbound.add(s);
+		}
+		String[] ret = new String[varNames.length];
+		boolean[] used = new boolean[varNames.length];
+		for(int i = 0; i < ret.length; i++) {
+			int best = -1, bestCompleted = -1, bestOccurrences = -1;
+			for(int j = 0; j < varNames.length; j++) {
+				if(used[j])
+					continue;
+				int completed = 0, occurrences = 0;
+				for(HashSet<String> s : unbound) {
+					if(s.contains(varNames[j])) {
+						occurrences++;
+						if(s.size() == 1)
+							completed++;
+					}
+				}
+				if(completed > bestCompleted || (completed == bestCompleted && occurrences > bestOccurrences)) {
+					best = j;
+					bestCompleted = completed;
+					bestOccurrences = occurrences;
+				}
+			}
+			used[best] = true;
+			ret[i] = varNames[best];
+			for(HashSet<String> s : unbound)
+				s.remove(varNames[best]);
+		}
+		return ret;
+	}
+
+	/**
+	 * recursively generates groundings of the formula; if groundings are simplified, partial bindings for which the
+	 * formula is already determined by the evidence are not extended any further (as all their groundings would be discarded)
 	 * @param ret  the collection in which to store the generated groundings
 	 * @param db  the database in which all usable constant symbols are found
 	 * @param binding  a mapping of variable names to constant names
@@ -123,16 +202,7 @@ public abstract class Formula {
 	protected void generateGroundings(Collection<Formula> ret, GenericDatabase<?,?> db, Map<String, String> binding, String[] varNames, int i, Map<String, String> var2domName, WorldVariables worldVars, FormulaSimplification simplify) throws ProbCogException {
 		// if we have the full set of parameters, add it to the collection
 		if(i == varNames.length) {
-            Formula f = (this.ground(binding, worldVars, db));
-            if(simplify != FormulaSimplification.None)
-            	f = f.simplify(db);
-            if(f instanceof TrueFalse) {
-            	if(!((TrueFalse)f).isTrue() && simplify == FormulaSimplification.OnDisallowFalse)
-            		throw new ProbCogException("Unsatisfiable hard formula encountered: " + this.toString() + " with binding " + binding.toString() + " cannot be satisfied (given the evidence).");            		
-            	return;
-            }
-            else
-                ret.add(f);
+			addGrounding(ret, db, binding, worldVars, simplify);
 			return;
 		}
 		// otherwise consider all ways of extending the current list of parameters using the domain elements that are applicable
@@ -141,10 +211,53 @@ public abstract class Formula {
 		Iterable<String> domain = db.getDomain(domName);
 		if(domain == null)
 			throw new ProbCogException("Domain named '" + domName + "' (of variable " + varName + " in formula " + this.toString() + ") not found in the database!");
+		boolean prune = simplify != FormulaSimplification.None && i+1 < varNames.length;
 		for(String element : domain) {
 			binding.put(varName, element);
+			if(prune && isPrunable(binding, db, simplify))
+				continue;
 			generateGroundings(ret, db, binding, varNames, i+1, var2domName, worldVars, simplify);
 		}
+		binding.remove(varName);
+	}
+	
+	/**
+	 * determines whether all groundings that extend the given partial binding would be discarded by simplification, 
+	 * i.e. whether the formula is already determined by the evidence (a hard formula that is determined to be false is
+	 * never pruned, such that the corresponding error is raised upon grounding)
+	 * @param binding the partial binding
+	 * @param db the evidence database
+	 * @param simplify the type of simplification that is applied (not None)
+	 * @return true if the binding need not be extended
+	 * @throws ProbCogException
+	 */
+	protected boolean isPrunable(Map<String, String> binding, GenericDatabase<?,?> db, FormulaSimplification simplify) throws ProbCogException {
+		Boolean value = evaluatePartially(binding, db);
+		if(value == null)
+			return false;
+		return value || simplify != FormulaSimplification.OnDisallowFalse;
+	}
+	
+	/**
+	 * grounds the formula for a full binding of its variables and adds the grounding to the given collection
+	 * (unless it is simplified to True or False)
+	 * @param ret  the collection in which to store the grounding
+	 * @param db  the database in which all usable constant symbols are found
+	 * @param binding  a mapping of (all) variable names to constant names
+	 * @param worldVars  the collection of variables (ground atoms) that defines the set of possible worlds
+	 * @param simplify whether to use the evidence in the database to simplify the ground formula
+	 * @throws ProbCogException
+	 */
+	protected void addGrounding(Collection<Formula> ret, GenericDatabase<?,?> db, Map<String, String> binding, WorldVariables worldVars, FormulaSimplification simplify) throws ProbCogException {
+		Formula f = (this.ground(binding, worldVars, db));
+		if(simplify != FormulaSimplification.None)
+			f = f.simplify(db);
+		if(f instanceof TrueFalse) {
+			if(!((TrueFalse)f).isTrue() && simplify == FormulaSimplification.OnDisallowFalse)
+				throw new ProbCogException("Unsatisfiable hard formula encountered: " + this.toString() + " with binding " + binding.toString() + " cannot be satisfied (given the evidence).");            		
+		}
+		else
+			ret.add(f);
 	}
 	
 	/**
@@ -105,7 +105,7 @@ public class GroundAtom extends GroundedFormula {
         try {
             // check whether evidence contains this ground atom and return instance of TrueFalse
         	if(evidence != null) {
-	        	String value = evidence.getSingleVariableValue(this.toString(), false);
+	        	String value = evidence.getSingleVariableValue(predicate, args, false);
 	            if(value != null) {            	 
 	                if(value.equals("True"))
 	                    return TrueFalse.TRUE;
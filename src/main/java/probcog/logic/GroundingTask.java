@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.logic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.RecursiveTask;
+
+import probcog.exception.ProbCogException;
+import probcog.logic.Formula.FormulaSimplification;
+import probcog.srl.GenericDatabase;
+
+/**
+ * A fork-join task that generates the groundings of a formula (in the same order as
+ * {@link Formula#getAllGroundings(probcog.srl.Database, WorldVariables, FormulaSimplification)}).
+ * Partial bindings for which the formula is already determined by the evidence are pruned 
+ * (see {@link Formula#isPrunable(java.util.Map, GenericDatabase, FormulaSimplification)}).
+ * The task is split into subtasks for ranges of values of the formula's first variable as long
+ * as a range covers sufficiently many groundings; each task collects its groundings in its own list.
+ * The set of world variables and the database must not be modified while the task is running;
+ * since the database may be queried concurrently, it must be finalized if its model contains
+ * logically determined (Prolog) predicates.
+ * Errors are reported as RuntimeExceptions whose cause is the original exception.
+ */
+public class GroundingTask extends RecursiveTask<ArrayList<Formula>> {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * the number of groundings below which a task is not split any further
+	 */
+	public static final int MIN_GROUNDINGS_PER_TASK = 4096;
+
+	protected Formula formula;
+	protected GenericDatabase<?, ?> db;
+	protected WorldVariables worldVars;
+	protected FormulaSimplification simplify;
+	protected String[] varNames;
+	/**
+	 * the domain of each variable in varNames
+	 */
+	protected String[][] domains;
+	/**
+	 * the range of indices into the domain of the first variable that this task is responsible for
+	 */
+	protected int from, to;
+	/**
+	 * the number of groundings for each value of the first variable
+	 */
+	protected long groundingsPerValue;
+
+	/**
+	 * @param formula the formula to ground
+	 * @param db the database containing the constant symbols to use for grounding
+	 * @param worldVars the collection of variables (ground atoms) that defines the set of possible worlds
+	 * @param simplify whether to use the evidence in the database to simplify ground formulas
+	 * @throws ProbCogException
+	 */
+	public GroundingTask(Formula formula, GenericDatabase<?, ?> db, WorldVariables worldVars, FormulaSimplification simplify) throws ProbCogException {
+		this.formula = formula;
+		this.db = db;
+		this.worldVars = worldVars;
+		this.simplify = simplify;
+		// determine the variables and their domains (on the calling thread, as both the formula and the database
+		// may initialize data lazily)
+		HashMap<String, String> var2domName = new HashMap<String, String>();
+		formula.getVariables(db, var2domName);
+		varNames = var2domName.keySet().toArray(new String[var2domName.size()]);
+		if(simplify != FormulaSimplification.None)
+			varNames = formula.getGroundingOrder(varNames);
+		domains = new String[varNames.length][];
+		groundingsPerValue = 1;
+		for(int i = 0; i < varNames.length; i++) {
+			String domName = var2domName.get(varNames[i]);
+			Iterable<String> domain = db.getDomain(domName);
+			if(domain == null)
+				throw new ProbCogException("Domain named '" + domName + "' (of variable " + varNames[i] + " in formula " + formula.toString() + ") not found in the database!");
+			ArrayList<String> elements = new ArrayList<String>();
+			for(String element : domain)
+				elements.add(element);
+			domains[i] = elements.toArray(new String[elements.size()]);
+			if(i > 0)
+				groundingsPerValue *= domains[i].length;
+		}
+		from = 0;
+		to = varNames.length == 0 ? 1 : domains[0].length;
+	}
+
+	protected GroundingTask(GroundingTask parent, int from, int to) {
+		this.formula = parent.formula;
+		this.db = parent.db;
+		this.worldVars = parent.worldVars;
+		this.simplify = parent.simplify;
+		this.varNames = parent.varNames;
+		this.domains = parent.domains;
+		this.groundingsPerValue = parent.groundingsPerValue;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected ArrayList<Formula> compute() {
+		if(to - from > 1 && (to - from) * groundingsPerValue > MIN_GROUNDINGS_PER_TASK) {
+			int mid = (from + to) >>> 1;
+			GroundingTask right = new GroundingTask(this, mid, to);
+			right.fork();
+			ArrayList<Formula> ret = new GroundingTask(this, from, mid).compute();
+			ret.addAll(right.join());
+			return ret;
+		}
+		ArrayList<Formula> ret = new ArrayList<Formula>();
+		HashMap<String, String> binding = new HashMap<String, String>();
+		try {
+			if(varNames.length == 0)
+				formula.addGrounding(ret, db, binding, worldVars, simplify);
+			else {
+				boolean prune = simplify != FormulaSimplification.None && varNames.length > 1;
+				for(int k = from; k < to; k++) {
+					binding.put(varNames[0], domains[0][k]);
+					if(prune && formula.isPrunable(binding, db, simplify))
+						continue;
+					generateGroundings(ret, binding, 1);
+				}
+			}
+		}
+		catch(ProbCogException e) {
+			throw new RuntimeException(e);
+		}
+		return ret;
+	}
+
+	protected void generateGroundings(ArrayList<Formula> ret, HashMap<String, String> binding, int i) throws ProbCogException {
+		if(i == varNames.length) {
+			formula.addGrounding(ret, db, binding, worldVars, simplify);
+			return;
+		}
+		boolean prune = simplify != FormulaSimplification.None && i+1 < varNames.length;
+		for(String element : domains[i]) {
+			binding.put(varNames[i], element);
+			if(prune && formula.isPrunable(binding, db, simplify))
+				continue;
+			generateGroundings(ret, binding, i+1);
+		}
+		binding.remove(varNames[i]);
+	}
+}
@@ -19,7 +19,9 @@
 package probcog.logic;
 
 import java.util.Collection;
+import java.util.Map;
 
+import probcog.exception.ProbCogException;
 import probcog.srl.GenericDatabase;
 
 /**
@@ -60,4 +62,17 @@ public class Implication extends ComplexFormula {
     public Formula simplify(GenericDatabase<?, ?> evidence) {
         return (new Disjunction(new Negation(children[0]), children[1])).simplify(evidence);
     }
+
+    @Override
+    public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) throws ProbCogException {
+        Boolean antecedent = children[0].evaluatePartially(binding, db);
+        if(antecedent != null && !antecedent)
+            return true;
+        Boolean consequent = children[1].evaluatePartially(binding, db);
+        if(consequent != null && consequent)
+            return true;
+        if(antecedent != null && consequent != null)
+            return false;
+        return null;
+    }
 }
@@ -18,6 +18,7 @@
  ******************************************************************************/
 package probcog.logic;
 
+import java.util.Collection;
 import java.util.Map;
 
 import probcog.exception.ProbCogException;
@@ -65,4 +66,20 @@ public class Literal extends UngroundedFormula {
 	public Formula toNNF() {
 		return this;
 	}
+
+	@Override
+	public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) throws ProbCogException {
+		Boolean value = atom.evaluatePartially(binding, db);
+		return value == null ? null : value == isPositive;
+	}
+	
+	@Override
+	protected void getAtoms(Collection<Atom> ret) {
+		ret.add(atom);
+	}
+	
+	@Override
+	public void getPredicateNames(Collection<String> ret) {
+		ret.add(atom.predName);
+	}
 }
@@ -20,8 +20,10 @@ package probcog.logic;
 
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Vector;
 
+import probcog.exception.ProbCogException;
 import probcog.srl.GenericDatabase;
 
 /**
@@ -136,4 +138,10 @@ public class Negation extends ComplexFormula {
         // otherwise, return the negation of the simplified formula
         return new Negation(f);
     }
+
+    @Override
+    public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) throws ProbCogException {
+        Boolean value = children[0].evaluatePartially(binding, db);
+        return value == null ? null : !value;
+    }
 }
@@ -19,6 +19,7 @@
 package probcog.logic;
 
 import java.io.PrintStream;
+import java.util.Arrays;
 
 import probcog.exception.ProbCogException;
 import probcog.srl.AbstractVariable;
@@ -26,53 +27,108 @@ import probcog.srl.Database;
 
 /**
  * Represents a possible world for a given set of world variables (ground atoms).
+ * The truth values are stored in a bit set, i.e. the truth value of the ground atom
+ * with index i is bit i%64 of word i/64.
  * @author Dominik Jain
  */
 public class PossibleWorld implements IPossibleWorld {
 	
 	protected WorldVariables worldVars;
-	protected boolean[] state;
+	protected long[] bits;
+	/**
+	 * the number of variables
+	 */
+	protected int size;
 
 	public PossibleWorld(WorldVariables worldVars) {
 		this.worldVars = worldVars;
-		this.state = new boolean[worldVars.size()];
+		this.size = worldVars.size();
+		this.bits = new long[(size + 63) >>> 6];
 	}
 	
 	public PossibleWorld(WorldVariables worldVars, boolean[] state) {
-		if(state.length != worldVars.size())
-			throw new IllegalArgumentException("Size of state array does not much number of variables");
+		this(worldVars);
+		setState(state);
+	}
+	
+	protected PossibleWorld(WorldVariables worldVars, long[] bits) {
 		this.worldVars = worldVars;
-		this.state = state;
+		this.size = worldVars.size();
+		this.bits = bits;
 	}
 
 	public boolean isTrue(GroundAtom ga) {
-		return state[ga.index];
+		return get(ga.index);
 	}
 
 	public void set(String gndAtom, boolean value) {
-		state[worldVars.get(gndAtom).index] = value;
+		set(worldVars.get(gndAtom).index, value);
 	}
 	
 	public void set(GroundAtom gndAtom, boolean value) {
-		state[gndAtom.index] = value;
+		set(gndAtom.index, value);
 	}
 
 	public void set(int idxGndAtom, boolean value) {
-		state[idxGndAtom] = value;
+		if(value)
+			bits[idxGndAtom >>> 6] |= 1L << idxGndAtom;
+		else
+			bits[idxGndAtom >>> 6] &= ~(1L << idxGndAtom);
 	}
 
 	public boolean get(int idxGndAtom) {
-		return state[idxGndAtom];
+		return (bits[idxGndAtom >>> 6] & (1L << idxGndAtom)) != 0;
+	}
+	
+	/**
+	 * inverts the truth value of the given variable
+	 * @param idxGndAtom the index of the ground atom
+	 * @return the new truth value
+	 */
+	public boolean flip(int idxGndAtom) {
+		long mask = 1L << idxGndAtom;
+		return ((bits[idxGndAtom >>> 6] ^= mask) & mask) != 0;
 	}
 
 	public PossibleWorld clone() {
-		return new PossibleWorld(worldVars, state.clone());
+		return new PossibleWorld(worldVars, bits.clone());
 	}
 	
+	/**
+	 * @return a copy of the state as an array of truth values (changes to the array are not reflected in this world)
+	 */
 	public boolean[] getState() {
+		boolean[] state = new boolean[size];
+		for(int i = 0; i < size; i++)
+			state[i] = get(i);
 		return state;
 	}
 	
+	/**
+	 * @return the bit set that represents the state (which is backed by this world)
+	 */
+	public long[] getBits() {
+		return bits;
+	}
+	
+	/**
+	 * sets the state to the one of the given world, which must be defined over the same set of variables
+	 * @param other
+	 */
+	public void setState(PossibleWorld other) {
+		System.arraycopy(other.bits, 0, bits, 0, bits.length);
+	}
+	
+	/**
+	 * @return the number of variables that are true
+	 */
+	public int getNumTrue() {
+		int n = 0;
+		for(long word : bits)
+			n += Long.bitCount(word);
+		return n;
+	}
+	
 	public WorldVariables getVariables() {
 		return worldVars;
 	}
@@ -90,10 +146,12 @@ public class PossibleWorld implements IPossibleWorld {
 	}
 
     public void setState(boolean[] state){
-        if (state.length == this.state.length)
-            this.state = state;
-        else 
+        if (state.length != size)
             throw new IllegalArgumentException("Size of state array does not match number of variables!");        
+        Arrays.fill(bits, 0L);
+        for(int i = 0; i < size; i++)
+        	if(state[i])
+        		bits[i >>> 6] |= 1L << i;
     }
     
     public void setEvidence(Database db) throws ProbCogException {
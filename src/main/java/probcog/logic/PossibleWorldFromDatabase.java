@@ -42,7 +42,7 @@ public class PossibleWorldFromDatabase implements IPossibleWorld {
 		try {
 			Signature sig = rbn.getSignature(ga.predicate);			
 			if(sig.isBoolean()) {
-				String value = db.getSingleVariableValue(ga.toString(), closedWorld);
+				String value = db.getSingleVariableValue(ga.predicate, ga.args, closedWorld);
 				if(value == null)
 					throw new RuntimeException("Value of " + ga + " not in the database that is used as a possible world; perhaps it must always be given because it is used in a precondition/decision node.");
 				boolean tv = value.equalsIgnoreCase("True");
@@ -95,4 +95,9 @@ public class TrueFalse extends Formula {
     		return FALSE;
     	return TRUE;
     }
+
+    @Override
+    public Boolean evaluatePartially(Map<String, String> binding, GenericDatabase<?, ?> db) {
+        return isTrue;
+    }
 }
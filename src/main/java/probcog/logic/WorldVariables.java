@@ -18,11 +18,16 @@
  ******************************************************************************/
 package probcog.logic;
 
-import java.util.HashMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Vector;
 
+import probcog.srl.SymbolTable;
+import probcog.srl.SymbolTuple;
 import edu.tum.cs.util.StringTool;
 
 /**
@@ -30,23 +35,63 @@ import edu.tum.cs.util.StringTool;
  * i.e. a set of ground atoms, where each is assigned a unique index 
  * (which can be used to represent a possible world as an array of booleans) 
  * 
+ * The ground atoms are stored in arrays that are indexed by the ground atoms' indices;
+ * the lookup by string representation uses an open-addressing hash table of indices,
+ * and so does the lookup by tuple of symbol identifiers (see {@link #getSymbolTable()}), which 
+ * does not require any strings to be built.
+ * Iteration is in the order of the indices.
+ * 
  * @author Dominik Jain
  */
 public class WorldVariables implements Iterable<GroundAtom> {
-	protected HashMap<String, GroundAtom> vars;
+	protected static final int INITIAL_CAPACITY = 16;
+	
+	/**
+	 * the ground atoms, indexed by their indices
+	 */
+	protected GroundAtom[] vars;
+	/**
+	 * the string representations of the ground atoms, indexed by the ground atoms' indices
+	 */
+	protected String[] names;
+	/**
+	 * maps indices of ground atoms to indices in {@link #blocks} (or -1 if var not in block)
+	 */
+	protected int[] var2block;
+	protected ArrayList<Block> blocks;
 	/**
-	 * maps indices of ground atoms to Blocks (or null if var not in block)
+	 * hash table (with linear probing) that maps string representations to ground atoms;
+	 * each slot contains a ground atom's index plus one (or 0 if the slot is empty)
 	 */
-	protected HashMap<Integer, Block> var2block;
-	protected HashMap<Integer, GroundAtom> varsByIndex;
+	protected int[] table;
+	/**
+	 * the symbol tuples of the ground atoms (predicate followed by arguments), indexed by the ground atoms' indices
+	 */
+	protected int[][] tuples;
+	/**
+	 * hash table (with linear probing) that maps symbol tuples to ground atoms (analogous to {@link #table})
+	 */
+	protected int[] tupleTable;
+	/**
+	 * the table that assigns the identifiers in {@link #tuples}, which contains only the symbols of this set of variables
+	 */
+	protected SymbolTable symbols;
+	protected int size;
 
 	/**
 	 * constructs an empty set of variables
 	 */
 	public WorldVariables() {
-		vars = new HashMap<String, GroundAtom>();
-		var2block = new HashMap<Integer, Block>();
-		varsByIndex = new HashMap<Integer, GroundAtom>();
+		vars = new GroundAtom[INITIAL_CAPACITY];
+		names = new String[INITIAL_CAPACITY];
+		var2block = new int[INITIAL_CAPACITY];
+		Arrays.fill(var2block, -1);
+		blocks = new ArrayList<Block>();
+		table = new int[2*INITIAL_CAPACITY];
+		tuples = new int[INITIAL_CAPACITY][];
+		tupleTable = new int[2*INITIAL_CAPACITY];
+		symbols = new SymbolTable();
+		size = 0;
 	}
 
 	/**
@@ -54,9 +99,76 @@ public class WorldVariables implements Iterable<GroundAtom> {
 	 * @param gndAtom
 	 */
 	public void add(GroundAtom gndAtom) {
-		gndAtom.setIndex(vars.size());
-		vars.put(gndAtom.toString(), gndAtom);
-		varsByIndex.put(gndAtom.index, gndAtom);
+		String name = gndAtom.toString();
+		int slot = findSlot(name);
+		if(table[slot] != 0) { // an atom with the same name is replaced
+			int idx = table[slot]-1;
+			gndAtom.setIndex(idx);
+			vars[idx] = gndAtom;
+			return;
+		}
+		if(size == vars.length) {
+			int capacity = 2 * size;
+			vars = Arrays.copyOf(vars, capacity);
+			names = Arrays.copyOf(names, capacity);
+			tuples = Arrays.copyOf(tuples, capacity);
+			var2block = Arrays.copyOf(var2block, capacity);
+			Arrays.fill(var2block, size, capacity, -1);
+		}
+		int idx = size++;
+		gndAtom.setIndex(idx);
+		vars[idx] = gndAtom;
+		names[idx] = name;
+		table[slot] = idx+1;
+		int[] tuple = new int[gndAtom.args.length+1];
+		tuple[0] = symbols.intern(gndAtom.predicate);
+		for(int i = 0; i < gndAtom.args.length; i++)
+			tuple[i+1] = symbols.intern(gndAtom.args[i]);
+		tuples[idx] = tuple;
+		tupleTable[findTupleSlot(tuple)] = idx+1;
+		// keep the load factor of the hash tables at most 1/2
+		if(2 * size > table.length)
+			rehash(2 * table.length);
+	}
+	
+	/**
+	 * @param name the string representation of a ground atom
+	 * @return the slot of the hash table that contains the ground atom with the given name or, if there is no such atom, the empty slot where it would be placed
+	 */
+	protected int findSlot(String name) {
+		int mask = table.length-1;
+		int h = name.hashCode();
+		int slot = (h ^ (h >>> 16)) & mask;
+		while(true) {
+			int entry = table[slot];
+			if(entry == 0 || names[entry-1].equals(name))
+				return slot;
+			slot = (slot+1) & mask;
+		}
+	}
+	
+	/**
+	 * @param tuple a symbol tuple
+	 * @return the slot of the tuple hash table that contains the ground atom with the given tuple or, if there is no such atom, the empty slot where it would be placed
+	 */
+	protected int findTupleSlot(int[] tuple) {
+		int mask = tupleTable.length-1;
+		int slot = SymbolTuple.hashCode(tuple) & mask;
+		while(true) {
+			int entry = tupleTable[slot];
+			if(entry == 0 || Arrays.equals(tuples[entry-1], tuple))
+				return slot;
+			slot = (slot+1) & mask;
+		}
+	}
+	
+	protected void rehash(int tableSize) {
+		table = new int[tableSize];
+		tupleTable = new int[tableSize];
+		for(int i = 0; i < size; i++) {
+			table[findSlot(names[i])] = i+1;
+			tupleTable[findTupleSlot(tuples[i])] = i+1;
+		}
 	}
 
 	/**
@@ -66,10 +178,12 @@ public class WorldVariables implements Iterable<GroundAtom> {
 	 */
 	public Block addBlock(Vector<GroundAtom> block) {
 		Block b = new Block(block);
+		int blockIdx = blocks.size();
+		blocks.add(b);
 		for(GroundAtom ga : block) {
-            if(!vars.containsKey(ga.toString()))
+            if(get(ga.toString()) == null)
             	add(ga);
-            var2block.put(ga.index, b);
+            var2block[ga.index] = blockIdx;
 		}
 		return b;
 	}
@@ -80,27 +194,110 @@ public class WorldVariables implements Iterable<GroundAtom> {
 	 * @return
 	 */
 	public GroundAtom get(String gndAtom) {
-		return vars.get(gndAtom);
+		int entry = table[findSlot(gndAtom)];
+		return entry == 0 ? null : vars[entry-1];
+	}
+
+	/**
+	 * retrieves the variable (ground atom) with the given symbol tuple
+	 * @param tuple the identifier of the predicate followed by the identifiers of the arguments (see {@link #getSymbolTable()})
+	 * @return the ground atom or null if there is no such atom
+	 */
+	public GroundAtom get(int[] tuple) {
+		int entry = tupleTable[findTupleSlot(tuple)];
+		return entry == 0 ? null : vars[entry-1];
+	}
+	
+	/**
+	 * retrieves the variable (ground atom) with the given predicate and arguments
+	 * @param predicate
+	 * @param args
+	 * @return the ground atom or null if there is no such atom
+	 */
+	public GroundAtom get(String predicate, String[] args) {
+		int[] tuple = new int[args.length+1];
+		if((tuple[0] = symbols.getId(predicate)) == -1)
+			return null;
+		for(int i = 0; i < args.length; i++)
+			if((tuple[i+1] = symbols.getId(args[i])) == -1)
+				return null;
+		return get(tuple);
+	}
+
+	/**
+	 * @return the table that assigns the symbol identifiers of the ground atoms' tuples
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbols;
 	}
 
 	public GroundAtom get(Integer index) {
-		return varsByIndex.get(index);
+		if(index < 0 || index >= size)
+			return null;
+		return vars[index];
 	}
 
 	public Block getBlock(Integer idxGA) {
-		return var2block.get(idxGA);
+		if(idxGA < 0 || idxGA >= size)
+			return null;
+		int blockIdx = var2block[idxGA];
+		return blockIdx == -1 ? null : blocks.get(blockIdx);
 	}
 
 	public int size() {
-		return vars.size();
+		return size;
 	}
 	
+	/**
+	 * @return a (read-only) view of the string representations of all ground atoms (in the order of the indices)
+	 */
 	public Set<String> getVariableStrings() {
-		return vars.keySet();
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new ArrayIterator<String>(names);
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String && get((String)o) != null;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}			
+		};
 	}
 
 	public String toString() {
-		return "<" + StringTool.join(" \n", vars.keySet()) + ">";
+		return "<" + StringTool.join(" \n", getVariableStrings()) + ">";
+	}
+	
+	/**
+	 * iterates over the first {@link WorldVariables#size} elements of an array
+	 */
+	protected class ArrayIterator<T> implements Iterator<T> {
+		protected T[] elements;
+		protected int i = 0;
+		
+		public ArrayIterator(T[] elements) {
+			this.elements = elements;
+		}
+		
+		public boolean hasNext() {
+			return i < size;
+		}
+
+		public T next() {
+			if(i >= size)
+				throw new NoSuchElementException();
+			return elements[i++];
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
 
 	public static class Block implements Iterable<GroundAtom> {
@@ -150,6 +347,6 @@ public class WorldVariables implements Iterable<GroundAtom> {
 	}
 
 	public Iterator<GroundAtom> iterator() {		
-		return this.vars.values().iterator();
+		return new ArrayIterator<GroundAtom>(vars);
 	}
 }
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.logic.sat;
+
+import java.util.ArrayList;
+
+import probcog.exception.ProbCogException;
+import probcog.logic.GroundAtom;
+import probcog.logic.PossibleWorld;
+import probcog.logic.WorldVariables;
+import probcog.srl.AbstractVariable;
+
+/**
+ * A variant of SampleSAT whose constraints are the active clauses of a {@link ClauseArena}.
+ * Unlike {@link SampleSAT#initConstraints(Iterable)}, changing the set of constraints does not
+ * require any objects to be created; the active flags of the arena are simply changed prior
+ * to a call to {@link #run()}.
+ * If clauses are to be activated lazily or unit propagation is enabled, the sampler falls back to the implementation 
+ * of {@link SampleSAT}, using the active clauses of the arena as the (initial) set of constraints.
+ */
+public class ArenaSampleSAT extends SampleSAT {
+	protected ClauseArena arena;
+	/**
+	 * the ground atoms of the clause currently being satisfied greedily
+	 */
+	protected ArrayList<GroundAtom> candidates = new ArrayList<GroundAtom>();
+	/**
+	 * the positions (in the arena's literal array) of the literals of the clause currently being satisfied randomly that have yet to be tried
+	 */
+	protected int[] untried = new int[0];
+
+	/**
+	 * @param state a possible world to write to (can be arbitrarily initialized, as it is completely reinitialized)
+	 * @param vars the set of variables the SAT problem is defined on
+	 * @param db an evidence database indicating truth values of evidence atoms (which are to be respected by the algorithm)
+	 * @throws ProbCogException
+	 */
+	public ArenaSampleSAT(PossibleWorld state, WorldVariables vars, Iterable<? extends AbstractVariable<?>> db) throws ProbCogException {
+		super(state, vars, db);
+		evidenceHandler.setEvidenceInState(state);
+	}
+
+	/**
+	 * sets the arena whose active clauses are the constraints to satisfy
+	 * @param arena an arena of clauses over this sampler's set of variables
+	 */
+	public void setArena(ClauseArena arena) {
+		this.arena = arena;
+	}
+
+	public ClauseArena getArena() {
+		return arena;
+	}
+
+	@Override
+	public void initConstraints(Iterable<? extends probcog.logic.sat.Clause> kb) throws ProbCogException {
+		throw new ProbCogException("The constraints of " + getClass().getSimpleName() + " are the active clauses of its arena");
+	}
+
+	/**
+	 * @return whether the search operates on the arena directly (rather than falling back to the constraints of {@link SampleSAT})
+	 */
+	protected boolean usesArena() {
+		return lazyClauses == null && !useUnitPropagation;
+	}
+
+	@Override
+	protected void initialize() throws ProbCogException {
+		if(arena == null)
+			throw new ProbCogException("No clause arena was set");
+		if(!usesArena()) {
+			ArrayList<probcog.logic.sat.Clause> activeClauses = new ArrayList<probcog.logic.sat.Clause>();
+			for(int c = 0; c < arena.size(); c++)
+				if(arena.isActive(c))
+					activeClauses.add(arena.getClause(c));
+			super.initConstraints(activeClauses);
+			super.initialize();
+			return;
+		}
+		setRandomState();
+		if(log.isDebugPrinted()) state.print();
+		arena.initState(state);
+	}
+
+	@Override
+	public void run() throws ProbCogException {
+		if(!usesArena()) {
+			super.run();
+			return;
+		}
+		initialize();
+		int step = 1;
+		while(arena.getNumUnsatisfied() > 0) {
+			if(cancellationToken != null && cancellationToken.isCancelled())
+				return;
+			if(log.isDebugEnabled()) {
+				log.debug("SAT step " + step + ", " + arena.getNumUnsatisfied() + " constraints unsatisfied");
+				checkIntegrity();
+			}
+			makeMove();
+			step++;
+		}
+	}
+
+	@Override
+	protected void checkIntegrity() throws ProbCogException {
+		if(!usesArena()) {
+			super.checkIntegrity();
+			return;
+		}
+		arena.checkIntegrity(state);
+	}
+
+	@Override
+	protected void walkSATMove() {
+		if(!usesArena()) {
+			super.walkSATMove();
+			return;
+		}
+		// pick an unsatisfied constraint
+		int c = arena.getUnsatisfied(rand.nextInt(arena.getNumUnsatisfied()));
+		int[] lits = arena.getLiterals();
+		int start = arena.getLiteralStart(c), end = arena.getLiteralEnd(c);
+		// with probability p, satisfy the constraint randomly
+		// (trying each ground atom at most once, such that nothing is flipped if none of them can be flipped, e.g. because they all have evidence)
+		if(rand.nextDouble() < this.pWalkSAT) {
+			int numUntried = end - start;
+			if(untried.length < numUntried)
+				untried = new int[numUntried];
+			for(int k = 0; k < numUntried; k++)
+				untried[k] = start + k;
+			boolean done = false;
+			while(!done && numUntried > 0) {
+				// randomly pick a ground atom from the clause that has not been tried yet
+				int j = rand.nextInt(numUntried);
+				int idxGA = lits[untried[j]] >> 1;
+				untried[j] = untried[--numUntried];
+				// if it has evidence, skip it
+				if(evidence.containsKey(idxGA))
+					continue;
+				// try to flip it (along with a second one, where appropriate)
+				done = pickSecondAtRandomAndFlip(vars.get(idxGA));
+			}
+		}
+		// with probability 1-p, satisfy it greedily
+		else {
+			candidates.clear();
+			for(int k = start; k < end; k++)
+				candidates.add(vars.get(lits[k] >> 1));
+			pickAndFlipVar(candidates);
+		}
+	}
+
+	@Override
+	protected void flipGndAtom(GroundAtom gndAtom) {
+		if(!usesArena()) {
+			super.flipGndAtom(gndAtom);
+			return;
+		}
+		if(log.isDebugEnabled()) // (avoids building the message otherwise)
+			log.trace("    flipping " + gndAtom);
+		arena.flip(gndAtom.index, state.flip(gndAtom.index));
+	}
+
+	@Override
+	protected double deltaCost(GroundAtom gndAtom) {
+		if(!usesArena())
+			return super.deltaCost(gndAtom);
+		return arena.deltaCost(gndAtom.index, state.get(gndAtom.index));
+	}
+}
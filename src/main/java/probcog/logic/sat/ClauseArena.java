@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.logic.sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import probcog.exception.ProbCogException;
+import probcog.logic.GroundLiteral;
+import probcog.logic.PossibleWorld;
+
+/**
+ * A fixed collection of clauses in flat primitive storage, of which an arbitrary subset can be marked as active.
+ * For the active clauses, the number of true literals and the set of unsatisfied clauses are kept up to date
+ * as variables are flipped, such that a local search procedure can use the arena as its set of constraints.
+ * Since the arena is built only once, switching to a different set of constraints (as in each step of MC-SAT)
+ * merely requires the active flags to be changed.
+ * <p>Literals are encoded as integers, the literal for the ground atom with index i being 2*i+1 if it is
+ * positive and 2*i if it is negative. Duplicate literals within a clause are stored only once.</p>
+ */
+public class ClauseArena {
+	/**
+	 * the literals of clause c are lits[litStart[c]] to lits[litStart[c+1]-1]
+	 */
+	protected int[] litStart, lits;
+	/**
+	 * occurrence index: the occurrences of the ground atom with index i are occurrences[occStart[i]] to occurrences[occStart[i+1]-1],
+	 * where each occurrence is encoded as 2*c+1 for a positive literal in clause c and 2*c for a negative one
+	 */
+	protected int[] occStart, occurrences;
+	protected long[] active;
+	/**
+	 * the number of true literals in each active clause
+	 */
+	protected int[] numTrue;
+	/**
+	 * the unsatisfied active clauses (the first numUnsat elements)
+	 */
+	protected int[] unsat;
+	/**
+	 * the position of each clause in {@link #unsat} (or -1 if it is not contained)
+	 */
+	protected int[] unsatPos;
+	protected int numUnsat;
+	protected int numClauses;
+	/**
+	 * the clauses the arena was built from
+	 */
+	protected ArrayList<Clause> clauses;
+
+	/**
+	 * @param clauses the clauses to store
+	 * @param numVars the number of variables (ground atoms) in the world the clauses are defined on
+	 */
+	public ClauseArena(Iterable<? extends Clause> clauses, int numVars) {
+		ArrayList<Clause> list = new ArrayList<Clause>();
+		int numLits = 0;
+		for(Clause c : clauses) {
+			list.add(c);
+			numLits += c.lits.length;
+		}
+		this.clauses = list;
+		numClauses = list.size();
+		litStart = new int[numClauses+1];
+		lits = new int[numLits];
+		occStart = new int[numVars+1];
+		int k = 0;
+		for(int c = 0; c < numClauses; c++) {
+			litStart[c] = k;
+			for(GroundLiteral lit : list.get(c).lits) {
+				int l = 2 * lit.gndAtom.index + (lit.isPositive ? 1 : 0);
+				boolean duplicate = false;
+				for(int j = litStart[c]; j < k && !duplicate; j++)
+					duplicate = lits[j] == l;
+				if(duplicate) // (it would otherwise be counted twice in the number of true literals)
+					continue;
+				lits[k++] = l;
+				occStart[lit.gndAtom.index+1]++;
+			}
+		}
+		litStart[numClauses] = k;
+		numLits = k;
+		lits = Arrays.copyOf(lits, numLits);
+		// build the occurrence index
+		for(int i = 0; i < numVars; i++)
+			occStart[i+1] += occStart[i];
+		occurrences = new int[numLits];
+		int[] pos = Arrays.copyOf(occStart, numVars);
+		for(int c = 0; c < numClauses; c++)
+			for(k = litStart[c]; k < litStart[c+1]; k++)
+				occurrences[pos[lits[k] >> 1]++] = 2 * c + (lits[k] & 1);
+		active = new long[(numClauses + 63) >>> 6];
+		numTrue = new int[numClauses];
+		unsat = new int[numClauses];
+		unsatPos = new int[numClauses];
+		Arrays.fill(unsatPos, -1);
+	}
+
+	/**
+	 * @return the number of clauses in the arena
+	 */
+	public int size() {
+		return numClauses;
+	}
+
+	/**
+	 * @param clause a clause index
+	 * @return the clause (as passed to the constructor) with the given index
+	 */
+	public Clause getClause(int clause) {
+		return clauses.get(clause);
+	}
+
+	public void deactivateAll() {
+		Arrays.fill(active, 0L);
+	}
+
+	public void activate(int clause) {
+		active[clause >>> 6] |= 1L << clause;
+	}
+
+	/**
+	 * activates a range of clauses
+	 * @param from the index of the first clause to activate
+	 * @param to the index of the clause after the last clause to activate
+	 */
+	public void activate(int from, int to) {
+		for(int c = from; c < to; c++)
+			active[c >>> 6] |= 1L << c;
+	}
+
+	public boolean isActive(int clause) {
+		return (active[clause >>> 6] & (1L << clause)) != 0;
+	}
+
+	/**
+	 * @return the number of active clauses
+	 */
+	public int getNumActive() {
+		int n = 0;
+		for(long word : active)
+			n += Long.bitCount(word);
+		return n;
+	}
+
+	/**
+	 * (re)computes the number of true literals of all active clauses and the set of unsatisfied clauses for the given world
+	 * @param w a world, which from now on must be changed in accordance with calls to {@link #flip(int, boolean)}
+	 */
+	public void initState(PossibleWorld w) {
+		for(int i = 0; i < numUnsat; i++)
+			unsatPos[unsat[i]] = -1;
+		numUnsat = 0;
+		for(int c = 0; c < numClauses; c++) {
+			if(!isActive(c))
+				continue;
+			int n = 0;
+			for(int k = litStart[c]; k < litStart[c+1]; k++)
+				if(w.get(lits[k] >> 1) == ((lits[k] & 1) != 0))
+					n++;
+			numTrue[c] = n;
+			if(n == 0)
+				addUnsatisfied(c);
+		}
+	}
+
+	protected void addUnsatisfied(int c) {
+		unsatPos[c] = numUnsat;
+		unsat[numUnsat++] = c;
+	}
+
+	protected void removeUnsatisfied(int c) {
+		int pos = unsatPos[c];
+		int last = unsat[--numUnsat];
+		unsat[pos] = last;
+		unsatPos[last] = pos;
+		unsatPos[c] = -1;
+	}
+
+	/**
+	 * updates the active clauses to reflect that a variable was flipped
+	 * @param idxGndAtom the index of the ground atom that was flipped
+	 * @param newValue the ground atom's new truth value
+	 */
+	public void flip(int idxGndAtom, boolean newValue) {
+		for(int k = occStart[idxGndAtom]; k < occStart[idxGndAtom+1]; k++) {
+			int c = occurrences[k] >> 1;
+			if(!isActive(c))
+				continue;
+			if(((occurrences[k] & 1) != 0) == newValue) { // the literal became true
+				if(numTrue[c]++ == 0)
+					removeUnsatisfied(c);
+			}
+			else {
+				if(--numTrue[c] == 0)
+					addUnsatisfied(c);
+			}
+		}
+	}
+
+	/**
+	 * computes the change in the number of satisfied active clauses that flipping a variable would cause
+	 * @param idxGndAtom the index of the ground atom
+	 * @param value the ground atom's current truth value
+	 * @return the number of clauses that would become satisfied minus the number of clauses that would become unsatisfied
+	 */
+	public int deltaCost(int idxGndAtom, boolean value) {
+		int delta = 0;
+		for(int k = occStart[idxGndAtom]; k < occStart[idxGndAtom+1]; k++) {
+			int c = occurrences[k] >> 1;
+			if(!isActive(c))
+				continue;
+			if(((occurrences[k] & 1) != 0) == value) { // the literal is true; the clause becomes unsatisfied if it is the only one
+				if(numTrue[c] == 1)
+					delta--;
+			}
+			else if(numTrue[c] == 0)
+				delta++;
+		}
+		return delta;
+	}
+
+	/**
+	 * @return the number of active clauses that are unsatisfied
+	 */
+	public int getNumUnsatisfied() {
+		return numUnsat;
+	}
+
+	/**
+	 * @param i an index between 0 and {@link #getNumUnsatisfied()}-1
+	 * @return the index of the i-th unsatisfied clause
+	 */
+	public int getUnsatisfied(int i) {
+		return unsat[i];
+	}
+
+	/**
+	 * @param clause a clause index
+	 * @return the position of the clause's first literal in the array returned by {@link #getLiterals()}
+	 */
+	public int getLiteralStart(int clause) {
+		return litStart[clause];
+	}
+
+	/**
+	 * @param clause a clause index
+	 * @return the position after the clause's last literal in the array returned by {@link #getLiterals()}
+	 */
+	public int getLiteralEnd(int clause) {
+		return litStart[clause+1];
+	}
+
+	/**
+	 * @return the encoded literals of all clauses (see {@link #getLiteralStart(int)} and {@link #getLiteralEnd(int)})
+	 */
+	public int[] getLiterals() {
+		return lits;
+	}
+
+	public boolean isTrue(int clause, PossibleWorld w) {
+		for(int k = litStart[clause]; k < litStart[clause+1]; k++)
+			if(w.get(lits[k] >> 1) == ((lits[k] & 1) != 0))
+				return true;
+		return false;
+	}
+
+	/**
+	 * checks whether the true literal counts and the set of unsatisfied clauses are consistent with the given world
+	 * @param w
+	 * @throws ProbCogException
+	 */
+	public void checkIntegrity(PossibleWorld w) throws ProbCogException {
+		for(int c = 0; c < numClauses; c++) {
+			if(!isActive(c))
+				continue;
+			int n = 0;
+			for(int k = litStart[c]; k < litStart[c+1]; k++)
+				if(w.get(lits[k] >> 1) == ((lits[k] & 1) != 0))
+					n++;
+			if(n != numTrue[c])
+				throw new ProbCogException("True literal count of clause " + c + " corrupted");
+			if((n == 0) != (unsatPos[c] != -1))
+				throw new ProbCogException("Unsatisfied clauses corrupted");
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.logic.sat;
+
+import java.util.Collection;
+
+import probcog.exception.ProbCogException;
+import probcog.logic.GroundAtom;
+
+/**
+ * A source of ground clauses for lazy inference (as in LazySAT), where ground atoms are false by default
+ * and a clause needs to be considered only once one of the ground atoms it contains negatively has become true.
+ */
+public interface ILazyClauseSource {
+	/**
+	 * @return the ground clauses that are not satisfied when all (non-evidence) ground atoms are false 
+	 * @throws ProbCogException
+	 */
+	public Collection<? extends Clause> getInitialClauses() throws ProbCogException;
+
+	/**
+	 * gets the ground clauses that are to be activated when the given ground atom first becomes true, i.e. the clauses in which it 
+	 * appears negatively, excluding clauses that were already activated through other ground atoms
+	 * @param gndAtom the ground atom that has become true
+	 * @param activated for each ground atom index, whether the atom's clauses have been activated (including the given atom)
+	 * @return the newly activated clauses
+	 * @throws ProbCogException
+	 */
+	public Collection<? extends Clause> getClausesActivatedBy(GroundAtom gndAtom, boolean[] activated) throws ProbCogException;
+}
@@ -18,13 +18,16 @@
  ******************************************************************************/
 package probcog.logic.sat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Random;
 import java.util.Vector;
 
 import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
 import probcog.inference.IParameterHandler;
 import probcog.inference.ParameterHandler;
 import probcog.logging.PrintLogger;
@@ -48,11 +51,14 @@ import edu.tum.cs.util.StringTool;
  * @author Dominik Jain
  */
 public class SampleSAT implements IParameterHandler, VerbosePrinter {
-	protected HashMap<Integer,Vector<Constraint>> bottlenecks;
 	protected HashMap<Integer,Vector<Constraint>> GAOccurrences;
 	protected PossibleWorld state;
-	protected Vector<Constraint> unsatisfiedConstraints;
+	protected ConstraintSet unsatisfiedConstraints;
 	protected Vector<Constraint> constraints;
+	/**
+	 * the number of constraints that were created for the current set of constraints (used to assign constraint IDs)
+	 */
+	protected int numConstraintsCreated;
 	protected Random rand;
 	protected WorldVariables vars;	
 	protected boolean verbose = true;
@@ -76,6 +82,22 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 	 */
 	protected double pWalkSAT = 0.5; // 0.5
 	protected PrintLogger log;
+	/**
+	 * token with which the search can be stopped prematurely (may be null)
+	 */
+	protected CancellationToken cancellationToken = null;
+	/**
+	 * the source of lazily activated clauses (null if all constraints are given explicitly)
+	 */
+	protected ILazyClauseSource lazyClauses = null;
+	/**
+	 * for lazy activation: whether the clauses in which each ground atom appears negatively have been activated
+	 */
+	protected boolean[] activated;
+	/**
+	 * for lazy activation: ground atoms that have become true and whose clauses may need to be activated
+	 */
+	protected ArrayList<GroundAtom> pendingActivations = new ArrayList<GroundAtom>();
 	
 	/**
 	 * @param kb a collection of clauses to satisfy (such as a ClausalKB)
@@ -137,16 +159,16 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 			throw new ProbCogException("Resetting the set of constraints is not allowed when using unit propagation, because unit propagation extends the evidence database, which currently cannot be reversed.");
 		this.kb = kb;
 		
-		// initialize data structures for constraints (used during algorithm) 
-		unsatisfiedConstraints = new Vector<Constraint>();
-		bottlenecks = new HashMap<Integer,Vector<Constraint>>();		
-		
 		// build constraint data
+		numConstraintsCreated = 0;
 		constraints = new Vector<Constraint>();
 		GAOccurrences = new HashMap<Integer,Vector<Constraint>>();
 		for(probcog.logic.sat.Clause c : kb) 
 			constraints.add(makeConstraint(c));
 		
+		// initialize data structures for constraints (used during algorithm) 
+		unsatisfiedConstraints = new ConstraintSet();
+		
 		// preprocessing
 		if(useUnitPropagation)
 			unitPropagation(); // may extend evidence
@@ -159,6 +181,63 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 		return new Clause(c.lits);
 	}
 	
+	/**
+	 * enables the lazy activation of clauses (as in LazySAT): when initializing the state, ground atoms whose clauses have not
+	 * been activated are set to false (unless they are part of a block), and when such a ground atom becomes true, 
+	 * the clauses in which it appears negatively are obtained from the given source and passed to {@link #onClauseActivated(probcog.logic.sat.Clause)}.
+	 * The set of constraints with which the sampler is initialized should contain the source's initial clauses.
+	 * The change in cost that flipping a ground atom would cause only accounts for the clauses that are active.  
+	 * @param source the source of clauses
+	 */
+	public void setLazyClauseSource(ILazyClauseSource source) {
+		lazyClauses = source;
+		activated = new boolean[vars.size()];
+		pendingActivations.clear();
+	}
+	
+	/**
+	 * activates the clauses of ground atoms that have become true (if clauses are activated lazily)
+	 * @throws ProbCogException
+	 */
+	protected void processActivations() throws ProbCogException {
+		for(int i = 0; i < pendingActivations.size(); i++) {
+			GroundAtom gndAtom = pendingActivations.get(i);
+			if(activated[gndAtom.index] || !state.get(gndAtom.index))
+				continue;
+			activated[gndAtom.index] = true;
+			activate(gndAtom);
+		}
+		pendingActivations.clear();
+	}
+	
+	/**
+	 * activates the clauses in which the given ground atom appears negatively (which have not previously been activated)
+	 * @param gndAtom a ground atom that has become true for the first time
+	 * @throws ProbCogException
+	 */
+	protected void activate(GroundAtom gndAtom) throws ProbCogException {
+		for(probcog.logic.sat.Clause c : lazyClauses.getClausesActivatedBy(gndAtom, activated))
+			onClauseActivated(c);
+	}
+	
+	/**
+	 * handles a clause that was activated lazily; by default, the clause is added as a constraint
+	 * @param c the clause
+	 */
+	protected void onClauseActivated(probcog.logic.sat.Clause c) {
+		addConstraint(c);
+	}
+	
+	/**
+	 * adds a constraint while the search is running
+	 * @param c the clause to add
+	 */
+	protected void addConstraint(probcog.logic.sat.Clause c) {
+		Constraint constraint = makeConstraint(c);
+		constraints.add(constraint);
+		constraint.initState();
+	}
+	
 	/**
 	 * performs unit propagation on clauses to simplify the set of constraints
 	 */
@@ -224,15 +303,6 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 		unsatisfiedConstraints.remove(c);
 	}
 	
-	protected void addBottleneck(GroundAtom a, Constraint c) {
-		Vector<Constraint> v = bottlenecks.get(a.index);
-		if(v == null) {
-			v = new Vector<Constraint>();
-			bottlenecks.put(a.index, v);
-		}
-		v.add(c);
-	}
-	
 	protected void addGAOccurrence(GroundAtom a, Constraint c) {
 		Vector<Constraint> v = GAOccurrences.get(a.index);
 		if(v == null) {
@@ -248,7 +318,6 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 			initConstraints(kb);
 
 		// gather constraint data
-		bottlenecks.clear();
 		unsatisfiedConstraints.clear();
 		log.debug("setting random state...");
 		setRandomState();
@@ -258,13 +327,18 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 	}
 	
 	/**
-	 * solves the SAT problem by first initializing the state randomly (respecting the evidence, however) and then performing greedy and SA moves (as determined by parameter p)  
+	 * solves the SAT problem by first initializing the state randomly (respecting the evidence, however) and then performing greedy and SA moves (as determined by parameter p).
+	 * If the cancellation token is cancelled, the search is abandoned, i.e. the state need not be a solution. 
 	 * @throws ProbCogException 
 	 */
 	public void run() throws ProbCogException {		
 		initialize();		
+		if(lazyClauses != null)
+			processActivations();
 		int step = 1;
 		while(unsatisfiedConstraints.size() > 0) {
+			if(cancellationToken != null && cancellationToken.isCancelled())
+				return;
 			// debug code
 			if(log.isDebugEnabled()) {				
 				log.debug("SAT step " + step + ", " + unsatisfiedConstraints.size() + " constraints unsatisfied");
@@ -278,6 +352,8 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 			}
 			
 			makeMove();
+			if(lazyClauses != null)
+				processActivations();
 			step++;
 		}
 	}
@@ -287,46 +363,22 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 	 * @throws ProbCogException 
 	 */
 	protected void checkIntegrity() throws ProbCogException {		
-		// - are unsatisfied constraints really unsatisfied?
+		// - are the true literal counts correct and are unsatisfied constraints really unsatisfied?
 		for(Constraint c : this.constraints) {
 			if(c instanceof Clause) {
 				Clause cl = (Clause)c;						
 				int numTrue = 0;
 				for(GroundLiteral lit : cl.lits)
-					if(lit.isTrue(state)) {
+					if(lit.isTrue(state))
 						numTrue++;
-						if(!cl.trueOnes.contains(lit.gndAtom))
-							throw new ProbCogException("Clause.trueOnes corrupted (1)");
-					}
-				if(numTrue != cl.trueOnes.size())
-					throw new ProbCogException("Clause.trueOnes corrupted (2)");
+				if(numTrue != cl.numTrue)
+					throw new ProbCogException("Clause.numTrue corrupted");
 				boolean isTrue = numTrue > 0;
 				boolean contained = unsatisfiedConstraints.contains(c);
 				if(contained != !isTrue)
 					throw new ProbCogException("Unsatisfied constraints corrupted");
 			}
 		}
-		// - are bottlenecks really bottlenecks?
-		for(java.util.Map.Entry<Integer,Vector<Constraint>> entry : bottlenecks.entrySet()) {
-			GroundAtom ga = this.vars.get(entry.getKey());
-			for(Constraint c : entry.getValue()) {
-				if(c instanceof Clause) {
-					Clause cl = (Clause)c;
-					boolean haveTrueOne = false;
-					for(GroundLiteral lit : cl.lits) {
-						if(lit.isTrue(state)) {
-							if(haveTrueOne) 
-								throw new ProbCogException("Bottlenecks corrupted: Clause " + cl + " contains a second true literal.");
-							if(lit.gndAtom != ga)
-								throw new ProbCogException("Bottlenecks corrupted: Clause " + cl + " contains a true literal that isn't the bottleneck.");							
-							haveTrueOne = true;
-						}
-						if(lit.gndAtom == ga && !lit.isTrue(state))
-							throw new ProbCogException("Bottlenecks corrupted: Clause " + cl + " has " + ga + " as a bottleneck but contains a literal with " + ga + " that is false; it is likely that the clause is a tautology which should never have bottlenecks.");
-					}
-				}
-			}
-		}
 	}
 	
 	public PossibleWorld getState() {
@@ -339,6 +391,18 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 	 */
 	protected void setRandomState() throws ProbCogException {
 		evidenceHandler.setRandomState(state, this.rand);
+		if(lazyClauses != null) {
+			// ground atoms whose clauses have not been activated are false (except in blocks, where one atom must be true);
+			// the clauses of the ones that are true are activated
+			for(int i = 0; i < activated.length; i++) {
+				if(activated[i] || evidence.containsKey(i))
+					continue;
+				if(vars.getBlock(i) == null)
+					state.set(i, false);
+				else if(state.get(i))
+					pendingActivations.add(vars.get(i));
+			}
+		}
 	}
 	
 	protected void makeMove() {
@@ -474,17 +538,9 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 	protected void flipGndAtom(GroundAtom gndAtom) {
 		log.trace("    flipping " + gndAtom);
 		// modify state
-		boolean value = state.isTrue(gndAtom);
-		state.set(gndAtom, !value);
-		// the constraints where the literal was a bottleneck are now unsatisfied
-		Vector<Constraint> bn = this.bottlenecks.get(gndAtom.index);
-		if(bn != null) {
-			for (Constraint c : bn) {
-				addUnsatisfiedConstraint(c);
-			}
-			bn.clear();
-		}
-		// other stuff is handled by the constraints themselves
+		if(state.flip(gndAtom.index) && lazyClauses != null && !activated[gndAtom.index])
+			pendingActivations.add(gndAtom);
+		// the constraints update themselves
 		Vector<Constraint> occ = this.GAOccurrences.get(gndAtom.index);
 		if(occ != null)
 			for(Constraint c : occ)
@@ -493,19 +549,26 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 	
 	protected double deltaCost(GroundAtom gndAtom) {
 		double delta = 0;
-		// consider newly unsatisfied constraints (negative)
-		Vector<Constraint> bn = this.bottlenecks.get(gndAtom.index);
-		if(bn != null) 
-			delta -= bn.size();
-		// consider newly satisfied constraints (positive)
+		// consider newly satisfied constraints (positive) and newly unsatisfied constraints (negative)
 		Vector<Constraint> occs = this.GAOccurrences.get(gndAtom.index);
 		if(occs != null)
-			for(Constraint c : occs)
+			for(Constraint c : occs) {
 				if(c.flipSatisfies(gndAtom))
 					delta++; 
+				else if(c.flipUnsatisfies(gndAtom))
+					delta--;
+			}
 		return delta;
 	}
 	
+	/**
+	 * sets a token with which the search can be stopped prematurely
+	 * @param token
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		cancellationToken = token;
+	}
+	
 	/**
 	 * sets the probability of a random walk (WalkSAT-style) move
 	 * @param p
@@ -514,6 +577,10 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 		this.pSampleSAT = p;
 	}
 	
+	public double getPSampleSAT() {
+		return pSampleSAT;
+	}
+	
 	/**
 	 * sets the probability of a random move (rather than a greedy move) in WalkSAT moves
 	 * @param p
@@ -522,25 +589,109 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 		this.pWalkSAT = p;
 	}
 	
+	public double getPWalkSAT() {
+		return pWalkSAT;
+	}
+	
 	protected abstract class Constraint {
+		/**
+		 * the constraint's ID, which is unique within the current set of constraints
+		 */
+		public final int id = numConstraintsCreated++;
+		
 		public abstract void satisfyGreedily();
 		public abstract void satisfyRandomly();
+		/**
+		 * @param gndAtom a ground atom appearing in the constraint
+		 * @return true if the constraint is unsatisfied and flipping the ground atom would satisfy it
+		 */
 		public abstract boolean flipSatisfies(GroundAtom gndAtom);
+		/**
+		 * @param gndAtom a ground atom appearing in the constraint
+		 * @return true if the constraint is satisfied and flipping the ground atom would cause it to become unsatisfied
+		 */
+		public abstract boolean flipUnsatisfies(GroundAtom gndAtom);
+		/**
+		 * updates the constraint's state (and the set of unsatisfied constraints) after the given ground atom has been flipped 
+		 */
 		public abstract void handleFlip(GroundAtom gndAtom);
 		public abstract void initState();
 		public abstract boolean isTrue(PossibleWorld w);
 	}
 	
+	/**
+	 * a set of constraints with constant-time insertion, removal and random access, 
+	 * where removal moves the last element to the position of the removed one
+	 */
+	protected class ConstraintSet implements Iterable<Constraint> {
+		protected ArrayList<Constraint> elements = new ArrayList<Constraint>();
+		/**
+		 * the position of each constraint in the list of elements (by constraint ID), or -1 if it is not contained
+		 */
+		protected int[] positions = new int[0];
+		
+		public ConstraintSet() {
+		}
+		
+		public void add(Constraint c) {
+			if(c.id >= positions.length) {
+				int oldLength = positions.length;
+				positions = Arrays.copyOf(positions, Math.max(c.id+1, 2*oldLength));
+				Arrays.fill(positions, oldLength, positions.length, -1);
+			}
+			positions[c.id] = elements.size();
+			elements.add(c);
+		}
+		
+		public void remove(Constraint c) {
+			int pos = positions[c.id];
+			Constraint last = elements.remove(elements.size()-1);
+			if(last != c) {
+				elements.set(pos, last);
+				positions[last.id] = pos;
+			}
+			positions[c.id] = -1;
+		}
+		
+		public boolean contains(Constraint c) {
+			return c.id < positions.length && positions[c.id] != -1;
+		}
+		
+		public Constraint get(int i) {
+			return elements.get(i);
+		}
+		
+		public int size() {
+			return elements.size();
+		}
+		
+		public boolean isEmpty() {
+			return elements.isEmpty();
+		}
+		
+		public void clear() {
+			for(Constraint c : elements)
+				positions[c.id] = -1;
+			elements.clear();
+		}
+
+		public Iterator<Constraint> iterator() {
+			return elements.iterator();
+		}
+	}
+	
 	protected class Clause extends Constraint {
 		protected GroundLiteral[] lits;
 		protected Vector<GroundAtom> gndAtoms;
-		protected HashSet<GroundAtom> trueOnes;
+		/**
+		 * the number of literals that are true in the current state
+		 */
+		protected int numTrue;
 		
 		public Clause(GroundLiteral[] lits) {	
 			this.lits = lits;
 			// collect ground atom occurrences 
 			gndAtoms = new Vector<GroundAtom>(lits.length);
-			trueOnes = new HashSet<GroundAtom>((lits.length+1)/2);
 			for(GroundLiteral lit : lits) {
 				GroundAtom gndAtom = lit.gndAtom;
 				gndAtoms.add(gndAtom);
@@ -575,27 +726,36 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 
 		@Override
 		public boolean flipSatisfies(GroundAtom gndAtom) {
-			return trueOnes.size() == 0;
+			return numTrue == 0;
+		}
+		
+		@Override
+		public boolean flipUnsatisfies(GroundAtom gndAtom) {
+			// the clause becomes unsatisfied if the ground atom's literal is its only true literal
+			return numTrue == 1 && getLiteral(gndAtom).isTrue(state);
 		}
 
 		@Override
 		public void handleFlip(GroundAtom gndAtom) {
-            int numTrueLits = trueOnes.size();
-            if(trueOnes.contains(gndAtom)) { // the lit was true and is now false, remove it from the clause's list of true lits
-                trueOnes.remove(gndAtom);
-                numTrueLits--;
-                // if no more true lits are left, the clause is now unsatisfied; this is handled in flipGndAtom
-			}
-            else { // the lit was false and is now true, add it to the clause's list of true lits
-                if(numTrueLits == 0) // the clause was previously unsatisfied, it is now satisfied
+            if(getLiteral(gndAtom).isTrue(state)) { // the lit was false and is now true
+                if(numTrue++ == 0) // the clause was previously unsatisfied, it is now satisfied
                     removeUnsatisfiedConstraint(this);
-                else if(numTrueLits == 1) // we are adding a second true lit, so the first one is no longer a bottleneck of this clause
-                    bottlenecks.get(trueOnes.iterator().next().index).remove(this);
-                trueOnes.add(gndAtom);
-                numTrueLits++;
             }
-            if(numTrueLits == 1)
-                addBottleneck(trueOnes.iterator().next(), this);
+            else { // the lit was true and is now false
+                if(--numTrue == 0) // no more true lits are left, so the clause is now unsatisfied
+                	addUnsatisfiedConstraint(this);
+            }
+		}
+		
+		/**
+		 * @param gndAtom a ground atom appearing in the clause
+		 * @return the clause's literal for the ground atom
+		 */
+		protected GroundLiteral getLiteral(GroundAtom gndAtom) {
+			for(GroundLiteral lit : lits)
+				if(lit.gndAtom == gndAtom)
+					return lit;
+			throw new IllegalArgumentException(gndAtom + " does not appear in " + this);
 		}
 		
 		@Override
@@ -605,19 +765,14 @@ public class SampleSAT implements IParameterHandler, VerbosePrinter {
 
 		@Override
 		public void initState() {
-			trueOnes.clear();
-			// find out which lits are true
+			// count the true lits
+			numTrue = 0;
 			for(GroundLiteral lit : lits)
 				if(lit.isTrue(state))
-					trueOnes.add(lit.gndAtom);
+					numTrue++;
 			// if there are no true ones, this constraint is unsatisfied
-			if(trueOnes.size() == 0)
+			if(numTrue == 0)
 				addUnsatisfiedConstraint(this);
-			// if there is exactly one true literal, it is a bottleneck
-			// (unless the clause also contains the negated literal, 
-			// but a sat.Clause guarantees that this cannot be the case)
-			else if(trueOnes.size() == 1) 
-				addBottleneck(trueOnes.iterator().next(), this);			
 		}
 		
 		public int size() {
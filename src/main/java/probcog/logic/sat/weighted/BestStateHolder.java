@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.logic.sat.weighted;
+
+import probcog.logic.PossibleWorld;
+
+/**
+ * Holds the best state found by any of a number of concurrent MaxWalkSAT searches,
+ * i.e. the state with the lowest sum of weights of unsatisfied constraints.
+ */
+public class BestStateHolder {
+	protected volatile double bestCost = Double.POSITIVE_INFINITY;
+	protected int bestHardMissing = Integer.MAX_VALUE;
+	protected PossibleWorld bestState = null;
+
+	/**
+	 * submits a state, which is retained (as a copy) if it is better than the best state submitted thus far
+	 * @param cost the sum of weights of the constraints that are unsatisfied in the state
+	 * @param hardMissing the number of hard constraints that are unsatisfied in the state
+	 * @param state the state
+	 * @return true if the state is the new best state
+	 */
+	public boolean offer(double cost, int hardMissing, PossibleWorld state) {
+		if(cost >= bestCost) // (quick check without locking)
+			return false;
+		synchronized(this) {
+			if(cost >= bestCost)
+				return false;
+			bestState = state.clone();
+			bestHardMissing = hardMissing;
+			bestCost = cost;
+			return true;
+		}
+	}
+
+	/**
+	 * @return the sum of weights of unsatisfied constraints in the best state (infinity if no state was submitted)
+	 */
+	public double getBestCost() {
+		return bestCost;
+	}
+
+	public synchronized int getBestHardMissing() {
+		return bestHardMissing;
+	}
+
+	/**
+	 * @return the best state (or null if no state was submitted)
+	 */
+	public synchronized PossibleWorld getBestState() {
+		return bestState;
+	}
+}
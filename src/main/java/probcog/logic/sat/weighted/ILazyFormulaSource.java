@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.logic.sat.weighted;
+
+import java.util.Collection;
+
+import probcog.exception.ProbCogException;
+import probcog.logic.GroundAtom;
+import probcog.logic.sat.ILazyClauseSource;
+import probcog.logic.sat.weighted.WeightedClausalKB.FormulaAndClauses;
+
+/**
+ * A source of lazily activated clauses that are grouped by the weighted ground formulas they stem from
+ * (whose weights must all be positive for sampling with MC-SAT). A ground formula is activated as a whole, i.e. the clauses returned by
+ * the methods of {@link ILazyClauseSource} are the clauses of the formulas returned by the corresponding methods of this interface.
+ */
+public interface ILazyFormulaSource extends ILazyClauseSource {
+	/**
+	 * @return the ground formulas that are not satisfied when all (non-evidence) ground atoms are false
+	 * @throws ProbCogException
+	 */
+	public Collection<FormulaAndClauses> getInitialFormulas() throws ProbCogException;
+
+	/**
+	 * gets the ground formulas that are to be activated when the given ground atom first becomes true (see 
+	 * {@link ILazyClauseSource#getClausesActivatedBy(GroundAtom, boolean[])}) 
+	 * @param gndAtom the ground atom that has become true
+	 * @param activated for each ground atom index, whether the atom's formulas have been activated (including the given atom)
+	 * @return the newly activated formulas
+	 * @throws ProbCogException
+	 */
+	public Collection<FormulaAndClauses> getFormulasActivatedBy(GroundAtom gndAtom, boolean[] activated) throws ProbCogException;
+}
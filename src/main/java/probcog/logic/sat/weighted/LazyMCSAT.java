@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.logic.sat.weighted;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
+import probcog.logic.GroundAtom;
+import probcog.logic.PossibleWorld;
+import probcog.logic.WorldVariables;
+import probcog.logic.sat.SampleSAT;
+import probcog.logic.sat.weighted.WeightedClausalKB.FormulaAndClauses;
+import probcog.srl.Database;
+
+/**
+ * Lazy variant of MC-SAT (cf. Poon, Domingos and Sumner 2008), where weighted ground formulas are obtained from a
+ * source of lazily activated formulas. Formulas that have not been activated are satisfied in every state
+ * visited thus far (as all the ground atoms they contain negatively have always been false), such that they
+ * need to be considered only once they are activated during a run of SampleSAT; they are then selected as
+ * constraints with the usual probability.
+ * As in LazySAT, each run of SampleSAT (for the initial state as well as for every sampling step) starts from a state in
+ * which all ground atoms whose formulas have not been activated are false (only the active ones are initialized randomly), 
+ * such that formulas are activated only for atoms that the search actually makes true. This bounds the number of ground
+ * formulas in memory, but (as in all lazy inference methods that rely on the default value false) an atom that is 
+ * never made true during the search is treated as false, i.e. the marginals of atoms that appear in few active 
+ * formulas are biased towards false.
+ * Soft evidence is not supported.
+ */
+public class LazyMCSAT extends MCSAT {
+	protected ILazyFormulaSource source;
+	protected LazySampleSAT lazySat;
+	/**
+	 * the ground formulas that have been activated so far
+	 */
+	protected ArrayList<FormulaAndClauses> activeFormulas;
+	/**
+	 * whether soft formulas that are activated during a run of SampleSAT are to be selected as constraints
+	 * (with the probability given by their weights); if false, only hard formulas are selected
+	 */
+	protected boolean selectSoftFormulas;
+
+	/**
+	 * @param source the source of weighted ground formulas
+	 * @param vars the set of variables
+	 * @param db the evidence database
+	 * @throws ProbCogException
+	 */
+	public LazyMCSAT(ILazyFormulaSource source, WorldVariables vars, Database db) throws ProbCogException {
+		super(new WeightedClausalKB(), vars, db);
+		this.source = source;
+		lazySat = new LazySampleSAT(sat.getState(), vars, db);
+		paramHandler.addSubhandler(lazySat.getParameterHandler());
+	}
+
+	/**
+	 * SampleSAT with a set of constraints that is extended as formulas are activated
+	 */
+	protected class LazySampleSAT extends SampleSAT {
+		public LazySampleSAT(PossibleWorld state, WorldVariables vars, Database db) throws ProbCogException {
+			super(state, vars, db.getEntries());
+		}
+
+		@Override
+		protected void activate(GroundAtom gndAtom) throws ProbCogException {
+			for(FormulaAndClauses fc : source.getFormulasActivatedBy(gndAtom, activated)) {
+				activeFormulas.add(fc);
+				// the formula was satisfied in the previous state, so it is selected with the usual probability
+				WeightedFormula wf = fc.weightedFormula;
+				if(wf.isHard || (selectSoftFormulas && rand.nextDouble() * Math.exp(wf.weight) > 1.0))
+					for(WeightedClause wc : fc.weightedClauses)
+						addConstraint(wc);
+			}
+		}
+	}
+
+	@Override
+	public void setRandom(Random random) {
+		super.setRandom(random);
+		lazySat.setRandom(random);
+	}
+
+	@Override
+	public void setCancellationToken(CancellationToken token) {
+		super.setCancellationToken(token);
+		lazySat.setCancellationToken(token);
+	}
+
+	@Override
+	public void setP(double p) {
+		lazySat.setPSampleSAT(p);
+	}
+
+	@Override
+	public void initialize() throws ProbCogException {
+		if(!softEvidence.isEmpty())
+			throw new ProbCogException("Soft evidence is not supported by " + getClass().getSimpleName());
+		verbose = verbose || debug;
+		lazySat.setLazyClauseSource(source);
+		activeFormulas = new ArrayList<FormulaAndClauses>(source.getInitialFormulas());
+		if(verbose)
+			System.out.printf("%s sampling (%d initially active formulas)...\n", this.getAlgorithmName(), activeFormulas.size());
+
+		// find initial state satisfying all hard constraints, starting from a state in which atoms are false unless their formulas are active
+		if(verbose) System.out.println("finding initial state...");
+		ArrayList<WeightedClause> constraints = new ArrayList<WeightedClause>();
+		for(FormulaAndClauses fc : activeFormulas)
+			if(fc.weightedFormula.isHard)
+				constraints.addAll(fc.weightedClauses);
+		selectSoftFormulas = false;
+		lazySat.initConstraints(constraints);
+		lazySat.setDebugMode(debug);
+		lazySat.run();
+		if(verbose)
+			System.out.printf("%d formulas active in initial state\n", activeFormulas.size());
+		numSteps = 0;
+	}
+
+	@Override
+	public void step(int steps) throws ProbCogException {
+		PossibleWorld state = lazySat.getState();
+		ArrayList<WeightedClause> constraints = new ArrayList<WeightedClause>();
+		for(int s = 0; s < steps; s++, numSteps++) {
+			if(cancellationToken != null && cancellationToken.isCancelled())
+				break;
+
+			constraints.clear();
+			for(FormulaAndClauses fc : activeFormulas) {
+				WeightedFormula wf = fc.weightedFormula;
+				if(wf.formula.isTrue(state) && (wf.isHard || rand.nextDouble() * Math.exp(wf.weight) > 1.0))
+					constraints.addAll(fc.weightedClauses);
+			}
+
+			if(verbose && (numSteps+1) % infoInterval == 0) {
+				System.out.printf("MC-SAT step %d: %d constraints to be satisfied (%d formulas active)\n", numSteps+1, constraints.size(), activeFormulas.size());
+				if(debug) {
+					for(WeightedClause wc : constraints)
+						System.out.println("    " + wc);
+				}
+			}
+			selectSoftFormulas = true;
+			lazySat.initConstraints(constraints);
+			lazySat.run();
+			if(cancellationToken != null && cancellationToken.isCancelled())
+				break; // (the state may not be a solution)
+
+			synchronized(dist) {
+				dist.addSample(state, 1.0);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of ground formulas that have been activated
+	 */
+	public int getNumActiveFormulas() {
+		return activeFormulas.size();
+	}
+
+	@Override
+	public String getAlgorithmName() {
+		return String.format("%s[%s]", this.getClass().getSimpleName(), lazySat.getAlgorithmName());
+	}
+}
@@ -18,10 +18,13 @@
  ******************************************************************************/
 package probcog.logic.sat.weighted;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
 
 import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
 import probcog.inference.IParameterHandler;
 import probcog.inference.ParameterHandler;
 import probcog.logic.Formula;
@@ -29,7 +32,8 @@ import probcog.logic.GroundAtom;
 import probcog.logic.GroundLiteral;
 import probcog.logic.PossibleWorld;
 import probcog.logic.WorldVariables;
-import probcog.logic.sat.SampleSAT;
+import probcog.logic.sat.ArenaSampleSAT;
+import probcog.logic.sat.ClauseArena;
 import probcog.logic.sat.weighted.WeightedClausalKB.FormulaAndClauses;
 import probcog.srl.Database;
 
@@ -49,8 +53,22 @@ public class MCSAT implements IParameterHandler {
 	protected boolean verbose = true, debug = false;
 	protected int infoInterval = 100;
 	protected ParameterHandler paramHandler;
-	protected SampleSAT sat;
+	protected ArenaSampleSAT sat;
 	protected Vector<SoftEvidence> softEvidence;
+	protected CancellationToken cancellationToken = null;
+	/**
+	 * the arena containing all the clauses that may be selected as constraints;
+	 * the clauses of the i-th formula are clauses formulaStart[i] to formulaStart[i+1]-1, 
+	 * and the soft evidence clauses come last (starting at softEvidenceStart)
+	 */
+	protected ClauseArena arena;
+	protected ArrayList<WeightedClause> clauses;
+	protected int[] formulaStart;
+	protected int softEvidenceStart;
+	/**
+	 * the number of MC-SAT steps taken since the last call to {@link #initialize()}
+	 */
+	protected int numSteps;
 	
 	public class SoftEvidence {
 		public WeightedClause wc;
@@ -72,7 +90,7 @@ public class MCSAT implements IParameterHandler {
 		this.paramHandler = new ParameterHandler(this);
 		this.softEvidence = new Vector<SoftEvidence>();
 		PossibleWorld state = new PossibleWorld(vars);
-		sat = new SampleSAT(state, vars, db.getEntries());				
+		sat = new ArenaSampleSAT(state, vars, db.getEntries());				
 		paramHandler.addSubhandler(sat.getParameterHandler());
 		paramHandler.add("infoInterval", "setInfoInterval");
 		paramHandler.add("verbose", "setVerbose");
@@ -91,15 +109,50 @@ public class MCSAT implements IParameterHandler {
 		this.debug = active;
 	}
 	
+	/**
+	 * sets a token with which sampling can be stopped prematurely
+	 * @param token
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		this.cancellationToken = token;
+		sat.setCancellationToken(token);
+	}
+	
 	public void setInfoInterval(int interval) {
 		this.infoInterval = interval;
 	}
 	
+	/**
+	 * sets the random number generator (of both MC-SAT and the underlying SAT sampler)
+	 * @param random
+	 */
 	public void setRandom(Random random) {
 		this.rand = random;
+		sat.setRandom(random);
 	}
 
+	/**
+	 * runs the MC-SAT algorithm
+	 * @param steps the number of steps to take
+	 * @return the normalized distribution
+	 * @throws ProbCogException
+	 */
 	public GroundAtomDistribution run(int steps) throws ProbCogException {
+		initialize();
+		step(steps);
+		synchronized(dist) {
+			dist.normalize();
+		}
+		
+		return dist;
+	}
+	
+	/**
+	 * prepares the sampling process (building the set of clauses and finding an initial state that satisfies the hard constraints);
+	 * to be called prior to {@link #step(int)}
+	 * @throws ProbCogException
+	 */
+	public void initialize() throws ProbCogException {
 		if(debug) {
 			System.out.println("\nMC-SAT constraints:");
 			for(WeightedClause wc : kb)
@@ -110,61 +163,88 @@ public class MCSAT implements IParameterHandler {
 		if(verbose) 
 			System.out.printf("%s sampling (%d weighted formulas)...\n", this.getAlgorithmName(), this.kb.size());		
 		
+		// build the arena
+		List<FormulaAndClauses> formulas = kb.getFormulasAndClauses();
+		clauses = new ArrayList<WeightedClause>();
+		formulaStart = new int[formulas.size()+1];
+		for(int j = 0; j < formulas.size(); j++) {
+			formulaStart[j] = clauses.size();
+			clauses.addAll(formulas.get(j).weightedClauses);
+		}
+		softEvidenceStart = formulaStart[formulas.size()] = clauses.size();
+		for(SoftEvidence se : this.softEvidence)
+			clauses.add(se.wc);
+		arena = new ClauseArena(clauses, vars.size());
+		sat.setArena(arena);
+		
 		// find initial state satisfying all hard constraints
 		if(verbose) System.out.println("finding initial state...");
-		Vector<WeightedClause> M = new Vector<WeightedClause>();
-		for(FormulaAndClauses fac : kb.getFormulasAndClauses()) {
-			WeightedFormula wf = fac.weightedFormula;
-			if(wf.isHard) {
-				M.addAll(fac.weightedClauses);
-			}
-		}		
+		arena.deactivateAll();
+		for(int j = 0; j < formulas.size(); j++) {
+			if(formulas.get(j).weightedFormula.isHard)
+				arena.activate(formulaStart[j], formulaStart[j+1]);
+		}
 		sat.setDebugMode(debug);
-		sat.initConstraints(M);
 		sat.run();
-		
-		// actual MC-SAT sampling
-		for(int i = 0; i < steps; i++) {
+		numSteps = 0;
+	}
+	
+	/**
+	 * performs MC-SAT steps (continuing from the current state), adding the samples to the (unnormalized) distribution
+	 * @param steps the number of steps to take
+	 * @throws ProbCogException
+	 */
+	public void step(int steps) throws ProbCogException {
+		List<FormulaAndClauses> formulas = kb.getFormulasAndClauses();
+		for(int s = 0; s < steps; s++, numSteps++) {
+			int i = numSteps;
+			if(cancellationToken != null && cancellationToken.isCancelled())
+				break;
 			
-			M.clear();
+			arena.deactivateAll();
 			
-			for(FormulaAndClauses fac : kb.getFormulasAndClauses()) {
-				WeightedFormula wf = fac.weightedFormula;
+			for(int j = 0; j < formulas.size(); j++) {
+				WeightedFormula wf = formulas.get(j).weightedFormula;
 				if(wf.formula.isTrue(sat.getState())){
 					boolean satisfy = wf.isHard || rand.nextDouble() * Math.exp(wf.weight) > 1.0;
 					if(satisfy)
-						M.addAll(fac.weightedClauses);					
+						arena.activate(formulaStart[j], formulaStart[j+1]);
 				}				
 			}
 			
 			// soft evidence clauses
 			if(i > 0)
-				for(SoftEvidence se : this.softEvidence) {
+				for(int j = 0; j < softEvidence.size(); j++) {
+					SoftEvidence se = softEvidence.get(j);
 					if(se.wc.isTrue(sat.getState())) {
 						se.count += 1;
 						if(se.count/i < se.p)
-							M.add(se.wc);							
+							arena.activate(softEvidenceStart + j);
 					}
 				}			
 			
 			if(verbose && (i+1) % infoInterval == 0) {
-				System.out.printf("MC-SAT step %d: %d constraints to be satisfied\n", i+1, M.size());
+				System.out.printf("MC-SAT step %d: %d constraints to be satisfied\n", i+1, arena.getNumActive());
 				if(debug) {
-					for(WeightedClause wc : M)
-						System.out.println("    " + wc);
+					for(int j = 0; j < clauses.size(); j++)
+						if(arena.isActive(j))
+							System.out.println("    " + clauses.get(j));
 				}
 			}
-			sat.initConstraints(M);
 			sat.run();
+			if(cancellationToken != null && cancellationToken.isCancelled())
+				break; // (the state may not be a solution)
 			
 			synchronized(dist) {
 				dist.addSample(sat.getState(), 1.0);
 			}
 		}
-		synchronized(dist) {
-			dist.normalize();
-		}
-		
+	}
+	
+	/**
+	 * @return the distribution to which samples are added (which is normalized only at the end of {@link #run(int)})
+	 */
+	public GroundAtomDistribution getDistribution() {
 		return dist;
 	}
 	
@@ -202,12 +282,25 @@ public class MCSAT implements IParameterHandler {
 			}
 		}
 		
+		/**
+		 * adds the data of another (unnormalized) distribution over the same variables to this (unnormalized) distribution
+		 * @param other
+		 */
+		public void merge(GroundAtomDistribution other) {
+			for(int i = 0; i < sums.length; i++)
+				sums[i] += other.sums[i];
+			Z += other.Z;
+			numSamples += other.numSamples;
+		}
+		
 		public double getResult(int indx){
 			return sums[indx];
 		}
 		
 		public GroundAtomDistribution clone() throws CloneNotSupportedException {
-			return (GroundAtomDistribution)super.clone();
+			GroundAtomDistribution ret = (GroundAtomDistribution)super.clone();
+			ret.sums = sums.clone(); // (copies are normalized independently of the original)
+			return ret;
 		}
 	}
 
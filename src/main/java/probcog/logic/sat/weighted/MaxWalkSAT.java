@@ -18,8 +18,6 @@
  ******************************************************************************/
 package probcog.logic.sat.weighted;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Vector;
 
 import probcog.exception.ProbCogException;
@@ -39,9 +37,25 @@ public class MaxWalkSAT extends SampleSAT implements IMaxSAT {
 	protected int maxSteps = 1000;
 	protected PossibleWorld bestState = null;
 	protected double sumOfWeightsOfUnsatisfiedConstraints;
-	protected List<WeightedClause> unsatisfiedHardConstraints;
+	protected ConstraintSet unsatisfiedHardConstraints;
+	/**
+	 * holder with which the best state is shared with other searches (may be null)
+	 */
+	protected BestStateHolder sharedBest = null;
+	/**
+	 * the search stops as soon as a state is found (by this or any search sharing the best state) whose sum of weights of unsatisfied constraints is no greater than this value
+	 * (by default, there is no target, as weights may be negative)
+	 */
+	protected double targetCost = Double.NEGATIVE_INFINITY;
 
-	public MaxWalkSAT(WeightedClausalKB kb, PossibleWorld state, WorldVariables vars, Database db) throws ProbCogException {
+	/**
+	 * @param kb the weighted clauses (for lazy inference, the initially active clauses; see {@link #setLazyClauseSource(probcog.logic.sat.ILazyClauseSource)})
+	 * @param state a possible world to write to
+	 * @param vars the set of variables the problem is defined on
+	 * @param db the evidence database
+	 * @throws ProbCogException
+	 */
+	public MaxWalkSAT(Iterable<? extends probcog.logic.sat.weighted.WeightedClause> kb, PossibleWorld state, WorldVariables vars, Database db) throws ProbCogException {
 		super(kb, state, vars, db.getEntries());
 		this.pSampleSAT = 1.0; // by default, always make WalkSAT-style moves (never global random moves)
 	}
@@ -65,17 +79,15 @@ public class MaxWalkSAT extends SampleSAT implements IMaxSAT {
 	@Override
 	protected double deltaCost(GroundAtom gndAtom) {
 		double delta = 0;
-		// consider newly unsatisfied constraints (negative)
-		Vector<Constraint> bn = this.bottlenecks.get(gndAtom.index);
-		if(bn != null)
-			for(Constraint c : bn)
-				delta -= ((WeightedClause)c).weight;
-		// consider newly satisfied constraints (positive)
+		// consider newly satisfied constraints (positive) and newly unsatisfied constraints (negative)
 		Vector<Constraint> occs = this.GAOccurrences.get(gndAtom.index);
 		if(occs != null)
-			for(Constraint c : occs)
+			for(Constraint c : occs) {
 				if(c.flipSatisfies(gndAtom))
 					delta += ((WeightedClause)c).weight; 
+				else if(c.flipUnsatisfies(gndAtom))
+					delta -= ((WeightedClause)c).weight;
+			}
 		return delta;
 	}
 	
@@ -131,7 +143,7 @@ public class MaxWalkSAT extends SampleSAT implements IMaxSAT {
 	@Override
 	protected void initialize() throws ProbCogException {
 		sumOfWeightsOfUnsatisfiedConstraints = 0;
-		unsatisfiedHardConstraints = new ArrayList<>();
+		unsatisfiedHardConstraints = new ConstraintSet();
 		
 		super.initialize();
 	}
@@ -139,6 +151,8 @@ public class MaxWalkSAT extends SampleSAT implements IMaxSAT {
 	@Override
 	public void run() throws ProbCogException {
 		initialize();	
+		if(lazyClauses != null)
+			processActivations();
 		
 		double bestSum = Double.MAX_VALUE;
 		int bestHardMissing = Integer.MAX_VALUE;
@@ -151,6 +165,8 @@ public class MaxWalkSAT extends SampleSAT implements IMaxSAT {
 				bestHardMissing = hardMissing;
 				newBest = true;
 				this.bestState = state.clone();
+				if(sharedBest != null)
+					sharedBest.offer(bestSum, bestHardMissing, bestState);
 			}
 
 			boolean printStatus = newBest || step % 10 == 0;
@@ -163,10 +179,16 @@ public class MaxWalkSAT extends SampleSAT implements IMaxSAT {
 								newBest ? "[NEW BEST]" : ""));
 			}
 			
-			if(sumOfWeightsOfUnsatisfiedConstraints == 0)
+			if(unsatisfiedConstraints.isEmpty()) // (the sum of weights need not be exactly 0 due to rounding errors)
+				break;
+			if(bestSum <= targetCost || (sharedBest != null && sharedBest.getBestCost() <= targetCost))
+				break;
+			if(cancellationToken != null && cancellationToken.isCancelled())
 				break;
 			
 			makeMove();
+			if(lazyClauses != null)
+				processActivations();
 		}
 		log.info(String.format("solution quality: sum of unsatisfied constraints: %f, hard constraints unsatisfied: %d", bestSum, bestHardMissing));
 
@@ -188,6 +210,23 @@ public class MaxWalkSAT extends SampleSAT implements IMaxSAT {
 		maxSteps = steps;	
 	}
 	
+	/**
+	 * sets the holder with which improvements are to be shared with other searches 
+	 * (and which is checked for the target cost having been reached by another search)
+	 * @param holder
+	 */
+	public void setSharedBest(BestStateHolder holder) {
+		sharedBest = holder;
+	}
+	
+	/**
+	 * sets the cost (sum of weights of unsatisfied constraints) at which the search is to stop
+	 * @param cost
+	 */
+	public void setTargetCost(double cost) {
+		targetCost = cost;
+	}
+	
 	@Override
 	public String getAlgorithmName() {
 		return String.format("%s[p=%f]", this.getClass().getSimpleName(), this.pWalkSAT);
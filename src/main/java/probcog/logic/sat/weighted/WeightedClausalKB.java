@@ -145,7 +145,11 @@ public class WeightedClausalKB implements Iterable<WeightedClause> {
         }
 	}
 
-	protected boolean isConjunctionOfLiterals(Formula cnf) {
+	/**
+	 * @param cnf a formula in conjunctive normal form
+	 * @return whether the formula is a conjunction of literals (whose negation is a single clause)
+	 */
+	public static boolean isConjunctionOfLiterals(Formula cnf) {
     	if(cnf instanceof Conjunction) {
             Conjunction c = (Conjunction) cnf;
             for(Formula child : c.children) {
@@ -20,10 +20,17 @@
 package probcog.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import edu.tum.cs.util.StringTool;
 import edu.tum.cs.util.datastruct.Pair;
@@ -35,96 +42,309 @@ import probcog.srl.directed.RelationalNode;
 import probcog.srl.directed.bln.BayesianLogicNetwork;
 import probcog.srl.directed.bln.GroundBLN;
 import probcog.srl.directed.inference.BLNinfer;
+import edu.ksu.cis.bnj.ver3.core.Value;
 
 /**
  * Represents a Bayesian logic network model for use in the ProbCog service.
+ * Instantiated ground networks are cached: A session whose database has the same domains
+ * and the same evidence for the functions that affect the network structure as a previous 
+ * one reuses the previously instantiated network, replacing only its evidence.
+ * With the parameter relevantGrounding set to true, a session's ground network is instead instantiated 
+ * for each call of {@link Session#infer(Iterable)}, comprising only the variables that are relevant to the 
+ * queries (see {@link probcog.srl.directed.bln.AbstractGroundBLN#setRelevantQueries(Iterable)}); such 
+ * networks are cached for the respective queries and evidence variables.
  * @author Dominik Jain
  */
 public class BLNModel extends Model {
 
 	protected BayesianLogicNetwork bln;
-	protected GroundBLN gbln;
-	protected Database db;
 	protected String filenames;
+	/**
+	 * the functions whose evidence affects the structure of ground networks
+	 */
+	protected Set<String> structuralFunctions;
+	/**
+	 * the maximum number of instantiated ground networks to keep in the cache
+	 */
+	protected volatile int groundNetworkCacheSize = 8;
+	/**
+	 * maps structure keys (see {@link #getStructureKey(Database, Map)}) to instantiated ground networks that are
+	 * currently unused (least recently used first); a network is removed from the cache while a session is using it
+	 */
+	protected LinkedHashMap<String, GroundBLN> groundNetworkCache;
+	/**
+	 * CPF values shared by all the ground networks instantiated for this model
+	 */
+	protected ConcurrentHashMap<String, Value[]> cpfCache = new ConcurrentHashMap<String, Value[]>();
 	
 	public BLNModel(String modelName, String blogFile, String networkFile, String logicFile) throws ProbCogException {
 		super(modelName);
 		this.filenames = String.format("%s;%s;%s", blogFile, networkFile, logicFile);
 		this.bln = new BayesianLogicNetwork(blogFile, networkFile, logicFile);		
+		this.structuralFunctions = bln.rbn.getStructuralFunctions();
+		this.groundNetworkCache = new LinkedHashMap<String, GroundBLN>() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, GroundBLN> eldest) {
+				return size() > groundNetworkCacheSize;
+			}
+		};
+		paramHandler.add("groundNetworkCacheSize", "setGroundNetworkCacheSize");
 	}
 	
-	@Override
-	public void instantiate() throws ProbCogException {
-		gbln = bln.ground(db);
-		paramHandler.addSubhandler(gbln);
-		gbln.instantiateGroundNetwork();
+	/**
+	 * sets the maximum number of instantiated ground networks that are kept for reuse
+	 * @param size the number of networks (0 to disable caching)
+	 */
+	public void setGroundNetworkCacheSize(int size) {
+		synchronized(groundNetworkCache) {
+			groundNetworkCacheSize = size;
+			while(groundNetworkCache.size() > size)
+				groundNetworkCache.remove(groundNetworkCache.keySet().iterator().next());
+		}
 	}
 	
-	@Override
-	public void beginSession(Map<String, Object> params) throws ProbCogException {
-		super.beginSession(params);
-		db = new Database(bln.rbn);
-		paramHandler.addSubhandler(db);
-	}
-
-	@Override
-	protected Vector<InferenceResult> _infer(Iterable<String> queries) throws ProbCogException {		
-		BLNinfer inference = new BLNinfer(actualParams);
-		paramHandler.addSubhandler(inference);		
-		inference.setGroundBLN(gbln);
-		inference.setQueries(queries);
-		Collection<probcog.srl.directed.inference.InferenceResult> results = inference.run();
+	/**
+	 * a session of a BLN model, which has its own evidence database and ground network
+	 */
+	protected class BLNSession extends Session {
+		protected final Database db;
+		/**
+		 * the session's ground network (null if networks are instantiated for the queries of each inference)
+		 */
+		protected final GroundBLN gbln;
+		/**
+		 * the key under which the ground network is to be returned to the cache (null if it is not to be cached)
+		 */
+		protected final String structureKey;
+		/**
+		 * whether ground networks comprise only the variables relevant to the queries
+		 */
+		protected final boolean relevantGrounding;
+		protected boolean closed = false;
 		
-		// store results in common InferenceResult format
-		Vector<InferenceResult> ret = new Vector<InferenceResult>();
-		for(probcog.srl.directed.inference.InferenceResult res : results) {
-			 Pair<String, String[]> var = RelationalNode.parse(res.varName);
-			 Signature sig = bln.rbn.getSignature(var.first);
-			 String[] params = var.second;
-			 boolean isBool = sig.isBoolean();
-			 if(!isBool) {
-				 String[] fullParams = new String[params.length+1];
-				 for(int i = 0; i < params.length; i++)
-					 fullParams[i] = params[i];
-				 params = fullParams;
-			 }
-			 for(int i = 0; i < res.domainElements.length; i++) {
-				 if(!isBool) 
-					 params[params.length-1] = res.domainElements[i];					 
-				 else
-					 if(!res.domainElements[i].equalsIgnoreCase("True"))
-						 continue;
-				 ret.add(new InferenceResult(var.first, params.clone(), res.probabilities[i]));
-			 }
+		public BLNSession(Map<String, Object> params, Vector<String[]> evidence) throws ProbCogException {
+			super(BLNModel.this, params);
+			db = new Database(bln.rbn);
+			paramHandler.addSubhandler(db);
+			paramHandler.handle(this.params, false);
+			for(String[] tuple : evidence)
+				db.addVariable(evidenceVariable(tuple));
+			db.finalize();
+			structureKey = getStructureKey(db, this.params);
+			Object relevant = this.params.get("relevantGrounding");
+			relevantGrounding = relevant != null && Boolean.parseBoolean(relevant.toString());
+			gbln = relevantGrounding ? null : acquireGroundNetwork(structureKey, db, this.params, null);
+		}
+		
+		@Override
+		protected Vector<InferenceResult> _infer(Iterable<String> queries) throws ProbCogException {
+			if(!relevantGrounding)
+				return infer(gbln, queries);
+			String key = structureKey == null ? null : structureKey + getRelevanceKey(db, queries);
+			GroundBLN gbln = acquireGroundNetwork(key, db, params, queries);
+			try {
+				return infer(gbln, queries);
+			}
+			finally {
+				releaseGroundNetwork(key, gbln);
+			}
+		}
+		
+		protected Vector<InferenceResult> infer(GroundBLN gbln, Iterable<String> queries) throws ProbCogException {		
+			// the session's parameters are passed on directly rather than by registering the inference
+			// object as a subhandler, which would keep it reachable for the lifetime of the session
+			BLNinfer inference = new BLNinfer(new HashMap<String, Object>(params));
+			inference.setGroundBLN(gbln);
+			inference.setQueries(queries);
+			Collection<probcog.srl.directed.inference.InferenceResult> results = inference.run();
+			
+			// store results in common InferenceResult format
+			Vector<InferenceResult> ret = new Vector<InferenceResult>();
+			for(probcog.srl.directed.inference.InferenceResult res : results) {
+				 Pair<String, String[]> var = RelationalNode.parse(res.varName);
+				 Signature sig = bln.rbn.getSignature(var.first);
+				 String[] params = var.second;
+				 boolean isBool = sig.isBoolean();
+				 if(!isBool) {
+					 String[] fullParams = new String[params.length+1];
+					 for(int i = 0; i < params.length; i++)
+						 fullParams[i] = params[i];
+					 params = fullParams;
+				 }
+				 for(int i = 0; i < res.domainElements.length; i++) {
+					 if(!isBool) 
+						 params[params.length-1] = res.domainElements[i];					 
+					 else
+						 if(!res.domainElements[i].equalsIgnoreCase("True"))
+							 continue;
+					 ret.add(new InferenceResult(var.first, params.clone(), res.probabilities[i]));
+				 }
+			}
+			return ret;
+		}
+		
+		@Override
+		protected String _getConstantType(String constant) {
+			return db.getConstantType(constant);
+		}
+		
+		@Override
+		public synchronized void close() {
+			if(closed)
+				return;
+			closed = true;
+			if(gbln != null)
+				releaseGroundNetwork(structureKey, gbln);
 		}
-		return ret;
 	}
-
+	
 	@Override
-	protected void _setEvidence(Iterable<String[]> evidence) throws ProbCogException {
-		for(String[] tuple : evidence) {
-			String functionName = tuple[0];
-			Signature sig = bln.rbn.getSignature(functionName);
-			if(sig == null)
-				throw new ProbCogException("Function '" + functionName + "' appearing in evidence not found in model " + name);
-			String value;
-			String[] params;
-			if(sig.argTypes.length == tuple.length-1) {
-				params = new String[tuple.length-1];
-				for(int i = 0; i < params.length; i++)
-					params[i] = tuple[i+1];
-				value = "True";
+	protected Session _createSession(Map<String, Object> params, Vector<String[]> evidence) throws ProbCogException {
+		return new BLNSession(params, evidence);
+	}
+	
+	/**
+	 * obtains a ground network for the given database for exclusive use by a session, reusing a cached network if possible 
+	 * @param key the structure key of the database (null if the network is not to be cached)
+	 * @param db the (finalized) evidence database 
+	 * @param params the parameters of the session
+	 * @param relevantQueries the queries to which the network is to be restricted (null to instantiate all variables) 
+	 * @return the ground network
+	 * @throws ProbCogException
+	 */
+	protected GroundBLN acquireGroundNetwork(String key, Database db, Map<String, Object> params, Iterable<String> relevantQueries) throws ProbCogException {
+		if(key != null) {
+			GroundBLN cached;
+			synchronized(groundNetworkCache) {
+				cached = groundNetworkCache.remove(key);
 			}
-			else {
-				if(tuple.length < sig.argTypes.length+2)
-					throw new ProbCogException("Evidence entry has too few parameters: " + StringTool.join(", ", tuple));
-				params = new String[sig.argTypes.length];
-				for(int i = 0; i < params.length; i++)
-					params[i] = tuple[i+1];
-				value = tuple[params.length+1];
+			if(cached != null) {
+				// the network was configured by the session that created it; restore the defaults
+				// and apply the current session's parameters
+				cached.setVerbose(true);
+				cached.setDebugMode(false);
+				cached.getParameterHandler().handle(params, false);
+				cached.setDatabase(db);
+				return cached;
 			}
-			db.addVariable(new Variable(functionName, params, value, this.bln.rbn));
 		}
+		GroundBLN gbln = bln.ground(db);
+		gbln.getParameterHandler().handle(params, false);
+		gbln.setCPFCache(cpfCache);
+		gbln.setRelevantQueries(relevantQueries);
+		gbln.instantiateGroundNetwork();
+		return gbln;
+	}
+	
+	/**
+	 * returns a ground network that is no longer used by a session to the cache 
+	 * @param key the network's structure key (null if the network is not to be cached)
+	 * @param gbln
+	 */
+	protected void releaseGroundNetwork(String key, GroundBLN gbln) {
+		if(key == null)
+			return;
+		synchronized(groundNetworkCache) {
+			groundNetworkCache.remove(key);
+			groundNetworkCache.put(key, gbln);
+		}
+	}
+	
+	/**
+	 * computes the key under which the ground network for the given database is cached, which 
+	 * comprises the domains and the evidence for all functions that affect the network structure
+	 * @param db a finalized database
+	 * @param params the parameters of the session
+	 * @return the key or null if the ground network must not be cached
+	 * @throws ProbCogException
+	 */
+	protected String getStructureKey(Database db, Map<String, Object> params) throws ProbCogException {
+		if(groundNetworkCacheSize <= 0)
+			return null;
+		// with formula simplification, the formulaic part of the ground network depends on all the evidence
+		Object simplify = params.get("simplifyFormulas");
+		if(simplify != null && Boolean.parseBoolean(simplify.toString()))
+			return null;
+		StringBuilder key = new StringBuilder();
+		TreeSet<String> types = new TreeSet<String>();
+		for(Signature sig : bln.rbn.getSignatures()) {
+			if(!sig.isBoolean() && !sig.isReal())
+				types.add(sig.returnType);
+			types.addAll(Arrays.asList(sig.argTypes));
+		}
+		for(String type : types) {
+			Iterable<String> dom = db.getDomain(type);
+			if(dom == null)
+				continue;
+			ArrayList<String> elems = new ArrayList<String>();
+			for(String elem : dom)
+				elems.add(elem);
+			Collections.sort(elems);
+			key.append(type).append(elems).append('\n');
+		}
+		ArrayList<String> entries = new ArrayList<String>();
+		for(Variable var : db.getEntries())
+			if(structuralFunctions.contains(var.functionName))
+				entries.add(Signature.formatVarName(var.functionName, var.params) + "=" + var.value);
+		Collections.sort(entries);
+		for(String entry : entries)
+			key.append(entry).append('\n');
+		return key.toString();
+	}
+
+	/**
+	 * computes the part of the cache key of a network restricted to the variables relevant to the given queries,
+	 * which, in addition to the structure key, depends on the queries and the set of evidence variables
+	 * @param db a finalized database
+	 * @param queries
+	 * @return the key
+	 * @throws ProbCogException
+	 */
+	protected String getRelevanceKey(Database db, Iterable<String> queries) throws ProbCogException {
+		StringBuilder key = new StringBuilder("relevant to\n");
+		TreeSet<String> sortedQueries = new TreeSet<String>();
+		for(String query : queries)
+			sortedQueries.add(query);
+		for(String query : sortedQueries)
+			key.append(query).append('\n');
+		ArrayList<String> vars = new ArrayList<String>();
+		for(Variable var : db.getEntries())
+			vars.add(Signature.formatVarName(var.functionName, var.params));
+		Collections.sort(vars);
+		for(String var : vars)
+			key.append(var).append('\n');
+		return key.toString();
+	}
+
+	/**
+	 * creates a database variable from an evidence tuple
+	 * @param tuple a function name followed by the arguments and the value (which may be omitted for Boolean functions)
+	 * @return the variable
+	 * @throws ProbCogException
+	 */
+	protected Variable evidenceVariable(String[] tuple) throws ProbCogException {
+		String functionName = tuple[0];
+		Signature sig = bln.rbn.getSignature(functionName);
+		if(sig == null)
+			throw new ProbCogException("Function '" + functionName + "' appearing in evidence not found in model " + name);
+		String value;
+		String[] params;
+		if(sig.argTypes.length == tuple.length-1) {
+			params = new String[tuple.length-1];
+			for(int i = 0; i < params.length; i++)
+				params[i] = tuple[i+1];
+			value = "True";
+		}
+		else {
+			if(tuple.length < sig.argTypes.length+2)
+				throw new ProbCogException("Evidence entry has too few parameters: " + StringTool.join(", ", tuple));
+			params = new String[sig.argTypes.length];
+			for(int i = 0; i < params.length; i++)
+				params[i] = tuple[i+1];
+			value = tuple[params.length+1];
+		}
+		return new Variable(functionName, params, value, this.bln.rbn);
 	}
 
 	@Override
@@ -151,7 +371,7 @@ public class BLNModel extends Model {
 
 	@Override
 	protected String _getConstantType(String constant) {
-		return db.getConstantType(constant);
+		return getGuaranteedConstantType(bln.rbn, constant);
 	}
     
     @Override
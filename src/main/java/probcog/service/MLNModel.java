@@ -39,8 +39,6 @@ import probcog.srl.mln.inference.MCSAT;
 public class MLNModel extends Model {
 
 	protected MarkovLogicNetwork mln;
-	protected Database db;
-	protected MarkovRandomField mrf;
 	
 	public MLNModel(String name, String mln) throws ProbCogException {
 		super(name);
@@ -49,50 +47,75 @@ public class MLNModel extends Model {
 
 	@Override
 	protected String _getConstantType(String constant) {
-		return db.getConstantType(constant);
+		return getGuaranteedConstantType(mln, constant);
 	}
 	
-	@Override
-	public void beginSession(Map<String, Object> params) throws ProbCogException {
-		super.beginSession(params);
-		db = new Database(mln);
+	/**
+	 * a session of an MLN model, which has its own evidence database and ground Markov random field
+	 */
+	protected class MLNSession extends Session {
+		protected final Database db;
+		protected final MarkovRandomField mrf;
+		
+		public MLNSession(Map<String, Object> params, Vector<String[]> evidence) throws ProbCogException {
+			super(MLNModel.this, params);
+			db = new Database(mln);
+			paramHandler.addSubhandler(db);
+			paramHandler.handle(this.params, false);
+			for(String[] tuple : evidence)
+				db.addVariable(evidenceVariable(tuple));
+			mrf = mln.ground(db);
+		}
+		
+		@Override
+		protected Vector<InferenceResult> _infer(Iterable<String> queries) throws ProbCogException {
+			InferenceAlgorithm ia = new MCSAT(mrf);
+			ia.getParameterHandler().handle(params, false);
+			Vector<InferenceResult> res = new Vector<InferenceResult>();
+			for(probcog.srl.mln.inference.InferenceResult r : ia.infer(queries)) {
+				InferenceResult r2 = new InferenceResult(r.ga.predicate, r.ga.args, r.value);
+				res.add(r2);
+			}
+			return res;
+		}
+		
+		@Override
+		protected String _getConstantType(String constant) {
+			return db.getConstantType(constant);
+		}
 	}
-
+	
 	@Override
-	protected Vector<InferenceResult> _infer(Iterable<String> queries) throws ProbCogException {
-		InferenceAlgorithm ia = new MCSAT(mrf);
-		paramHandler.addSubhandler(ia);
-		Vector<InferenceResult> res = new Vector<InferenceResult>();
-		for(probcog.srl.mln.inference.InferenceResult r : ia.infer(queries)) {
-			InferenceResult r2 = new InferenceResult(r.ga.predicate, r.ga.args, r.value);
-			res.add(r2);
-		}
-		return res;
+	protected Session _createSession(Map<String, Object> params, Vector<String[]> evidence) throws ProbCogException {
+		return new MLNSession(params, evidence);
 	}
 
-	@Override
-	protected void _setEvidence(Iterable<String[]> evidence) throws ProbCogException {
-		for(String[] tuple : evidence) {
-			String functionName = tuple[0];
-			Signature sig = mln.getSignature(functionName);
-			if(sig == null)
-				throw new ProbCogException("Function '" + functionName + "' appearing in evidence not found in model " + name);
-			String value;
-			String[] params;
-			if(sig.argTypes.length == tuple.length-1) {
-				params = new String[tuple.length-1];
-				for(int i = 0; i < params.length; i++)
-					params[i] = tuple[i+1];
-				value = BooleanDomain.True;
-			}
-			else {
-				params = new String[tuple.length-2];
-				for(int i = 0; i < params.length; i++)
-					params[i] = tuple[i+1];
-				value = BooleanDomain.getStandardValue(tuple[tuple.length-1]);				
-			}
-			db.addVariable(new Variable(functionName, params, value, mln));
+	/**
+	 * creates a database variable from an evidence tuple
+	 * @param tuple a predicate name followed by the arguments and, optionally, the truth value
+	 * @return the variable
+	 * @throws ProbCogException
+	 */
+	protected Variable evidenceVariable(String[] tuple) throws ProbCogException {
+		String functionName = tuple[0];
+		Signature sig = mln.getSignature(functionName);
+		if(sig == null)
+			throw new ProbCogException("Function '" + functionName + "' appearing in evidence not found in model " + name);
+		String value;
+		String[] params;
+		if(sig.argTypes.length == tuple.length-1) {
+			params = new String[tuple.length-1];
+			for(int i = 0; i < params.length; i++)
+				params[i] = tuple[i+1];
+			value = BooleanDomain.True;
+		}
+		else {
+			params = new String[tuple.length-2];
+			for(int i = 0; i < params.length; i++)
+				params[i] = tuple[i+1];
+			value = BooleanDomain.getStandardValue(tuple[tuple.length-1]);				
 		}
+		return new Variable(functionName, params, value, mln);
 	}
 
 	@Override
@@ -104,9 +127,4 @@ public class MLNModel extends Model {
 	public Vector<String[]> getPredicates() {		
 		return getPredicatesFromSignatures(mln.getSignatures());
 	}
-
-	@Override
-	public void instantiate() throws ProbCogException {
-		mrf = mln.ground(db);		
-	}
 }
@@ -27,10 +27,16 @@ import java.util.Map.Entry;
 import probcog.exception.ProbCogException;
 import probcog.inference.IParameterHandler;
 import probcog.inference.ParameterHandler;
+import probcog.srl.RelationalModel;
 import probcog.srl.Signature;
 
 /**
  * Abstract base class for models that can be used in the ProbCog service.
+ * A model is not changed by inference: Each request is processed in a {@link Session}
+ * (see {@link #createSession(Map, Iterable)}), such that requests concerning the same model
+ * can be processed concurrently. 
+ * The methods {@link #beginSession(Map)}, {@link #setEvidence(Iterable)}, {@link #instantiate()}
+ * and {@link #infer(Iterable)} process a single request at a time using an implicit session.
  * @author Dominik Jain
  */
 public abstract class Model implements IParameterHandler {
@@ -38,6 +44,10 @@ public abstract class Model implements IParameterHandler {
 	 * default parameters to be used with this model
 	 */
 	protected Map<String,Object> defaultParameters;
+	/**
+	 * whether the default parameters have been passed to the model's parameter handler since they were last changed
+	 */
+	protected boolean defaultParametersHandled = true;
 	/**
 	 * maps from ProbCog constants to external constants
 	 */
@@ -50,9 +60,23 @@ public abstract class Model implements IParameterHandler {
 	 * name of the model
 	 */
 	protected String name;
+	/**
+	 * handles the parameters that concern the model itself (rather than individual sessions)
+	 */
 	protected ParameterHandler paramHandler;
+	/**
+	 * the parameters of the implicit session
+	 */
 	protected HashMap<String, Object> actualParams;
+	/**
+	 * the evidence of the implicit session
+	 */
+	protected Vector<String[]> sessionEvidence;
 	protected boolean haveSession = false;
+	/**
+	 * the implicit session that was most recently instantiated
+	 */
+	protected Session session = null;
 	
 	public Model(String name) throws ProbCogException {
 		defaultParameters = new HashMap<String,Object>();
@@ -61,16 +85,34 @@ public abstract class Model implements IParameterHandler {
 		paramHandler = new ParameterHandler(this);
 	}
 	
-	protected abstract void _setEvidence(Iterable<String[]> evidence) throws ProbCogException;
-	public abstract void instantiate() throws ProbCogException;
+	/**
+	 * creates a session for the given parameters and evidence
+	 * @param params the parameters of the session (which extend/override the model's default parameters)
+	 * @param evidence the evidence, where constants have already been mapped to ProbCog constants
+	 * @return the session
+	 * @throws ProbCogException
+	 */
+	protected abstract Session _createSession(Map<String, Object> params, Vector<String[]> evidence) throws ProbCogException;
 	
 	/**
-	 * runs the actual inference method, without mapping constants  
-	 * @param queries
-	 * @return
+	 * creates a session in which the model is instantiated for the given evidence. 
+	 * This method can be called concurrently by several threads.
+	 * @param params parameters for the session (which extend/override the model's default parameters); may be null
+	 * @param evidence a collection of arrays, where each array contains a predicate/function name followed by some arguments and finally the value. For a Boolean function, the value can be omitted (True is default).
+	 * @return the session, which should be closed after use
 	 * @throws ProbCogException
 	 */
-	protected abstract java.util.Vector<InferenceResult> _infer(Iterable<String> queries) throws ProbCogException;
+	public Session createSession(Map<String, Object> params, Iterable<String[]> evidence) throws ProbCogException {
+		HashMap<String, Object> sessionParams;
+		synchronized(this) {
+			handleDefaultParameters();
+			sessionParams = new HashMap<String, Object>(defaultParameters);
+		}
+		if(params != null)
+			sessionParams.putAll(params);
+		return _createSession(sessionParams, mapEvidence(evidence));
+	}
+	
 	public abstract Vector<String[]> getDomains();
 
 	public abstract Vector<String[]> getPredicates();
@@ -94,62 +136,116 @@ public abstract class Model implements IParameterHandler {
 		return ret;
 	}
 	
-	public void beginSession(Map<String, Object> params) throws ProbCogException {
+	/**
+	 * maps the constants appearing in the given evidence to ProbCog constants, filtering evidence where constants are mapped to null
+	 * @param evidence
+	 * @return the mapped evidence (the given arrays are not modified)
+	 */
+	protected Vector<String[]> mapEvidence(Iterable<String[]> evidence) {
+		Vector<String[]> newEvidence = new Vector<String[]>();
+		for(String[] s : evidence) {
+			String[] t = s.clone();
+			boolean keep = true;
+			for(int i = 1; i < t.length; i++) {
+				t[i] = this.mapConstantToProbCog(t[i]);
+				if(t[i] == null) {
+					keep = false;
+					break;
+				}
+			}
+			if(keep)
+				newEvidence.add(t);
+		}
+		return newEvidence;
+	}
+	
+	/**
+	 * begins the implicit session, discarding any evidence previously set
+	 * @param params parameters for the session (which extend/override the model's default parameters); may be null
+	 * @throws ProbCogException
+	 */
+	public synchronized void beginSession(Map<String, Object> params) throws ProbCogException {
+		handleDefaultParameters();
 		actualParams = new HashMap<String, Object>(defaultParameters);
 		if(params != null)
 			actualParams.putAll(params);
-		paramHandler.handle(actualParams, false);
+		sessionEvidence = new Vector<String[]>();
+		haveSession = true;
 	}
 	
 	public void beginSession() throws ProbCogException {
 		beginSession(null);
 	}
 	
-	public void setEvidence(Iterable<String[]> evidence) throws ProbCogException {
+	/**
+	 * adds evidence to the implicit session (beginning a new session if necessary)
+	 * @param evidence a collection of arrays, where each array contains a predicate/function name followed by some arguments and finally the value
+	 * @throws ProbCogException
+	 */
+	public synchronized void setEvidence(Iterable<String[]> evidence) throws ProbCogException {
+		if(haveSession == false)
+			beginSession();
+		for(String[] s : evidence)
+			sessionEvidence.add(s);
+	}
+	
+	/**
+	 * instantiates the model for the evidence of the implicit session, which is thereby completed 
+	 * (evidence that is subsequently set begins a new session)
+	 * @throws ProbCogException
+	 */
+	public synchronized void instantiate() throws ProbCogException {
 		if(haveSession == false)
 			beginSession();
-		// map constants, filtering evidence where constants are mapped to null
-		Vector<String[]> newEvidence = new Vector<String[]>();
-		for(String[] s : evidence) {
-			boolean keep = true;
-			for(int i = 1; i < s.length; i++) {
-				s[i] = this.mapConstantToProbCog(s[i]);
-				if(s[i] == null) {
-					keep = false;
-					break;
-				}
-			}
-			if(keep)
-				newEvidence.add(s);
-		}
-		// actually set the evidence
-		_setEvidence(newEvidence);
-	}
-	
-	public java.util.Vector<InferenceResult> infer(Iterable<String> queries) throws ProbCogException {
-		// run inference
-		Vector<InferenceResult> actualResults = _infer(queries);
-		// map results and return
-		Vector<InferenceResult> mappedResults = new Vector<InferenceResult>(); 
-		for(InferenceResult r : actualResults) {
-			if(!r.mapConstants(this))
-				continue;
-			mappedResults.add(r);
-		}
-		return mappedResults;
+		if(session != null)
+			session.close();
+		session = null;
+		session = createSession(actualParams, sessionEvidence);
+		haveSession = false;
 	}
 	
 	/**
-	 * sets a default parameter for this model
+	 * runs inference in the implicit session that was most recently instantiated
+	 * @param queries
+	 * @return the inference results with constants mapped to external constants
+	 * @throws ProbCogException
+	 */
+	public synchronized java.util.Vector<InferenceResult> infer(Iterable<String> queries) throws ProbCogException {
+		if(session == null)
+			throw new ProbCogException("Model " + name + " was not instantiated");
+		return session.infer(queries);
+	}
+	
+	/**
+	 * sets a default parameter for this model (parameters concerning the model itself take effect, and
+	 * invalid values are reported, when the next session is created)
 	 * @param key
 	 * @param value
 	 */
-	public void setDefaultParameter(String key, Object value) {
+	public synchronized void setDefaultParameter(String key, Object value) {
 		defaultParameters.put(key, value);
+		defaultParametersHandled = false;
 	}
 	
-	public void setDefaultParameters(Map<String,Object> params) {
+	public synchronized void setDefaultParameters(Map<String,Object> params) {
 		this.defaultParameters = params;
+		defaultParametersHandled = false;
+	}
+	
+	/**
+	 * passes the default parameters to the model's parameter handler if they were changed
+	 * @throws ProbCogException if a parameter has an invalid value
+	 */
+	protected synchronized void handleDefaultParameters() throws ProbCogException {
+		if(defaultParametersHandled)
+			return;
+		try {
+			paramHandler.handle(defaultParameters, false);
+		}
+		catch(IllegalArgumentException e) {
+			throw new ProbCogException("Invalid default parameter for model " + name + ": " + e.getMessage(), e);
+		}
+		defaultParametersHandled = true;
 	}
 	
 	/**
@@ -201,15 +297,35 @@ public abstract class Model implements IParameterHandler {
 	 * @param constant
 	 * @return the type name of the constant or null if the constant is unknown (or mapped to nothing in ProbCog)
 	 */
-	public String getConstantType(String constant) {
+	public synchronized String getConstantType(String constant) {
+		if(session != null)
+			return session.getConstantType(constant);
 		constant = mapConstantToProbCog(constant);
 		if(constant == null)
 			return null;
 		return _getConstantType(constant);
 	}
 	
+	/**
+	 * gets the type of a given constant, considering only the constants that are known to the model itself
+	 * @param constant a ProbCog constant
+	 * @return the type name of the constant or null if the constant is unknown
+	 */
 	protected abstract String _getConstantType(String constant);
 	
+	/**
+	 * gets the type of a constant by searching the guaranteed domain elements of a relational model
+	 * @param model
+	 * @param constant
+	 * @return the type name or null if the constant is not a guaranteed domain element
+	 */
+	protected static String getGuaranteedConstantType(RelationalModel model, String constant) {
+		for(Entry<String, ? extends Collection<String>> e : model.getGuaranteedDomainElements().entrySet())
+			if(e.getValue().contains(constant))
+				return e.getKey();
+		return null;
+	}
+	
 	public String getName() {
 		return name;
 	}
@@ -20,7 +20,18 @@ package probcog.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
@@ -35,14 +46,65 @@ import probcog.exception.ProbCogException;
 
 /**
  * Represents a pool of models.
+ * Models are loaded on demand, i.e. when they are first requested, or in parallel in the 
+ * background (see {@link #preload(int)}). Models that have not been requested for some time 
+ * can optionally be unloaded (see {@link #setIdleTimeout(long, TimeUnit)}), in which case they 
+ * are reloaded upon the next request.
+ * All methods can be called concurrently.
  * @author Dominik Jain
  */
 public class ModelPool {
-	protected HashMap<String, Model> pool;
+	/**
+	 * the loading state of a model
+	 */
+	public enum State {
+		/**
+		 * the model has not been loaded (or has been unloaded)
+		 */
+		Unloaded, 
+		/**
+		 * the model is being loaded
+		 */
+		Loading, 
+		/**
+		 * the model has been loaded and is ready for use
+		 */
+		Ready
+	};
+	
+	/**
+	 * the definitions of the models in the pool (which remain unchanged after the pool file has been read) 
+	 */
+	protected HashMap<String, PoolReader.ModelData> definitions;
+	/**
+	 * maps names of models to the tasks that load them (which are removed when models are unloaded)
+	 */
+	protected ConcurrentHashMap<String, FutureTask<Model>> pool;
+	/**
+	 * the times (as given by {@link System#nanoTime()}) at which models were last requested or finished loading
+	 */
+	protected ConcurrentHashMap<String, Long> lastUsed;
 	protected File poolPath;
+	/**
+	 * the time after which models that have not been requested are unloaded (in nanoseconds; 0 if models are never unloaded)
+	 */
+	protected volatile long idleTimeout = 0;
+	protected ScheduledExecutorService evictionScheduler = null;
+	/**
+	 * whether to report the unloading of idle models
+	 */
+	protected volatile boolean verbose = true;
 	
+	/**
+	 * reads the definitions of the models in the given pool file; models are not loaded until they are requested 
+	 * (or preloaded using {@link #preload(int)}) 
+	 * @param poolFilename
+	 * @throws ProbCogException
+	 */
 	public ModelPool(String poolFilename) throws ProbCogException {
-		pool = new HashMap<String, Model>();
+		definitions = new HashMap<String, PoolReader.ModelData>();
+		pool = new ConcurrentHashMap<String, FutureTask<Model>>();
+		lastUsed = new ConcurrentHashMap<String, Long>();
 		
 		File poolFile = new File(poolFilename);
 		poolPath = poolFile.getParentFile();
@@ -57,8 +119,166 @@ public class ModelPool {
 		}
 	}
 	
-	public Model getModel(String name) {
-		return pool.get(name);
+	/**
+	 * gets a model, loading it if it has not yet been loaded; if the model is currently being loaded by 
+	 * another thread, waits for the loading process to complete
+	 * @param name the name of the model
+	 * @return the model or null if the pool does not contain a model with the given name
+	 * @throws ProbCogException if the model could not be loaded
+	 */
+	public Model getModel(String name) throws ProbCogException {
+		FutureTask<Model> task = getLoadingTask(name);
+		if(task == null)
+			return null;
+		lastUsed.put(name, System.nanoTime());
+		task.run(); // loads the model in this thread, unless the loading task was already started (or completed) 
+		try {
+			return task.get();
+		}
+		catch(ExecutionException e) {
+			pool.remove(name, task); // allow the model to be loaded again upon the next request
+			Throwable cause = e.getCause();
+			if(cause instanceof ProbCogException)
+				throw (ProbCogException)cause;
+			throw new ProbCogException("Error loading model " + name, cause);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProbCogException("Interrupted while loading model " + name, e);
+		}
+	}
+	
+	/**
+	 * gets the task that loads the given model, creating it if necessary
+	 * @param name the name of the model
+	 * @return the loading task or null if the pool does not contain a model with the given name
+	 */
+	protected FutureTask<Model> getLoadingTask(final String name) {
+		final PoolReader.ModelData data = definitions.get(name);
+		if(data == null)
+			return null;
+		FutureTask<Model> task = pool.get(name);
+		if(task == null) {
+			FutureTask<Model> newTask = new FutureTask<Model>(() -> {
+				Model m = data.instantiate();
+				lastUsed.put(name, System.nanoTime()); // a model that was preloaded counts as used when loading completes
+				return m;
+			});
+			task = pool.putIfAbsent(name, newTask);
+			if(task == null)
+				task = newTask;
+		}
+		return task;
+	}
+	
+	/**
+	 * @return the names of all the models in the pool (regardless of whether they have been loaded)
+	 */
+	public Collection<String> getModelNames() {
+		return Collections.unmodifiableCollection(definitions.keySet());
+	}
+	
+	/**
+	 * @param name the name of a model
+	 * @return the loading state of the model (Unloaded if there is no model with the given name or if it could not be loaded)
+	 */
+	public State getState(String name) {
+		FutureTask<Model> task = pool.get(name);
+		if(task == null)
+			return State.Unloaded;
+		if(!task.isDone())
+			return State.Loading;
+		try {
+			task.get();
+			return State.Ready;
+		}
+		catch(ExecutionException | InterruptedException e) {
+			return State.Unloaded;
+		}
+	}
+	
+	/**
+	 * @param name the name of a model
+	 * @return true if the model has been loaded, i.e. a request for the model can be answered without delay
+	 */
+	public boolean isReady(String name) {
+		return getState(name) == State.Ready;
+	}
+	
+	/**
+	 * loads all the models in the pool that have not yet been loaded in the background, using the given number of threads.
+	 * Requests for models that are still being loaded wait for them to be loaded.
+	 * @param numThreads the number of models to load in parallel
+	 */
+	public void preload(int numThreads) {
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads, daemonThreadFactory("ProbCog model loader"));
+		preload(executor);
+		executor.shutdown();
+	}
+	
+	/**
+	 * loads all the models in the pool that have not yet been loaded using the given executor
+	 * @param executor
+	 */
+	public void preload(ExecutorService executor) {
+		for(String name : definitions.keySet())
+			executor.execute(getLoadingTask(name));
+	}
+	
+	/**
+	 * sets the time after which models that have not been requested are unloaded. 
+	 * Unloading a model does not affect sessions that are still using it.
+	 * @param timeout the time after which to unload models (0 to never unload models)
+	 * @param unit the unit of the timeout
+	 */
+	public synchronized void setIdleTimeout(long timeout, TimeUnit unit) {
+		idleTimeout = unit.toNanos(timeout);
+		if(evictionScheduler != null) {
+			evictionScheduler.shutdownNow();
+			evictionScheduler = null;
+		}
+		if(idleTimeout > 0) {
+			long period = Math.max(1, idleTimeout / 10);
+			evictionScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("ProbCog model eviction"));
+			evictionScheduler.scheduleAtFixedRate(() -> evictIdleModels(), period, period, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+	
+	/**
+	 * unloads the models that have not been requested within the idle timeout
+	 * (models that are still being loaded are never unloaded)
+	 * @return the number of models that were unloaded
+	 */
+	public int evictIdleModels() {
+		long timeout = idleTimeout;
+		if(timeout <= 0)
+			return 0;
+		long now = System.nanoTime();
+		int numEvicted = 0;
+		for(Entry<String, FutureTask<Model>> e : pool.entrySet()) {
+			Long t = lastUsed.get(e.getKey());
+			if(t != null && e.getValue().isDone() && now - t > timeout) {
+				if(pool.remove(e.getKey(), e.getValue())) {
+					lastUsed.remove(e.getKey(), t);
+					if(verbose)
+						System.out.println("Unloading idle model " + e.getKey());
+					numEvicted++;
+				}
+			}
+		}
+		return numEvicted;
+	}
+	
+	protected static ThreadFactory daemonThreadFactory(final String name) {
+		return r -> {
+			Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		};
 	}
 	
 	/**
@@ -135,6 +355,9 @@ public class ModelPool {
 				String filename = attrs.getValue("name");
 				currentModel.files.put(type, filename);
 			}
+			else if(qName.equals("param")) {
+				currentModel.params.put(attrs.getValue("name"), attrs.getValue("value"));
+			}
 			else if(qName.equals("constantMap")) {
 				String from = attrs.getValue("from");
 				String to = attrs.getValue("to");
@@ -143,12 +366,12 @@ public class ModelPool {
 		}
 	
 		public void endElement(String uri, String name, String qName) {
-			try {
-				if(qName.equals("model"))
-					pool.put(currentModel.name, currentModel.instantiate());				
-			}
-			catch (Exception e) {
-				throw new RuntimeException(e.getMessage());					
+			if(qName.equals("model")) {
+				if(currentModel.name == null)
+					throw new RuntimeException("Model has no 'name' attribute.");
+				if(definitions.containsKey(currentModel.name))
+					throw new RuntimeException(String.format("Duplicate model '%s'", currentModel.name));
+				definitions.put(currentModel.name, currentModel);
 			}
 		}
 		
@@ -26,6 +26,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,14 +38,56 @@ import probcog.logic.parser.ParseException;
 
 /**
  * Serves a pool of models (base class for specialized server interfaces);
- * the implementation here uses a dummy command pipe interface
+ * the implementation here uses a dummy command pipe interface.
+ * Queries are processed in separate sessions (see {@link Session}), such that they can
+ * be run concurrently, either by calling {@link #query(String, Collection, Collection)} from 
+ * several threads or by submitting them to the server's executor using 
+ * {@link #submitQuery(String, Collection, Collection)}.
  * @author Dominik Jain
  */
 public class Server {
 	ModelPool modelPool; 
+	/**
+	 * the executor that runs submitted queries
+	 */
+	protected ExecutorService executor;
+	/**
+	 * whether to print the evidence and results of each query
+	 */
+	protected boolean verbose = true;
 	
+	/**
+	 * creates a server whose submitted queries are run by a pool with one thread per available processor
+	 * (daemon threads, which do not keep the JVM running if the server is not shut down)
+	 * @param modelPoolFile
+	 * @throws ProbCogException
+	 */
 	public Server(String modelPoolFile) throws ProbCogException {
+		this(modelPoolFile, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), ModelPool.daemonThreadFactory("ProbCog query")));
+	}
+	
+	/**
+	 * @param modelPoolFile
+	 * @param executor the executor with which to run submitted queries (e.g. one that starts a virtual thread 
+	 * for each task, where supported by the Java runtime); if its threads are not daemon threads, the server must be
+	 * shut down (see {@link #shutdown()}) for the JVM to exit
+	 * @throws ProbCogException
+	 */
+	public Server(String modelPoolFile, ExecutorService executor) throws ProbCogException {
 		modelPool = new ModelPool(modelPoolFile);
+		this.executor = executor;
+	}
+	
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+		modelPool.setVerbose(verbose);
+	}
+	
+	/**
+	 * shuts down the executor of the server (queries that were already submitted are still processed)
+	 */
+	public void shutdown() {
+		executor.shutdown();
 	}
 	
 	protected static Vector<String[]> readListOfLispTuples(String s) {
@@ -76,18 +121,28 @@ public class Server {
 		return query("tableSetting", queries, evidenceTuples);
 	}
 	
-	public Vector<String[]> getPredicates(String modelName) {
+	public Vector<String[]> getPredicates(String modelName) throws ProbCogException {
 		return modelPool.getModel(modelName).getPredicates();
 	}
 	
-	public Vector<String[]> getDomains(String modelName) {
+	public Vector<String[]> getDomains(String modelName) throws ProbCogException {
 		return modelPool.getModel(modelName).getDomains();
 	}
 	
-	public Model getModel(String modelName) {
+	/**
+	 * gets a model from the pool, loading it if necessary
+	 * @param modelName
+	 * @return the model or null if there is no such model
+	 * @throws ProbCogException if the model could not be loaded
+	 */
+	public Model getModel(String modelName) throws ProbCogException {
 		return modelPool.getModel(modelName);
 	}
 	
+	public ModelPool getModelPool() {
+		return modelPool;
+	}
+	
 	/**
 	 * translates a list of LISP-style tuples, such as (sitsAtIn ?PERSON ?SEATING-LOCATION M),
 	 * to regular query strings, such as "sitsAtIn(a1,a2,M)"
@@ -124,29 +179,45 @@ public class Server {
 	 */
 	public Vector<InferenceResult> query(String modelName, Collection<String> queries, Collection<String[]> evidence) throws ProbCogException {
 		// get model
-		Model model = modelPool.getModel(modelName);		
-		// set evidence		
-		model.setEvidence(evidence);
-		// instantiate model and perform inference
-		System.out.printf("instantiating model from %s\n", model.toString());
-		model.instantiate();
-		Vector<InferenceResult> results = model.infer(queries);
+		Model model = modelPool.getModel(modelName);
+		if(model == null)
+			throw new ProbCogException("Unknown model '" + modelName + "'");
+		// instantiate model for the evidence and perform inference
+		if(verbose)
+			System.out.printf("instantiating model from %s\n", model.toString());
+		Vector<InferenceResult> results;
+		try(Session session = model.createSession(null, evidence)) {
+			results = session.infer(queries);
+		}
 		// output evidence and results
-		boolean verbose = true;
 		if(verbose) {
-			System.out.println("\nEvidence:");
-			for(String[] e : evidence)
-				System.out.println(Arrays.toString(e));
-			System.out.println("\nResults:");
-			LinkedList<InferenceResult> sortedres = new LinkedList<InferenceResult>(results);
-			Collections.sort(sortedres);
-			for(InferenceResult r : sortedres)
-				r.print(System.out);
+			synchronized(System.out) {
+				System.out.println("\nEvidence:");
+				for(String[] e : evidence)
+					System.out.println(Arrays.toString(e));
+				System.out.println("\nResults:");
+				LinkedList<InferenceResult> sortedres = new LinkedList<InferenceResult>(results);
+				Collections.sort(sortedres);
+				for(InferenceResult r : sortedres)
+					r.print(System.out);
+			}
 		}
 		// return results
 		return results;
 	}
 	
+	/**
+	 * submits a query to the server's executor, such that it is processed asynchronously 
+	 * (concurrently with other submitted queries)
+	 * @param modelName the model to use
+	 * @param queries a collection of queries, i.e. either predicate/function names, partially grounded predicates/terms (variables in lower-case) or fully grounded predicates/terms
+	 * @param evidence a collection of arrays, where each array contains a predicate/function name followed by some arguments and finally the value. For a Boolean function, the value can be omitted (True is default).
+	 * @return a future for the inference results (with constants already mapped)
+	 */
+	public Future<Vector<InferenceResult>> submitQuery(final String modelName, final Collection<String> queries, final Collection<String[]> evidence) {
+		return executor.submit(() -> query(modelName, queries, evidence));
+	}
+	
 	/**
 	 * processes a query by setting the evidence, instantiating the model and running the inference procedure 
 	 * @param modelName
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import probcog.exception.ProbCogException;
+import probcog.inference.IParameterHandler;
+import probcog.inference.ParameterHandler;
+
+/**
+ * A session of a model in the ProbCog service, i.e. the instantiation of the model for a fixed set of
+ * evidence and parameters, which are set when the session is created (see {@link Model#createSession(Map, Iterable)}).
+ * All the state that is specific to a request (evidence database, ground model, parameter handling)
+ * belongs to the session, while the model itself is only read, such that several sessions of the same
+ * model can be used concurrently by different threads. An individual session is to be used by one thread at a time.
+ * Sessions should be closed after use, which allows the model to reuse their resources.
+ */
+public abstract class Session implements IParameterHandler, AutoCloseable {
+	protected final Model model;
+	/**
+	 * the parameters of the session (the model's default parameters extended/overridden by the ones given at creation)
+	 */
+	protected final Map<String, Object> params;
+	protected final ParameterHandler paramHandler;
+
+	/**
+	 * @param model the model to which the session belongs
+	 * @param params the parameters of the session
+	 * @throws ProbCogException
+	 */
+	protected Session(Model model, Map<String, Object> params) throws ProbCogException {
+		this.model = model;
+		this.params = Collections.unmodifiableMap(new HashMap<String, Object>(params));
+		this.paramHandler = new ParameterHandler(this);
+	}
+
+	/**
+	 * runs the actual inference method, without mapping constants
+	 * @param queries
+	 * @return
+	 * @throws ProbCogException
+	 */
+	protected abstract Vector<InferenceResult> _infer(Iterable<String> queries) throws ProbCogException;
+
+	/**
+	 * computes the results for the given queries
+	 * @param queries a collection of queries, i.e. predicate/function names or (partially) grounded atoms
+	 * @return the inference results with constants mapped to external constants
+	 * @throws ProbCogException
+	 */
+	public Vector<InferenceResult> infer(Iterable<String> queries) throws ProbCogException {
+		// run inference
+		Vector<InferenceResult> actualResults = _infer(queries);
+		// map results and return
+		Vector<InferenceResult> mappedResults = new Vector<InferenceResult>();
+		for(InferenceResult r : actualResults) {
+			if(!r.mapConstants(model))
+				continue;
+			mappedResults.add(r);
+		}
+		return mappedResults;
+	}
+
+	/**
+	 * gets the type of a given constant, taking into account the constants appearing in the session's evidence
+	 * @param constant
+	 * @return the type name of the constant or null if the constant is unknown (or mapped to nothing in ProbCog)
+	 */
+	public String getConstantType(String constant) {
+		constant = model.mapConstantToProbCog(constant);
+		if(constant == null)
+			return null;
+		return _getConstantType(constant);
+	}
+
+	protected abstract String _getConstantType(String constant);
+
+	public Model getModel() {
+		return model;
+	}
+
+	public Map<String, Object> getParameters() {
+		return params;
+	}
+
+	@Override
+	public ParameterHandler getParameterHandler() {
+		return paramHandler;
+	}
+
+	/**
+	 * ends the session; the session must not be used afterwards
+	 */
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import probcog.exception.ProbCogException;
+import edu.tum.cs.util.StringTool;
+
+/**
+ * A server that processes requests received via a socket on the local machine, keeping
+ * the pool of models loaded between requests.
+ * The protocol is line-based. A request is a line of the form
+ * <pre>
+ *   &lt;id&gt; &lt;model&gt; &lt;query&gt; ... [; &lt;evidence atom&gt; ...]
+ * </pre>
+ * where the id is chosen by the client, queries are given as for {@link Server#query(String, java.util.Collection, Iterable)}
+ * and evidence atoms are of the form "f(a1,...,aN)" or, for non-Boolean functions, "f(a1,...,aN,value)";
+ * neither may contain whitespace. A client can send any number of requests without waiting for responses,
+ * the requests being processed concurrently by the server's executor. As soon as a request has been processed,
+ * the response is sent, which consists of lines
+ * <pre>
+ *   RESULT &lt;id&gt; &lt;atom&gt; &lt;probability&gt;
+ * </pre>
+ * for each inference result followed by a line "DONE &lt;id&gt; &lt;number of results&gt;", or of a single line
+ * "ERROR &lt;id&gt; &lt;message&gt;". Responses to different requests are thus sent in the order in which the
+ * requests complete. Responses are written by a thread of the connection (never by the executor's workers), and
+ * the number of requests per connection that have been received but not yet answered is limited (see 
+ * {@link #setMaxPendingRequests(int)}); further requests are read only once earlier ones have been answered.
+ * The line "QUIT" (or the end of the input) closes the connection once all pending requests have been answered.
+ */
+public class SocketServer extends Server {
+	public static final int DEFAULT_PORT = 4777;
+	public static final int DEFAULT_MAX_PENDING_REQUESTS = 64;
+	protected ServerSocket serverSocket;
+	/**
+	 * the maximum number of requests per connection that have been received but not yet answered
+	 */
+	protected int maxPendingRequests = DEFAULT_MAX_PENDING_REQUESTS;
+
+	public SocketServer(String modelPoolFile, ExecutorService executor) throws ProbCogException {
+		super(modelPoolFile, executor);
+		setVerbose(false);
+	}
+
+	/**
+	 * sets the maximum number of requests per connection that may be pending (i.e. received but not yet answered);
+	 * once it is reached, no further requests are read from the connection until a response has been sent
+	 * @param maxPendingRequests
+	 */
+	public void setMaxPendingRequests(int maxPendingRequests) {
+		this.maxPendingRequests = maxPendingRequests;
+	}
+
+	/**
+	 * listens for connections on the loopback interface and handles them until {@link #close()} is called
+	 * (each connection is read by a thread of its own)
+	 * @param port
+	 * @throws IOException
+	 */
+	public void listen(int port) throws IOException {
+		serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		while(!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			}
+			catch(IOException e) {
+				if(serverSocket.isClosed())
+					break;
+				throw e;
+			}
+			Thread t = new Thread(new Connection(socket), "ProbCog connection " + socket.getRemoteSocketAddress());
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	/**
+	 * stops listening for connections and shuts down the executor
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if(serverSocket != null)
+			serverSocket.close();
+		shutdown();
+	}
+
+	/**
+	 * a connection with a client, whose requests are passed on to the executor
+	 */
+	protected class Connection implements Runnable {
+		protected Socket socket;
+		/**
+		 * the responses that are yet to be sent (an empty response marking the end of the connection)
+		 */
+		protected LinkedBlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+		/**
+		 * the number of requests that have been received but not yet answered
+		 */
+		protected int pending = 0;
+
+		public Connection(Socket socket) {
+			this.socket = socket;
+		}
+
+		@Override
+		public void run() {
+			Thread writer = null;
+			try {
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+				writer = new Thread(() -> write(out), Thread.currentThread().getName() + " writer");
+				writer.setDaemon(true);
+				writer.start();
+				String line;
+				while((line = in.readLine()) != null) {
+					line = line.trim();
+					if(line.isEmpty())
+						continue;
+					if(line.equals("QUIT"))
+						break;
+					// wait until another request may be pending
+					synchronized(this) {
+						while(pending >= maxPendingRequests)
+							wait();
+						pending++;
+					}
+					submit(line);
+				}
+			}
+			catch(IOException e) {
+				if(verbose)
+					System.err.println("Connection error: " + e.getMessage());
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				try {
+					// wait for the pending requests to be answered
+					if(writer != null) {
+						synchronized(this) {
+							while(pending > 0)
+								wait();
+						}
+						responses.add("");
+						writer.join();
+					}
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				try {
+					socket.close();
+				}
+				catch(IOException e) {
+				}
+			}
+		}
+
+		/**
+		 * sends responses until the end of the connection is reached; if the client cannot be written to,
+		 * the socket is closed and further responses are discarded
+		 * @param out
+		 */
+		protected void write(PrintWriter out) {
+			boolean failed = false;
+			try {
+				String response;
+				while(!(response = responses.take()).isEmpty()) {
+					if(!failed) {
+						out.print(response);
+						if(responses.isEmpty())
+							out.flush();
+						if(out.checkError()) {
+							failed = true;
+							if(verbose)
+								System.err.println("Connection error: could not send response");
+							try {
+								socket.close(); // (ends the reading of requests)
+							}
+							catch(IOException e) {
+							}
+						}
+					}
+					synchronized(this) {
+						pending--;
+						notifyAll();
+					}
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * parses a request (which has been counted as pending) and submits it to the executor
+		 * @param line
+		 */
+		protected void submit(String line) {
+			String[] tokens = line.split("\\s+");
+			final String id = tokens[0];
+			if(tokens.length < 3) {
+				respond(id, null, "Malformed request: " + line);
+				return;
+			}
+			final String modelName = tokens[1];
+			final List<String> queries = new ArrayList<String>();
+			final List<String> evidence = new ArrayList<String>();
+			List<String> l = queries;
+			for(int i = 2; i < tokens.length; i++) {
+				if(tokens[i].equals(";"))
+					l = evidence;
+				else
+					l.add(tokens[i]);
+			}
+			try {
+				executor.execute(() -> {
+					try {
+						respond(id, query(modelName, queries, evidence), null);
+					}
+					catch(Throwable e) {
+						respond(id, null, e.getMessage() != null ? e.getMessage() : e.toString());
+					}
+				});
+			}
+			catch(RejectedExecutionException e) {
+				respond(id, null, "Server is shutting down");
+			}
+		}
+
+		/**
+		 * queues the response to a request for sending
+		 * @param id the request id
+		 * @param results the inference results (null if an error occurred)
+		 * @param error the error message
+		 */
+		protected void respond(String id, Vector<InferenceResult> results, String error) {
+			StringBuilder sb = new StringBuilder();
+			if(results == null)
+				sb.append(String.format("ERROR %s %s\n", id, error.replace('\n', ' ')));
+			else {
+				for(InferenceResult r : results)
+					sb.append(String.format("RESULT %s %s(%s) %s\n", id, r.functionName, StringTool.join(",", r.params), Double.toString(r.probability)));
+				sb.append(String.format("DONE %s %d\n", id, results.size()));
+			}
+			responses.add(sb.toString());
+		}
+	}
+
+	public static void main(String[] args) {
+		if(args.length < 1) {
+			System.out.println("\nusage: SocketServer <model pool file> [options]\n\n" +
+					"    options: -p <port>      the port to listen on (on the loopback interface; default: " + DEFAULT_PORT + ")\n" +
+					"             -t <threads>   the number of worker threads (default: number of processors)\n" +
+					"             -preload <n>   load all models in the background using n threads (default: load models on first use)\n" +
+					"             -idle <mins>   unload models that have not been used for the given number of minutes\n" +
+					"             -maxPending <n> the maximum number of unanswered requests per connection (default: " + DEFAULT_MAX_PENDING_REQUESTS + ")\n" +
+					"             -v             print evidence and results of each request\n");
+			return;
+		}
+		int port = DEFAULT_PORT;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int numPreloadThreads = 0;
+		long idleMinutes = 0;
+		int maxPending = DEFAULT_MAX_PENDING_REQUESTS;
+		boolean verbose = false;
+		for(int i = 1; i < args.length; i++) {
+			if(args[i].equals("-p"))
+				port = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-t"))
+				numThreads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-preload"))
+				numPreloadThreads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-idle"))
+				idleMinutes = Long.parseLong(args[++i]);
+			else if(args[i].equals("-maxPending"))
+				maxPending = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-v"))
+				verbose = true;
+			else {
+				System.err.println("unknown option " + args[i] + "; arguments: " + Arrays.toString(args));
+				return;
+			}
+		}
+		try {
+			SocketServer server = new SocketServer(args[0], Executors.newFixedThreadPool(numThreads));
+			server.setVerbose(verbose);
+			server.setMaxPendingRequests(maxPending);
+			if(numPreloadThreads > 0)
+				server.getModelPool().preload(numPreloadThreads);
+			if(idleMinutes > 0)
+				server.getModelPool().setIdleTimeout(idleMinutes, TimeUnit.MINUTES);
+			System.out.println("ProbCog server listening on port " + port);
+			server.listen(port);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -18,15 +18,12 @@
  ******************************************************************************/
 package probcog.srl;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.io.StringReader;
 import java.util.Collection;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import edu.tum.cs.util.FileUtil;
 import probcog.exception.ProbCogException;
 
 /**
@@ -41,8 +38,7 @@ public class Database extends GenericDatabase<Variable, String> {
 	}
 	
 	public String getVariableValue(String varName, boolean closedWorld) throws ProbCogException {
-		String lowerCaseName = varName.toLowerCase();
-		Variable var = this.entries.get(lowerCaseName);
+		Variable var = getVariable(varName);
 		// if we have the value, return it
 		if(var != null)
 			return var.getValue();
@@ -51,17 +47,35 @@ public class Database extends GenericDatabase<Variable, String> {
 		int braceIndex = varName.indexOf('(');
 		String functionName = varName.substring(0, braceIndex);
 		Signature sig = model.getSignature(functionName);		
-
+		String[] args = varName.substring(braceIndex+1, varName.length()-1).split("\\s*,\\s*");
+		return getMissingValue(sig, args, closedWorld);
+	}
+	
+	@Override
+	public String getSingleVariableValue(String functionName, String[] args, boolean closedWorld) throws ProbCogException {
+		Variable var = getVariable(functionName, args);
+		if(var != null)
+			return var.getValue();
+		return getMissingValue(model.getSignature(functionName), args, closedWorld);
+	}
+	
+	/**
+	 * determines the value of a variable that is not contained in the database
+	 * @param sig the signature of the variable's function
+	 * @param args the variable's arguments
+	 * @param closedWorld whether to make the closed-world assumption
+	 * @return the value or null if it cannot be determined
+	 * @throws ProbCogException
+	 */
+	protected String getMissingValue(Signature sig, String[] args, boolean closedWorld) throws ProbCogException {
 		// if it's a logically determined predicate, use prolog to retrieve a value
 		if(sig.isLogical) {
 			if(!sig.isBoolean())
-				throw new ProbCogException("Value for logical/evidence variable '" + varName + "' not found in the database and cannot use Prolog to retrieve a value for non-Boolean functions"); // TODO could allow Prolog via a logical coupling
+				throw new ProbCogException("Value for logical/evidence variable '" + Signature.formatVarName(sig.functionName, args) + "' not found in the database and cannot use Prolog to retrieve a value for non-Boolean functions"); // TODO could allow Prolog via a logical coupling
 			if(this.isFinalized())
 				return BooleanDomain.False;
-			else {
-				String[] args = varName.substring(braceIndex+1, varName.length()-1).split("\\s*,\\s*");
+			else
 				return getPrologValue(sig, args, false) ? BooleanDomain.True : BooleanDomain.False;
-			}
 		}
 		
 		// if we are making the closed assumption return the default value of
@@ -71,16 +85,17 @@ public class Database extends GenericDatabase<Variable, String> {
 			if(sig.isBoolean())
 				return BooleanDomain.False;
 			else {
-				throw new ProbCogException("Missing database value of " + varName + " - cannot apply closed-world assumption because domain is not boolean: " + sig.returnType);
+				throw new ProbCogException("Missing database value of " + Signature.formatVarName(sig.functionName, args) + " - cannot apply closed-world assumption because domain is not boolean: " + sig.returnType);
 			}
 		}
 		
 		return null;
 	}
 
+	protected static final Pattern re_entry = Pattern.compile("(\\w+)\\(([^\\)]+)\\)\\s*=\\s*([^;]*);?");
+
 	@Override
 	protected Variable readEntry(String line) {
-		Pattern re_entry = Pattern.compile("(\\w+)\\(([^\\)]+)\\)\\s*=\\s*([^;]*);?");
 		Matcher matcher = re_entry.matcher(line);
 		if(matcher.matches()) {
 			// String key = matcher.group(1) + "(" +
@@ -98,34 +113,18 @@ public class Database extends GenericDatabase<Variable, String> {
 	public void readMLNDB(String databaseFilename, boolean ignoreUndefinedNodes) throws ProbCogException {
 		boolean verbose = false;
 
-		// read file content
+		// read lines (streaming the file, such that its contents are never held in memory as a whole)
 		if(verbose)
 			System.out.printf("reading contents of %s...\n", databaseFilename);
-		String dbContent;
-		try {
-			dbContent = FileUtil.readTextFile(databaseFilename);
-		} 
-		catch (IOException e) {
-			throw new ProbCogException(e);
-		}
-
-		// remove comments
-		// if (verbose) System.out.println("  removing comments...");
-		Pattern comments = Pattern.compile("//.*?$|/\\*.*?\\*/", Pattern.MULTILINE | Pattern.DOTALL);
-		Matcher matcher = comments.matcher(dbContent);
-		dbContent = matcher.replaceAll("");
-
-		// read lines
-		// if (verbose) System.out.println("  reading items...");
+		Matcher matcher;
 		String arg = "\\w+";
 		String argList = "\\s*" + arg + "\\s*(?:,\\s*" + arg + "\\s*)*";
 		Pattern re_entry = Pattern.compile("(!?\\w+)\\((" + argList + ")\\)");
 		Pattern re_domDecl = Pattern.compile("(\\w+)\\s*=\\s*\\{(" + argList + ")\\}");
-		BufferedReader br = new BufferedReader(new StringReader(dbContent));
 		String line;
 		Variable var;
-		try {
-			while((line = br.readLine()) != null) {
+		try(DatabaseFileReader reader = new DatabaseFileReader(databaseFilename)) {
+			while((line = reader.readLine()) != null) {
 				line = line.trim();
 				// parse variable assignment
 				matcher = re_entry.matcher(line);
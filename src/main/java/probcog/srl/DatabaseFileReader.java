@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.srl;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads the lines of a database file (.db/.blogdb) from a file channel, removing comments
+ * (// and /* ... *&#47;) as it goes, such that files of arbitrary size can be read without
+ * holding their contents in memory.
+ * As in the case where comments are removed from the entire file content, a block comment
+ * spanning several lines joins the text that precedes it with the text that follows it.
+ */
+public class DatabaseFileReader implements Closeable {
+	protected static final int BUFFER_SIZE = 1 << 16;
+
+	protected FileChannel channel;
+	protected Reader reader;
+	protected char[] buffer = new char[BUFFER_SIZE];
+	protected int pos = 0, limit = 0;
+	/**
+	 * a character that was read ahead and is to be returned by the next call to {@link #next()} (or -2 if there is none)
+	 */
+	protected int pushedBack = -2;
+	protected boolean inBlockComment = false;
+	protected StringBuilder line = new StringBuilder();
+
+	/**
+	 * @param filename the name of the file to read (which is decoded using the platform's default charset)
+	 * @throws IOException
+	 */
+	@SuppressWarnings("resource")
+	public DatabaseFileReader(String filename) throws IOException {
+		channel = new FileInputStream(filename).getChannel();
+		reader = Channels.newReader(channel, Charset.defaultCharset().newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE);
+	}
+
+	protected int next() throws IOException {
+		if(pushedBack != -2) {
+			int c = pushedBack;
+			pushedBack = -2;
+			return c;
+		}
+		if(pos == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			pos = 0;
+			if(limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[pos++];
+	}
+
+	/**
+	 * reads the next line, from which comments have been removed
+	 * @return the line (without line terminator) or null if the end of the file has been reached
+	 * @throws IOException
+	 */
+	public String readLine() throws IOException {
+		line.setLength(0);
+		boolean any = false; // whether any text outside of comments was read
+		int c;
+		while((c = next()) != -1) {
+			if(inBlockComment) {
+				if(c == '*') {
+					int d = next();
+					if(d == '/')
+						inBlockComment = false;
+					else
+						pushedBack = d;
+				}
+				continue;
+			}
+			if(c == '/') {
+				int d = next();
+				if(d == '/') { // line comment: skip to the end of the line
+					while((d = next()) != -1 && d != '\n' && d != '\r');
+					pushedBack = d;
+					continue;
+				}
+				if(d == '*') {
+					inBlockComment = true;
+					continue;
+				}
+				pushedBack = d;
+			}
+			else if(c == '\n')
+				return line.toString();
+			else if(c == '\r') {
+				int d = next();
+				if(d != '\n')
+					pushedBack = d;
+				return line.toString();
+			}
+			any = true;
+			line.append((char)c);
+		}
+		return any ? line.toString() : null;
+	}
+
+	/**
+	 * @return the fraction of the file that has been read (in [0,1]); as the file is read in blocks, this is an approximation
+	 */
+	public double getProgress() {
+		try {
+			long size = channel.size();
+			return size == 0 ? 1.0 : (double)channel.position() / size;
+		}
+		catch(IOException e) {
+			return 0.0;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -18,10 +18,8 @@
  ******************************************************************************/
 package probcog.srl;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -38,7 +36,6 @@ import probcog.srl.directed.ABLModel;
 import probcog.srl.taxonomy.Concept;
 import probcog.srl.taxonomy.Taxonomy;
 
-import edu.tum.cs.util.FileUtil;
 import edu.tum.cs.util.StringTool;
 import edu.tum.cs.util.datastruct.MultiIterator;
 
@@ -49,9 +46,14 @@ import edu.tum.cs.util.datastruct.MultiIterator;
 public abstract class GenericDatabase<VariableType extends AbstractVariable<?>, VarValueType> implements IParameterHandler {
 
 	/**
-	 * maps variable names to Variable objects containing values
+	 * maps the (case-insensitive) symbol tuples of variables (function name and arguments) to Variable objects containing values;
+	 * variables given by name are looked up by splitting the name into its function name and arguments
 	 */
-	protected HashMap<String, VariableType> entries;
+	protected HashMap<SymbolTuple, VariableType> entries;
+	/**
+	 * the symbols appearing in {@link #entries}
+	 */
+	protected SymbolTable symbols;
 	protected HashMap<RelationKey, HashMap<String, String[]>> functionalDependencies;
 	protected HashMap<String, HashSet<String>> domains;
 	public RelationalModel model;
@@ -87,7 +89,8 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 	 */
 	public GenericDatabase(RelationalModel model) throws ProbCogException {
 		this.model = model;
-		entries = new HashMap<String, VariableType>();
+		entries = new HashMap<SymbolTuple, VariableType>();
+		symbols = new SymbolTable();
 		domains = new HashMap<String, HashSet<String>>();
 		functionalDependencies = new HashMap<RelationKey, HashMap<String, String[]>>();
 		taxonomy = model.getTaxonomy();
@@ -151,6 +154,19 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 	
 	public abstract String getSingleVariableValue(String varName, boolean closedWorld) throws ProbCogException;
 
+	/**
+	 * gets the value of a variable (see {@link #getSingleVariableValue(String, boolean)}), which is identified
+	 * by its function name and arguments rather than its name
+	 * @param functionName
+	 * @param args
+	 * @param closedWorld
+	 * @return
+	 * @throws ProbCogException
+	 */
+	public String getSingleVariableValue(String functionName, String[] args, boolean closedWorld) throws ProbCogException {
+		return getSingleVariableValue(Signature.formatVarName(functionName, args), closedWorld);
+	}
+
 	/**
 	 * retrieves a variable setting
 	 * 
@@ -161,14 +177,31 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 	 * TODO this does not really work with prolog predicates
 	 */	
 	public VariableType getVariable(String varName) {
-		return entries.get(varName.toLowerCase());
+		int i = varName.indexOf('(');
+		if(i == -1 || varName.charAt(varName.length()-1) != ')')
+			return null;
+		String args = varName.substring(i+1, varName.length()-1);
+		return getVariable(varName.substring(0, i), args.isEmpty() ? new String[0] : args.split(","));
+	}
+
+	/**
+	 * retrieves a variable setting without building the variable's name
+	 * @param functionName
+	 * @param args
+	 * @return the variable setting if it is contained in the database, null otherwise
+	 */
+	public VariableType getVariable(String functionName, String[] args) {
+		SymbolTuple key = SymbolTuple.getFolded(symbols, functionName, args);
+		if(key == null)
+			return null;
+		return entries.get(key);
 	}
 
 	/**
 	 * checks whether the database contains an entry for the given variable name
 	 */
 	public boolean contains(String varName) {
-		if(entries.containsKey(varName.toLowerCase()))
+		if(getVariable(varName) != null)
 			return true;
 		
 		//Matcher m = Pattern.compile("(\\w+)\\((\\.*?)\\)").matcher(varName);
@@ -178,6 +211,17 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 		return sig.isLogical;
 	}
 
+	/**
+	 * checks whether the database contains an entry for the given variable (see {@link #contains(String)})
+	 * @param functionName
+	 * @param args
+	 */
+	public boolean contains(String functionName, String[] args) {
+		if(getVariable(functionName, args) != null)
+			return true;
+		return model.getSignature(functionName).isLogical;
+	}
+
 	/**
 	 * adds the given variable to the database if it isn't already present
 	 */
@@ -190,8 +234,7 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 			throw new ProbCogException("Tried to add a value to an immutable database");
 		
 		boolean ret = false;
-		String entryKey = var.getKeyString().toLowerCase();
-		if(entries.containsKey(entryKey))
+		if(getVariable(var.functionName, var.params) != null)
 			return ret;
 		
 		// if(debug) System.out.println("adding var " + var);
@@ -233,7 +276,7 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 		}
 
 		// add the entry to the main store
-		entries.put(entryKey, var);
+		entries.put(SymbolTuple.internFolded(symbols, var.functionName, var.params), var);
 		ret = true;
 
 		// update lookup tables for keys
@@ -282,30 +325,17 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 	}
 	
 	public void readBLOGDB(String databaseFilename, boolean ignoreUndefinedNodes) throws ProbCogException {
-		try {
-			// read file content
-			if(verbose)
-				System.out.printf("  reading contents of %s...\n", databaseFilename);
-			String dbContent = FileUtil.readTextFile(databaseFilename);
-	
-			// remove comments
-			if(verbose)
-				System.out.println("  removing comments");
-			Pattern comments = Pattern.compile("//.*?$|/\\*.*?\\*/", Pattern.MULTILINE | Pattern.DOTALL);
-			Matcher matcher = comments.matcher(dbContent);
-			dbContent = matcher.replaceAll("");
-	
-			// read lines
-			if(verbose)
-				System.out.println("  reading items");		
-			Pattern re_domDecl = Pattern.compile("(\\w+)\\s*=\\s*\\{(.*?)\\}");
-			BufferedReader br = new BufferedReader(new StringReader(dbContent));
+		// read lines (streaming the file, such that its contents are never held in memory as a whole)
+		if(verbose)
+			System.out.printf("  reading contents of %s...\n", databaseFilename);
+		Pattern re_domDecl = Pattern.compile("(\\w+)\\s*=\\s*\\{(.*?)\\}");
+		try(DatabaseFileReader reader = new DatabaseFileReader(databaseFilename)) {
 			String line;
 			int numVars = 0;
-			while((line = br.readLine()) != null) {
+			while((line = reader.readLine()) != null) {
 				line = line.trim();
 				// parse domain decls
-				matcher = re_domDecl.matcher(line);
+				Matcher matcher = re_domDecl.matcher(line);
 				if(matcher.matches()) { // parse domain decls
 					String domName = matcher.group(1);
 					String[] constants = matcher.group(2).split("\\s*,\\s*");
@@ -319,7 +349,7 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 				if(var != null) {
 					addVariable(var, ignoreUndefinedNodes, true);
 					if(++numVars % 100 == 0 && verbose)
-						System.out.print("    " + numVars + " vars read\r");
+						System.out.printf("    %d vars read (%.0f%%)\r", numVars, 100 * reader.getProgress());
 					continue;
 				}
 				// something else
@@ -420,7 +450,7 @@ public abstract class GenericDatabase<VariableType extends AbstractVariable<?>,
 	public Iterable<String> getDomain(String domName) throws ProbCogException {
 		if(taxonomy == null)
 			return domains.get(domName);
-		else { // if we have a taxonomy, the domain is the combination of domains of the given type and all of its sub-types
+		else synchronized(multiDomains) { // if we have a taxonomy, the domain is the combination of domains of the given type and all of its sub-types
 			MultiIterator<String> dom = multiDomains.get(domName);
 			if(dom != null)
 				return dom;
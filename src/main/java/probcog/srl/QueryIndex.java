@@ -0,0 +1,366 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.srl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import probcog.logic.GroundAtom;
+import probcog.logic.WorldVariables;
+
+import edu.ksu.cis.bnj.ver3.core.BeliefNode;
+
+/**
+ * An index of the variables of a ground model (ground atoms or nodes of a ground network) that
+ * resolves queries, i.e. fully or partially grounded atoms (e.g. "f(A,x)", where arguments starting with
+ * a lower-case letter are variables) or predicate names (e.g. "f"), by lookups rather than by matching
+ * each query against each variable's name.
+ * Variables are grouped by predicate and arity; for each group, indices mapping constants to variables
+ * are created for all argument positions. The index is not modified after construction and can thus be
+ * queried by several threads concurrently.
+ * The set of matched variables is the same as the one obtained with the regular expression that
+ * corresponds to a query (see {@link #getPattern(String)}); variables whose names are not of the form
+ * "predicate(arg1,...,argN)" and queries containing regular expression metacharacters are matched
+ * using the regular expression.
+ */
+public class QueryIndex {
+	protected static final Pattern variablePattern = Pattern.compile("([,\\(])([a-z][^,\\)]*)");
+	protected static final Pattern metacharPattern = Pattern.compile("[.*+?\\[\\]{}|^$\\\\]");
+
+	/**
+	 * the names of all variables (indexed by variable index)
+	 */
+	protected String[] names;
+	/**
+	 * the arguments of each variable (null for variables whose names could not be decomposed)
+	 */
+	protected String[][] args;
+	/**
+	 * maps predicate names to the groups of variables with the respective predicate (one group per arity)
+	 */
+	protected HashMap<String, ArrayList<Group>> groups = new HashMap<String, ArrayList<Group>>();
+	/**
+	 * the indices of variables whose names could not be decomposed, sorted by name
+	 */
+	protected Integer[] unstructured;
+
+	/**
+	 * the result of a batch of queries
+	 */
+	public static class Matches {
+		/**
+		 * the indices of the variables matching any of the queries (in ascending order)
+		 */
+		public final int[] variables;
+		/**
+		 * for each matched variable, the index of the first query it matches
+		 */
+		public final int[] queryIndices;
+
+		protected Matches(int[] variables, int[] queryIndices) {
+			this.variables = variables;
+			this.queryIndices = queryIndices;
+		}
+	}
+
+	protected static class IntList {
+		public int[] elements = new int[4];
+		public int size = 0;
+
+		public void add(int e) {
+			if(size == elements.length)
+				elements = Arrays.copyOf(elements, 2 * size);
+			elements[size++] = e;
+		}
+	}
+
+	/**
+	 * a group of variables with the same predicate and arity
+	 */
+	protected static class Group {
+		public int arity;
+		public IntList variables = new IntList();
+		/**
+		 * for each argument position, a mapping from constants to the variables having the constant at that position
+		 */
+		public ArrayList<HashMap<String, IntList>> byArg;
+
+		public Group(int arity) {
+			this.arity = arity;
+			byArg = new ArrayList<HashMap<String, IntList>>(arity);
+		}
+
+		/**
+		 * creates the mappings for all argument positions once all variables have been added
+		 * @param args the arguments of each variable (indexed by variable index)
+		 */
+		public void index(String[][] args) {
+			for(int i = 0; i < arity; i++) {
+				HashMap<String, IntList> m = new HashMap<String, IntList>();
+				for(int k = 0; k < variables.size; k++) {
+					int v = variables.elements[k];
+					IntList vl = m.get(args[v][i]);
+					if(vl == null)
+						m.put(args[v][i], vl = new IntList());
+					vl.add(v);
+				}
+				byArg.add(m);
+			}
+		}
+	}
+
+	/**
+	 * creates an index for the ground atoms in the given set of world variables
+	 * @param vars
+	 */
+	public QueryIndex(WorldVariables vars) {
+		int n = vars.size();
+		names = new String[n];
+		args = new String[n][];
+		int i = 0;
+		for(String name : vars.getVariableStrings())
+			names[i++] = name;
+		for(i = 0; i < n; i++) {
+			GroundAtom ga = vars.get(i);
+			addStructured(i, ga.predicate, ga.args);
+		}
+		unstructured = new Integer[0];
+		indexGroups();
+	}
+
+	/**
+	 * creates an index for the given nodes, whose names are decomposed into predicates and arguments
+	 * @param nodes the nodes of a ground network
+	 */
+	public QueryIndex(BeliefNode[] nodes) {
+		int n = nodes.length;
+		names = new String[n];
+		args = new String[n][];
+		ArrayList<Integer> unstructured = new ArrayList<Integer>();
+		for(int i = 0; i < n; i++) {
+			String name = names[i] = nodes[i].getName();
+			int open = name.indexOf('(');
+			int close = name.indexOf(')');
+			if(open > 0 && close == name.length()-1 && name.indexOf('(', open+1) == -1)
+				addStructured(i, name.substring(0, open), splitArgs(name.substring(open+1, close)));
+			else
+				unstructured.add(i);
+		}
+		this.unstructured = unstructured.toArray(new Integer[unstructured.size()]);
+		Arrays.sort(this.unstructured, (a, b) -> names[a].compareTo(names[b]));
+		indexGroups();
+	}
+
+	protected static String[] splitArgs(String s) {
+		if(s.isEmpty())
+			return new String[0];
+		return s.split(",", -1);
+	}
+
+	protected void addStructured(int idx, String predicate, String[] args) {
+		this.args[idx] = args;
+		ArrayList<Group> l = groups.get(predicate);
+		if(l == null)
+			groups.put(predicate, l = new ArrayList<Group>(1));
+		Group group = null;
+		for(Group g : l)
+			if(g.arity == args.length)
+				group = g;
+		if(group == null)
+			l.add(group = new Group(args.length));
+		group.variables.add(idx);
+	}
+
+	protected void indexGroups() {
+		for(ArrayList<Group> l : groups.values())
+			for(Group g : l)
+				g.index(args);
+	}
+
+	/**
+	 * @param query
+	 * @return the regular expression that a variable's name must match in order for the variable to match the query
+	 */
+	public static Pattern getPattern(String query) {
+		String p = variablePattern.matcher(query).replaceAll("$1.*?"); // replace variables with wildcards
+		p = p.replace("(", "\\(").replace(")", "\\)") + ".*";
+		return Pattern.compile(p);
+	}
+
+	/**
+	 * determines the variables that match any of the given queries
+	 * @param queries a list of queries, where a query is a fully or partially grounded atom or a predicate name
+	 * @return the matched variables along with the index of the first query each of them matches
+	 */
+	public Matches match(Iterable<String> queries) {
+		int[] firstQuery = new int[names.length];
+		Arrays.fill(firstQuery, -1);
+		IntList matched = new IntList();
+		int idxQuery = 0;
+		for(String query : queries) {
+			IntList l = new IntList();
+			match(query, l);
+			for(int k = 0; k < l.size; k++) {
+				int v = l.elements[k];
+				if(firstQuery[v] == -1) {
+					firstQuery[v] = idxQuery;
+					matched.add(v);
+				}
+			}
+			++idxQuery;
+		}
+		int[] variables = Arrays.copyOf(matched.elements, matched.size);
+		Arrays.sort(variables);
+		int[] queryIndices = new int[variables.length];
+		for(int k = 0; k < variables.length; k++)
+			queryIndices[k] = firstQuery[variables[k]];
+		return new Matches(variables, queryIndices);
+	}
+
+	/**
+	 * adds the indices of the variables that match the given query to the given list
+	 */
+	protected void match(String query, IntList ret) {
+		int open = query.indexOf('(');
+		// queries containing metacharacters (and malformed queries) are handled by checking the corresponding pattern against all variables
+		if(isRegularExpression(query)) {
+			Pattern pattern = getPattern(query);
+			for(int i = 0; i < names.length; i++)
+				if(pattern.matcher(names[i]).matches())
+					ret.add(i);
+			return;
+		}
+		// predicate name (or prefix thereof): all variables whose names begin with the query
+		if(open == -1) {
+			for(Entry<String, ArrayList<Group>> e : groups.entrySet())
+				if(e.getKey().startsWith(query))
+					for(Group g : e.getValue())
+						for(int k = 0; k < g.variables.size; k++)
+							ret.add(g.variables.elements[k]);
+			matchUnstructured(query, null, ret);
+			return;
+		}
+		Pattern pattern = getPattern(query);
+		String predicate = query.substring(0, open);
+		matchUnstructured(predicate + "(", pattern, ret);
+		ArrayList<Group> l = groups.get(predicate);
+		if(l == null)
+			return;
+		int close = query.indexOf(')');
+		if(close != query.length()-1 || query.indexOf('(', open+1) != -1) { // not a regular atom
+			for(Group g : l)
+				matchPattern(g.variables, pattern, ret);
+			return;
+		}
+		String[] qargs = splitArgs(query.substring(open+1, close));
+		boolean hasVariables = false;
+		for(String a : qargs)
+			if(isVariable(a))
+				hasVariables = true;
+		for(Group g : l) {
+			if(g.arity == qargs.length)
+				matchStructured(g, qargs, ret);
+			else if(hasVariables) // a variable can stand for several arguments in the regular expression
+				matchPattern(g.variables, pattern, ret);
+		}
+	}
+
+	/**
+	 * @param query
+	 * @return true if the query contains regular expression metacharacters or is otherwise not of the form of a predicate 
+	 * name or atom, such that it can only be resolved by matching its pattern (see {@link #getPattern(String)}) against all variables
+	 */
+	public static boolean isRegularExpression(String query) {
+		return metacharPattern.matcher(query).find() || (query.indexOf('(') == -1 && (query.indexOf(',') != -1 || query.indexOf(')') != -1));
+	}
+
+	/**
+	 * @param arg an argument of a query
+	 * @return true if the argument is a variable (i.e. begins with a lower-case letter)
+	 */
+	public static boolean isVariable(String arg) {
+		return arg.length() > 0 && arg.charAt(0) >= 'a' && arg.charAt(0) <= 'z';
+	}
+
+	protected void matchPattern(IntList variables, Pattern pattern, IntList ret) {
+		for(int k = 0; k < variables.size; k++) {
+			int v = variables.elements[k];
+			if(pattern.matcher(names[v]).matches())
+				ret.add(v);
+		}
+	}
+
+	/**
+	 * matches the variables of the given group (whose arity is that of the query) against the given query arguments
+	 */
+	protected void matchStructured(Group g, String[] qargs, IntList ret) {
+		// find the most selective bound argument
+		IntList candidates = g.variables;
+		int selected = -1;
+		for(int i = 0; i < qargs.length; i++) {
+			if(isVariable(qargs[i]))
+				continue;
+			IntList vl = g.byArg.get(i).get(qargs[i]);
+			if(vl == null)
+				return;
+			if(vl.size < candidates.size || selected == -1) {
+				candidates = vl;
+				selected = i;
+			}
+		}
+		// check the remaining bound arguments
+		for(int k = 0; k < candidates.size; k++) {
+			int v = candidates.elements[k];
+			boolean match = true;
+			for(int i = 0; i < qargs.length && match; i++)
+				if(i != selected && !isVariable(qargs[i]) && !qargs[i].equals(args[v][i]))
+					match = false;
+			if(match)
+				ret.add(v);
+		}
+	}
+
+	/**
+	 * matches the variables with undecomposed names that begin with the given prefix
+	 * @param prefix
+	 * @param pattern the pattern the names must additionally match (null to accept all names with the prefix)
+	 * @param ret
+	 */
+	protected void matchUnstructured(String prefix, Pattern pattern, IntList ret) {
+		// binary search for the first name that is not smaller than the prefix
+		int lo = 0, hi = unstructured.length;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(names[unstructured[mid]].compareTo(prefix) < 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		for(int k = lo; k < unstructured.length; k++) {
+			String name = names[unstructured[k]];
+			if(!name.startsWith(prefix))
+				break;
+			if(pattern == null || pattern.matcher(name).matches())
+				ret.add(unstructured[k]);
+		}
+	}
+}
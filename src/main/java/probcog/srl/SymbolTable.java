@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.srl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of interned symbols (predicate/function names and constants), which assigns a unique integer
+ * to each symbol, such that ground atoms and database variables can be identified by tuples of integers
+ * rather than by their string representations (see {@link SymbolTuple}).
+ * Symbols are never removed from a table; a table therefore belongs to the object whose symbols it
+ * holds (e.g. a set of ground atoms or a database) and is released along with it.
+ * Identifiers are only meaningful with respect to the table that assigned them.
+ * The table is thread-safe; lookups do not require locking.
+ */
+public class SymbolTable {
+	protected ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	/**
+	 * maps interned symbols to the identifiers of their lower-case forms (for case-insensitive lookups)
+	 */
+	protected ConcurrentHashMap<String, Integer> foldedIds = new ConcurrentHashMap<String, Integer>();
+	protected volatile String[] symbols = new String[64];
+	protected int size = 0;
+
+	/**
+	 * @param symbol
+	 * @return the identifier of the symbol (which is added to the table if it is not yet contained)
+	 */
+	public int intern(String symbol) {
+		Integer id = ids.get(symbol);
+		if(id != null)
+			return id;
+		synchronized(this) {
+			id = ids.get(symbol);
+			if(id != null)
+				return id;
+			if(size == symbols.length)
+				symbols = Arrays.copyOf(symbols, 2 * size);
+			symbols[size] = symbol;
+			ids.put(symbol, size);
+			return size++;
+		}
+	}
+
+	/**
+	 * @param symbol
+	 * @return the identifier of the symbol or -1 if it is not contained in the table
+	 */
+	public int getId(String symbol) {
+		Integer id = ids.get(symbol);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param symbol
+	 * @return the identifier of the symbol's lower-case form (which is added to the table if it is not yet contained)
+	 */
+	public int internFolded(String symbol) {
+		Integer id = foldedIds.get(symbol);
+		if(id != null)
+			return id;
+		int folded = intern(symbol.toLowerCase());
+		foldedIds.put(symbol, folded);
+		return folded;
+	}
+
+	/**
+	 * @param symbol
+	 * @return the identifier of the symbol's lower-case form or -1 if it is not contained in the table
+	 * (lookups do not add anything to the table)
+	 */
+	public int getFoldedId(String symbol) {
+		Integer id = foldedIds.get(symbol);
+		if(id != null)
+			return id;
+		return getId(symbol.toLowerCase());
+	}
+
+	/**
+	 * @param id a symbol identifier
+	 * @return the symbol with the given identifier
+	 */
+	public String getSymbol(int id) {
+		return symbols[id];
+	}
+
+	/**
+	 * @return the number of symbols in the table
+	 */
+	public synchronized int size() {
+		return size;
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.srl;
+
+import java.util.Arrays;
+
+/**
+ * A tuple of symbol identifiers (see {@link SymbolTable}) that identifies a ground atom or database variable, 
+ * i.e. a function/predicate name followed by its arguments, for use as a hash key.
+ */
+public class SymbolTuple {
+	protected final SymbolTable symbols;
+	protected final int[] ids;
+	protected final int hash;
+
+	/**
+	 * @param symbols the table that assigned the identifiers (tuples are only comparable if they were created with the same table)
+	 * @param ids the identifier of the function/predicate name followed by the identifiers of the arguments
+	 */
+	public SymbolTuple(SymbolTable symbols, int[] ids) {
+		this.symbols = symbols;
+		this.ids = ids;
+		this.hash = hashCode(ids);
+	}
+
+	/**
+	 * @param ids
+	 * @return the hash code of the given tuple of identifiers (as used by {@link #hashCode()})
+	 */
+	public static int hashCode(int[] ids) {
+		int h = 0;
+		for(int id : ids)
+			h = 31 * h + id;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * creates the case-insensitive tuple for a function/predicate and its arguments (interning all symbols)
+	 * @param symbols the table in which to intern the symbols
+	 * @param functionName
+	 * @param args
+	 * @return
+	 */
+	public static SymbolTuple internFolded(SymbolTable symbols, String functionName, String[] args) {
+		int[] ids = new int[args.length+1];
+		ids[0] = symbols.internFolded(functionName);
+		for(int i = 0; i < args.length; i++)
+			ids[i+1] = symbols.internFolded(args[i]);
+		return new SymbolTuple(symbols, ids);
+	}
+
+	/**
+	 * gets the case-insensitive tuple for a function/predicate and its arguments
+	 * @param symbols the table in which to look up the symbols
+	 * @param functionName
+	 * @param args
+	 * @return the tuple or null if one of the symbols is unknown (in which case no tuple containing it can have been created)
+	 */
+	public static SymbolTuple getFolded(SymbolTable symbols, String functionName, String[] args) {
+		int[] ids = new int[args.length+1];
+		if((ids[0] = symbols.getFoldedId(functionName)) == -1)
+			return null;
+		for(int i = 0; i < args.length; i++)
+			if((ids[i+1] = symbols.getFoldedId(args[i])) == -1)
+				return null;
+		return new SymbolTuple(symbols, ids);
+	}
+
+	public int[] getIds() {
+		return ids;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof SymbolTuple && Arrays.equals(ids, ((SymbolTuple)other).ids);
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer(symbols.getSymbol(ids[0])).append('(');
+		for(int i = 1; i < ids.length; i++) {
+			if(i > 1)
+				sb.append(',');
+			sb.append(symbols.getSymbol(ids[i]));
+		}
+		return sb.append(')').toString();
+	}
+}
@@ -94,6 +94,16 @@ public class DecisionNode extends ExtendedNode {
 		}
 	}
 	
+	/**
+	 * adds the names of the predicates appearing in this decision node's formula to the given collection
+	 * (operator nodes do not reference any predicates themselves)
+	 * @param ret the collection to write to
+	 */
+	public void getPredicateNames(Collection<String> ret) {
+		if(formula != null)
+			formula.getPredicateNames(ret);
+	}
+	
 	/**
 	 * a wrapper for the other implementation of isTrue that uses the possible world implied by the database to determine the truth values of ground atoms
 	 * @param paramNames		variables that are bound
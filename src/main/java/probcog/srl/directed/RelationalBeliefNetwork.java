@@ -907,6 +907,31 @@ public class RelationalBeliefNetwork extends BeliefNetworkEx implements Relation
 	public boolean usesUniformDefault(String functionName) {
 		return uniformDefaultFunctions.contains(functionName);
 	}
+	
+	/**
+	 * gets the functions whose evidence can affect the structure of a ground network, i.e. evidence functions 
+	 * (which are not instantiated as variables), functions used as preconditions or in decision nodes, and 
+	 * functions whose arguments are looked up via relation keys.
+	 * For a given set of domains, the ground networks obtained for two databases are structurally identical 
+	 * if the databases agree on the evidence for these functions.
+	 * @return the set of function names
+	 */
+	public Set<String> getStructuralFunctions() {
+		Set<String> ret = new HashSet<String>();
+		for(Signature sig : getSignatures())
+			if(sig.isLogical || getRelationKeys(sig.functionName) != null)
+				ret.add(sig.functionName);
+		for(ExtendedNode node : getExtendedNodes()) {
+			if(node instanceof RelationalNode) {
+				RelationalNode relNode = (RelationalNode)node;
+				if(relNode.isPrecondition)
+					ret.add(relNode.getFunctionName());
+			}
+			else if(node instanceof DecisionNode)
+				((DecisionNode)node).getPredicateNames(ret);
+		}
+		return ret;
+	}
 
 	@Override
 	public void addGuaranteedDomainElement(String domain, String element) {
@@ -534,11 +534,12 @@ public class RelationalNode extends ExtendedNode {
 			return actualParams[0].equals(actualParams[1]) ? "True" : "False";
 		// ** regular predicate/constant
 		if(!isConstant) { // if the node is not a constant node, we can obtain its value by performing a database lookup
-			String curVarName = getVariableName(actualParams);
+			if(actualParams.length != params.length)
+				getVariableName(actualParams); // (raises the appropriate exception)
 			// set value
-			String value = db.getSingleVariableValue(curVarName, closedWorld);						
+			String value = db.getSingleVariableValue(functionName, actualParams, closedWorld);						
 			if(value == null) {
-				throw new ProbCogException("Could not find the unique value of " + curVarName + " in database. closedWorld = " + closedWorld);
+				throw new ProbCogException("Could not find the unique value of " + getVariableName(actualParams) + " in database. closedWorld = " + closedWorld);
 			}
 			return value;
 			//System.out.println("For " + varName + ": " + curVarName + " = " + value);
@@ -617,7 +618,7 @@ public class RelationalNode extends ExtendedNode {
 		return indicesOfConstantArgs;
 	}
 	
-	public ParentGrounder getParentGrounder() throws ProbCogException {
+	public synchronized ParentGrounder getParentGrounder() throws ProbCogException {
 		if(parentGrounder != null)
 			return parentGrounder;
 		return (parentGrounder = new ParentGrounder(this.bn, this));
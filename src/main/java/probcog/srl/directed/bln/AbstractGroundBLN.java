@@ -25,8 +25,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 import java.util.Map.Entry;
+import java.util.regex.Pattern;
 
 import probcog.bayesnets.core.BeliefNetworkEx;
 import probcog.bayesnets.core.Discretized;
@@ -36,6 +38,7 @@ import probcog.inference.ParameterHandler;
 import probcog.srl.BooleanDomain;
 import probcog.srl.Database;
 import probcog.srl.ParameterGrounder;
+import probcog.srl.QueryIndex;
 import probcog.srl.Signature;
 import probcog.srl.directed.CombiningRule;
 import probcog.srl.directed.ExtendedNode;
@@ -88,7 +91,14 @@ public abstract class AbstractGroundBLN implements IParameterHandler {
 	 * temporary storage of names of instantiated variables (to avoid duplicate instantiation during grounding)
 	 */
 	protected HashSet<String> instantiatedVariables;
-	protected HashMap<String, Value[]> cpfCache;
+	/**
+	 * cache of CPF values that can be shared by several instantiated nodes (used only during grounding)
+	 */
+	protected Map<String, Value[]> cpfCache;
+	/**
+	 * an externally provided CPF cache that is to be used (and extended) during grounding instead of a temporary one (null if none)
+	 */
+	protected Map<String, Value[]> sharedCPFCache = null;
 	protected boolean verbose = true;
 	protected boolean debug = false;	
 	protected ParameterHandler paramHandler;
@@ -100,6 +110,14 @@ public abstract class AbstractGroundBLN implements IParameterHandler {
 	 * maps a ground node (in the ground network) to the template node in the fragment network it was instantiated from 
 	 */
 	protected HashMap<BeliefNode, RelationalNode> groundNode2TemplateNode;
+	/**
+	 * the index with which queries are resolved to nodes of the ground network (created on demand)
+	 */
+	protected QueryIndex queryIndex;
+	/**
+	 * the queries to which the instantiation of the ground network is restricted (null if all variables are to be instantiated)
+	 */
+	protected Iterable<String> relevantQueries = null;
 	
 	public AbstractGroundBLN(AbstractBayesianLogicNetwork bln, Database db) throws ProbCogException {
 		init(bln, db);
@@ -146,6 +164,7 @@ public abstract class AbstractGroundBLN implements IParameterHandler {
 		
 		if(verbose) System.out.println("generating network...");
 		groundBN = new BeliefNetworkEx();
+		queryIndex = null;
 		
 		// ground regular probabilistic nodes (i.e. ground atoms)
 		if(verbose) System.out.println("  regular nodes");
@@ -172,15 +191,19 @@ public abstract class AbstractGroundBLN implements IParameterHandler {
 			v.add(relNode);
 		}
 		
-		// go through all function names and generate all groundings for each of them
 		instantiatedVariables = new HashSet<String>();
-		cpfCache = new HashMap<String, Value[]>();
-		Iterable<String> functionNames = this.bln.rbn.getFunctionNames(); // functionTemplates.keySet(); 
-		for(String functionName : functionNames) {
-			if(verbose) System.out.println("    " + functionName);
-			Collection<String[]> parameterSets = ParameterGrounder.generateGroundings(bln.rbn, functionName, db);
-			for(String[] params : parameterSets) 
-				instantiateVariable(functionName, params);
+		cpfCache = sharedCPFCache != null ? sharedCPFCache : new HashMap<String, Value[]>();
+		if(relevantQueries != null)
+			instantiateRelevantVariables();
+		else {
+			// go through all function names and generate all groundings for each of them
+			Iterable<String> functionNames = this.bln.rbn.getFunctionNames(); // functionTemplates.keySet(); 
+			for(String functionName : functionNames) {
+				if(verbose) System.out.println("    " + functionName);
+				Collection<String[]> parameterSets = ParameterGrounder.generateGroundings(bln.rbn, functionName, db);
+				for(String[] params : parameterSets) 
+					instantiateVariable(functionName, params);
+			}
 		}
 		
 		// clean up
@@ -201,6 +224,155 @@ public abstract class AbstractGroundBLN implements IParameterHandler {
 		}
 	}
 	
+	/**
+	 * restricts the instantiation of the ground network to the variables that are relevant to the given queries:
+	 * the variables matching the queries, the evidence variables and the variables of functions that appear in 
+	 * formulaic constraints (see {@link #getConstrainedFunctions()}), along with all their ancestors.
+	 * All other variables are barren, i.e. they have no influence on the results of the queries, and are 
+	 * therefore not instantiated. Must be called prior to {@link #instantiateGroundNetwork()}.
+	 * @param queries the queries (as passed to {@link probcog.srl.directed.inference.Sampler#setQueries(Iterable)}) 
+	 * or null to instantiate all variables
+	 */
+	public void setRelevantQueries(Iterable<String> queries) {
+		this.relevantQueries = queries;
+	}
+	
+	/**
+	 * gets the names of the functions whose variables are referenced by formulaic nodes (which must all be
+	 * instantiated when restricting the ground network to the relevant variables)
+	 * @return the function names; by default, all functions are returned
+	 * @throws ProbCogException
+	 */
+	protected Set<String> getConstrainedFunctions() throws ProbCogException {
+		Set<String> ret = new HashSet<String>();
+		for(String functionName : bln.rbn.getFunctionNames())
+			ret.add(functionName);
+		return ret;
+	}
+	
+	/**
+	 * instantiates the variables that are relevant to the queries given by {@link #setRelevantQueries(Iterable)}
+	 * (ancestors being instantiated along with their descendants).
+	 * Query atoms are instantiated directly from their arguments (variable arguments ranging over the respective domains)
+	 * and the evidence variables are taken from the database; only for constrained functions, function names and queries
+	 * that are regular expressions are all groundings of the respective functions considered.
+	 * @throws ProbCogException
+	 */
+	protected void instantiateRelevantVariables() throws ProbCogException {
+		Set<String> allFunctions = getConstrainedFunctions();
+		HashMap<String, ArrayList<Pattern>> patterns = new HashMap<String, ArrayList<Pattern>>();
+		ArrayList<String[]> atoms = new ArrayList<String[]>();
+		// classify the queries as in QueryIndex: regular expressions, function names (or prefixes thereof) and atoms
+		for(String query : relevantQueries) {
+			if(QueryIndex.isRegularExpression(query)) {
+				Pattern pattern = QueryIndex.getPattern(query);
+				for(String functionName : this.bln.rbn.getFunctionNames())
+					addPattern(patterns, functionName, pattern);
+				continue;
+			}
+			int open = query.indexOf('(');
+			if(open == -1) {
+				for(String functionName : this.bln.rbn.getFunctionNames())
+					if(functionName.startsWith(query))
+						allFunctions.add(functionName);
+				continue;
+			}
+			String functionName = query.substring(0, open);
+			Signature sig = bln.rbn.getSignature(functionName);
+			if(sig == null)
+				continue;
+			int close = query.indexOf(')');
+			if(close != query.length()-1 || query.indexOf('(', open+1) != -1) { // not a regular atom
+				addPattern(patterns, functionName, QueryIndex.getPattern(query));
+				continue;
+			}
+			String args = query.substring(open+1, close);
+			String[] qargs = args.isEmpty() ? new String[0] : args.split(",", -1);
+			if(qargs.length == sig.argTypes.length) {
+				String[] atom = new String[qargs.length+1];
+				atom[0] = functionName;
+				System.arraycopy(qargs, 0, atom, 1, qargs.length);
+				atoms.add(atom);
+			}
+			else {
+				// a variable can stand for several arguments in the regular expression
+				for(String a : qargs)
+					if(QueryIndex.isVariable(a)) {
+						addPattern(patterns, functionName, QueryIndex.getPattern(query));
+						break;
+					}
+			}
+		}
+		// variables of functions whose groundings must be enumerated
+		for(String functionName : this.bln.rbn.getFunctionNames()) {
+			boolean all = allFunctions.contains(functionName);
+			ArrayList<Pattern> functionPatterns = patterns.get(functionName);
+			if(!all && functionPatterns == null)
+				continue;
+			if(verbose) System.out.println("    " + functionName);
+			for(String[] params : ParameterGrounder.generateGroundings(bln.rbn, functionName, db)) {
+				boolean relevant = all;
+				if(!relevant) {
+					String varName = Signature.formatVarName(functionName, params);
+					for(Pattern p : functionPatterns)
+						if(p.matcher(varName).matches()) {
+							relevant = true;
+							break;
+						}
+				}
+				if(relevant)
+					instantiateVariable(functionName, params);
+			}
+		}
+		// query atoms
+		if(verbose) System.out.println("    queries");
+		for(String[] atom : atoms) {
+			String[] qargs = Arrays.copyOfRange(atom, 1, atom.length);
+			instantiateMatchingVariables(atom[0], bln.rbn.getSignature(atom[0]).argTypes, qargs, new String[qargs.length], 0);
+		}
+		// evidence variables
+		if(verbose) System.out.println("    evidence");
+		for(probcog.srl.Variable var : db.getEntries())
+			if(bln.rbn.getSignature(var.functionName) != null)
+				instantiateVariable(var.functionName, var.params);
+	}
+	
+	private static void addPattern(HashMap<String, ArrayList<Pattern>> patterns, String functionName, Pattern pattern) {
+		ArrayList<Pattern> l = patterns.get(functionName);
+		if(l == null)
+			patterns.put(functionName, l = new ArrayList<Pattern>());
+		l.add(pattern);
+	}
+	
+	/**
+	 * instantiates the variables of a function that match the arguments of a query atom, where 
+	 * variable arguments range over the elements of the respective domains
+	 * @param functionName
+	 * @param domainNames the argument types of the function
+	 * @param qargs the arguments of the query atom
+	 * @param params the parameters of the variable being constructed
+	 * @param i the index of the next parameter to set
+	 * @throws ProbCogException
+	 */
+	protected void instantiateMatchingVariables(String functionName, String[] domainNames, String[] qargs, String[] params, int i) throws ProbCogException {
+		if(i == params.length) {
+			instantiateVariable(functionName, params.clone());
+			return;
+		}
+		Iterable<String> domain = db.getDomain(domainNames[i]);
+		if(domain == null)
+			return;
+		boolean isVariable = QueryIndex.isVariable(qargs[i]);
+		for(String element : domain) {
+			if(!isVariable && !element.equals(qargs[i]))
+				continue;
+			params[i] = element;
+			instantiateMatchingVariables(functionName, domainNames, qargs, params, i+1);
+			if(!isVariable)
+				break;
+		}
+	}
+	
 	/**
 	 * instantiates the variable that corresponds to the given function name and actual parameters
 	 * by looking for a template and applying it, or simply returns the variable if it was previously instantiated
@@ -629,6 +801,29 @@ public abstract class AbstractGroundBLN implements IParameterHandler {
 		return db;
 	}
 	
+	/**
+	 * replaces the evidence database of this (instantiated) ground model without changing the ground network.
+	 * This is admissible only if the ground network that would be obtained for the new database is structurally
+	 * identical, i.e. if the databases have the same domains and agree on the evidence for all the functions given 
+	 * by {@link RelationalBeliefNetwork#getStructuralFunctions()}; formula simplification must not be enabled. 
+	 * @param db the new evidence database
+	 * @throws ProbCogException
+	 */
+	public void setDatabase(Database db) throws ProbCogException {
+		db.finalize();
+		this.db = db;
+		this.databaseFile = null;
+	}
+	
+	/**
+	 * sets a cache of CPF values to use during grounding, which can be shared among the ground models of the same BLN
+	 * (the values stored in the cache depend only on the template model)
+	 * @param cache the cache, which is extended with the CPFs created during grounding
+	 */
+	public void setCPFCache(Map<String, Value[]> cache) {
+		this.sharedCPFCache = cache;
+	}
+	
 	/**
 	 * connects the parents given by the grounding to the target node but does *not* initialize the CPF 
 	 * @param parentGrounding
@@ -1000,6 +1195,15 @@ public abstract class AbstractGroundBLN implements IParameterHandler {
 		return this.groundBN;
 	}
 	
+	/**
+	 * @return the index with which queries can be resolved to nodes of the ground network
+	 */
+	public synchronized QueryIndex getQueryIndex() {
+		if(queryIndex == null)
+			queryIndex = new QueryIndex(groundBN.getNodes());
+		return queryIndex;
+	}
+	
 	/**
 	 * gets the unique identifier of the CPF that is associated with the given ground node of the network
 	 * @param node
@@ -20,6 +20,7 @@ package probcog.srl.directed.bln;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 
 import probcog.exception.ProbCogException;
@@ -83,6 +84,14 @@ public class GroundBLN extends AbstractGroundBLN {
 		useFormulaSimplification = enabled;
 	}
 	
+	@Override
+	protected Set<String> getConstrainedFunctions() throws ProbCogException {
+		Set<String> ret = new HashSet<String>();
+		for(Formula f : ((BayesianLogicNetwork)bln).kb)
+			f.getPredicateNames(ret);
+		return ret;
+	}
+	
 	@Override
 	protected void onAddGroundAtomNode(BeliefNode var, String[] params, Signature sig) {
 		if(sig.isBoolean()) {			
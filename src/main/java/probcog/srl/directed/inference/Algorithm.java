@@ -29,6 +29,7 @@ import probcog.bayesnets.inference.BackwardSamplingWithPriors;
 import probcog.bayesnets.inference.BeliefPropagation;
 import probcog.bayesnets.inference.EnumerationAsk;
 import probcog.bayesnets.inference.IJGP;
+import probcog.bayesnets.inference.JunctionTreeInference;
 import probcog.bayesnets.inference.LikelihoodWeighting;
 import probcog.bayesnets.inference.SampleSearch;
 import probcog.bayesnets.inference.VariableElimination;
@@ -61,6 +62,7 @@ public enum Algorithm {
 		Pearl("Pearl's algorithm for polytrees (exact)", null, BNJPearl.class),
 		SmilePearl("Pearl's algorithm for polytrees (exact) [SMILE]", "probcog.bayesnets.inference.SmilePearl"),
 		VarElim("variable elimination (exact)", null, VariableElimination.class),		
+		JunctionTree("junction tree algorithm (exact)", null, JunctionTreeInference.class),
 		SampleSearchBJ("SampleSearch with backjumping", null, probcog.bayesnets.inference.SampleSearchBJ.class),
 		SampleSearchBJLearning("SampleSearch with backjumping and constraint learning", null, probcog.bayesnets.inference.SampleSearchBJLearning.class),
 		Experimental2("an experimental algorithm (usually beta)", "dev.SampleSearchIBLearning"),
@@ -75,6 +75,7 @@ public class BLNinfer implements IParameterHandler {
 	boolean timeLimitedInference = false;
 	boolean samplerInitializationBeforeTimingStarts = true;
 	boolean allowPartialInst = false;
+	boolean relevantGrounding = false;
 	String outputDistFile = null, referenceDistFile = null;
 	Map<String, Object> params;
 	AbstractBayesianLogicNetwork bln = null;
@@ -135,6 +136,7 @@ public class BLNinfer implements IParameterHandler {
 		paramHandler.add("numSamples", "setMaxSteps");
 		paramHandler.add("inferenceMethod", "setInferenceMethod");
 		paramHandler.add("timeLimit", "setTimeLimit");
+		paramHandler.add("relevantGrounding", "setRelevantGrounding");
 		this.params = params;
 	}
 
@@ -160,6 +162,13 @@ public class BLNinfer implements IParameterHandler {
 		this.algo = algo;
 	}
 
+	/**
+	 * @param enabled whether to instantiate only the variables of the ground network that are relevant to the queries
+	 */
+	public void setRelevantGrounding(boolean enabled) {
+		relevantGrounding = enabled;
+	}
+
 	public void setTimeLimit(double seconds) {
 		timeLimitedInference = true;
 		this.timeLimit = seconds;
@@ -228,6 +237,8 @@ public class BLNinfer implements IParameterHandler {
 			}
 			else if(args[i].equals("-allowPartialInst"))
 				allowPartialInst = true;
+			else if(args[i].equals("-rel"))
+				relevantGrounding = true;
 			else if(args[i].equals("-maxTrials"))
 				params.put("maxTrials", args[++i]);
 			else if(args[i].equals("-ia"))
@@ -348,6 +359,8 @@ public class BLNinfer implements IParameterHandler {
 			bln.setAllowPartialInstantiation(allowPartialInst);
 			gbln = bln.ground(db);
 			paramHandler.addSubhandler(gbln);
+			if(relevantGrounding)
+				gbln.setRelevantQueries(queries);
 			gbln.instantiateGroundNetwork();
 			this.groundingTime = sw.getElapsedTimeSecs();
 		}
@@ -531,6 +544,7 @@ public class BLNinfer implements IParameterHandler {
 					"     -e <evidence db pattern>  an evidence database file or file mask\n" + 
 					"     -q <comma-sep. queries>   queries (predicate names or partially grounded terms with lower-case vars)\n\n" + 
 					"   options:\n\n" + "     -allowPartialInst  allow partial ground network instantiations (skip nodes with no applicable fragment)\n" + 
+					"     -rel               instantiate only the variables relevant to the queries (i.e. omit barren variables)\n" + 
 					"     -maxSteps #        the maximum number of steps to take (default: 1000 for non-time-limited inf.)\n" + 
 					"     -maxTrials #       the maximum number of trials per step for BN sampling algorithms (default: 5000)\n" + 
 					"     -infoInterval #    the number of steps after which to output a status message\n"			+ 
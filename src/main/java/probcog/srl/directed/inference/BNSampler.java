@@ -24,6 +24,7 @@ import probcog.bayesnets.core.BeliefNetworkEx;
 import probcog.bayesnets.inference.ITimeLimitedInference;
 import probcog.bayesnets.inference.SampledDistribution;
 import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
 import probcog.srl.directed.bln.AbstractGroundBLN;
 
 /**
@@ -43,6 +44,7 @@ public class BNSampler extends Sampler implements ITimeLimitedInference {
 	 * the evidence we are working on
 	 */
 	protected int[] evidenceDomainIndices;
+	protected CancellationToken cancellationToken = null;
 		
 	public BNSampler(AbstractGroundBLN gbln, Class<? extends probcog.bayesnets.inference.Sampler> samplerClass) throws ProbCogException {
 		super(gbln);
@@ -76,6 +78,7 @@ public class BNSampler extends Sampler implements ITimeLimitedInference {
 		sampler.setInfoInterval(infoInterval);
 		sampler.setMaxTrials(maxTrials);
 		sampler.setSkipFailedSteps(skipFailedSteps);
+		sampler.setCancellationToken(cancellationToken);
 		sampler.initialize();
 	}
 	
@@ -102,6 +105,12 @@ public class BNSampler extends Sampler implements ITimeLimitedInference {
 		return "BNInference:" + samplerClass.getSimpleName();
 	}
 	
+	public void setCancellationToken(CancellationToken token) {
+		cancellationToken = token;
+		if(sampler != null)
+			sampler.setCancellationToken(token);
+	}
+	
 	public SampledDistribution pollResults() throws ProbCogException {
 		if(sampler == null)
 			return null;
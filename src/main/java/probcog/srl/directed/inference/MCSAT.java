@@ -24,6 +24,7 @@ import probcog.bayesnets.core.BeliefNetworkEx;
 import probcog.bayesnets.inference.ITimeLimitedInference;
 import probcog.bayesnets.inference.SampledDistribution;
 import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
 import probcog.logic.Disjunction;
 import probcog.logic.Formula;
 import probcog.logic.GroundLiteral;
@@ -50,6 +51,7 @@ public class MCSAT extends Sampler implements ITimeLimitedInference {
 	 */
 	protected Vector<Disjunction> hardConstraintsInCPTs = new Vector<Disjunction>();
 	protected probcog.logic.sat.weighted.MCSAT sampler;
+	protected CancellationToken cancellationToken = null;
 	
 	public MCSAT(GroundBLN gbln) throws ProbCogException {
 		super(gbln);
@@ -76,6 +78,7 @@ public class MCSAT extends Sampler implements ITimeLimitedInference {
 		hardConstraintsInCPTs = null;
 		// construct sampler
 		sampler = new probcog.logic.sat.weighted.MCSAT(kb, gbln.getWorldVars(), gbln.getDatabase());
+		sampler.setCancellationToken(cancellationToken);
 		// pass on parameter handling
 		paramHandler.addSubhandler(sampler.getParameterHandler());
 	}
@@ -141,6 +144,12 @@ public class MCSAT extends Sampler implements ITimeLimitedInference {
 		return dist;
 	}
 
+	public void setCancellationToken(CancellationToken token) {
+		cancellationToken = token;
+		if(sampler != null)
+			sampler.setCancellationToken(token);
+	}
+
 	public SampledDistribution pollResults() throws ProbCogException {		
 		return getSampledDistribution(sampler.pollResults());
 	}
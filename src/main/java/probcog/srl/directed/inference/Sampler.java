@@ -21,14 +21,13 @@ package probcog.srl.directed.inference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Vector;
-import java.util.regex.Pattern;
 
-import edu.ksu.cis.bnj.ver3.core.BeliefNode;
 import edu.tum.cs.util.Stopwatch;
 import probcog.bayesnets.inference.SampledDistribution;
 import probcog.exception.ProbCogException;
 import probcog.inference.IParameterHandler;
 import probcog.inference.ParameterHandler;
+import probcog.srl.QueryIndex;
 import probcog.srl.directed.bln.AbstractGroundBLN;
 
 /**
@@ -149,31 +148,13 @@ public abstract class Sampler implements IParameterHandler {
 	}
 	
 	public void setQueries(Iterable<String> queries) {
-		// generate patterns
-		Vector<Pattern> patterns = new Vector<Pattern>();
-		for(String query : queries) {
-			String p = query;
-			p = Pattern.compile("([,\\(])([a-z][^,\\)]*)").matcher(p).replaceAll("$1.*?");
-			p = p.replace("(", "\\(").replace(")", "\\)") + ".*";			
-			patterns.add(Pattern.compile(p));
-			//System.out.println("pattern: " + p);
-		}
-		
-		// check all ground variables for matches
-		// TODO This should be done more efficiently by explicitly grounding the requested nodes instead of using pattern matchers
-		BeliefNode[] nodes = gbln.getGroundNetwork().getNodes();
-		queryVars = new Vector<Integer>();
-		queryVarQueryIndices = new Vector<Integer>();
-		for(int i = 0; i < nodes.length; i++) {
-			int idxQuery = 0;
-			for(Pattern pattern : patterns)	{		
-				if(pattern.matcher(nodes[i].getName()).matches()) {
-					queryVars.add(i);
-					queryVarQueryIndices.add(idxQuery);
-					break;					
-				}
-				++idxQuery;
-			}
+		// resolve the queries to ground nodes
+		QueryIndex.Matches matches = gbln.getQueryIndex().match(queries);
+		queryVars = new Vector<Integer>(matches.variables.length);
+		queryVarQueryIndices = new Vector<Integer>(matches.variables.length);
+		for(int i = 0; i < matches.variables.length; i++) {
+			queryVars.add(matches.variables[i]);
+			queryVarQueryIndices.add(matches.queryIndices[i]);
 		}
 	}
 }
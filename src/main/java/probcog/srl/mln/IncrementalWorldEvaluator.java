@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.srl.mln;
+
+import java.util.HashSet;
+
+import probcog.logic.GroundAtom;
+import probcog.logic.PossibleWorld;
+import probcog.logic.sat.weighted.WeightedFormula;
+
+/**
+ * Keeps track of the value of a possible world (i.e. the sum of weights of the satisfied
+ * ground formulas of a ground MLN) as well as the sum of weights of the unsatisfied ground
+ * formulas while the world is being modified one ground atom at a time.
+ * Upon a change, only the ground formulas in which the respective ground atom
+ * appears are re-evaluated (cf. {@link MarkovRandomField#getWorldValue(probcog.logic.IPossibleWorld)},
+ * which evaluates all formulas).
+ * The world must be modified only through this object.
+ */
+public class IncrementalWorldEvaluator {
+	protected PossibleWorld world;
+	protected WeightedFormula[] formulas;
+	/**
+	 * whether each formula is satisfied in the current world
+	 */
+	protected boolean[] satisfied;
+	/**
+	 * the occurrence index: the indices of the formulas in which the ground atom with index i appears
+	 * are occurrences[occurrenceStart[i]] to occurrences[occurrenceStart[i+1]-1]
+	 */
+	protected int[] occurrenceStart, occurrences;
+	protected double value, unsatWeight;
+
+	/**
+	 * @param mrf the ground MLN (whose ground formulas must have been stored)
+	 * @param world a world over the MRF's variables, which is henceforth modified through this object only
+	 */
+	public IncrementalWorldEvaluator(MarkovRandomField mrf, PossibleWorld world) {
+		this.world = world;
+		formulas = mrf.weightedFormulas.toArray(new WeightedFormula[mrf.getNumFormulas()]);
+		satisfied = new boolean[formulas.length];
+		// build the occurrence index
+		int numVars = mrf.getWorldVariables().size();
+		int[][] atoms = new int[formulas.length][];
+		occurrenceStart = new int[numVars+1];
+		HashSet<GroundAtom> gndAtoms = new HashSet<GroundAtom>();
+		for(int i = 0; i < formulas.length; i++) {
+			gndAtoms.clear();
+			formulas[i].formula.getGroundAtoms(gndAtoms);
+			atoms[i] = new int[gndAtoms.size()];
+			int j = 0;
+			for(GroundAtom ga : gndAtoms) {
+				atoms[i][j++] = ga.index;
+				occurrenceStart[ga.index+1]++;
+			}
+		}
+		for(int i = 0; i < numVars; i++)
+			occurrenceStart[i+1] += occurrenceStart[i];
+		occurrences = new int[occurrenceStart[numVars]];
+		int[] pos = occurrenceStart.clone();
+		for(int i = 0; i < formulas.length; i++)
+			for(int idxGA : atoms[i])
+				occurrences[pos[idxGA]++] = i;
+		recompute();
+	}
+
+	/**
+	 * evaluates all formulas in the current world from scratch (which also eliminates any accumulated rounding errors)
+	 */
+	public void recompute() {
+		value = 0;
+		unsatWeight = 0;
+		for(int i = 0; i < formulas.length; i++) {
+			satisfied[i] = formulas[i].formula.isTrue(world);
+			if(satisfied[i])
+				value += formulas[i].weight;
+			else
+				unsatWeight += formulas[i].weight;
+		}
+	}
+
+	/**
+	 * inverts the truth value of a ground atom
+	 * @param idxGndAtom the index of the ground atom
+	 * @return the resulting change in the world value
+	 */
+	public double flip(int idxGndAtom) {
+		world.flip(idxGndAtom);
+		double delta = 0;
+		for(int k = occurrenceStart[idxGndAtom]; k < occurrenceStart[idxGndAtom+1]; k++) {
+			int i = occurrences[k];
+			boolean isTrue = formulas[i].formula.isTrue(world);
+			if(isTrue != satisfied[i]) {
+				satisfied[i] = isTrue;
+				double w = formulas[i].weight;
+				if(isTrue) {
+					delta += w;
+					unsatWeight -= w;
+				}
+				else {
+					delta -= w;
+					unsatWeight += w;
+				}
+			}
+		}
+		value += delta;
+		return delta;
+	}
+
+	/**
+	 * sets the truth value of a ground atom
+	 * @param idxGndAtom the index of the ground atom
+	 * @param truthValue the new truth value
+	 * @return the resulting change in the world value
+	 */
+	public double set(int idxGndAtom, boolean truthValue) {
+		if(world.get(idxGndAtom) == truthValue)
+			return 0;
+		return flip(idxGndAtom);
+	}
+
+	/**
+	 * brings the world of this evaluator into the state of the given world, re-evaluating only the formulas
+	 * in which the ground atoms whose truth values differ appear
+	 * @param other a world over the same set of variables
+	 * @return the resulting change in the world value
+	 */
+	public double update(PossibleWorld other) {
+		long[] bits = world.getBits(), otherBits = other.getBits();
+		double delta = 0;
+		for(int i = 0; i < bits.length; i++) {
+			long diff = bits[i] ^ otherBits[i];
+			while(diff != 0) {
+				delta += flip((i << 6) + Long.numberOfTrailingZeros(diff));
+				diff &= diff - 1;
+			}
+		}
+		return delta;
+	}
+
+	/**
+	 * computes the change in the world value that flipping the given ground atom would cause (without making any changes)
+	 * @param idxGndAtom the index of the ground atom
+	 * @return the change in the world value
+	 */
+	public double getFlipDelta(int idxGndAtom) {
+		world.flip(idxGndAtom);
+		double delta = 0;
+		for(int k = occurrenceStart[idxGndAtom]; k < occurrenceStart[idxGndAtom+1]; k++) {
+			int i = occurrences[k];
+			if(formulas[i].formula.isTrue(world) != satisfied[i])
+				delta += satisfied[i] ? -formulas[i].weight : formulas[i].weight;
+		}
+		world.flip(idxGndAtom);
+		return delta;
+	}
+
+	/**
+	 * @return the sum of weights of the formulas that are satisfied in the current world
+	 */
+	public double getWorldValue() {
+		return value;
+	}
+
+	/**
+	 * @return the sum of weights of the formulas that are not satisfied in the current world
+	 */
+	public double getSumOfUnsatClauseWeights() {
+		return unsatWeight;
+	}
+
+	public PossibleWorld getWorld() {
+		return world;
+	}
+}
@@ -0,0 +1,524 @@
+/*******************************************************************************
+ * Copyright (C) 2026 ProbCog contributors.
+ *
+ * This file is part of ProbCog.
+ *
+ * ProbCog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ProbCog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ProbCog. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package probcog.srl.mln;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Vector;
+
+import probcog.exception.ProbCogException;
+import probcog.logic.Atom;
+import probcog.logic.Conjunction;
+import probcog.logic.Disjunction;
+import probcog.logic.Formula;
+import probcog.logic.GroundAtom;
+import probcog.logic.GroundLiteral;
+import probcog.logic.Literal;
+import probcog.logic.Negation;
+import probcog.logic.TrueFalse;
+import probcog.logic.WorldVariables;
+import probcog.logic.Formula.FormulaSimplification;
+import probcog.logic.sat.weighted.ILazyFormulaSource;
+import probcog.logic.sat.weighted.WeightedClausalKB;
+import probcog.logic.sat.weighted.WeightedClausalKB.ConversionMode;
+import probcog.logic.sat.weighted.WeightedClausalKB.FormulaAndClauses;
+import probcog.logic.sat.weighted.WeightedClause;
+import probcog.logic.sat.weighted.WeightedFormula;
+import probcog.srl.Database;
+
+/**
+ * Grounds the formulas of an MLN lazily (as in LazySAT, Singla and Domingos 2006): each formula is converted
+ * to conjunctive normal form in ungrounded form (negating formulas as determined by a {@link ConversionMode}), and ground formulas 
+ * are generated only when they may become unsatisfied, i.e. initially for the ground formulas that are unsatisfied 
+ * when all non-evidence ground atoms are false, and subsequently, when a ground atom first becomes true, 
+ * for the ground formulas in which it appears negatively.
+ * Ground formulas are simplified using the evidence; as in eager grounding (see {@link WeightedClausalKB}), the weight of a 
+ * ground formula is evenly distributed among the clauses that are not satisfied by the evidence. 
+ * Formulas that cannot be converted in ungrounded form (e.g. formulas containing existential quantifiers or 
+ * equality constraints) are grounded eagerly, their ground formulas being active from the start.
+ */
+public class LazyGrounder implements ILazyFormulaSource {
+	protected MarkovRandomField mrf;
+	protected Database db;
+	protected WorldVariables vars;
+	/**
+	 * the conversion with which formulas are negated (as in eager grounding for the respective inference algorithm)
+	 */
+	protected ConversionMode conversionMode;
+	protected Vector<FormulaTemplate> templates = new Vector<FormulaTemplate>();
+	/**
+	 * maps each predicate name to the occurrences of negative literals of the predicate in formula templates,
+	 * each occurrence being given as {index of template, index of literal}
+	 */
+	protected HashMap<String, ArrayList<int[]>> negativeOccurrences = new HashMap<String, ArrayList<int[]>>();
+	/**
+	 * the ground formulas of formulas that are grounded eagerly
+	 */
+	protected ArrayList<FormulaAndClauses> eagerFormulas = new ArrayList<FormulaAndClauses>();
+	/**
+	 * the truth value of each ground atom in the evidence (0 if unknown, 1 if false, 2 if true)
+	 */
+	protected byte[] evidence;
+
+	/**
+	 * a formula in conjunctive normal form (whose clauses consist of ungrounded literals) along with its 
+	 * variables (in the order in which they are bound) and their domains
+	 */
+	protected class FormulaTemplate {
+		public Formula cnf;
+		/**
+		 * the literals of all clauses
+		 */
+		public Literal[] lits;
+		/**
+		 * the index of the clause each literal belongs to
+		 */
+		public int[] clauseOf;
+		public int numClauses;
+		public String[] varNames;
+		public String[][] domains;
+		public ArrayList<HashSet<String>> domainSets;
+		/**
+		 * for each literal, the number of variables in varNames that need to be bound for the literal to be fully bound
+		 */
+		public int[] litBoundAt;
+		public double weight;
+		public boolean isHard;
+		public WeightedFormula origin;
+
+		public FormulaTemplate(Formula cnf, ArrayList<Literal[]> clauses, double weight, WeightedFormula origin) throws ProbCogException {
+			this.cnf = cnf;
+			this.weight = weight;
+			this.isHard = origin.isHard;
+			this.origin = origin;
+			numClauses = clauses.size();
+			ArrayList<Literal> allLits = new ArrayList<Literal>();
+			ArrayList<Integer> clauseIndices = new ArrayList<Integer>();
+			for(int c = 0; c < numClauses; c++) {
+				for(Literal lit : clauses.get(c)) {
+					allLits.add(lit);
+					clauseIndices.add(c);
+				}
+			}
+			lits = allLits.toArray(new Literal[allLits.size()]);
+			clauseOf = new int[lits.length];
+			for(int k = 0; k < lits.length; k++)
+				clauseOf[k] = clauseIndices.get(k);
+			HashMap<String, String> var2domName = new HashMap<String, String>();
+			cnf.getVariables(db, var2domName);
+			varNames = cnf.getGroundingOrder(var2domName.keySet().toArray(new String[var2domName.size()]));
+			domains = new String[varNames.length][];
+			domainSets = new ArrayList<HashSet<String>>(varNames.length);
+			for(int i = 0; i < varNames.length; i++) {
+				String domName = var2domName.get(varNames[i]);
+				Iterable<String> domain = db.getDomain(domName);
+				if(domain == null)
+					throw new ProbCogException("Domain named '" + domName + "' (of variable " + varNames[i] + " in formula " + origin.formula.toString() + ") not found in the database!");
+				ArrayList<String> elements = new ArrayList<String>();
+				for(String element : domain)
+					elements.add(element);
+				domains[i] = elements.toArray(new String[elements.size()]);
+				domainSets.add(new HashSet<String>(elements));
+			}
+			litBoundAt = new int[lits.length];
+			for(int k = 0; k < lits.length; k++) {
+				for(String param : lits[k].atom.params) {
+					if(Atom.isVariable(param)) {
+						for(int i = 0; i < varNames.length; i++)
+							if(varNames[i].equals(param))
+								litBoundAt[k] = Math.max(litBoundAt[k], i+1);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * the state of an enumeration of the groundings of a formula template.
+	 * Initially, the ground formulas that have a clause without negative (non-evidence) literals are generated; 
+	 * every other ground formula is generated (once) when the first of the ground atoms it contains negatively becomes true 
+	 */
+	protected class Enumeration {
+		public FormulaTemplate t;
+		public HashMap<String, String> binding = new HashMap<String, String>();
+		/**
+		 * the variables of the template that are not bound by unification (in the order in which they are bound)
+		 */
+		public int[] freeVars;
+		/**
+		 * for each literal, the number of free variables that need to be bound for the literal to be fully bound
+		 */
+		public int[] litBoundAt;
+		public GroundAtom[] gndAtoms;
+		/**
+		 * for each clause, the number of free variables bound when the clause was found to be satisfied by the evidence
+		 * (Integer.MAX_VALUE if it was not) 
+		 */
+		protected int[] satisfiedAt;
+		/**
+		 * for each clause, the number of free variables bound when the clause was found to be satisfied by the evidence 
+		 * or to contain a negative literal (Integer.MAX_VALUE if neither is the case) 
+		 */
+		protected int[] negativeOrSatisfiedAt;
+		/**
+		 * the literal that was unified with the ground atom that has become true (-1 if the initial formulas are enumerated)
+		 */
+		public int pinnedLit = -1;
+		public GroundAtom pinnedAtom;
+		public boolean[] activated;
+		public Collection<FormulaAndClauses> ret;
+
+		public Enumeration(FormulaTemplate t, Collection<FormulaAndClauses> ret) {
+			this.t = t;
+			this.ret = ret;
+			gndAtoms = new GroundAtom[t.lits.length];
+			satisfiedAt = new int[t.numClauses];
+			negativeOrSatisfiedAt = new int[t.numClauses];
+		}
+
+		/**
+		 * determines the free variables (after unification) and the points at which literals become bound
+		 */
+		public void prepare() {
+			ArrayList<Integer> free = new ArrayList<Integer>();
+			int[] pos = new int[t.varNames.length];
+			for(int i = 0; i < t.varNames.length; i++) {
+				if(!binding.containsKey(t.varNames[i]))
+					free.add(i);
+				pos[i] = free.size();
+			}
+			freeVars = new int[free.size()];
+			for(int i = 0; i < freeVars.length; i++)
+				freeVars[i] = free.get(i);
+			litBoundAt = new int[t.lits.length];
+			for(int k = 0; k < t.lits.length; k++)
+				litBoundAt[k] = t.litBoundAt[k] == 0 ? 0 : pos[t.litBoundAt[k]-1];
+		}
+
+		/**
+		 * evaluates the literals that become fully bound once the given number of free variables is bound
+		 * @return false if the current partial binding can be discarded
+		 * @throws ProbCogException
+		 */
+		protected boolean evaluateLiterals(int numBound) throws ProbCogException {
+			// discard the information on deeper bindings
+			for(int c = 0; c < t.numClauses; c++) {
+				if(satisfiedAt[c] >= numBound)
+					satisfiedAt[c] = Integer.MAX_VALUE;
+				if(negativeOrSatisfiedAt[c] >= numBound)
+					negativeOrSatisfiedAt[c] = Integer.MAX_VALUE;
+			}
+			for(int k = 0; k < t.lits.length; k++) {
+				if(litBoundAt[k] != numBound)
+					continue;
+				Literal lit = t.lits[k];
+				int c = t.clauseOf[k];
+				GroundAtom ga = (GroundAtom)lit.atom.ground(binding, vars, db);
+				gndAtoms[k] = ga;
+				byte ev = evidence[ga.index];
+				if(ev != 0) {
+					if((ev == 2) == lit.isPositive) {
+						satisfiedAt[c] = Math.min(satisfiedAt[c], numBound);
+						negativeOrSatisfiedAt[c] = Math.min(negativeOrSatisfiedAt[c], numBound);
+					}
+					continue;
+				}
+				if(lit.isPositive)
+					continue;
+				negativeOrSatisfiedAt[c] = Math.min(negativeOrSatisfiedAt[c], numBound);
+				if(pinnedLit == -1 || k == pinnedLit)
+					continue;
+				if(ga == pinnedAtom) {
+					if(k < pinnedLit) // the grounding is generated for the first literal with the atom
+						return false;
+				}
+				else if(activated[ga.index]) // the formula was activated previously
+					return false;
+			}
+			boolean allSatisfied = true, allNegativeOrSatisfied = true;
+			for(int c = 0; c < t.numClauses; c++) {
+				allSatisfied &= satisfiedAt[c] != Integer.MAX_VALUE;
+				allNegativeOrSatisfied &= negativeOrSatisfiedAt[c] != Integer.MAX_VALUE;
+			}
+			if(allSatisfied)
+				return false;
+			// initially, only formulas with a clause without negative literals can be unsatisfied 
+			if(pinnedLit == -1 && allNegativeOrSatisfied)
+				return false;
+			return true;
+		}
+
+		public void run() throws ProbCogException {
+			if(evaluateLiterals(0))
+				generate(0);
+		}
+
+		protected void generate(int i) throws ProbCogException {
+			if(i == freeVars.length) {
+				addFormula();
+				return;
+			}
+			int var = freeVars[i];
+			String varName = t.varNames[var];
+			for(String element : t.domains[var]) {
+				binding.put(varName, element);
+				if(evaluateLiterals(i+1))
+					generate(i+1);
+			}
+			binding.remove(varName);
+		}
+
+		/**
+		 * adds the ground formula for the current (full) binding, dropping clauses that are satisfied and literals that are false given the evidence
+		 * @throws ProbCogException
+		 */
+		protected void addFormula() throws ProbCogException {
+			ArrayList<ArrayList<GroundLiteral>> clauses = new ArrayList<ArrayList<GroundLiteral>>();
+			boolean initial = false;
+			int numUnsatisfied = 0; // the number of clauses not satisfied by the evidence (including tautologies, as in eager grounding)
+			for(int c = 0; c < t.numClauses; c++) {
+				if(satisfiedAt[c] != Integer.MAX_VALUE)
+					continue;
+				numUnsatisfied++;
+				ArrayList<GroundLiteral> gndLits = new ArrayList<GroundLiteral>();
+				boolean tautology = false, hasNegative = false;
+				for(int k = 0; k < t.lits.length && !tautology; k++) {
+					GroundAtom ga = gndAtoms[k];
+					if(t.clauseOf[k] != c || evidence[ga.index] != 0)
+						continue;
+					boolean isPositive = t.lits[k].isPositive;
+					boolean duplicate = false;
+					for(GroundLiteral other : gndLits) {
+						if(other.gndAtom == ga) {
+							tautology |= other.isPositive != isPositive;
+							duplicate = true;
+						}
+					}
+					if(!duplicate)
+						gndLits.add(new GroundLiteral(isPositive, ga));
+					hasNegative |= !isPositive;
+				}
+				if(tautology)
+					continue;
+				if(gndLits.isEmpty()) { // the formula is false given the evidence
+					if(pinnedLit != -1) // (the formula is among the initial ones)
+						return;
+					if(t.isHard)
+						throw new ProbCogException("Unsatisfiable hard formula encountered: " + t.origin.formula.toString() + " with binding " + binding.toString() + " cannot be satisfied (given the evidence).");
+					return;
+				}
+				initial |= !hasNegative;
+				clauses.add(gndLits);
+			}
+			if(clauses.isEmpty() || initial != (pinnedLit == -1))
+				return;
+			ArrayList<WeightedClause> wcs = new ArrayList<WeightedClause>(clauses.size());
+			for(ArrayList<GroundLiteral> gndLits : clauses) {
+				Formula f = gndLits.size() == 1 ? gndLits.get(0) : new Disjunction(gndLits.toArray(new Formula[gndLits.size()]));
+				wcs.add(new WeightedClause(f, t.weight / numUnsatisfied, t.isHard));
+			}
+			Formula gf = wcs.size() == 1 ? wcs.get(0) : new Conjunction(wcs.toArray(new Formula[wcs.size()]));
+			ret.add(new FormulaAndClauses(new WeightedFormula(gf, t.weight, t.isHard), wcs));
+		}
+	}
+
+	/**
+	 * @param mrf a ground Markov random field, whose set of ground atoms has been created
+	 * @param conversionMode the conversion that eager grounding would apply for the inference algorithm the clauses are generated for
+	 *        (e.g. {@link ConversionMode#NEGATION_IF_WEIGHT_NEGATIVE} for MC-SAT, {@link ConversionMode#NEGATION_IF_CLAUSE_RESULTS} for MaxWalkSAT)
+	 * @throws ProbCogException
+	 */
+	public LazyGrounder(MarkovRandomField mrf, ConversionMode conversionMode) throws ProbCogException {
+		this.mrf = mrf;
+		this.conversionMode = conversionMode;
+		this.db = mrf.getDb();
+		this.vars = mrf.getWorldVariables();
+		// read the evidence
+		evidence = new byte[vars.size()];
+		for(GroundAtom ga : vars) {
+			String value = db.getSingleVariableValue(ga.predicate, ga.args, false);
+			if(value != null)
+				evidence[ga.index] = (byte)(value.equals("True") ? 2 : 1);
+		}
+		// create formula templates
+		for(WeightedFormula wf : mrf.mln.getFormulas()) {
+			Formula f = wf.formula;
+			double weight = wf.weight;
+			if(conversionMode == ConversionMode.NEGATION_IF_WEIGHT_NEGATIVE && weight < 0) {
+				f = new Negation(f);
+				weight = -weight;
+			}
+			Formula cnf = null;
+			try {
+				cnf = f.toCNF();
+				// (hard formulas are never negated, as their clauses are constraints that must be satisfied)
+				if(conversionMode == ConversionMode.NEGATION_IF_CLAUSE_RESULTS && !wf.isHard && WeightedClausalKB.isConjunctionOfLiterals(cnf)) {
+					cnf = new Negation(cnf).toCNF();
+					weight = -weight;
+				}
+			}
+			catch(RuntimeException e) { // (formula cannot be converted in ungrounded form)
+			}
+			if(cnf instanceof TrueFalse && ((TrueFalse)cnf).isTrue())
+				continue;
+			ArrayList<Literal[]> clauses = cnf == null ? null : getClauses(cnf);
+			if(clauses == null)
+				groundEagerly(wf);
+			else
+				addTemplate(new FormulaTemplate(cnf, clauses, weight, wf));
+		}
+	}
+
+	/**
+	 * @param cnf a formula in conjunctive normal form
+	 * @return the literals of each of the formula's clauses or null if the formula is not made up of ungrounded literals
+	 */
+	protected static ArrayList<Literal[]> getClauses(Formula cnf) {
+		Formula[] clauses = cnf instanceof Conjunction ? ((Conjunction)cnf).children : new Formula[]{cnf};
+		ArrayList<Literal[]> ret = new ArrayList<Literal[]>();
+		for(Formula clause : clauses) {
+			Formula[] children = clause instanceof Disjunction ? ((Disjunction)clause).children : new Formula[]{clause};
+			Literal[] lits = new Literal[children.length];
+			for(int i = 0; i < children.length; i++) {
+				if(children[i] instanceof Literal)
+					lits[i] = (Literal)children[i];
+				else if(children[i] instanceof Atom)
+					lits[i] = new Literal(true, (Atom)children[i]);
+				else
+					return null;
+			}
+			ret.add(lits);
+		}
+		return ret;
+	}
+
+	protected void addTemplate(FormulaTemplate t) {
+		int idx = templates.size();
+		templates.add(t);
+		for(int k = 0; k < t.lits.length; k++) {
+			if(t.lits[k].isPositive)
+				continue;
+			ArrayList<int[]> occ = negativeOccurrences.get(t.lits[k].atom.predName);
+			if(occ == null)
+				negativeOccurrences.put(t.lits[k].atom.predName, occ = new ArrayList<int[]>());
+			occ.add(new int[]{idx, k});
+		}
+	}
+
+	protected void groundEagerly(WeightedFormula wf) throws ProbCogException {
+		FormulaSimplification simplification = wf.isHard ? FormulaSimplification.OnDisallowFalse : FormulaSimplification.On;
+		WeightedClausalKB kb = new WeightedClausalKB();
+		ConversionMode mode = wf.isHard && conversionMode == ConversionMode.NEGATION_IF_CLAUSE_RESULTS ? ConversionMode.NO_NEGATION : conversionMode;
+		try {
+			for(Formula gf : wf.formula.getAllGroundings(db, vars, simplification))
+				kb.addFormula(new WeightedFormula(gf, wf.weight, wf.isHard), mode);
+		}
+		catch(Exception e) {
+			throw new ProbCogException("Error while grounding formula '" + wf.formula.toString() + "'", e);
+		}
+		eagerFormulas.addAll(kb.getFormulasAndClauses());
+	}
+
+	/**
+	 * @return the number of formula templates (formulas that are grounded eagerly not being counted)
+	 */
+	public int getNumTemplates() {
+		return templates.size();
+	}
+
+	@Override
+	public synchronized Collection<FormulaAndClauses> getInitialFormulas() throws ProbCogException {
+		ArrayList<FormulaAndClauses> ret = new ArrayList<FormulaAndClauses>(eagerFormulas);
+		for(FormulaTemplate t : templates) {
+			Enumeration e = new Enumeration(t, ret);
+			e.prepare();
+			e.run();
+		}
+		return ret;
+	}
+
+	@Override
+	public synchronized Collection<FormulaAndClauses> getFormulasActivatedBy(GroundAtom gndAtom, boolean[] activated) throws ProbCogException {
+		ArrayList<FormulaAndClauses> ret = new ArrayList<FormulaAndClauses>();
+		ArrayList<int[]> occ = negativeOccurrences.get(gndAtom.predicate);
+		if(occ == null || evidence[gndAtom.index] != 0) // (evidence atoms do not activate formulas, as their truth values are fixed)
+			return ret;
+		for(int[] o : occ) {
+			FormulaTemplate t = templates.get(o[0]);
+			Enumeration e = new Enumeration(t, ret);
+			e.pinnedLit = o[1];
+			e.pinnedAtom = gndAtom;
+			e.activated = activated;
+			if(!unify(t, t.lits[o[1]].atom, gndAtom, e.binding))
+				continue;
+			e.prepare();
+			e.run();
+		}
+		return ret;
+	}
+
+	@Override
+	public Collection<WeightedClause> getInitialClauses() throws ProbCogException {
+		return getClauses(getInitialFormulas());
+	}
+
+	@Override
+	public Collection<WeightedClause> getClausesActivatedBy(GroundAtom gndAtom, boolean[] activated) throws ProbCogException {
+		return getClauses(getFormulasActivatedBy(gndAtom, activated));
+	}
+
+	protected static Collection<WeightedClause> getClauses(Collection<FormulaAndClauses> formulas) {
+		ArrayList<WeightedClause> ret = new ArrayList<WeightedClause>();
+		for(FormulaAndClauses fc : formulas)
+			ret.addAll(fc.weightedClauses);
+		return ret;
+	}
+
+	/**
+	 * binds the variables of an atom such that it matches the given ground atom
+	 * @param t the template the atom belongs to
+	 * @param atom the (ungrounded) atom
+	 * @param gndAtom the ground atom
+	 * @param binding the binding to extend
+	 * @return true if the atom could be unified with the ground atom
+	 */
+	protected boolean unify(FormulaTemplate t, Atom atom, GroundAtom gndAtom, HashMap<String, String> binding) {
+		Iterator<String> params = atom.params.iterator();
+		for(int i = 0; i < gndAtom.args.length; i++) {
+			String param = params.next();
+			String value = gndAtom.args[i];
+			if(!Atom.isVariable(param)) {
+				if(!param.equals(value))
+					return false;
+				continue;
+			}
+			String prev = binding.put(param, value);
+			if(prev != null && !prev.equals(value))
+				return false;
+			// the value must be in the variable's domain (which may be more specific than the argument type)
+			for(int v = 0; v < t.varNames.length; v++)
+				if(t.varNames[v].equals(param) && !t.domainSets.get(v).contains(value))
+					return false;
+		}
+		return true;
+	}
+}
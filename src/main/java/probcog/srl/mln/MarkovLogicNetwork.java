@@ -184,6 +184,27 @@ public class MarkovLogicNetwork implements RelationalModel {
     public MarkovRandomField ground(Database db, boolean storeFormulasInMRF, GroundingCallback gc) throws ProbCogException {
         return new MarkovRandomField(this, db, storeFormulasInMRF, gc);
     }
+    
+    /**
+     * grounds the MLN, grounding formulas in parallel
+     * @param db the evidence database
+     * @param numThreads the number of threads with which to ground formulas
+     * @return the ground MRF
+     * @throws ProbCogException
+     */
+    public MarkovRandomField ground(Database db, int numThreads) throws ProbCogException {
+        return new MarkovRandomField(this, db, true, null, numThreads);
+    }
+    
+    /**
+     * grounds the MLN lazily, i.e. creates only the set of ground atoms, ground clauses being generated on demand during inference
+     * @param db the evidence database
+     * @return the ground MRF (see {@link MarkovRandomField#getLazyGrounder(probcog.logic.sat.weighted.WeightedClausalKB.ConversionMode)})
+     * @throws ProbCogException
+     */
+    public MarkovRandomField groundLazily(Database db) throws ProbCogException {
+        return new MarkovRandomField(this, db, true);
+    }
 
     /**
      * reads the contents of an MLN file
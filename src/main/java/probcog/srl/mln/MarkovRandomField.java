@@ -20,17 +20,24 @@
 package probcog.srl.mln;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 import probcog.exception.ProbCogException;
 import probcog.logic.Formula;
 import probcog.logic.GroundAtom;
+import probcog.logic.GroundingTask;
 import probcog.logic.IPossibleWorld;
+import probcog.logic.PossibleWorld;
 import probcog.logic.WorldVariables;
 import probcog.logic.Formula.FormulaSimplification;
+import probcog.logic.sat.weighted.WeightedClausalKB.ConversionMode;
 import probcog.logic.sat.weighted.WeightedFormula;
 import probcog.srl.Database;
+import probcog.srl.QueryIndex;
 import probcog.srl.Signature;
 import probcog.srl.Variable;
 
@@ -49,6 +56,27 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
      * whether to simplify grounded formulas based on evidence
      */
     protected final boolean simplifyGroundedFormulas = true;
+    /**
+     * the number of threads with which to ground formulas
+     */
+    protected int numGroundingThreads;
+    /**
+     * whether the formulas of this MRF are grounded lazily
+     */
+    protected boolean lazy = false;
+    /**
+     * for lazy grounding: the grounders that generate ground clauses on demand, one for each conversion mode requested
+     */
+    protected EnumMap<ConversionMode, LazyGrounder> lazyGrounders = new EnumMap<ConversionMode, LazyGrounder>(ConversionMode.class);
+    /**
+     * the index with which queries are resolved to ground atoms (created on demand)
+     */
+    protected QueryIndex queryIndex = null;
+    /**
+     * the evaluator used by {@link #getWorldValue(IPossibleWorld)} and {@link #getSumOfUnsatClauseWeights(IPossibleWorld)},
+     * which holds a copy of the most recently evaluated world (created on demand)
+     */
+    protected IncrementalWorldEvaluator evaluator = null;
     
     /**
      * @param mln a Markov logic network
@@ -59,13 +87,45 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
      * @throws ProbCogException 
      */
     public MarkovRandomField(MarkovLogicNetwork mln, Database db, boolean storeFormulas, GroundingCallback gc) throws ProbCogException {
+        this(mln, db, storeFormulas, gc, 1);
+    }
+    
+    /**
+     * @param mln a Markov logic network
+     * @param db an evidence database containing the set of objects for which to ground the MLN  
+     * @param storeFormula whether to store the grounded formulas that are generated
+     * @param gc an optional callback (which is called for each grounded formula), may be null;
+     *        the callback is always invoked on the calling thread, in the order in which the formulas are grounded sequentially
+     * @param numGroundingThreads the number of threads with which to ground formulas (in parallel)
+     * @throws ProbCogException 
+     */
+    public MarkovRandomField(MarkovLogicNetwork mln, Database db, boolean storeFormulas, GroundingCallback gc, int numGroundingThreads) throws ProbCogException {
         this.db = db;
         this.vars = new WorldVariables();
         this.mln = mln;        
+        this.numGroundingThreads = numGroundingThreads;
         groundVariables();
         groundFormulas(storeFormulas, gc);
     }
     
+    /**
+     * @param mln a Markov logic network
+     * @param db an evidence database containing the set of objects for which to ground the MLN
+     * @param lazy whether to ground formulas lazily: if so, only the set of ground atoms is created, and ground clauses
+     *        are obtained on demand from the MRF's {@link LazyGrounder}s (the ground formulas cannot be iterated)
+     * @throws ProbCogException
+     */
+    public MarkovRandomField(MarkovLogicNetwork mln, Database db, boolean lazy) throws ProbCogException {
+        this.db = db;
+        this.vars = new WorldVariables();
+        this.mln = mln;
+        this.numGroundingThreads = 1;
+        groundVariables();
+        this.lazy = lazy;
+        if(!lazy)
+        	groundFormulas(true, null);
+    }
+    
     public MarkovRandomField(MarkovLogicNetwork mln, Database db) throws ProbCogException {
     	this(mln, db, true, null);
     }
@@ -78,6 +138,15 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
         return vars;
     }
     
+    /**
+     * @return the index with which queries can be resolved to ground atoms of this MRF
+     */
+    public synchronized QueryIndex getQueryIndex() {
+    	if(queryIndex == null)
+    		queryIndex = new QueryIndex(vars);
+    	return queryIndex;
+    }
+    
     /**
      * creates the set ground atoms, considering functional predicates (and extending evidence as needed) 
      * @throws ProbCogException 
@@ -101,7 +170,7 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
         			args[functionallyDeterminedArg] = value;
         			GroundAtom ga = new GroundAtom(sig.functionName, args.clone()); 
         			block.add(ga);
-        			Variable var = db.getVariable(ga.toString());
+        			Variable var = db.getVariable(ga.predicate, ga.args);
         			if(var != null && var.isTrue()) {
         				if(trueOne != null)
         					throw new ProbCogException(String.format("The block the variable '%s' is in contains more than one true ground atom", ga.toString()));
@@ -111,7 +180,7 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
         		// if we have positive evidence, explicitly set the others to false in the database (to make full use of the evidence when grounding the formulas later on)
         		if(trueOne != null) {
         			for(GroundAtom ga : block)
-        				if(ga != trueOne && !db.contains(ga.toString()))
+        				if(ga != trueOne && !db.contains(ga.predicate, ga.args))
         					db.addVariable(new Variable(ga.predicate, ga.args, "False", mln));
         		}
         		// add the block to the set of vars
@@ -145,6 +214,10 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
      */
     protected void groundFormulas(boolean makelist, GroundingCallback gc) throws ProbCogException {
         weightedFormulas = new Vector<WeightedFormula>();
+        if(numGroundingThreads > 1 && canGroundConcurrently()) {
+        	groundFormulasParallel(makelist, gc);
+        	return;
+        }
         for(WeightedFormula wf : mln.getFormulas()) {
         	double weight = wf.weight;
         	boolean isHard = wf.isHard;
@@ -167,6 +240,69 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
         }
     }
     
+    /**
+     * @return whether the database can safely be queried concurrently, i.e. whether it is
+     * finalized or there are no logically determined (Prolog) predicates whose values it could compute on demand
+     */
+    protected boolean canGroundConcurrently() {
+    	if(db.isFinalized())
+    		return true;
+    	for(Signature sig : mln.getSignatures())
+    		if(sig.isLogical)
+    			return false;
+    	return true;
+    }
+    
+    /**
+     * creates groundings for all formulas on a fork-join pool, where formulas (and, for large domains, 
+     * parts of a single formula's groundings) are grounded concurrently; the result is the same as for {@link #groundFormulas(boolean, GroundingCallback)} 
+     * @param makelist boolean (if true the grounded formula will be saved in a set)
+     * @param gc callback method (if not null, the callback method is called for each grounded formula on the calling thread)
+     * @throws ProbCogException
+     */
+    protected void groundFormulasParallel(boolean makelist, GroundingCallback gc) throws ProbCogException {
+    	ForkJoinPool pool = new ForkJoinPool(numGroundingThreads);
+    	try {
+    		// submit a task for each formula
+    		Vector<WeightedFormula> formulas = mln.getFormulas();
+    		ArrayList<GroundingTask> tasks = new ArrayList<GroundingTask>(formulas.size());
+    		for(WeightedFormula wf : formulas) {
+    			FormulaSimplification simplification = simplifyGroundedFormulas ? (wf.isHard ? FormulaSimplification.OnDisallowFalse : FormulaSimplification.On) : FormulaSimplification.None;
+    			GroundingTask task;
+    			try {
+    				task = new GroundingTask(wf.formula, db, vars, simplification);
+    			}
+    			catch(Exception e) {
+    				throw new ProbCogException("Error while grounding formula '" + wf.formula.toString() + "'", e);
+    			}
+    			pool.execute(task);
+    			tasks.add(task);
+    		}
+    		// collect the results in order
+    		for(int i = 0; i < tasks.size(); i++) {
+    			WeightedFormula wf = formulas.get(i);
+    			ArrayList<Formula> groundings;
+    			try {
+    				groundings = tasks.get(i).join();
+    			}
+    			catch(RuntimeException e) {
+    				throw new ProbCogException("Error while grounding formula '" + wf.formula.toString() + "'", e.getCause() instanceof ProbCogException ? e.getCause() : e);
+    			}
+    			tasks.set(i, null);
+    			for(Formula gf : groundings) {
+    				WeightedFormula gwf = new WeightedFormula(gf, wf.weight, wf.isHard);
+    				if(makelist)
+    					weightedFormulas.add(gwf);
+    				if(gc != null)
+    					gc.onGroundedFormula(gwf, this);
+    			}
+    		}
+    	}
+    	finally {
+    		pool.shutdownNow();
+    	}
+    }
+    
     /**
      * returns the database with which this MRF was grounded
      * @return
@@ -175,7 +311,31 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
         return db;
     }
 
+	/**
+	 * @return whether the formulas of this MRF are grounded lazily
+	 */
+	public boolean isLazy() {
+		return lazy;
+	}
+	
+	/**
+	 * gets the grounder from which ground clauses are obtained, creating it if necessary
+	 * @param conversionMode the conversion that eager grounding would apply for the inference algorithm at hand (see {@link probcog.logic.sat.weighted.WeightedClausalKB})
+	 * @return the grounder (null if the MRF is not grounded lazily)
+	 * @throws ProbCogException
+	 */
+	public synchronized LazyGrounder getLazyGrounder(ConversionMode conversionMode) throws ProbCogException {
+		if(!lazy)
+			return null;
+		LazyGrounder grounder = lazyGrounders.get(conversionMode);
+		if(grounder == null)
+			lazyGrounders.put(conversionMode, grounder = new LazyGrounder(this, conversionMode));
+		return grounder;
+	}
+
 	public Iterator<WeightedFormula> iterator() {
+		if(isLazy())
+			throw new IllegalStateException("The formulas of a lazily grounded MRF cannot be iterated");
 		return weightedFormulas.iterator();
 	}
 	
@@ -185,10 +345,17 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
 	}
 	
 	/**
-	 * gets the sum of weights of formulas satisfied in the given possible world
+	 * gets the sum of weights of formulas satisfied in the given possible world.
+	 * For worlds over this MRF's variables, only the formulas containing ground atoms whose truth values differ
+	 * from the ones in the previously evaluated world are re-evaluated.
 	 * @return
 	 */
 	public double getWorldValue(IPossibleWorld w) {
+		if(isIncrementallyEvaluable(w)) {
+			synchronized(this) {
+				return getEvaluator((PossibleWorld)w).getWorldValue();
+			}
+		}
 		double s = 0;
 		for(WeightedFormula wf : this)
 			if(wf.formula.isTrue(w))
@@ -196,7 +363,17 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
 		return s;
 	}
 	
+	/**
+	 * gets the sum of weights of formulas not satisfied in the given possible world
+	 * (evaluated incrementally as in {@link #getWorldValue(IPossibleWorld)})
+	 * @return
+	 */
 	public double getSumOfUnsatClauseWeights(IPossibleWorld w) {
+		if(isIncrementallyEvaluable(w)) {
+			synchronized(this) {
+				return getEvaluator((PossibleWorld)w).getSumOfUnsatClauseWeights();
+			}
+		}
 		double s = 0;
 		for(WeightedFormula wf : this) {
 			if(!wf.formula.isTrue(w)) {
@@ -209,7 +386,36 @@ public class MarkovRandomField implements Iterable<WeightedFormula> {
 		return s;
 	}
 	
+	protected boolean isIncrementallyEvaluable(IPossibleWorld w) {
+		return !isLazy() && w instanceof PossibleWorld && ((PossibleWorld)w).getVariables() == vars;
+	}
+	
+	/**
+	 * @param w a world over this MRF's variables
+	 * @return the evaluator, updated to the state of the given world
+	 */
+	protected IncrementalWorldEvaluator getEvaluator(PossibleWorld w) {
+		if(evaluator == null)
+			evaluator = new IncrementalWorldEvaluator(this, w.clone());
+		else
+			evaluator.update(w);
+		return evaluator;
+	}
+	
+	/**
+	 * creates an evaluator that keeps track of the value of the given world as individual ground atoms are changed
+	 * (which is much cheaper than repeated calls to {@link #getWorldValue(IPossibleWorld)} in loops that modify
+	 * several worlds or that need the change caused by each modification)
+	 * @param w a world over this MRF's variables
+	 * @return the evaluator
+	 */
+	public IncrementalWorldEvaluator getIncrementalEvaluator(PossibleWorld w) {
+		return new IncrementalWorldEvaluator(this, w);
+	}
+	
 	public int getNumFormulas() {
+		if(isLazy())
+			throw new IllegalStateException("The number of formulas of a lazily grounded MRF is unknown");
 		return this.weightedFormulas.size();
 	}
 }
\ No newline at end of file
@@ -19,8 +19,6 @@
 package probcog.srl.mln.inference;
 
 import java.util.ArrayList;
-import java.util.Vector;
-import java.util.regex.Pattern;
 
 import probcog.exception.ProbCogException;
 import probcog.inference.IParameterHandler;
@@ -28,6 +26,8 @@ import probcog.inference.ParameterHandler;
 import probcog.logging.PrintLogger;
 import probcog.logging.VerbosePrinter;
 import probcog.logic.GroundAtom;
+import probcog.logic.WorldVariables;
+import probcog.srl.QueryIndex;
 import probcog.srl.mln.MarkovRandomField;
 
 
@@ -67,28 +67,15 @@ public abstract class InferenceAlgorithm implements IParameterHandler, VerbosePr
 	public abstract double getResult(GroundAtom ga);	
 	
 	public ArrayList<InferenceResult> getResults(Iterable<String> queries) {
-		// generate patterns
-		Vector<Pattern> patterns = new Vector<Pattern>();
-		int numQueries = 0;
-		for(String query : queries) {
-			++numQueries;
-			String p = query;
-			p = Pattern.compile("([,\\(])([a-z][^,\\)]*)").matcher(p).replaceAll("$1.*?"); // replace variables with wildcards
-			p = p.replace("(", "\\(").replace(")", "\\)") + ".*";			
-			patterns.add(Pattern.compile(p));
-		}
-		// check all ground variables for matches
-		// TODO This could be done more efficiently by explicitly grounding the requested nodes instead of using pattern matchers
+		// resolve the queries to ground atoms
+		WorldVariables vars = mrf.getWorldVariables();
+		QueryIndex.Matches matches = mrf.getQueryIndex().match(queries);
 		ArrayList<InferenceResult> results = new ArrayList<InferenceResult>();
-		int numRes = 0;
-		for(GroundAtom ga : mrf.getWorldVariables())
-			for(Pattern pattern : patterns)				
-				if(pattern.matcher(ga.toString()).matches()) {
-					results.add(new InferenceResult(ga, getResult(ga)));
-					numRes++;
-					break;
-				}
-		if(numRes == 0 && numQueries > 0)
+		for(int idx : matches.variables) {
+			GroundAtom ga = vars.get(idx);
+			results.add(new InferenceResult(ga, getResult(ga)));
+		}
+		if(results.isEmpty() && queries.iterator().hasNext())
 			log.warn("Warning: None of the queries could be matched to a variable.");
 		return results;
 	}
@@ -18,41 +18,269 @@
  ******************************************************************************/
 package probcog.srl.mln.inference;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
 import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
+import probcog.inference.GelmanRubin;
 import probcog.logic.GroundAtom;
+import probcog.logic.sat.weighted.LazyMCSAT;
 import probcog.logic.sat.weighted.WeightedClausalKB;
+import probcog.logic.sat.weighted.MCSAT.GroundAtomDistribution;
 import probcog.srl.mln.MarkovRandomField;
 
 /**
  * MC-SAT inference wrapper.
+ * Multiple independent chains can be run in parallel (on separate threads), the results
+ * being obtained from the union of all chains' samples; with multiple chains, sampling can be stopped 
+ * early as soon as the Gelman-Rubin statistic (R-hat) of all ground atoms falls below a threshold.
+ * If the MRF is grounded lazily, lazy MC-SAT is used.
  * @author Dominik Jain
  */
 public class MCSAT extends InferenceAlgorithm {
 
 	protected probcog.logic.sat.weighted.MCSAT sampler;
+	protected WeightedClausalKB wckb;
 	protected int maxSteps = 5000;
+	protected int numChains = 1;
+	/**
+	 * the R-hat value below which sampling is stopped (null if convergence is not to be checked)
+	 */
+	protected Double maxRHat = null;
+	protected int convergenceCheckInterval = 100;
+	protected Random generator = new Random();
+	/**
+	 * the samplers of all chains (the first being {@link #sampler})
+	 */
+	protected Vector<probcog.logic.sat.weighted.MCSAT> chains = new Vector<probcog.logic.sat.weighted.MCSAT>();
+	/**
+	 * the distribution obtained by merging the results of multiple chains (null if a single chain was run)
+	 */
+	protected GroundAtomDistribution dist = null;
+	protected double rHat = Double.NaN;
 	
 	public MCSAT(MarkovRandomField mrf) throws ProbCogException {
 		super(mrf);
-		WeightedClausalKB wckb = new WeightedClausalKB(mrf, true);
-		sampler = new probcog.logic.sat.weighted.MCSAT(wckb, mrf.getWorldVariables(), mrf.getDb());
+		if(!mrf.isLazy())
+			wckb = new WeightedClausalKB(mrf, true);
+		sampler = createSampler();
+		chains.add(sampler);
 		paramHandler.add("maxSteps", "setMaxSteps");
+		paramHandler.add("numChains", "setNumChains", "the number of independent chains to run in parallel");
+		paramHandler.add("maxRHat", "setMaxRHat", "the Gelman-Rubin statistic at which to stop sampling (requires multiple chains)");
+		paramHandler.add("convergenceCheckInterval", "setConvergenceCheckInterval", "the number of steps after which to check for convergence");
+		paramHandler.add("randomSeed", "setRandomSeed");
 		paramHandler.addSubhandler(sampler.getParameterHandler());
 	}
 	
+	/**
+	 * creates a sampler for a chain (using lazy MC-SAT if the MRF is grounded lazily)
+	 * @return
+	 * @throws ProbCogException
+	 */
+	protected probcog.logic.sat.weighted.MCSAT createSampler() throws ProbCogException {
+		if(mrf.isLazy())
+			return new LazyMCSAT(mrf.getLazyGrounder(WeightedClausalKB.ConversionMode.NEGATION_IF_WEIGHT_NEGATIVE), mrf.getWorldVariables(), mrf.getDb());
+		return new probcog.logic.sat.weighted.MCSAT(wckb, mrf.getWorldVariables(), mrf.getDb());
+	}
+	
 	public void setMaxSteps(int maxSteps) {
 		this.maxSteps = maxSteps;
 	}
+	
+	public void setNumChains(int numChains) {
+		this.numChains = numChains;
+	}
+	
+	public void setMaxRHat(double maxRHat) {
+		this.maxRHat = maxRHat;
+	}
+	
+	public void setConvergenceCheckInterval(int steps) {
+		this.convergenceCheckInterval = steps;
+	}
+	
+	public void setRandomSeed(int seed) {
+		generator.setSeed(seed);
+		sampler.setRandom(new Random(seed));
+	}
 
 	@Override
 	public double getResult(GroundAtom ga) {
+		if(dist != null)
+			return dist.getResult(ga.index);
 		return sampler.getResult(ga);
 	}
 
 	@Override
 	protected void infer() throws ProbCogException {
-		sampler.setDebugMode(debug);
-		sampler.run(maxSteps);
+		dist = null;
+		rHat = Double.NaN;
+		if(numChains <= 1) {
+			sampler.setCancellationToken(null);
+			sampler.setDebugMode(debug);
+			sampler.run(maxSteps);
+			return;
+		}
+		// create the additional chains (whose parameters are set by the parameter handler)
+		while(chains.size() < numChains) {
+			probcog.logic.sat.weighted.MCSAT chain = createSampler();
+			paramHandler.addSubhandler(chain.getParameterHandler());
+			chains.add(chain);
+		}
+		for(int i = 0; i < numChains; i++) {
+			probcog.logic.sat.weighted.MCSAT chain = chains.get(i);
+			chain.setRandom(new Random(generator.nextLong()));
+			chain.setDebugMode(debug && i == 0);
+			if(i > 0)
+				chain.setVerbose(false);
+		}
+		inferParallel(new Vector<probcog.logic.sat.weighted.MCSAT>(chains.subList(0, numChains)));
+		log.info(String.format("chains: %d, R-hat: %f", numChains, rHat));
+	}
+	
+	/**
+	 * runs the given chains on separate threads, each chain taking maxSteps/numChains steps.
+	 * If a chain fails, the other chains are stopped and the chain's error is raised.
+	 * @param chains
+	 * @throws ProbCogException
+	 */
+	protected void inferParallel(final Vector<probcog.logic.sat.weighted.MCSAT> chains) throws ProbCogException {
+		final int stepsPerChain = Math.max(1, maxSteps / chains.size());
+		final int checkInterval = Math.max(2, convergenceCheckInterval);
+		final Throwable[] errors = new Throwable[chains.size()];
+		final boolean[] stop = new boolean[1];
+		final CancellationToken token = new CancellationToken();
+		for(probcog.logic.sat.weighted.MCSAT chain : chains)
+			chain.setCancellationToken(token);
+		final int[] nonEvidenceAtoms = getNonEvidenceAtoms();
+		// if convergence is to be checked, the chains synchronize after every checkInterval steps
+		// (and the stop flag is changed only at these synchronization points)
+		final CyclicBarrier barrier = maxRHat == null ? null : new CyclicBarrier(chains.size(), new Runnable() {
+			public void run() {
+				for(Throwable e : errors)
+					stop[0] |= e != null;
+				if(!stop[0]) {
+					rHat = computeRHat(chains, nonEvidenceAtoms);
+					if(rHat <= maxRHat) {
+						log.info("Convergence criterion reached: R-hat = %f", rHat);
+						stop[0] = true;
+					}
+				}
+			}
+		});
+		Vector<Thread> threads = new Vector<Thread>();
+		for(int c = 0; c < chains.size(); c++) {
+			final int idxChain = c;
+			threads.add(new Thread() {
+				public void run() {
+					probcog.logic.sat.weighted.MCSAT chain = chains.get(idxChain);
+					try {
+						try {
+							chain.initialize();
+						}
+						catch(Throwable e) {
+							fail(e);
+						}
+						for(int i = 0; i < stepsPerChain && !stop[0]; ) {
+							int steps = barrier == null ? stepsPerChain : Math.min(checkInterval, stepsPerChain - i);
+							if(errors[idxChain] == null) {
+								try {
+									chain.step(steps);
+								}
+								catch(Throwable e) {
+									fail(e);
+								}
+							}
+							i += steps;
+							// (a failed chain keeps participating in the synchronization until all chains are stopped;
+							// once one of the other chains has failed, the remaining steps return immediately)
+							if(barrier != null && i < stepsPerChain)
+								barrier.await();
+						}
+					}
+					catch(Throwable e) { // interrupted or broken barrier (all chains are stopped) 
+						fail(e);
+					}
+				}
+				
+				protected void fail(Throwable e) {
+					if(errors[idxChain] == null)
+						errors[idxChain] = e;
+					token.cancel();
+				}
+			});
+		}
+		for(Thread t : threads)
+			t.start();
+		try {
+			for(Thread t : threads)
+				t.join();
+		}
+		catch(InterruptedException e) {
+			token.cancel();
+			for(Thread t : threads)
+				t.interrupt();
+			throw new ProbCogException(e);
+		}
+		// raise the error that caused the chains to be stopped (a broken barrier being merely a consequence)
+		Throwable error = null;
+		for(Throwable e : errors)
+			if(e != null && (error == null || error instanceof BrokenBarrierException))
+				error = e;
+		if(error instanceof ProbCogException)
+			throw (ProbCogException)error;
+		if(error instanceof RuntimeException)
+			throw (RuntimeException)error;
+		if(error instanceof Error)
+			throw (Error)error;
+		if(error != null)
+			throw new ProbCogException(error);
+		rHat = computeRHat(chains, nonEvidenceAtoms);
+		// merge the chains' results
+		dist = new GroundAtomDistribution(mrf.getWorldVariables());
+		for(probcog.logic.sat.weighted.MCSAT chain : chains)
+			dist.merge(chain.getDistribution());
+		dist.normalize();
+	}
+	
+	/**
+	 * @return the indices of the ground atoms that are not set by the evidence
+	 * @throws ProbCogException
+	 */
+	protected int[] getNonEvidenceAtoms() throws ProbCogException {
+		int[] ret = new int[mrf.getWorldVariables().size()];
+		int n = 0;
+		for(GroundAtom ga : mrf.getWorldVariables())
+			if(mrf.getDb().getSingleVariableValue(ga.predicate, ga.args, false) == null)
+				ret[n++] = ga.index;
+		return Arrays.copyOf(ret, n);
+	}
+	
+	/**
+	 * computes the maximum Gelman-Rubin statistic across the given ground atoms
+	 * @param chains the chains, which must all have taken the same number of steps
+	 * @param atoms the indices of the ground atoms to consider (the non-evidence atoms)
+	 * @return
+	 */
+	protected double computeRHat(Vector<probcog.logic.sat.weighted.MCSAT> chains, int[] atoms) {
+		double[] frequencies = new double[chains.size()];
+		long n = chains.get(0).getDistribution().numSamples;
+		double max = 0;
+		for(int idx : atoms) {
+			for(int c = 0; c < frequencies.length; c++) {
+				GroundAtomDistribution d = chains.get(c).getDistribution();
+				synchronized(d) {
+					frequencies[c] = d.Z == 0 ? 0 : d.sums[idx] / d.Z;
+				}
+			}
+			max = Math.max(max, GelmanRubin.getRHat(frequencies, n));
+		}
+		return max;
 	}
 	
 	public String getAlgorithmName() {
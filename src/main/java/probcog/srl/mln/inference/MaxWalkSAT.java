@@ -18,29 +18,65 @@
  ******************************************************************************/
 package probcog.srl.mln.inference;
 
+import java.util.Random;
+
 import probcog.exception.ProbCogException;
+import probcog.inference.CancellationToken;
 import probcog.logic.GroundAtom;
 import probcog.logic.IPossibleWorld;
 import probcog.logic.PossibleWorld;
+import probcog.logic.sat.weighted.BestStateHolder;
 import probcog.logic.sat.weighted.WeightedClausalKB;
+import probcog.logic.sat.weighted.WeightedClause;
 import probcog.srl.mln.MarkovRandomField;
 
 /**
  * MaxWalkSAT MPE inference for MLNs.
+ * Optionally, a portfolio of independent searches is run on separate threads, each search using
+ * its own random number generator and WalkSAT parameter and performing a number of tries (random restarts);
+ * the searches share the best state found.
+ * If the MRF is grounded lazily, clauses are activated lazily (as in LazySAT).
  * @author Dominik Jain
  */
 public class MaxWalkSAT extends MPEInferenceAlgorithm {
 	
 	protected probcog.logic.sat.weighted.MaxWalkSAT sat;
+	/**
+	 * the weighted clauses (for a lazily grounded MRF, the initially active clauses)
+	 */
+	protected Iterable<? extends WeightedClause> wckb;
 	protected PossibleWorld solution;
 	protected int maxSteps = 5000;
+	/**
+	 * the number of independent searches, each of which runs on a thread of its own
+	 */
+	protected int numThreads = 1;
+	/**
+	 * the number of tries (each starting from a random state) made by each search
+	 */
+	protected int maxTries = 1;
+	/**
+	 * the time limit in seconds (0 for no limit)
+	 */
+	protected double timeLimit = 0;
+	protected double targetCost = Double.NEGATIVE_INFINITY;
+	protected Random generator = new Random();
+	protected BestStateHolder best;
 	
 	public MaxWalkSAT(MarkovRandomField mrf) throws ProbCogException {
 		super(mrf);
-        WeightedClausalKB wckb = new WeightedClausalKB(mrf, WeightedClausalKB.ConversionMode.NEGATION_IF_CLAUSE_RESULTS);
+        if(mrf.isLazy())
+        	wckb = mrf.getLazyGrounder(WeightedClausalKB.ConversionMode.NEGATION_IF_CLAUSE_RESULTS).getInitialClauses();
+        else
+        	wckb = new WeightedClausalKB(mrf, WeightedClausalKB.ConversionMode.NEGATION_IF_CLAUSE_RESULTS);
         PossibleWorld state = new PossibleWorld(mrf.getWorldVariables());
         sat = new probcog.logic.sat.weighted.MaxWalkSAT(wckb, state, mrf.getWorldVariables(), mrf.getDb());
         paramHandler.add("maxSteps", "setMaxSteps");
+        paramHandler.add("numThreads", "setNumThreads", "the number of independent searches to run in parallel (portfolio)");
+        paramHandler.add("maxTries", "setMaxTries", "the number of tries (random restarts) per search");
+        paramHandler.add("timeLimit", "setTimeLimit", "the time limit in seconds (0 for no limit)");
+        paramHandler.add("targetCost", "setTargetCost", "the sum of weights of unsatisfied formulas at which to stop searching");
+        paramHandler.add("randomSeed", "setRandomSeed");
         paramHandler.addSubhandler(sat);        
 	}
 	
@@ -48,6 +84,40 @@ public class MaxWalkSAT extends MPEInferenceAlgorithm {
 		this.maxSteps = maxSteps;
 	}
 	
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+	
+	public void setMaxTries(int maxTries) {
+		this.maxTries = maxTries;
+	}
+	
+	public void setTimeLimit(double seconds) {
+		this.timeLimit = seconds;
+	}
+	
+	public void setTargetCost(double cost) {
+		this.targetCost = cost;
+	}
+	
+	public void setRandomSeed(int seed) {
+		generator.setSeed(seed);
+		sat.setRandom(new Random(seed));
+	}
+	
+	/**
+	 * gets the WalkSAT parameter for the i-th search: the first search uses the configured value;
+	 * the others use values that are evenly spaced between 0.1 and 0.9
+	 */
+	protected double getPWalkSAT(int i) {
+		if(i == 0)
+			return sat.getPWalkSAT();
+		int numOthers = numThreads-1;
+		if(numOthers == 1)
+			return 0.5;
+		return 0.1 + 0.8 * (i-1) / (numOthers-1);
+	}
+	
 	@Override
 	public double getResult(GroundAtom ga) {
 		return solution.get(ga.index) ? 1.0 : 0.0;
@@ -55,12 +125,97 @@ public class MaxWalkSAT extends MPEInferenceAlgorithm {
 
 	@Override
 	public IPossibleWorld inferMPE() throws ProbCogException {
-        sat.setMaxSteps(maxSteps);
-        sat.setVerbose(this.verbose);
-        sat.run();	 
-        solution = sat.getBestState();
+		best = new BestStateHolder();
+		CancellationToken token = timeLimit > 0 ? new CancellationToken(timeLimit) : new CancellationToken();
+		// set up the searches
+		SearchThread[] searches = new SearchThread[numThreads];
+		for(int i = 0; i < numThreads; i++) {
+			probcog.logic.sat.weighted.MaxWalkSAT s = sat; 
+			if(i > 0) {
+				s = new probcog.logic.sat.weighted.MaxWalkSAT(wckb, new PossibleWorld(mrf.getWorldVariables()), mrf.getWorldVariables(), mrf.getDb());
+				s.setPSampleSAT(sat.getPSampleSAT());
+			}
+			s.setPWalkSAT(getPWalkSAT(i));
+			s.setMaxSteps(maxSteps);
+			s.setVerbose(this.verbose && i == 0);
+			if(i > 0) // the first search keeps the configured random number generator
+				s.setRandom(new Random(generator.nextLong()));
+			s.setSharedBest(best);
+			s.setTargetCost(targetCost);
+			s.setCancellationToken(token);
+			if(mrf.isLazy())
+				s.setLazyClauseSource(mrf.getLazyGrounder(WeightedClausalKB.ConversionMode.NEGATION_IF_CLAUSE_RESULTS));
+			searches[i] = new SearchThread(s, token, i == 0);
+		}
+		// run them
+		if(numThreads == 1)
+			searches[0].run();
+		else {
+			for(SearchThread t : searches)
+				t.start();
+			for(SearchThread t : searches) {
+				try {
+					t.join();
+				}
+				catch(InterruptedException e) {
+					token.cancel();
+					throw new ProbCogException(e);
+				}
+			}
+		}
+		for(SearchThread t : searches) {
+			if(t.error instanceof ProbCogException)
+				throw (ProbCogException)t.error;
+			if(t.error instanceof RuntimeException)
+				throw (RuntimeException)t.error;
+			if(t.error instanceof Error)
+				throw (Error)t.error;
+			if(t.error != null)
+				throw new ProbCogException(t.error);
+		}
+		if(best.getBestState() == null)
+			throw new ProbCogException("No state was found (maxTries must be positive)");
+		if(numThreads > 1 || maxTries > 1)
+			log.info(String.format("best state found by %d search(es): sum of unsatisfied constraints: %f, hard constraints unsatisfied: %d", numThreads, best.getBestCost(), best.getBestHardMissing()));
+        solution = best.getBestState();
         return solution;
 	}
+	
+	/**
+	 * a single search, which performs up to {@link MaxWalkSAT#maxTries} tries
+	 */
+	protected class SearchThread extends Thread {
+		protected probcog.logic.sat.weighted.MaxWalkSAT search;
+		protected CancellationToken token;
+		/**
+		 * whether the search makes its first try even if the searches have been stopped, which guarantees that
+		 * a state is found (a try submits its initial state before checking for cancellation)
+		 */
+		protected boolean firstTryGuaranteed;
+		public Throwable error = null;
+		
+		public SearchThread(probcog.logic.sat.weighted.MaxWalkSAT search, CancellationToken token, boolean firstTryGuaranteed) {
+			this.search = search;
+			this.token = token;
+			this.firstTryGuaranteed = firstTryGuaranteed;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				for(int i = 0; i < maxTries; i++) {
+					if(!(i == 0 && firstTryGuaranteed) && (token.isCancelled() || best.getBestCost() <= targetCost))
+						break;
+					search.run();
+				}
+			}
+			catch(Throwable e) {
+				error = e;
+				// stop the other searches
+				token.cancel();
+			}
+		}
+	}
 
 	public PossibleWorld getSolution() {
 		return solution;
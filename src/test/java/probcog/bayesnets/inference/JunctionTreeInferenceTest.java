@@ -0,0 +1,69 @@
+package probcog.bayesnets.inference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.ksu.cis.bnj.ver3.core.CPF;
+import edu.ksu.cis.bnj.ver3.core.CPT;
+import edu.ksu.cis.bnj.ver3.core.values.ValueDouble;
+import probcog.bayesnets.core.BeliefNetworkEx;
+import probcog.bayesnets.core.CompiledBeliefNetwork;
+import probcog.bayesnets.inference.VariableEliminationTest.Instance;
+
+public class JunctionTreeInferenceTest {
+
+	static void assertSameAsEnumeration(Instance inst) throws Exception {
+		SampledDistribution exact = VariableEliminationTest.infer(new EnumerationAsk(inst.bn), inst.evidence);
+		VariableEliminationTest.assertSameMarginals(inst, exact, VariableEliminationTest.infer(new JunctionTreeInference(inst.bn), inst.evidence));
+	}
+
+	/**
+	 * checks that junction tree inference computes the same marginals as enumeration (twice, the second time using the cached tree)
+	 */
+	@Test
+	public void testAgainstEnumeration() throws Exception {
+		for(Instance inst : VariableEliminationTest.getInstances()) {
+			assertSameAsEnumeration(inst);
+			assertSameAsEnumeration(inst);
+		}
+	}
+
+	/**
+	 * checks that the cached tree is reused for other values of the same evidence variables and for modified CPTs,
+	 * and that it is recompiled if the network structure changes
+	 */
+	@Test
+	public void testCache() throws Exception {
+		BeliefNetworkEx bn = new BeliefNetworkEx(LikelihoodWeightingTest.NETWORK);
+		int[] evidence = LikelihoodWeightingTest.getEvidence(bn);
+		JunctionTree jt = JunctionTree.getInstance(bn, new CompiledBeliefNetwork(bn), evidence);
+
+		// other evidence values
+		int[] evidence2 = evidence.clone();
+		evidence2[bn.getNodeIndex("MaryCalls")] = 1;
+		Assert.assertSame(jt, JunctionTree.getInstance(bn, new CompiledBeliefNetwork(bn), evidence2));
+		assertSameAsEnumeration(new Instance("other evidence values", bn, evidence2));
+
+		// other evidence variables
+		int[] evidence3 = evidence.clone();
+		evidence3[bn.getNodeIndex("Burglary")] = 0;
+		Assert.assertNotSame(jt, JunctionTree.getInstance(bn, new CompiledBeliefNetwork(bn), evidence3));
+		assertSameAsEnumeration(new Instance("other evidence variables", bn, evidence3));
+
+		// modified CPT entries
+		CPF cpf = bn.getNode("Alarm").getCPF();
+		for(int i = 0; i < cpf.size(); i++)
+			cpf.put(i, new ValueDouble(1.0 + i % 3));
+		((CPT)cpf).normalizeByDomain();
+		Assert.assertSame(jt, JunctionTree.getInstance(bn, new CompiledBeliefNetwork(bn), evidence));
+		assertSameAsEnumeration(new Instance("modified CPT", bn, evidence));
+
+		// modified structure
+		bn.connect("Burglary", "Earthquake");
+		Assert.assertFalse(jt.isCompiledFor(new CompiledBeliefNetwork(bn)));
+		JunctionTree jt2 = JunctionTree.getInstance(bn, new CompiledBeliefNetwork(bn), evidence);
+		Assert.assertNotSame(jt, jt2);
+		Assert.assertTrue(jt2.isCompiledFor(new CompiledBeliefNetwork(bn)));
+		assertSameAsEnumeration(new Instance("modified structure", bn, evidence));
+	}
+}
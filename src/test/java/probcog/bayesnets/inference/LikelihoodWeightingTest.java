@@ -0,0 +1,67 @@
+package probcog.bayesnets.inference;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.bayesnets.core.BeliefNetworkEx;
+import probcog.exception.ProbCogException;
+
+public class LikelihoodWeightingTest {
+
+	static final String NETWORK = "examples/alarm-propositional/alarm-bn.xml";
+
+	static int[] getEvidence(BeliefNetworkEx bn) {
+		int[] evidence = new int[bn.bn.getNodes().length];
+		Arrays.fill(evidence, -1);
+		evidence[bn.getNodeIndex("JohnCalls")] = 0;
+		evidence[bn.getNodeIndex("MaryCalls")] = 0;
+		return evidence;
+	}
+
+	static SampledDistribution infer(Sampler sampler, BeliefNetworkEx bn, int numSamples) throws Exception {
+		sampler.setVerbose(false);
+		sampler.setEvidence(getEvidence(bn));
+		sampler.setNumSamples(numSamples);
+		sampler.setRandomSeed(1);
+		return sampler.infer();
+	}
+
+	/**
+	 * a sampler that uses a distribution builder that adds all samples to a single distribution
+	 */
+	static class DirectLikelihoodWeighting extends LikelihoodWeighting {
+		public DirectLikelihoodWeighting(BeliefNetworkEx bn) throws Exception {
+			super(bn);
+		}
+
+		@Override
+		protected IDistributionBuilder createDistributionBuilder() throws ProbCogException {
+			return new DirectDistributionBuilder(createDistribution());
+		}
+	}
+
+	void testThreads(LikelihoodWeighting lw, BeliefNetworkEx bn) throws Exception {
+		SampledDistribution exact = infer(new EnumerationAsk(bn), bn, 1);
+		int numSamples = 200000;
+		lw.setNumThreads(4);
+		SampledDistribution dist = infer(lw, bn, numSamples);
+		Assert.assertEquals(numSamples, dist.steps);
+		for(int i = 0; i < bn.bn.getNodes().length; i++)
+			for(int j = 0; j < dist.values[i].length; j++)
+				Assert.assertEquals(exact.getProbability(i, j), dist.getProbability(i, j), 0.02);
+	}
+
+	@Test
+	public void testThreadsStriped() throws Exception {
+		BeliefNetworkEx bn = new BeliefNetworkEx(NETWORK);
+		testThreads(new LikelihoodWeighting(bn), bn);
+	}
+
+	@Test
+	public void testThreadsDirect() throws Exception {
+		BeliefNetworkEx bn = new BeliefNetworkEx(NETWORK);
+		testThreads(new DirectLikelihoodWeighting(bn), bn);
+	}
+}
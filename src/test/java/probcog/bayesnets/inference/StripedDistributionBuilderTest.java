@@ -0,0 +1,37 @@
+package probcog.bayesnets.inference;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.bayesnets.core.BeliefNetworkEx;
+
+public class StripedDistributionBuilderTest {
+	
+	@Test
+	public void testSubSamples() throws Exception {
+		BeliefNetworkEx bn = new BeliefNetworkEx("examples/alarm-propositional/alarm-bn.xml");
+		int numNodes = bn.bn.getNodes().length;
+		SampledDistribution plain = new SampledDistribution(bn);
+		plain.setDebugMode(false);
+		StripedDistributionBuilder striped = new StripedDistributionBuilder(new SampledDistribution(bn));
+		Random random = new Random(1);
+		int[] queryNodes = new int[numNodes - 1];
+		for(int i = 0; i < queryNodes.length; i++)
+			queryNodes[i] = numNodes - 1 - i; // positions do not coincide with node indices
+		for(int n = 0; n < 1000; n++) {
+			int[] domainIndices = new int[numNodes];
+			for(int i = 0; i < numNodes; i++)
+				domainIndices[i] = random.nextInt(bn.bn.getNodes()[i].getDomain().getOrder());
+			WeightedSample s = new WeightedSample(bn, domainIndices, random.nextDouble() + 0.1, null, 1).subSample(queryNodes);
+			plain.addSample(s);
+			striped.addSample(s);
+		}
+		SampledDistribution d = striped.getDistribution();
+		Assert.assertEquals(plain.Z, d.Z, 1e-9);
+		Assert.assertEquals(plain.steps, d.steps);
+		for(int i = 0; i < numNodes; i++)
+			Assert.assertArrayEquals(plain.values[i], d.values[i], 1e-9);
+	}
+}
@@ -0,0 +1,109 @@
+package probcog.bayesnets.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.bayesnets.core.BeliefNetworkEx;
+import probcog.bayesnets.util.EliminationOrdering;
+import probcog.srl.Database;
+import probcog.srl.directed.bln.BayesianLogicNetwork;
+import probcog.srl.directed.bln.GroundBLN;
+
+public class VariableEliminationTest {
+
+	/**
+	 * a network along with evidence for it
+	 */
+	static class Instance {
+		String name;
+		BeliefNetworkEx bn;
+		int[] evidence;
+
+		Instance(String name, BeliefNetworkEx bn, int[] evidence) {
+			this.name = name;
+			this.bn = bn;
+			this.evidence = evidence;
+		}
+	}
+
+	static Instance groundBLN(String dir, String decls, String network, String logic, String dbFile) throws Exception {
+		BayesianLogicNetwork bln = new BayesianLogicNetwork(dir + decls, dir + network, dir + logic);
+		Database db = new Database(bln.rbn);
+		db.readBLOGDB(dir + dbFile);
+		GroundBLN gbln = bln.ground(db);
+		gbln.setVerbose(false);
+		gbln.instantiateGroundNetwork();
+		return new Instance(dir + dbFile, gbln.getGroundNetwork(), gbln.getFullEvidence(db.getEntriesAsArray()));
+	}
+
+	/**
+	 * @return the example networks: the propositional alarm network (with and without evidence) and ground networks of BLN examples
+	 */
+	static ArrayList<Instance> getInstances() throws Exception {
+		ArrayList<Instance> ret = new ArrayList<Instance>();
+		BeliefNetworkEx alarm = new BeliefNetworkEx(LikelihoodWeightingTest.NETWORK);
+		int[] noEvidence = new int[alarm.bn.getNodes().length];
+		Arrays.fill(noEvidence, -1);
+		ret.add(new Instance(LikelihoodWeightingTest.NETWORK, alarm, noEvidence));
+		ret.add(new Instance(LikelihoodWeightingTest.NETWORK, alarm, LikelihoodWeightingTest.getEvidence(alarm)));
+		ret.add(groundBLN("examples/alarm/", "alarm.blnd", "alarm.pmml", "alarm.blnl", "query1.blogdb"));
+		ret.add(groundBLN("examples/tweety/", "tweety.blnd", "tweety.pmml", "empty.blnl", "query1.blogdb"));
+		return ret;
+	}
+
+	static SampledDistribution infer(Sampler sampler, int[] evidence) throws Exception {
+		sampler.setVerbose(false);
+		sampler.setEvidence(evidence);
+		return sampler.infer();
+	}
+
+	static void assertSameMarginals(Instance inst, SampledDistribution expected, SampledDistribution actual) {
+		for(int i = 0; i < inst.bn.bn.getNodes().length; i++)
+			for(int j = 0; j < expected.values[i].length; j++)
+				Assert.assertEquals(inst.name + ": " + inst.bn.bn.getNodes()[i].getName(), expected.getProbability(i, j), actual.getProbability(i, j), 1e-9);
+	}
+
+	/**
+	 * checks that variable elimination computes the same marginals as enumeration with both elimination heuristics
+	 */
+	@Test
+	public void testAgainstEnumeration() throws Exception {
+		for(Instance inst : getInstances()) {
+			SampledDistribution exact = infer(new EnumerationAsk(inst.bn), inst.evidence);
+			for(EliminationOrdering.Heuristic heuristic : EliminationOrdering.Heuristic.values()) {
+				VariableElimination ve = new VariableElimination(inst.bn);
+				ve.setEliminationOrder(heuristic.name());
+				assertSameMarginals(inst, exact, infer(ve, inst.evidence));
+			}
+		}
+	}
+
+	/**
+	 * checks the ordering and cliques obtained for a cycle of four variables, which requires a single fill-in edge
+	 */
+	@Test
+	public void testEliminationOrdering() throws Exception {
+		int[][] cycle = new int[][]{{0, 1}, {1, 2}, {2, 3}, {3, 0}};
+		for(EliminationOrdering.Heuristic heuristic : EliminationOrdering.Heuristic.values()) {
+			EliminationOrdering eo = new EliminationOrdering(4, new int[]{2, 2, 2, 2}, Arrays.asList(cycle), heuristic);
+			int[] order = eo.compute(new boolean[]{true, true, true, true});
+			int[] sorted = order.clone();
+			Arrays.sort(sorted);
+			Assert.assertArrayEquals(new int[]{0, 1, 2, 3}, sorted);
+			int[][] cliques = eo.getCliques();
+			Assert.assertEquals(3, cliques[0].length);
+			for(int k = 0; k < cliques.length; k++) {
+				Assert.assertTrue(Arrays.binarySearch(cliques[k], order[k]) >= 0);
+				Assert.assertTrue(cliques[k].length <= 3);
+			}
+		}
+		// variables that are not to be eliminated remain in the graph
+		EliminationOrdering eo = new EliminationOrdering(4, new int[]{2, 2, 2, 2}, Arrays.asList(cycle), EliminationOrdering.Heuristic.MinFill);
+		int[] order = eo.compute(new boolean[]{true, false, true, false});
+		Assert.assertEquals(2, order.length);
+		Assert.assertArrayEquals(new int[]{1, 2, 3}, eo.getCliques()[1]);
+	}
+}
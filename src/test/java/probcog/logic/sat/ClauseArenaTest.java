@@ -0,0 +1,121 @@
+package probcog.logic.sat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.logic.GroundAtom;
+import probcog.logic.GroundLiteral;
+import probcog.logic.PossibleWorld;
+import probcog.logic.WorldVariables;
+import probcog.logic.sat.weighted.WeightedClausalKB;
+import probcog.srl.Database;
+import probcog.srl.mln.MarkovLogicNetwork;
+import probcog.srl.mln.MarkovRandomField;
+
+public class ClauseArenaTest {
+
+	@Test
+	public void testBookkeepingMatchesSampleSAT() throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork("src/test/resources/models/smokers/wts.smoking.mln");
+		Database db = new Database(mln);
+		db.readMLNDB("src/test/resources/models/smokers/smoking-test-smaller.db");
+		MarkovRandomField mrf = mln.ground(db);
+		WorldVariables vars = mrf.getWorldVariables();
+		WeightedClausalKB kb = new WeightedClausalKB(mrf, true);
+
+		SampleSAT sat = new SampleSAT(kb, new PossibleWorld(vars), vars, db.getEntries());
+		ArenaSampleSAT arenaSat = new ArenaSampleSAT(new PossibleWorld(vars), vars, db.getEntries());
+		ClauseArena arena = new ClauseArena(kb, vars.size());
+		arena.activate(0, arena.size());
+		arenaSat.setArena(arena);
+		sat.setRandom(new Random(1));
+		arenaSat.setRandom(new Random(1));
+		sat.initialize();
+		arenaSat.initialize();
+		for(int i = 0; i < vars.size(); i++)
+			Assert.assertEquals(sat.getState().get(i), arenaSat.getState().get(i));
+		Assert.assertEquals(sat.unsatisfiedConstraints.size(), arena.getNumUnsatisfied());
+
+		// flip random atoms, comparing the change in cost and the number of unsatisfied clauses
+		Random rand = new Random(2);
+		for(int step = 0; step < 2000; step++) {
+			int idx = rand.nextInt(vars.size());
+			if(sat.evidence.containsKey(idx))
+				continue;
+			GroundAtom ga = vars.get(idx);
+			Assert.assertEquals(sat.deltaCost(ga), arenaSat.deltaCost(ga), 0.0);
+			sat.flipGndAtom(ga);
+			arenaSat.flipGndAtom(ga);
+			Assert.assertEquals(sat.unsatisfiedConstraints.size(), arena.getNumUnsatisfied());
+			if(step % 100 == 0) {
+				sat.checkIntegrity();
+				arenaSat.checkIntegrity();
+			}
+		}
+	}
+
+	@Test
+	public void testWalkSATMoveWithEvidenceClause() throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork("src/test/resources/models/smokers/wts.smoking.mln");
+		Database db = new Database(mln);
+		db.readMLNDB("src/test/resources/models/smokers/smoking-test-smaller.db");
+		WorldVariables vars = mln.ground(db).getWorldVariables();
+		ArenaSampleSAT arenaSat = new ArenaSampleSAT(new PossibleWorld(vars), vars, db.getEntries());
+		// a clause that is violated by the evidence, such that none of its atoms can be flipped
+		int idx = arenaSat.evidence.keySet().iterator().next();
+		GroundLiteral lit = new GroundLiteral(!arenaSat.evidence.get(idx), vars.get(idx));
+		ClauseArena arena = new ClauseArena(Arrays.asList(new Clause(lit)), vars.size());
+		arena.activate(0);
+		arenaSat.setArena(arena);
+		arenaSat.setPWalkSAT(1.0);
+		arenaSat.setRandom(new Random(1));
+		arenaSat.initialize();
+		Assert.assertEquals(1, arena.getNumUnsatisfied());
+		arenaSat.walkSATMove();
+		Assert.assertEquals(1, arena.getNumUnsatisfied());
+		Assert.assertEquals(arenaSat.evidence.get(idx), arenaSat.getState().get(idx));
+	}
+
+	@Test
+	public void testDuplicateLiterals() throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork("src/test/resources/models/smokers/wts.smoking.mln");
+		Database db = new Database(mln);
+		db.readMLNDB("src/test/resources/models/smokers/smoking-test-smaller.db");
+		WorldVariables vars = mln.ground(db).getWorldVariables();
+		GroundLiteral lit = new GroundLiteral(true, vars.get(0));
+		Clause c = new Clause(lit);
+		c.lits = new GroundLiteral[]{lit, lit};
+		ClauseArena arena = new ClauseArena(Arrays.asList(c), vars.size());
+		arena.activate(0);
+		PossibleWorld w = new PossibleWorld(vars);
+		arena.initState(w);
+		Assert.assertEquals(1, arena.getNumUnsatisfied());
+		Assert.assertEquals(1, arena.deltaCost(0, false));
+		arena.flip(0, w.flip(0));
+		Assert.assertEquals(0, arena.getNumUnsatisfied());
+		Assert.assertEquals(-1, arena.deltaCost(0, true));
+		arena.checkIntegrity(w);
+	}
+
+	@Test(timeout=10000)
+	public void testUnitPropagationFallback() throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork("src/test/resources/models/smokers/wts.smoking.mln");
+		Database db = new Database(mln);
+		db.readMLNDB("src/test/resources/models/smokers/smoking-test-smaller.db");
+		MarkovRandomField mrf = mln.ground(db);
+		WorldVariables vars = mrf.getWorldVariables();
+		WeightedClausalKB kb = new WeightedClausalKB(mrf, true);
+		ArenaSampleSAT sat = new ArenaSampleSAT(new PossibleWorld(vars), vars, db.getEntries());
+		ClauseArena arena = new ClauseArena(kb, vars.size());
+		arena.activate(0, arena.size());
+		sat.setArena(arena);
+		sat.enableUnitPropagation();
+		sat.setRandom(new Random(1));
+		sat.run();
+		for(int c = 0; c < arena.size(); c++)
+			Assert.assertTrue(arena.getClause(c).isTrue(sat.getState()));
+	}
+}
@@ -0,0 +1,81 @@
+package probcog.logic.sat;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.logic.GroundAtom;
+import probcog.logic.PossibleWorld;
+import probcog.logic.WorldVariables;
+import probcog.logic.sat.weighted.MaxWalkSAT;
+import probcog.logic.sat.weighted.WeightedClausalKB;
+import probcog.logic.sat.weighted.WeightedClause;
+import probcog.srl.Database;
+import probcog.srl.mln.MarkovLogicNetwork;
+import probcog.srl.mln.MarkovRandomField;
+
+public class SampleSATTest {
+
+	static double getUnsatisfiedWeight(WeightedClausalKB kb, PossibleWorld w, boolean weighted) {
+		double sum = 0;
+		for(WeightedClause wc : kb)
+			if(!wc.isTrue(w))
+				sum += weighted ? wc.weight : 1;
+		return sum;
+	}
+
+	static int getNumUnsatisfied(WeightedClausalKB kb, PossibleWorld w) {
+		return (int)getUnsatisfiedWeight(kb, w, false);
+	}
+
+	/**
+	 * flips random atoms, comparing the incrementally maintained bookkeeping with values computed from scratch
+	 */
+	void testBookkeeping(SampleSAT sat, WeightedClausalKB kb, boolean weighted) throws Exception {
+		WorldVariables vars = sat.vars;
+		PossibleWorld w = sat.getState();
+		sat.setRandom(new Random(1));
+		sat.initialize();
+		Random rand = new Random(2);
+		for(int step = 0; step < 2000; step++) {
+			Assert.assertEquals(getNumUnsatisfied(kb, w), sat.unsatisfiedConstraints.size());
+			int idx = rand.nextInt(vars.size());
+			if(sat.evidence.containsKey(idx))
+				continue;
+			GroundAtom ga = vars.get(idx);
+			double before = getUnsatisfiedWeight(kb, w, weighted);
+			double delta = sat.deltaCost(ga);
+			sat.flipGndAtom(ga);
+			double after = getUnsatisfiedWeight(kb, w, weighted);
+			Assert.assertEquals(before - after, delta, 1e-9);
+			if(step % 100 == 0)
+				sat.checkIntegrity();
+		}
+	}
+
+	static MarkovRandomField ground() throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork("src/test/resources/models/smokers/wts.smoking.mln");
+		Database db = new Database(mln);
+		db.readMLNDB("src/test/resources/models/smokers/smoking-test-smaller.db");
+		return mln.ground(db);
+	}
+
+	@Test
+	public void testSampleSATBookkeeping() throws Exception {
+		MarkovRandomField mrf = ground();
+		WorldVariables vars = mrf.getWorldVariables();
+		WeightedClausalKB kb = new WeightedClausalKB(mrf, true);
+		SampleSAT sat = new SampleSAT(kb, new PossibleWorld(vars), vars, mrf.getDb().getEntries());
+		testBookkeeping(sat, kb, false);
+	}
+
+	@Test
+	public void testMaxWalkSATBookkeeping() throws Exception {
+		MarkovRandomField mrf = ground();
+		WorldVariables vars = mrf.getWorldVariables();
+		WeightedClausalKB kb = new WeightedClausalKB(mrf, WeightedClausalKB.ConversionMode.NEGATION_IF_CLAUSE_RESULTS);
+		SampleSAT sat = new MaxWalkSAT(kb, new PossibleWorld(vars), vars, mrf.getDb());
+		testBookkeeping(sat, kb, true);
+	}
+}
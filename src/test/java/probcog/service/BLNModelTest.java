@@ -0,0 +1,111 @@
+package probcog.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.exception.ProbCogException;
+import probcog.srl.directed.bln.GroundBLN;
+
+public class BLNModelTest {
+
+	static final List<String> QUERIES = Arrays.asList("alarm(James)", "alarm(Stefan)", "burglary(Stefan)");
+
+	static List<String[]> evidence(String burglary, String tornado) {
+		return Arrays.asList(
+			new String[]{"livesIn", "James", "Yorkshire"}, new String[]{"livesIn", "Stefan", "Freiburg"},
+			new String[]{"burglary", "James", burglary}, new String[]{"tornado", "Freiburg", tornado},
+			new String[]{"neighborhood", "James", "Average"}, new String[]{"neighborhood", "Stefan", "Bad"});
+	}
+
+	static HashMap<String, Double> infer(Model model, List<String[]> evidence) throws Exception {
+		return infer(model, evidence, QUERIES);
+	}
+
+	static HashMap<String, Double> infer(Model model, List<String[]> evidence, List<String> queries) throws Exception {
+		HashMap<String, Double> ret = new HashMap<String, Double>();
+		try(Session session = model.createSession(Collections.<String,Object>emptyMap(), evidence)) {
+			Vector<InferenceResult> results = session.infer(queries);
+			for(InferenceResult r : results)
+				ret.put(r.functionName + Arrays.toString(r.params), r.probability);
+		}
+		return ret;
+	}
+
+	/**
+	 * checks that results obtained with a ground network taken from the cache are the same as with a freshly instantiated one
+	 */
+	@Test
+	public void testCachedGroundNetwork() throws Exception {
+		BLNModel cached = (BLNModel)new ModelPool(ModelPoolTest.POOL_FILE).getModel("alarm_bln");
+		BLNModel uncached = (BLNModel)new ModelPool(ModelPoolTest.POOL_FILE).getModel("alarm_bln");
+		cached.setDefaultParameter("inferenceMethod", "EnumerationAsk");
+		uncached.setDefaultParameter("inferenceMethod", "EnumerationAsk");
+		uncached.setGroundNetworkCacheSize(0);
+		// the first session instantiates the network, which is then returned to the cache
+		infer(cached, evidence("True", "True"));
+		Assert.assertEquals(1, cached.groundNetworkCache.size());
+		for(String[] values : new String[][]{{"False", "True"}, {"False", "False"}, {"True", "True"}}) {
+			List<String[]> evidence = evidence(values[0], values[1]);
+			HashMap<String, Double> expected = infer(uncached, evidence);
+			HashMap<String, Double> actual = infer(cached, evidence);
+			Assert.assertEquals(1, cached.groundNetworkCache.size());
+			Assert.assertEquals(0, uncached.groundNetworkCache.size());
+			Assert.assertFalse(expected.isEmpty());
+			Assert.assertEquals(expected.keySet(), actual.keySet());
+			for(String key : expected.keySet())
+				Assert.assertEquals(key, expected.get(key), actual.get(key), 1e-9);
+		}
+	}
+
+	/**
+	 * checks that an invalid default parameter is reported when a session is created
+	 */
+	@Test
+	public void testInvalidDefaultParameter() throws Exception {
+		BLNModel model = (BLNModel)new ModelPool(ModelPoolTest.POOL_FILE).getModel("alarm_bln");
+		model.setDefaultParameter("groundNetworkCacheSize", "many");
+		try {
+			infer(model, evidence("True", "True"));
+			Assert.fail("invalid parameter value was not reported");
+		}
+		catch(ProbCogException e) {
+		}
+		model.setDefaultParameter("groundNetworkCacheSize", "0");
+		infer(model, evidence("True", "True"));
+		Assert.assertEquals(0, model.groundNetworkCache.size());
+	}
+
+	/**
+	 * checks that a network restricted to the variables relevant to the queries yields the same results as the full network
+	 */
+	@Test
+	public void testRelevantGrounding() throws Exception {
+		BLNModel model = (BLNModel)new ModelPool(ModelPoolTest.POOL_FILE).getModel("alarm_bln");
+		model.setDefaultParameter("inferenceMethod", "EnumerationAsk");
+		List<String> queries = Arrays.asList("alarm(James)", "burglary(x)");
+		List<String[]> evidence = evidence("False", "True");
+		HashMap<String, Double> expected = infer(model, evidence, queries);
+		model.setDefaultParameter("relevantGrounding", "true");
+		HashMap<String, Double> actual = infer(model, evidence, queries);
+		Assert.assertEquals(3, expected.size());
+		Assert.assertEquals(expected.keySet(), actual.keySet());
+		for(String key : expected.keySet())
+			Assert.assertEquals(key, expected.get(key), actual.get(key), 1e-9);
+		// the full network and the restricted one, which does not contain the barren variable alarm(Stefan), are cached
+		Assert.assertEquals(2, model.groundNetworkCache.size());
+		int numRestricted = 0;
+		for(GroundBLN gbln : model.groundNetworkCache.values())
+			if(gbln.getGroundNetwork().getNode("alarm(Stefan)") == null)
+				numRestricted++;
+		Assert.assertEquals(1, numRestricted);
+		// the restricted network is reused for the same queries
+		infer(model, evidence("True", "False"), queries);
+		Assert.assertEquals(2, model.groundNetworkCache.size());
+	}
+}
@@ -0,0 +1,72 @@
+package probcog.service;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ModelPoolTest {
+	
+	static final String POOL_FILE = "src/test/resources/models/service/pool.xml";
+	
+	static void waitUntilLoaded(ModelPool pool) throws Exception {
+		for(String name : pool.getModelNames())
+			pool.getLoadingTask(name).get(60, TimeUnit.SECONDS);
+	}
+	
+	@Test
+	public void testLazyLoading() throws Exception {
+		ModelPool pool = new ModelPool(POOL_FILE);
+		pool.setVerbose(false);
+		Assert.assertEquals(3, pool.getModelNames().size());
+		for(String name : pool.getModelNames())
+			Assert.assertEquals(ModelPool.State.Unloaded, pool.getState(name));
+		Assert.assertNotNull(pool.getModel("smokers"));
+		Assert.assertTrue(pool.isReady("smokers"));
+		Assert.assertEquals(ModelPool.State.Unloaded, pool.getState("simple"));
+		Assert.assertNull(pool.getModel("unknown"));
+	}
+	
+	@Test
+	public void testDefaultParams() throws Exception {
+		ModelPool pool = new ModelPool(POOL_FILE);
+		pool.getModel("smokers").setDefaultParameter("maxSteps", "500");
+		try(Session session = pool.getModel("smokers").createSession(Collections.<String,Object>emptyMap(), Collections.singletonList(new String[]{"Smokes", "Anna"}))) {
+			Assert.assertEquals("500", session.getParameters().get("maxSteps"));
+		}
+	}
+	
+	@Test
+	public void testPreloadAndEviction() throws Exception {
+		ModelPool pool = new ModelPool(POOL_FILE);
+		pool.setVerbose(false);
+		pool.preload(2);
+		waitUntilLoaded(pool);
+		for(String name : pool.getModelNames())
+			Assert.assertTrue(pool.isReady(name));
+		// preloaded models that have not been requested yet are not idle
+		pool.setIdleTimeout(1, TimeUnit.HOURS);
+		Assert.assertEquals(0, pool.evictIdleModels());
+		for(String name : pool.getModelNames())
+			Assert.assertTrue(pool.isReady(name));
+		pool.setIdleTimeout(0, TimeUnit.SECONDS);
+		// models that have not been requested within the timeout are unloaded
+		Thread.sleep(200);
+		pool.getModel("simple");
+		pool.idleTimeout = TimeUnit.MILLISECONDS.toNanos(100);
+		Assert.assertEquals(2, pool.evictIdleModels());
+		Assert.assertTrue(pool.isReady("simple"));
+		Assert.assertEquals(ModelPool.State.Unloaded, pool.getState("smokers"));
+		Assert.assertEquals(ModelPool.State.Unloaded, pool.getState("alarm_bln"));
+		// ... and reloaded upon request
+		Assert.assertNotNull(pool.getModel("smokers"));
+		Assert.assertTrue(pool.isReady("smokers"));
+		// the scheduled eviction unloads all models once they are idle
+		pool.setIdleTimeout(50, TimeUnit.MILLISECONDS);
+		Thread.sleep(1000);
+		pool.setIdleTimeout(0, TimeUnit.SECONDS);
+		for(String name : pool.getModelNames())
+			Assert.assertEquals(ModelPool.State.Unloaded, pool.getState(name));
+	}
+}
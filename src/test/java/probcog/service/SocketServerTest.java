@@ -0,0 +1,101 @@
+package probcog.service;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SocketServerTest {
+
+	static final String REQUEST = "alarm_bln alarm(James) alarm(Stefan) ; livesIn(James,Yorkshire) livesIn(Stefan,Freiburg) burglary(James) tornado(Freiburg) neighborhood(James,Average) neighborhood(Stefan,Bad)";
+
+	static Socket connect(int port) throws Exception {
+		for(int attempt = 0; ; attempt++) {
+			try {
+				return new Socket(InetAddress.getLoopbackAddress(), port);
+			}
+			catch(ConnectException e) {
+				if(attempt == 100)
+					throw e;
+				Thread.sleep(50);
+			}
+		}
+	}
+
+	/**
+	 * sends a number of requests without waiting for responses and then checks that each of them is answered
+	 */
+	void testPipelining(int maxPendingRequests) throws Exception {
+		int port;
+		try(ServerSocket s = new ServerSocket(0)) {
+			port = s.getLocalPort();
+		}
+		final SocketServer server = new SocketServer(ModelPoolTest.POOL_FILE, Executors.newFixedThreadPool(4));
+		server.setMaxPendingRequests(maxPendingRequests);
+		server.modelPool.getModel("alarm_bln").setDefaultParameter("inferenceMethod", "EnumerationAsk");
+		final int listenPort = port;
+		Thread listener = new Thread(() -> {
+			try {
+				server.listen(listenPort);
+			}
+			catch(Exception e) {
+				e.printStackTrace();
+			}
+		});
+		listener.setDaemon(true);
+		listener.start();
+		int numRequests = 20;
+		try(Socket socket = connect(port)) {
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+			for(int i = 0; i < numRequests; i++)
+				out.println(i + " " + REQUEST);
+			out.println("malformed");
+			out.println("QUIT");
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			HashMap<String, String> results = new HashMap<String, String>();
+			HashSet<String> done = new HashSet<String>();
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] tokens = line.split(" ");
+				if(tokens[0].equals("RESULT")) {
+					String prev = results.put(tokens[2], tokens[3]);
+					Assert.assertTrue(prev == null || prev.equals(tokens[3]));
+				}
+				else if(tokens[0].equals("DONE")) {
+					Assert.assertEquals("2", tokens[2]);
+					Assert.assertTrue(done.add(tokens[1]));
+				}
+				else {
+					Assert.assertEquals("ERROR", tokens[0]);
+					Assert.assertEquals("malformed", tokens[1]);
+				}
+			}
+			Assert.assertEquals(numRequests, done.size());
+			Assert.assertEquals(2, results.size());
+		}
+		finally {
+			server.close();
+		}
+	}
+
+	@Test(timeout=60000)
+	public void testPipelining() throws Exception {
+		testPipelining(SocketServer.DEFAULT_MAX_PENDING_REQUESTS);
+	}
+
+	@Test(timeout=60000)
+	public void testPendingRequestLimit() throws Exception {
+		testPipelining(2);
+	}
+}
@@ -0,0 +1,109 @@
+package probcog.srl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.tum.cs.util.FileUtil;
+import probcog.srl.directed.bln.BayesianLogicNetwork;
+
+public class DatabaseFileReaderTest {
+
+	static final String[] CONTENTS = new String[] {
+		"",
+		"\n",
+		"a\nb",
+		"a\n\nb\n",
+		"// comment only",
+		"a\n// trailing comment",
+		"a\n/* trailing block comment */",
+		"a // comment\nb// comment\n// comment\nc",
+		"a /* block */ b\nc/**/d\n",
+		"a /* block\nspanning\nlines */ b\nc\n",
+		"a /* // line comment in block */ b\n",
+		"a // /* block in line comment\nb */ c\n",
+		"a //* b\nc\n",
+		"a / b * c /\n*/\n",
+		"a /* x **/ b /*/ c */ d\n",
+		"dom = {x, y, z}\npred(x, y) // comment\n!pred(y, z)\n/* block */ f(x) = y\n",
+	};
+
+	/**
+	 * reads the lines of a database file the way the database loaders used to: by reading the entire file, removing
+	 * comments from its content and splitting the result into lines
+	 */
+	static ArrayList<String> readLinesRegex(String filename) throws Exception {
+		String dbContent = FileUtil.readTextFile(filename);
+		Pattern comments = Pattern.compile("//.*?$|/\\*.*?\\*/", Pattern.MULTILINE | Pattern.DOTALL);
+		Matcher matcher = comments.matcher(dbContent);
+		dbContent = matcher.replaceAll("");
+		BufferedReader br = new BufferedReader(new StringReader(dbContent));
+		ArrayList<String> ret = new ArrayList<String>();
+		String line;
+		while((line = br.readLine()) != null)
+			ret.add(line);
+		return ret;
+	}
+
+	static ArrayList<String> readLines(String filename) throws Exception {
+		DatabaseFileReader reader = new DatabaseFileReader(filename);
+		ArrayList<String> ret = new ArrayList<String>();
+		try {
+			String line;
+			while((line = reader.readLine()) != null)
+				ret.add(line);
+		}
+		finally {
+			reader.close();
+		}
+		return ret;
+	}
+
+	static File writeTempFile(String content, String suffix) throws Exception {
+		File file = File.createTempFile("probcog", suffix);
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return file;
+	}
+
+	/**
+	 * checks that the reader yields the same lines as the removal of comments from the entire file content,
+	 * for files with Unix, Windows and Mac line endings
+	 */
+	@Test
+	public void testSameLines() throws Exception {
+		for(String content : CONTENTS) {
+			for(String newline : new String[]{"\n", "\r\n", "\r"}) {
+				File file = writeTempFile(content.replace("\n", newline), ".db");
+				Assert.assertEquals(content.replace("\n", newline), readLinesRegex(file.getPath()), readLines(file.getPath()));
+			}
+		}
+	}
+
+	/**
+	 * checks that a database file with comments and Windows line endings yields the same entries as the original file
+	 */
+	@Test
+	public void testReadBLOGDB() throws Exception {
+		BayesianLogicNetwork bln = new BayesianLogicNetwork("examples/alarm/alarm.blnd", "examples/alarm/alarm.pmml", "examples/alarm/alarm.blnl");
+		Database expected = new Database(bln.rbn);
+		expected.readBLOGDB("examples/alarm/query1.blogdb");
+		StringBuffer content = new StringBuffer("/* a block comment\nspanning lines */\n");
+		for(String line : FileUtil.readTextFile("examples/alarm/query1.blogdb").split("\r?\n"))
+			content.append(line).append(" // comment\r\n");
+		Database actual = new Database(bln.rbn);
+		actual.readBLOGDB(writeTempFile(content.toString(), ".blogdb").getPath());
+		Assert.assertEquals(expected.getEntries().size(), actual.getEntries().size());
+		for(Variable var : expected.getEntries())
+			Assert.assertEquals(var.getValue(), actual.getVariableValue(var.getName(), false));
+	}
+}
@@ -0,0 +1,139 @@
+package probcog.srl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.ksu.cis.bnj.ver3.core.BeliefNode;
+import probcog.srl.directed.bln.BayesianLogicNetwork;
+import probcog.srl.directed.bln.GroundBLN;
+import probcog.srl.mln.MarkovLogicNetwork;
+import probcog.srl.mln.MarkovRandomField;
+
+public class QueryIndexTest {
+
+	/**
+	 * matches the queries the way the inference algorithms used to: by checking each variable's name against the patterns of all queries
+	 * @return the indices of the matched variables followed by the indices of the first queries they match
+	 */
+	static int[][] matchRegex(String[] names, Iterable<String> queries) {
+		ArrayList<Pattern> patterns = new ArrayList<Pattern>();
+		for(String query : queries)
+			patterns.add(QueryIndex.getPattern(query));
+		ArrayList<Integer> variables = new ArrayList<Integer>(), queryIndices = new ArrayList<Integer>();
+		for(int i = 0; i < names.length; i++) {
+			for(int idxQuery = 0; idxQuery < patterns.size(); idxQuery++) {
+				if(patterns.get(idxQuery).matcher(names[i]).matches()) {
+					variables.add(i);
+					queryIndices.add(idxQuery);
+					break;
+				}
+			}
+		}
+		int[][] ret = new int[2][variables.size()];
+		for(int k = 0; k < variables.size(); k++) {
+			ret[0][k] = variables.get(k);
+			ret[1][k] = queryIndices.get(k);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return queries derived from the names of the given variables: predicate names and prefixes thereof, the atoms themselves,
+	 * partially grounded atoms, atoms with unknown constants or a different number of arguments, regular expressions and malformed queries
+	 */
+	static LinkedHashSet<String> getQueries(String[] names) {
+		LinkedHashSet<String> queries = new LinkedHashSet<String>();
+		for(String name : names) {
+			int open = name.indexOf('(');
+			if(open <= 0 || !name.endsWith(")"))
+				continue;
+			String predicate = name.substring(0, open);
+			String[] args = name.substring(open+1, name.length()-1).split(",");
+			queries.add(predicate);
+			queries.add(predicate.substring(0, 1));
+			queries.add(name);
+			queries.add(predicate + "(" + name.substring(open+1, name.length()-1) + ",Unknown)");
+			queries.add(predicate + "(Unknown)");
+			queries.add(predicate + "(x)");
+			queries.add(predicate + "(x,y)");
+			queries.add(predicate + "(x,y,z)");
+			for(int i = 0; i < args.length; i++) {
+				String[] qargs = args.clone();
+				qargs[i] = "x";
+				queries.add(predicate + "(" + String.join(",", qargs) + ")");
+				qargs = new String[]{args[i], "x"};
+				queries.add(predicate + "(" + String.join(",", qargs) + ")");
+				queries.add(predicate + "(x," + args[i] + ")");
+			}
+			queries.add(predicate + "(" + args[0] + ".*)");
+			queries.add(predicate.substring(0, 1) + ".*");
+			queries.add(predicate + "(x");
+			queries.add(predicate + "(x))");
+		}
+		queries.add("NoSuchPredicate");
+		queries.add("noSuchPredicate(x)");
+		queries.add(")");
+		queries.add("a,b");
+		queries.add(".*");
+		return queries;
+	}
+
+	static void assertSameMatches(QueryIndex index, String[] names) {
+		ArrayList<String> queries = new ArrayList<String>(getQueries(names));
+		Assert.assertFalse(queries.isEmpty());
+		for(String query : queries) {
+			int[][] expected = matchRegex(names, Collections.singletonList(query));
+			Assert.assertArrayEquals(query, expected[0], index.match(Collections.singletonList(query)).variables);
+		}
+		// all queries at once (in two different orders)
+		for(int i = 0; i < 2; i++) {
+			int[][] expected = matchRegex(names, queries);
+			QueryIndex.Matches matches = index.match(queries);
+			Assert.assertArrayEquals(expected[0], matches.variables);
+			Assert.assertArrayEquals(expected[1], matches.queryIndices);
+			Collections.reverse(queries);
+		}
+	}
+
+	/**
+	 * checks that the index of the ground atoms of an MRF matches the same atoms as the regular expressions of the queries
+	 */
+	@Test
+	public void testWorldVariables() throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork("src/test/resources/models/smokers/wts.smoking.mln");
+		Database db = new Database(mln);
+		db.readMLNDB("src/test/resources/models/smokers/smoking-test.db");
+		MarkovRandomField mrf = mln.ground(db);
+		String[] names = new String[mrf.getWorldVariables().size()];
+		for(int i = 0; i < names.length; i++)
+			names[i] = mrf.getWorldVariables().get(i).toString();
+		assertSameMatches(new QueryIndex(mrf.getWorldVariables()), names);
+	}
+
+	/**
+	 * checks that the index of the nodes of a ground network matches the same nodes as the regular expressions of the queries
+	 */
+	@Test
+	public void testBeliefNodes() throws Exception {
+		for(String[] files : new String[][]{
+				{"examples/alarm/alarm.blnd", "examples/alarm/alarm.pmml", "examples/alarm/alarm.blnl", "examples/alarm/query1.blogdb"},
+				{"examples/meals/meals_any_for.blnd", "examples/meals/meals_any_for.xml", "examples/meals/meals_any_for.blnl", "examples/meals/query1.blogdb"}}) {
+			BayesianLogicNetwork bln = new BayesianLogicNetwork(files[0], files[1], files[2]);
+			Database db = new Database(bln.rbn);
+			db.readBLOGDB(files[3]);
+			GroundBLN gbln = bln.ground(db);
+			gbln.setVerbose(false);
+			gbln.instantiateGroundNetwork();
+			BeliefNode[] nodes = gbln.getGroundNetwork().bn.getNodes();
+			String[] names = new String[nodes.length];
+			for(int i = 0; i < nodes.length; i++)
+				names[i] = nodes[i].getName();
+			assertSameMatches(new QueryIndex(nodes), names);
+		}
+	}
+}
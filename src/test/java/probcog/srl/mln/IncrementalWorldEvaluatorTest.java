@@ -0,0 +1,73 @@
+package probcog.srl.mln;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.logic.PossibleWorld;
+import probcog.logic.WorldVariables;
+import probcog.logic.sat.weighted.WeightedFormula;
+import probcog.srl.Database;
+
+public class IncrementalWorldEvaluatorTest {
+
+	static MarkovRandomField ground() throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork("src/test/resources/models/smokers/wts.smoking.mln");
+		Database db = new Database(mln);
+		db.readMLNDB("src/test/resources/models/smokers/smoking-test-smaller.db");
+		return mln.ground(db);
+	}
+
+	static double getWorldValue(MarkovRandomField mrf, PossibleWorld w, boolean satisfied) {
+		double sum = 0;
+		for(WeightedFormula wf : mrf)
+			if(wf.formula.isTrue(w) == satisfied)
+				sum += wf.weight;
+		return sum;
+	}
+
+	@Test
+	public void testFlips() throws Exception {
+		MarkovRandomField mrf = ground();
+		WorldVariables vars = mrf.getWorldVariables();
+		PossibleWorld w = new PossibleWorld(vars);
+		Random rand = new Random(1);
+		for(int i = 0; i < vars.size(); i++)
+			w.set(i, rand.nextBoolean());
+		IncrementalWorldEvaluator eval = mrf.getIncrementalEvaluator(w);
+		for(int step = 0; step < 1000; step++) {
+			int idx = rand.nextInt(vars.size());
+			double before = getWorldValue(mrf, w, true);
+			double predicted = eval.getFlipDelta(idx);
+			double delta = rand.nextBoolean() ? eval.flip(idx) : eval.set(idx, !w.get(idx));
+			Assert.assertEquals(predicted, delta, 1e-9);
+			Assert.assertEquals(getWorldValue(mrf, w, true) - before, delta, 1e-9);
+			Assert.assertEquals(getWorldValue(mrf, w, true), eval.getWorldValue(), 1e-6);
+			Assert.assertEquals(getWorldValue(mrf, w, false), eval.getSumOfUnsatClauseWeights(), 1e-6);
+		}
+	}
+
+	/**
+	 * checks that the MRF's evaluation of a world that is modified between calls matches a full re-evaluation
+	 */
+	@Test
+	public void testWorldValue() throws Exception {
+		MarkovRandomField mrf = ground();
+		WorldVariables vars = mrf.getWorldVariables();
+		PossibleWorld w = new PossibleWorld(vars);
+		PossibleWorld other = new PossibleWorld(vars);
+		Random rand = new Random(2);
+		for(int step = 0; step < 200; step++) {
+			int numFlips = step % 10 == 0 ? vars.size() : 1 + rand.nextInt(3);
+			for(int k = 0; k < numFlips; k++)
+				w.flip(rand.nextInt(vars.size()));
+			Assert.assertEquals(getWorldValue(mrf, w, true), mrf.getWorldValue(w), 1e-6);
+			Assert.assertEquals(getWorldValue(mrf, w, false), mrf.getSumOfUnsatClauseWeights(w), 1e-6);
+			if(step % 7 == 0) {
+				other.flip(rand.nextInt(vars.size()));
+				Assert.assertEquals(getWorldValue(mrf, other, true), mrf.getWorldValue(other), 1e-6);
+			}
+		}
+	}
+}
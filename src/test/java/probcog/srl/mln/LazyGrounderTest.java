@@ -0,0 +1,120 @@
+package probcog.srl.mln;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.logic.GroundAtom;
+import probcog.logic.PossibleWorld;
+import probcog.logic.WorldVariables;
+import probcog.logic.sat.weighted.LazyMCSAT;
+import probcog.logic.sat.weighted.WeightedClausalKB;
+import probcog.logic.sat.weighted.WeightedClausalKB.ConversionMode;
+import probcog.logic.sat.weighted.WeightedClausalKB.FormulaAndClauses;
+import probcog.logic.sat.weighted.WeightedClause;
+import probcog.srl.Database;
+
+public class LazyGrounderTest {
+
+	static final String mlnFile = "examples/meals/meals_any_for.mln";
+	static final String dbFile = "examples/meals/query1.db";
+
+	static Collection<FormulaAndClauses> getAllFormulas(LazyGrounder grounder, WorldVariables vars) throws Exception {
+		ArrayList<FormulaAndClauses> ret = new ArrayList<FormulaAndClauses>(grounder.getInitialFormulas());
+		boolean[] activated = new boolean[vars.size()];
+		for(int i = 0; i < vars.size(); i++) {
+			activated[i] = true;
+			ret.addAll(grounder.getFormulasActivatedBy(vars.get(i), activated));
+		}
+		return ret;
+	}
+
+	static double getUnsatisfiedWeight(Collection<FormulaAndClauses> formulas, PossibleWorld w) {
+		double sum = 0;
+		for(FormulaAndClauses fc : formulas)
+			for(WeightedClause wc : fc.weightedClauses)
+				if(!wc.isTrue(w))
+					sum += wc.weight;
+		return sum;
+	}
+
+	/**
+	 * checks that, when all formulas are activated, lazy grounding yields the same objective as eager grounding
+	 * (up to a constant, which stems from ground formulas that are satisfied or violated by the evidence alone)
+	 */
+	void testSameObjective(ConversionMode mode) throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork(mlnFile);
+		Database db = new Database(mln);
+		db.readMLNDB(dbFile);
+		MarkovRandomField eager = mln.ground(db);
+		Collection<FormulaAndClauses> eagerFormulas = new WeightedClausalKB(eager, mode).getFormulasAndClauses();
+		Database db2 = new Database(mln);
+		db2.readMLNDB(dbFile);
+		MarkovRandomField lazy = mln.groundLazily(db2);
+		Collection<FormulaAndClauses> lazyFormulas = getAllFormulas(lazy.getLazyGrounder(mode), lazy.getWorldVariables());
+
+		WorldVariables vars = eager.getWorldVariables();
+		Random rand = new Random(1);
+		double offset = Double.NaN;
+		for(int t = 0; t < 20; t++) {
+			PossibleWorld w = new PossibleWorld(vars);
+			for(int i = 0; i < vars.size(); i++) {
+				GroundAtom ga = vars.get(i);
+				String value = db.getSingleVariableValue(ga.predicate, ga.args, false);
+				w.set(i, value == null ? rand.nextBoolean() : value.equals("True"));
+			}
+			double diff = getUnsatisfiedWeight(eagerFormulas, w) - getUnsatisfiedWeight(lazyFormulas, w);
+			if(t == 0)
+				offset = diff;
+			Assert.assertEquals(offset, diff, 1e-6);
+		}
+	}
+
+	@Test
+	public void testSameObjectiveMaxWalkSAT() throws Exception {
+		testSameObjective(ConversionMode.NEGATION_IF_CLAUSE_RESULTS);
+	}
+
+	@Test
+	public void testSameObjectiveMCSAT() throws Exception {
+		testSameObjective(ConversionMode.NEGATION_IF_WEIGHT_NEGATIVE);
+	}
+
+	@Test
+	public void testFewInitialFormulas() throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork(mlnFile);
+		Database db = new Database(mln);
+		db.readMLNDB(dbFile);
+		int numEager = mln.ground(db).getNumFormulas();
+		Database db2 = new Database(mln);
+		db2.readMLNDB(dbFile);
+		MarkovRandomField lazy = mln.groundLazily(db2);
+		LazyMCSAT sampler = new LazyMCSAT(lazy.getLazyGrounder(ConversionMode.NEGATION_IF_WEIGHT_NEGATIVE), lazy.getWorldVariables(), db2);
+		sampler.setVerbose(false);
+		sampler.setRandom(new Random(1));
+		sampler.initialize();
+		// the initial state is found starting from a state in which inactive atoms are false
+		Assert.assertTrue(sampler.getNumActiveFormulas() < numEager / 2);
+	}
+
+	@Test
+	public void testFewActiveFormulasWhileSampling() throws Exception {
+		String mlnFile = "src/test/resources/models/smokers/wts.smoking.mln", dbFile = "src/test/resources/models/smokers/smoking-test.db";
+		MarkovLogicNetwork mln = new MarkovLogicNetwork(mlnFile);
+		Database db = new Database(mln);
+		db.readMLNDB(dbFile);
+		int numEager = mln.ground(db).getNumFormulas();
+		Database db2 = new Database(mln);
+		db2.readMLNDB(dbFile);
+		MarkovRandomField lazy = mln.groundLazily(db2);
+		LazyMCSAT sampler = new LazyMCSAT(lazy.getLazyGrounder(ConversionMode.NEGATION_IF_WEIGHT_NEGATIVE), lazy.getWorldVariables(), db2);
+		sampler.setVerbose(false);
+		sampler.setRandom(new Random(1));
+		sampler.run(500);
+		// in every step, atoms whose formulas have not been activated start out false, so few formulas are ever activated
+		Assert.assertTrue(sampler.getNumActiveFormulas() < numEager / 2);
+	}
+}
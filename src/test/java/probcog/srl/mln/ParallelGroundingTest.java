@@ -0,0 +1,43 @@
+package probcog.srl.mln;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.logic.sat.weighted.WeightedFormula;
+import probcog.srl.Database;
+
+public class ParallelGroundingTest {
+
+	static ArrayList<String> ground(MarkovLogicNetwork mln, String dbFile, int numThreads) throws Exception {
+		Database db = new Database(mln);
+		db.readMLNDB(dbFile);
+		MarkovRandomField mrf = mln.ground(db, numThreads);
+		ArrayList<String> ret = new ArrayList<String>();
+		for(WeightedFormula wf : mrf)
+			ret.add(wf.toString());
+		return ret;
+	}
+
+	/**
+	 * checks that grounding with several threads yields the same ground formulas, in the same order, as sequential grounding
+	 */
+	void testSameFormulas(String mlnFile, String dbFile) throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork(mlnFile);
+		ArrayList<String> sequential = ground(mln, dbFile, 1);
+		Assert.assertFalse(sequential.isEmpty());
+		for(int numThreads : new int[]{2, 8})
+			Assert.assertEquals(sequential, ground(mln, dbFile, numThreads));
+	}
+
+	@Test
+	public void testSmokers() throws Exception {
+		testSameFormulas("src/test/resources/models/smokers/wts.smoking.mln", "src/test/resources/models/smokers/smoking-test-smaller.db");
+	}
+
+	@Test
+	public void testMeals() throws Exception {
+		testSameFormulas("examples/meals/meals_any_for.mln", "examples/meals/query1.db");
+	}
+}
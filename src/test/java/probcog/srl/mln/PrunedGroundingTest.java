@@ -0,0 +1,69 @@
+package probcog.srl.mln;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import probcog.logic.Formula;
+import probcog.logic.Formula.FormulaSimplification;
+import probcog.logic.TrueFalse;
+import probcog.logic.sat.weighted.WeightedFormula;
+import probcog.srl.Database;
+
+public class PrunedGroundingTest {
+
+	/**
+	 * grounds each formula for all bindings of its variables (without pruning) and simplifies the groundings afterwards
+	 */
+	static ArrayList<String> groundUnpruned(MarkovLogicNetwork mln, Database db, MarkovRandomField mrf) throws Exception {
+		ArrayList<String> ret = new ArrayList<String>();
+		for(WeightedFormula wf : mln.getFormulas()) {
+			for(Formula gf : wf.formula.getAllGroundings(db, mrf.getWorldVariables(), FormulaSimplification.None)) {
+				Formula f = gf.simplify(db);
+				if(f instanceof TrueFalse) {
+					Assert.assertTrue(!wf.isHard || ((TrueFalse)f).isTrue());
+					continue;
+				}
+				ret.add(new WeightedFormula(f, wf.weight, wf.isHard).toString());
+			}
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	static ArrayList<String> groundPruned(MarkovLogicNetwork mln, String dbFile, int numThreads) throws Exception {
+		Database db = new Database(mln);
+		db.readMLNDB(dbFile);
+		ArrayList<String> ret = new ArrayList<String>();
+		for(WeightedFormula wf : mln.ground(db, numThreads))
+			ret.add(wf.toString());
+		Collections.sort(ret);
+		return ret;
+	}
+
+	/**
+	 * checks that grounding with pruning of evidence-determined partial bindings yields the same ground formulas
+	 * and weights as grounding all bindings and simplifying them afterwards
+	 */
+	void testSameFormulas(String mlnFile, String dbFile) throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork(mlnFile);
+		Database db = new Database(mln);
+		db.readMLNDB(dbFile);
+		ArrayList<String> expected = groundUnpruned(mln, db, mln.ground(db));
+		Assert.assertFalse(expected.isEmpty());
+		for(int numThreads : new int[]{1, 4})
+			Assert.assertEquals(expected, groundPruned(mln, dbFile, numThreads));
+	}
+
+	@Test
+	public void testSmokers() throws Exception {
+		testSameFormulas("src/test/resources/models/smokers/wts.smoking.mln", "src/test/resources/models/smokers/smoking-test.db");
+	}
+
+	@Test
+	public void testMeals() throws Exception {
+		testSameFormulas("examples/meals/meals_any_for.mln", "examples/meals/query1.db");
+	}
+}
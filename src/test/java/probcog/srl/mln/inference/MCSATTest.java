@@ -41,4 +41,25 @@ public class MCSATTest {
 		System.out.println(Arrays.toString(actualResults));
 		Assert.assertArrayEquals(expectedResults, actualResults, 0.01);
 	}
+	
+	static double[] inferWithSeed(int numChains, int seed) throws Exception {
+		MarkovLogicNetwork mln = new MarkovLogicNetwork("src/test/resources/models/smokers/wts.smoking.mln");
+		Database db = new Database(mln);
+		db.readMLNDB("src/test/resources/models/smokers/smoking-test.db");
+		MCSAT mcsat = new MCSAT(mln.ground(db));
+		mcsat.setParameterByName("maxSteps", 500);
+		mcsat.setParameterByName("verbose", false);
+		mcsat.setParameterByName("numChains", numChains);
+		mcsat.setParameterByName("randomSeed", seed);
+		return resultProbabilities(mcsat.infer(Arrays.asList("Smokes", "Cancer", "Friends")));
+	}
+	
+	@Test
+	public void testRandomSeed() throws Exception {
+		for(int numChains : new int[]{1, 3}) {
+			double[] results = inferWithSeed(numChains, 42);
+			Assert.assertArrayEquals(results, inferWithSeed(numChains, 42), 0.0);
+			Assert.assertFalse(Arrays.equals(results, inferWithSeed(numChains, 43)));
+		}
+	}
 }